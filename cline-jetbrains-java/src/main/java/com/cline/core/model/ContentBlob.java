@@ -0,0 +1,129 @@
+package com.cline.core.model;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.ref.SoftReference;
+import java.util.Objects;
+
+/**
+ * Handle to a message body that was moved out of the heap into content-addressed storage.
+ * <p>
+ * The body is read from its {@link Source} when it is first accessed and then kept softly reachable,
+ * so the garbage collector can drop it again under memory pressure. Handles are identified by the hash
+ * of their content, so messages with identical bodies can share one handle and one loaded copy.
+ */
+public final class ContentBlob {
+    private final String hash;
+    private final int length;
+    private final Source source;
+    private volatile SoftReference<String> cached;
+
+    /**
+     * Reads blob contents from storage.
+     */
+    @FunctionalInterface
+    public interface Source {
+        /**
+         * Reads the content of a blob.
+         *
+         * @param hash The content hash
+         * @return The content
+         */
+        @NotNull
+        String read(@NotNull String hash);
+    }
+
+    /**
+     * Creates a new blob handle.
+     *
+     * @param hash    The content hash
+     * @param length  The content length in characters
+     * @param source  The storage the content is read from
+     * @param content The content if it is at hand, kept until memory runs low (optional)
+     */
+    public ContentBlob(@NotNull String hash, int length, @NotNull Source source, @Nullable String content) {
+        this.hash = hash;
+        this.length = length;
+        this.source = source;
+        this.cached = content != null ? new SoftReference<>(content) : null;
+    }
+
+    /**
+     * Gets the content hash.
+     *
+     * @return The content hash
+     */
+    @NotNull
+    public String getHash() {
+        return hash;
+    }
+
+    /**
+     * Gets the content length without loading the content.
+     *
+     * @return The content length in characters
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Checks whether the content is currently in memory.
+     *
+     * @return True if the content is loaded
+     */
+    public boolean isLoaded() {
+        return getIfLoaded() != null;
+    }
+
+    /**
+     * Gets the content if it is in memory, without reading it from storage.
+     *
+     * @return The content, or null if it is not loaded
+     */
+    @Nullable
+    public String getIfLoaded() {
+        SoftReference<String> reference = cached;
+        return reference != null ? reference.get() : null;
+    }
+
+    /**
+     * Gets the content, reading it from storage if it is not in memory.
+     *
+     * @return The content
+     */
+    @NotNull
+    public String load() {
+        SoftReference<String> reference = cached;
+        String content = reference != null ? reference.get() : null;
+        if (content == null) {
+            content = source.read(hash);
+            if (content.length() == length) {
+                cached = new SoftReference<>(content);
+            }
+        }
+        return content;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ContentBlob that = (ContentBlob) o;
+        return Objects.equals(hash, that.hash);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "ContentBlob{" +
+                "hash='" + hash + '\'' +
+                ", length=" + length +
+                '}';
+    }
+}
@@ -6,15 +6,13 @@ import org.jetbrains.annotations.Nullable;
 
 import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
-import java.util.stream.Collectors;
 
 /**
  * Represents a conversation between a user and the assistant.
  */
 public class Conversation {
     private final String id;
-    private final List<Message> messages;
+    private final MessageLog messages;
     private final Map<String, Object> metadata;
     private final Instant createdAt;
     private Instant updatedAt;
@@ -32,12 +30,31 @@ public class Conversation {
                        @Nullable String title,
                        @Nullable List<Message> messages,
                        @Nullable Map<String, Object> metadata) {
+        this(id, title, messages, metadata, null, null);
+    }
+
+    /**
+     * Creates a conversation with known timestamps, e.g. when restoring it from storage.
+     *
+     * @param id        The conversation ID (generated if null)
+     * @param title     The conversation title (optional)
+     * @param messages  The initial messages (optional)
+     * @param metadata  Additional metadata (optional)
+     * @param createdAt The creation timestamp (current time if null)
+     * @param updatedAt The last update timestamp (creation timestamp if null)
+     */
+    public Conversation(@Nullable String id,
+                       @Nullable String title,
+                       @Nullable List<Message> messages,
+                       @Nullable Map<String, Object> metadata,
+                       @Nullable Instant createdAt,
+                       @Nullable Instant updatedAt) {
         this.id = id != null ? id : UUID.randomUUID().toString();
         this.title = title;
-        this.messages = new CopyOnWriteArrayList<>(messages != null ? messages : Collections.emptyList());
+        this.messages = new MessageLog(messages);
         this.metadata = new HashMap<>(metadata != null ? metadata : Collections.emptyMap());
-        this.createdAt = Instant.now();
-        this.updatedAt = this.createdAt;
+        this.createdAt = createdAt != null ? createdAt : Instant.now();
+        this.updatedAt = updatedAt != null ? updatedAt : this.createdAt;
     }
 
     /**
@@ -91,12 +108,13 @@ public class Conversation {
     }
 
     /**
-     * Gets the conversation messages.
+     * Gets the conversation messages. The returned list is an immutable snapshot that is not
+     * affected by messages added later, so it can be iterated or serialized without copying.
      *
      * @return An unmodifiable list of messages
      */
     public List<Message> getMessages() {
-        return Collections.unmodifiableList(messages);
+        return messages.getMessages();
     }
 
     /**
@@ -136,6 +154,20 @@ public class Conversation {
         updatedAt = Instant.now();
     }
 
+    /**
+     * Removes a message from the conversation.
+     *
+     * @param message The message to remove
+     * @return True if the message was part of the conversation, false otherwise
+     */
+    public boolean removeMessage(@NotNull Message message) {
+        boolean removed = messages.remove(message);
+        if (removed) {
+            updatedAt = Instant.now();
+        }
+        return removed;
+    }
+
     /**
      * Adds a user message to the conversation.
      *
@@ -193,19 +225,17 @@ public class Conversation {
      */
     @Nullable
     public Message getLastMessage() {
-        return messages.isEmpty() ? null : messages.get(messages.size() - 1);
+        return messages.getLast();
     }
 
     /**
      * Gets the messages with the specified role.
      *
      * @param role The role to filter by
-     * @return A list of messages with the specified role
+     * @return An unmodifiable list of messages with the specified role
      */
     public List<Message> getMessagesByRole(MessageRole role) {
-        return messages.stream()
-                .filter(message -> message.getRole() == role)
-                .collect(Collectors.toList());
+        return messages.getMessagesByRole(role);
     }
 
     /**
@@ -223,7 +253,7 @@ public class Conversation {
      * @return True if the conversation has no messages, false otherwise
      */
     public boolean isEmpty() {
-        return messages.isEmpty();
+        return messages.size() == 0;
     }
 
     /**
@@ -1,25 +1,35 @@
 package com.cline.core.model;
 
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.lang.ref.SoftReference;
 import java.time.Instant;
 import java.util.Objects;
 import java.util.UUID;
 
 /**
  * Represents a message in a conversation.
+ * <p>
+ * Large contents and tool results can be moved to a {@link ContentBlob}, after which they are only
+ * held in memory while they are in use. Accessors load them transparently.
  */
 public class Message {
     private final String id;
+    // Guarded by this, null while the content is in contentBlob
     private String content;
+    private ContentBlob contentBlob;
     private final MessageRole role;
     private final Instant timestamp;
     private JsonObject metadata;
     private String toolName;
     private JsonObject toolInput;
+    // Guarded by this, null while the tool result is in toolResultBlob
     private JsonObject toolResult;
+    private ContentBlob toolResultBlob;
+    private SoftReference<JsonObject> parsedToolResult;
 
     /**
      * Creates a new message.
@@ -104,8 +114,19 @@ public class Message {
      *
      * @return The message content
      */
-    public String getContent() {
-        return content;
+    public synchronized String getContent() {
+        return content != null || contentBlob == null ? content : contentBlob.load();
+    }
+
+    /**
+     * Gets the message content if it is in memory, without reading a blob from storage.
+     * Used on the EDT, which must not wait for the disk.
+     *
+     * @return The message content, or null if it was moved to a blob that is not loaded
+     */
+    @Nullable
+    public synchronized String getContentIfLoaded() {
+        return content != null || contentBlob == null ? content : contentBlob.getIfLoaded();
     }
 
     /**
@@ -113,8 +134,35 @@ public class Message {
      *
      * @param content The new content
      */
-    public void setContent(String content) {
+    public synchronized void setContent(String content) {
         this.content = content;
+        this.contentBlob = null;
+    }
+
+    /**
+     * Gets the blob the message content was moved to.
+     *
+     * @return The content blob, or null if the content is held in memory
+     */
+    @Nullable
+    public synchronized ContentBlob getContentBlob() {
+        return contentBlob;
+    }
+
+    /**
+     * Moves the message content to a blob, unless the content was changed in the meantime.
+     *
+     * @param content The content that was written to the blob
+     * @param blob    The blob
+     * @return True if the content was moved
+     */
+    public synchronized boolean spillContent(@NotNull String content, @NotNull ContentBlob blob) {
+        if (this.content != content) {
+            return false;
+        }
+        this.content = null;
+        this.contentBlob = blob;
+        return true;
     }
 
     /**
@@ -193,12 +241,22 @@ public class Message {
 
     /**
      * Gets the result of the tool execution if this is a tool message.
+     * A tool result that was moved to a blob is parsed again when it is no longer in memory,
+     * so changes to the returned object are not guaranteed to be kept.
      *
      * @return The result of the tool execution, or null if this is not a tool message
      */
     @Nullable
-    public JsonObject getToolResult() {
-        return toolResult;
+    public synchronized JsonObject getToolResult() {
+        if (toolResult != null || toolResultBlob == null) {
+            return toolResult;
+        }
+        JsonObject parsed = parsedToolResult != null ? parsedToolResult.get() : null;
+        if (parsed == null) {
+            parsed = JsonParser.parseString(toolResultBlob.load()).getAsJsonObject();
+            parsedToolResult = new SoftReference<>(parsed);
+        }
+        return parsed;
     }
 
     /**
@@ -206,8 +264,36 @@ public class Message {
      *
      * @param toolResult The tool result
      */
-    public void setToolResult(JsonObject toolResult) {
+    public synchronized void setToolResult(JsonObject toolResult) {
         this.toolResult = toolResult;
+        this.toolResultBlob = null;
+        this.parsedToolResult = null;
+    }
+
+    /**
+     * Gets the blob the tool result was moved to.
+     *
+     * @return The tool result blob holding the result as JSON, or null if the result is held in memory
+     */
+    @Nullable
+    public synchronized ContentBlob getToolResultBlob() {
+        return toolResultBlob;
+    }
+
+    /**
+     * Moves the tool result to a blob, unless the result was replaced in the meantime.
+     *
+     * @param toolResult The tool result that was written to the blob
+     * @param blob       The blob holding the result as JSON
+     * @return True if the result was moved
+     */
+    public synchronized boolean spillToolResult(@NotNull JsonObject toolResult, @NotNull ContentBlob blob) {
+        if (this.toolResult != toolResult) {
+            return false;
+        }
+        this.toolResult = null;
+        this.toolResultBlob = blob;
+        return true;
     }
 
     /**
@@ -231,6 +317,7 @@ public class Message {
         // Check if the content contains a tool use request
         // This is a simplified check; in a real implementation, we would parse the content
         // to determine if it's a tool use request
+        String content = getContent();
         return content != null && content.contains("tool");
     }
     
@@ -246,6 +333,7 @@ public class Message {
         // Check if the content contains a command request
         // This is a simplified check; in a real implementation, we would parse the content
         // to determine if it's a command request
+        String content = getContent();
         return content != null && content.contains("command");
     }
     
@@ -260,6 +348,13 @@ public class Message {
         return metadata != null && metadata.has("error");
     }
 
+    private synchronized String describeContent() {
+        if (content == null && contentBlob != null) {
+            return "<" + contentBlob.getLength() + " characters>";
+        }
+        return content.length() > 50 ? content.substring(0, 47) + "..." : content;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -279,7 +374,7 @@ public class Message {
                 "id='" + id + '\'' +
                 ", role=" + role +
                 ", timestamp=" + timestamp +
-                ", content='" + (content.length() > 50 ? content.substring(0, 47) + "..." : content) + '\'' +
+                ", content='" + describeContent() + '\'' +
                 '}';
     }
 }
\ No newline at end of file
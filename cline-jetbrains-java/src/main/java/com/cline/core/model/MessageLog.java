@@ -0,0 +1,201 @@
+package com.cline.core.model;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Append-optimized message storage backing {@link Conversation}.
+ * <p>
+ * Messages are appended to a growable array and every append publishes a small immutable
+ * {@link Snapshot} describing the current length, so appends cost amortized O(1) instead of
+ * copying the whole list. Slots below a published length are never written again, which makes
+ * snapshots and the lists handed out by {@link #getMessages()} immutable without copying.
+ * Removing or clearing messages moves the log to fresh arrays so existing snapshots stay valid.
+ * <p>
+ * Per-role position indexes are maintained on append so {@link #getMessagesByRole(MessageRole)}
+ * does not have to scan the log. Writers synchronize on the log; readers never block.
+ */
+final class MessageLog {
+    private static final int INITIAL_CAPACITY = 16;
+    private static final MessageRole[] ROLES = MessageRole.values();
+
+    private Message[] elements;
+    private final int[][] rolePositions = new int[ROLES.length][];
+    private volatile Snapshot snapshot;
+
+    /**
+     * Creates a log containing the given messages.
+     *
+     * @param messages The initial messages (optional)
+     */
+    MessageLog(@Nullable Collection<Message> messages) {
+        reset(messages != null ? messages.toArray(new Message[0]) : new Message[0]);
+    }
+
+    /**
+     * Appends a message.
+     *
+     * @param message The message to append
+     */
+    synchronized void add(@NotNull Message message) {
+        Snapshot current = snapshot;
+        int size = current.size;
+        if (size == elements.length) {
+            elements = Arrays.copyOf(elements, size * 2);
+        }
+        elements[size] = message;
+
+        int role = message.getRole().ordinal();
+        int[] positions = rolePositions[role];
+        int roleSize = current.roleSizes[role];
+        if (roleSize == positions.length) {
+            positions = Arrays.copyOf(positions, Math.max(INITIAL_CAPACITY, roleSize * 2));
+            rolePositions[role] = positions;
+        }
+        positions[roleSize] = size;
+
+        int[] roleSizes = current.roleSizes.clone();
+        roleSizes[role]++;
+        snapshot = new Snapshot(elements, size + 1, rolePositions.clone(), roleSizes);
+    }
+
+    /**
+     * Removes a message. The log is searched from the end because removed messages are
+     * usually the most recent ones, such as a streaming placeholder.
+     *
+     * @param message The message to remove
+     * @return True if the message was found
+     */
+    synchronized boolean remove(@NotNull Message message) {
+        Snapshot current = snapshot;
+        for (int i = current.size - 1; i >= 0; i--) {
+            if (current.elements[i].equals(message)) {
+                Message[] remaining = new Message[current.size - 1];
+                System.arraycopy(current.elements, 0, remaining, 0, i);
+                System.arraycopy(current.elements, i + 1, remaining, i, current.size - i - 1);
+                reset(remaining);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all messages.
+     */
+    synchronized void clear() {
+        reset(new Message[0]);
+    }
+
+    /**
+     * Gets an immutable snapshot of the log.
+     *
+     * @return The messages appended so far, in order
+     */
+    List<Message> getMessages() {
+        Snapshot current = snapshot;
+        return new SnapshotList(current.elements, null, current.size);
+    }
+
+    /**
+     * Gets an immutable snapshot of the messages with the given role.
+     *
+     * @param role The role to filter by
+     * @return The matching messages, in order
+     */
+    List<Message> getMessagesByRole(@NotNull MessageRole role) {
+        Snapshot current = snapshot;
+        int ordinal = role.ordinal();
+        return new SnapshotList(current.elements, current.rolePositions[ordinal], current.roleSizes[ordinal]);
+    }
+
+    /**
+     * Gets the last message.
+     *
+     * @return The last message, or null if the log is empty
+     */
+    @Nullable
+    Message getLast() {
+        Snapshot current = snapshot;
+        return current.size == 0 ? null : current.elements[current.size - 1];
+    }
+
+    /**
+     * Gets the number of messages.
+     *
+     * @return The number of messages
+     */
+    int size() {
+        return snapshot.size;
+    }
+
+    private void reset(Message[] messages) {
+        int size = messages.length;
+        elements = Arrays.copyOf(messages, Math.max(INITIAL_CAPACITY, size));
+        int[] roleSizes = new int[ROLES.length];
+        for (int role = 0; role < ROLES.length; role++) {
+            rolePositions[role] = new int[INITIAL_CAPACITY];
+        }
+        for (int i = 0; i < size; i++) {
+            int role = messages[i].getRole().ordinal();
+            int[] positions = rolePositions[role];
+            if (roleSizes[role] == positions.length) {
+                positions = Arrays.copyOf(positions, positions.length * 2);
+                rolePositions[role] = positions;
+            }
+            positions[roleSizes[role]++] = i;
+        }
+        snapshot = new Snapshot(elements, size, rolePositions.clone(), roleSizes);
+    }
+
+    /**
+     * An immutable view of the log at one point in time.
+     */
+    private static final class Snapshot {
+        final Message[] elements;
+        final int size;
+        final int[][] rolePositions;
+        final int[] roleSizes;
+
+        Snapshot(Message[] elements, int size, int[][] rolePositions, int[] roleSizes) {
+            this.elements = elements;
+            this.size = size;
+            this.rolePositions = rolePositions;
+            this.roleSizes = roleSizes;
+        }
+    }
+
+    /**
+     * A read-only list over a prefix of the log, optionally through a role index.
+     */
+    private static final class SnapshotList extends AbstractList<Message> implements RandomAccess {
+        private final Message[] elements;
+        private final int[] positions;
+        private final int size;
+
+        SnapshotList(Message[] elements, @Nullable int[] positions, int size) {
+            this.elements = elements;
+            this.positions = positions;
+            this.size = size;
+        }
+
+        @Override
+        public Message get(int index) {
+            if (index < 0 || index >= size) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+            }
+            return elements[positions != null ? positions[index] : index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
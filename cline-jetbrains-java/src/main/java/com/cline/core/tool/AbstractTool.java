@@ -13,6 +13,7 @@ public abstract class AbstractTool implements Tool {
     private final String name;
     private final String description;
     private final JsonObject inputSchema;
+    private final ToolCategory category;
 
     /**
      * Creates a new abstract tool.
@@ -22,9 +23,23 @@ public abstract class AbstractTool implements Tool {
      * @param inputSchema The input schema
      */
     protected AbstractTool(@NotNull String name, @NotNull String description, @NotNull JsonObject inputSchema) {
+        this(name, description, inputSchema, ToolCategory.GENERAL);
+    }
+
+    /**
+     * Creates a new abstract tool.
+     *
+     * @param name        The tool name
+     * @param description The tool description
+     * @param inputSchema The input schema
+     * @param category    The tool category
+     */
+    protected AbstractTool(@NotNull String name, @NotNull String description, @NotNull JsonObject inputSchema,
+                           @NotNull ToolCategory category) {
         this.name = name;
         this.description = description;
         this.inputSchema = inputSchema;
+        this.category = category;
     }
 
     @Override
@@ -45,9 +60,16 @@ public abstract class AbstractTool implements Tool {
         return inputSchema;
     }
 
+    @Override
+    @NotNull
+    public ToolCategory getCategory() {
+        return category;
+    }
+
     @Override
     public boolean validateArgs(@NotNull JsonObject args) {
-        // Basic validation - can be overridden by subclasses for more specific validation
+        // Arguments are validated against the input schema by the ToolExecutor.
+        // Subclasses only need to override this for checks the schema cannot express.
         return true;
     }
 
@@ -4,6 +4,8 @@ import com.google.gson.JsonObject;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -44,7 +46,90 @@ public interface Tool {
     CompletableFuture<ToolResult> execute(@NotNull JsonObject args);
 
     /**
-     * Validates the arguments against the input schema.
+     * Executes the tool with the given arguments in the given context.
+     * Tools that can be cancelled or that run long operations should override this method,
+     * run their work on the context executor and check the context for cancellation.
+     *
+     * @param args    The arguments for the tool
+     * @param context The execution context
+     * @return A future that completes with the tool result
+     */
+    @NotNull
+    default CompletableFuture<ToolResult> execute(@NotNull JsonObject args, @NotNull ToolContext context) {
+        return execute(args);
+    }
+
+    /**
+     * Gets the category of the tool.
+     * The category determines which executor the tool runs on and its default deadline.
+     *
+     * @return The tool category
+     */
+    @NotNull
+    default ToolCategory getCategory() {
+        return ToolCategory.GENERAL;
+    }
+
+    /**
+     * Gets the deadline for a single execution of the tool.
+     *
+     * @return The timeout in milliseconds, or 0 if the tool never times out
+     */
+    default long getTimeoutMillis() {
+        return getCategory().getDefaultTimeoutMillis();
+    }
+
+    /**
+     * Checks if results of the tool can be cached.
+     * A cacheable tool must have no side effects and its result must only depend on its arguments
+     * and on the files returned by {@link #getCacheDependencies(JsonObject, ToolResult)}.
+     *
+     * @return True if results can be cached, false otherwise
+     */
+    default boolean isCacheable() {
+        return false;
+    }
+
+    /**
+     * Checks if the tool may change files or other state that cached results depend on.
+     * Cached results are discarded whenever a mutating tool finishes, times out or is cancelled. Tools are mutating
+     * unless they declare otherwise, so tools whose side effects are unknown, such as MCP tools, are treated as
+     * mutating; cacheable tools have no side effects.
+     *
+     * @return True if the tool may have side effects, false if it only reads
+     */
+    default boolean isMutating() {
+        return !isCacheable();
+    }
+
+    /**
+     * Gets the paths of the files and directories a result depends on that are known from the arguments.
+     * Their modification stamps are captured before the tool runs.
+     *
+     * @param args The arguments for the tool
+     * @return The paths the result depends on
+     */
+    @NotNull
+    default List<String> getCacheDependencies(@NotNull JsonObject args) {
+        return Collections.emptyList();
+    }
+
+    /**
+     * Gets the paths of all files and directories a result depends on, including those only found by the tool.
+     * A cached result is discarded as soon as the modification stamp of any of these paths changes.
+     *
+     * @param args   The arguments for the tool
+     * @param result The successful tool result
+     * @return The paths the result depends on
+     */
+    @NotNull
+    default List<String> getCacheDependencies(@NotNull JsonObject args, @NotNull ToolResult result) {
+        return getCacheDependencies(args);
+    }
+
+    /**
+     * Validates the arguments beyond what the input schema expresses.
+     * The ToolExecutor validates the arguments against the input schema before calling this method.
      *
      * @param args The arguments to validate
      * @return True if the arguments are valid, false otherwise
@@ -0,0 +1,48 @@
+package com.cline.core.tool;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Categories of tools.
+ * Each category has its own deadline and its own bounded executor in the {@link ToolExecutor},
+ * so a slow tool of one kind cannot starve tools of another kind.
+ */
+public enum ToolCategory {
+    FILE("file", TimeUnit.SECONDS.toMillis(60), 4),
+    COMMAND("command", TimeUnit.MINUTES.toMillis(5), 2),
+    BROWSER("browser", TimeUnit.MINUTES.toMillis(2), 1),
+    INTERACTION("interaction", 0, 2),
+    GENERAL("general", TimeUnit.MINUTES.toMillis(2), 2);
+
+    private final String value;
+    private final long defaultTimeoutMillis;
+    private final int maxConcurrency;
+
+    ToolCategory(String value, long defaultTimeoutMillis, int maxConcurrency) {
+        this.value = value;
+        this.defaultTimeoutMillis = defaultTimeoutMillis;
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    /**
+     * Gets the default deadline for tools in this category.
+     *
+     * @return The default timeout in milliseconds, or 0 if tools in this category never time out
+     */
+    public long getDefaultTimeoutMillis() {
+        return defaultTimeoutMillis;
+    }
+
+    /**
+     * Gets the maximum number of tools in this category that may run at the same time.
+     *
+     * @return The maximum concurrency
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+}
@@ -0,0 +1,159 @@
+package com.cline.core.tool;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Context of a single tool execution.
+ * Provides the executor the tool should run its work on and a cooperative cancellation flag
+ * that is raised when the execution is cancelled or exceeds its deadline.
+ * Tools that produce output incrementally can report it through {@link #reportProgress(String)}.
+ */
+public final class ToolContext {
+    private static final Logger LOG = Logger.getInstance(ToolContext.class);
+
+    private final Executor executor;
+    private final AtomicBoolean cancelled = new AtomicBoolean(false);
+    private final List<Runnable> cancelListeners = new CopyOnWriteArrayList<>();
+    private final List<Consumer<String>> progressListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Creates a new tool context.
+     *
+     * @param executor The executor the tool should run its work on
+     */
+    public ToolContext(@NotNull Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Creates a context that is not managed by a {@link ToolExecutor}.
+     * Work runs on the common pool and is only cancelled if {@link #cancel()} is called explicitly.
+     *
+     * @return A new detached context
+     */
+    public static ToolContext detached() {
+        return new ToolContext(ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Gets the executor the tool should run its work on.
+     *
+     * @return The executor
+     */
+    @NotNull
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Checks if the execution has been cancelled.
+     *
+     * @return True if cancelled, false otherwise
+     */
+    public boolean isCancelled() {
+        return cancelled.get();
+    }
+
+    /**
+     * Throws if the execution has been cancelled.
+     * Long-running loops should call this periodically.
+     *
+     * @throws CancellationException If the execution has been cancelled
+     */
+    public void checkCancelled() {
+        if (cancelled.get()) {
+            throw new CancellationException("Tool execution cancelled");
+        }
+    }
+
+    /**
+     * Cancels the execution and notifies the registered listeners.
+     * Calling this more than once has no effect.
+     */
+    public void cancel() {
+        if (!cancelled.compareAndSet(false, true)) {
+            return;
+        }
+
+        for (Runnable listener : cancelListeners) {
+            runListener(listener);
+        }
+    }
+
+    /**
+     * Registers a listener that is called when the execution is cancelled.
+     * If the execution is already cancelled, the listener is called immediately.
+     *
+     * @param listener The listener
+     */
+    public void onCancel(@NotNull Runnable listener) {
+        cancelListeners.add(listener);
+        if (cancelled.get()) {
+            runListener(listener);
+        }
+    }
+
+    /**
+     * Removes a listener registered with {@link #onCancel(Runnable)}.
+     *
+     * @param listener The listener
+     */
+    public void removeCancelListener(@NotNull Runnable listener) {
+        cancelListeners.remove(listener);
+    }
+
+    /**
+     * Registers a listener that receives partial output reported by the tool.
+     *
+     * @param listener The listener
+     */
+    public void onProgress(@NotNull Consumer<String> listener) {
+        progressListeners.add(listener);
+    }
+
+    /**
+     * Reports partial output of the tool to the registered progress listeners.
+     * Progress reported after the execution has been cancelled is dropped.
+     *
+     * @param output The partial output
+     */
+    public void reportProgress(@NotNull String output) {
+        if (cancelled.get()) {
+            return;
+        }
+
+        for (Consumer<String> listener : progressListeners) {
+            try {
+                listener.accept(output);
+            } catch (Exception e) {
+                LOG.warn("Error in tool progress listener", e);
+            }
+        }
+    }
+
+    /**
+     * Runs a listener at most once, no matter how many threads race to run it.
+     *
+     * @param listener The listener
+     */
+    private void runListener(Runnable listener) {
+        if (!cancelListeners.remove(listener)) {
+            return;
+        }
+
+        try {
+            listener.run();
+        } catch (Exception e) {
+            LOG.warn("Error in tool cancellation listener", e);
+        }
+    }
+}
@@ -3,28 +3,57 @@ package com.cline.core.tool;
 import com.cline.core.model.Conversation;
 import com.cline.core.model.Message;
 import com.cline.services.ClineApiService;
+import com.cline.services.ClineFileService;
 import com.google.gson.JsonObject;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * Service for executing tools.
+ * Each {@link ToolCategory} runs on its own bounded executor with its own deadline,
+ * so a hung or slow tool only affects tools of the same category.
  */
 @Service
-public final class ToolExecutor {
+public final class ToolExecutor implements Disposable {
     private static final Logger LOG = Logger.getInstance(ToolExecutor.class);
+    private static final int BULKHEAD_QUEUE_CAPACITY = 32;
+    private static final long BULKHEAD_KEEP_ALIVE_SECONDS = 30;
+
     private final Project project;
-    private final Map<String, Tool> tools = new HashMap<>();
+    private final Map<String, Tool> tools = new ConcurrentHashMap<>();
+    private final Map<String, ToolSchemaValidator> validators = new ConcurrentHashMap<>();
+    private final Map<ToolCategory, ExecutorService> bulkheads = new EnumMap<>(ToolCategory.class);
+    private final Set<ToolContext> runningContexts = ConcurrentHashMap.newKeySet();
+    private final ToolResultCache resultCache;
 
     public ToolExecutor(Project project) {
         this.project = project;
+        this.resultCache = new ToolResultCache(
+                path -> ClineFileService.getInstance(project).getModificationStamp(path),
+                () -> ClineFileService.getInstance(project).getModificationCount()
+        );
+
+        for (ToolCategory category : ToolCategory.values()) {
+            bulkheads.put(category, createBulkhead(category));
+        }
     }
 
     public static ToolExecutor getInstance(Project project) {
@@ -33,10 +62,12 @@ public final class ToolExecutor {
 
     /**
      * Registers a tool.
+     * The input schema of the tool is compiled into a validator once, here.
      *
      * @param tool The tool to register
      */
     public void registerTool(@NotNull Tool tool) {
+        validators.put(tool.getName(), ToolSchemaValidator.compile(tool.getInputSchema()));
         tools.put(tool.getName(), tool);
         LOG.info("Registered tool: " + tool.getName());
     }
@@ -48,6 +79,7 @@ public final class ToolExecutor {
      */
     public void unregisterTool(@NotNull String toolName) {
         tools.remove(toolName);
+        validators.remove(toolName);
         LOG.info("Unregistered tool: " + toolName);
     }
 
@@ -72,8 +104,22 @@ public final class ToolExecutor {
         return new HashMap<>(tools);
     }
 
+    /**
+     * Gets the cache of results of cacheable tools.
+     *
+     * @return The tool result cache
+     */
+    @NotNull
+    public ToolResultCache getResultCache() {
+        return resultCache;
+    }
+
     /**
      * Executes a tool.
+     * The arguments are checked against the compiled input schema first, then against the tool's own validation.
+     * The tool runs on the executor of its category and is cancelled when it exceeds its deadline.
+     * Cancelling the returned future cancels the tool execution.
+     * Results of cacheable tools are served from the result cache while the files they depend on are unchanged.
      *
      * @param toolName The name of the tool to execute
      * @param args     The arguments for the tool
@@ -81,6 +127,22 @@ public final class ToolExecutor {
      */
     @NotNull
     public CompletableFuture<ToolResult> executeTool(@NotNull String toolName, @NotNull JsonObject args) {
+        return executeTool(toolName, args, null);
+    }
+
+    /**
+     * Executes a tool and forwards the partial output it reports to a listener.
+     * The listener is called on the thread producing the output, not on the EDT.
+     *
+     * @param toolName         The name of the tool to execute
+     * @param args             The arguments for the tool
+     * @param progressListener The listener for partial output, or null
+     * @return A future that completes with the tool result
+     * @see #executeTool(String, JsonObject)
+     */
+    @NotNull
+    public CompletableFuture<ToolResult> executeTool(@NotNull String toolName, @NotNull JsonObject args,
+                                                     @Nullable Consumer<String> progressListener) {
         Tool tool = getTool(toolName);
         if (tool == null) {
             return CompletableFuture.completedFuture(
@@ -88,6 +150,12 @@ public final class ToolExecutor {
             );
         }
 
+        ToolSchemaValidator validator = validators.get(toolName);
+        String schemaError = validator != null ? validator.validate(args) : null;
+        if (schemaError != null) {
+            return CompletableFuture.completedFuture(ToolResult.failure(schemaError));
+        }
+
         if (!tool.validateArgs(args)) {
             String errorMessage = tool.getValidationErrorMessage(args);
             if (errorMessage == null) {
@@ -96,14 +164,146 @@ public final class ToolExecutor {
             return CompletableFuture.completedFuture(ToolResult.failure(errorMessage));
         }
 
+        String cacheKey = tool.isCacheable() ? ToolResultCache.createKey(toolName, args) : null;
+        if (cacheKey != null) {
+            ToolResult cached = resultCache.get(cacheKey);
+            if (cached != null) {
+                return CompletableFuture.completedFuture(cached);
+            }
+        }
+
+        // Stamps are captured before the tool runs, so changes made while it runs invalidate its result
+        ToolResultCache.Stamps stamps = cacheKey != null
+                ? resultCache.captureStamps(tool.getCacheDependencies(args)) : null;
+
+        ToolCategory category = tool.getCategory();
+        boolean mutating = tool.isMutating();
+        ToolContext context = new ToolContext(bulkheads.get(category));
+        if (progressListener != null) {
+            context.onProgress(progressListener);
+        }
+        CompletableFuture<ToolResult> result = new CompletableFuture<>();
+
         try {
-            return tool.execute(args);
-        } catch (Exception e) {
-            LOG.error("Error executing tool: " + toolName, e);
+            context.getExecutor().execute(() -> runTool(tool, args, context, result));
+        } catch (RejectedExecutionException e) {
+            LOG.warn("Rejected tool execution, too many " + category.getValue() + " tools running: " + toolName);
             return CompletableFuture.completedFuture(
-                    ToolResult.failure("Error executing tool: " + e.getMessage())
+                    ToolResult.failure("Too many " + category.getValue() + " tools are running, try again later: " + toolName)
             );
         }
+        runningContexts.add(context);
+
+        long timeoutMillis = tool.getTimeoutMillis();
+        ToolResult timeoutResult = ToolResult.failure(
+                "Tool timed out after " + timeoutMillis + " ms: " + toolName
+        );
+        if (timeoutMillis > 0) {
+            result.completeOnTimeout(timeoutResult, timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+
+        // The returned future completes after the result is cached, so a call right after it can use the result
+        CompletableFuture<ToolResult> returned = new CompletableFuture<>();
+        result.whenComplete((toolResult, e) -> {
+            runningContexts.remove(context);
+
+            // Mutating tools may change files without the change being visible in the VFS yet,
+            // also when they time out or are cancelled after having started
+            if (mutating) {
+                resultCache.invalidateAll();
+            }
+
+            // Propagate timeouts and cancellation of the returned future to the tool
+            if (toolResult == timeoutResult || result.isCancelled()) {
+                LOG.info("Cancelling tool: " + toolName);
+                context.cancel();
+            } else if (toolResult != null && stamps != null) {
+                resultCache.put(cacheKey, toolResult, stamps, tool.getCacheDependencies(args, toolResult));
+            }
+
+            if (e != null) {
+                returned.completeExceptionally(e);
+            } else {
+                returned.complete(toolResult);
+            }
+        });
+        returned.whenComplete((toolResult, e) -> {
+            if (returned.isCancelled()) {
+                result.cancel(false);
+            }
+        });
+
+        return returned;
+    }
+
+    /**
+     * Cancels all running tool executions.
+     */
+    public void cancelAll() {
+        for (ToolContext context : runningContexts) {
+            context.cancel();
+        }
+    }
+
+    /**
+     * Runs a tool on its executor and completes the result future.
+     *
+     * @param tool    The tool to run
+     * @param args    The arguments for the tool
+     * @param context The execution context
+     * @param result  The future to complete with the tool result
+     */
+    private void runTool(@NotNull Tool tool, @NotNull JsonObject args, @NotNull ToolContext context,
+                         @NotNull CompletableFuture<ToolResult> result) {
+        if (context.isCancelled() || result.isDone()) {
+            return;
+        }
+
+        try {
+            tool.execute(args, context).whenComplete((toolResult, e) -> {
+                if (e != null) {
+                    result.complete(ToolResult.failure("Error executing tool: " + e.getMessage()));
+                } else {
+                    result.complete(toolResult);
+                }
+            });
+        } catch (Exception e) {
+            LOG.error("Error executing tool: " + tool.getName(), e);
+            result.complete(ToolResult.failure("Error executing tool: " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Creates the bounded executor for a tool category.
+     *
+     * @param category The tool category
+     * @return The executor
+     */
+    private static ExecutorService createBulkhead(@NotNull ToolCategory category) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                category.getMaxConcurrency(),
+                category.getMaxConcurrency(),
+                BULKHEAD_KEEP_ALIVE_SECONDS,
+                TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(BULKHEAD_QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "Cline " + category.getValue() + " tool " + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    @Override
+    public void dispose() {
+        cancelAll();
+        resultCache.invalidateAll();
+        for (ExecutorService executor : bulkheads.values()) {
+            executor.shutdownNow();
+        }
     }
 
     /**
@@ -0,0 +1,333 @@
+package com.cline.core.tool;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.function.ToLongFunction;
+
+/**
+ * Bounded LRU cache of results of cacheable tools.
+ * Entries are keyed by tool name and canonicalized arguments, and are only returned while the
+ * modification stamps of the files the result depends on are unchanged.
+ * <p>
+ * The stamps are captured before the tool runs, so a file that changes while the tool runs invalidates
+ * the result instead of being recorded as current.
+ */
+public class ToolResultCache {
+    private static final Logger LOG = Logger.getInstance(ToolResultCache.class);
+    private static final int DEFAULT_MAX_ENTRIES = 256;
+    private static final long DEFAULT_MAX_WEIGHT = 16 * 1024 * 1024;
+
+    private final ToLongFunction<String> stampProvider;
+    private final LongSupplier modificationCount;
+    private final int maxEntries;
+    private final long maxWeight;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight = 0;
+
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong evictions = new AtomicLong(0);
+
+    /**
+     * Creates a new tool result cache with the default bounds.
+     *
+     * @param stampProvider     Provides the modification stamp of a path, or -1 if the path is unknown
+     * @param modificationCount Provides a counter that changes whenever any file changes
+     */
+    public ToolResultCache(@NotNull ToLongFunction<String> stampProvider, @NotNull LongSupplier modificationCount) {
+        this(stampProvider, modificationCount, DEFAULT_MAX_ENTRIES, DEFAULT_MAX_WEIGHT);
+    }
+
+    /**
+     * Creates a new tool result cache.
+     *
+     * @param stampProvider     Provides the modification stamp of a path, or -1 if the path is unknown
+     * @param modificationCount Provides a counter that changes whenever any file changes
+     * @param maxEntries        The maximum number of entries
+     * @param maxWeight         The maximum total size of the cached results in characters
+     */
+    public ToolResultCache(@NotNull ToLongFunction<String> stampProvider, @NotNull LongSupplier modificationCount,
+                           int maxEntries, long maxWeight) {
+        this.stampProvider = stampProvider;
+        this.modificationCount = modificationCount;
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Creates the cache key for a tool call.
+     * Object keys are sorted so that argument order does not matter.
+     *
+     * @param toolName The tool name
+     * @param args     The tool arguments
+     * @return The cache key
+     */
+    @NotNull
+    public static String createKey(@NotNull String toolName, @NotNull JsonObject args) {
+        return toolName + ":" + canonicalize(args);
+    }
+
+    /**
+     * Gets a cached result if it is still valid.
+     *
+     * @param key The cache key
+     * @return A copy of the cached result, or null if there is no valid entry
+     */
+    @Nullable
+    public ToolResult get(@NotNull String key) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+
+        if (entry == null) {
+            misses.incrementAndGet();
+            return null;
+        }
+
+        if (!entry.isValid(stampProvider)) {
+            synchronized (entries) {
+                if (entries.get(key) == entry) {
+                    removeEntry(key);
+                }
+            }
+            misses.incrementAndGet();
+            return null;
+        }
+
+        hits.incrementAndGet();
+        JsonElement content = entry.result.getContent();
+        return new ToolResult(true, content != null ? content.deepCopy() : null, null);
+    }
+
+    /**
+     * Captures the modification stamps of the files a result will depend on.
+     * Must be called before the tool runs.
+     *
+     * @param dependencies The paths of the files the result depends on, as known from the arguments
+     * @return The stamps, or null if any of the paths has no modification stamp
+     */
+    @Nullable
+    public Stamps captureStamps(@NotNull Collection<String> dependencies) {
+        long count = modificationCount.getAsLong();
+        Map<String, Long> stamps = new LinkedHashMap<>();
+        for (String path : dependencies) {
+            long stamp = stampProvider.applyAsLong(path);
+            if (stamp < 0) {
+                return null;
+            }
+            stamps.put(path, stamp);
+        }
+        return new Stamps(stamps, count);
+    }
+
+    /**
+     * Caches a successful tool result.
+     * Dependencies that were not captured before the tool ran, such as files found by the tool, are only
+     * stamped if no file changed while the tool ran. Otherwise the result is not cached.
+     *
+     * @param key          The cache key
+     * @param result       The tool result
+     * @param captured     The stamps captured before the tool ran
+     * @param dependencies The paths of all files the result depends on
+     */
+    public void put(@NotNull String key, @NotNull ToolResult result, @NotNull Stamps captured,
+                    @NotNull Collection<String> dependencies) {
+        if (!result.isSuccess() || result.getContent() == null) {
+            return;
+        }
+
+        Map<String, Long> stamps = new LinkedHashMap<>(captured.stamps);
+        boolean stampedLate = false;
+        for (String path : dependencies) {
+            if (stamps.containsKey(path)) {
+                continue;
+            }
+            long stamp = stampProvider.applyAsLong(path);
+            if (stamp < 0) {
+                return;
+            }
+            stamps.put(path, stamp);
+            stampedLate = true;
+        }
+        // Stamps taken now only describe the state the tool saw if nothing has changed since it started
+        if (stampedLate && modificationCount.getAsLong() != captured.modificationCount) {
+            return;
+        }
+
+        long entryWeight = key.length() + result.getContent().toString().length();
+        if (entryWeight > maxWeight) {
+            return;
+        }
+
+        synchronized (entries) {
+            removeEntry(key);
+            entries.put(key, new Entry(result, stamps, entryWeight));
+            weight += entryWeight;
+
+            Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+            while ((entries.size() > maxEntries || weight > maxWeight) && iterator.hasNext()) {
+                Map.Entry<String, Entry> eldest = iterator.next();
+                weight -= eldest.getValue().weight;
+                iterator.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public void invalidateAll() {
+        synchronized (entries) {
+            if (!entries.isEmpty()) {
+                LOG.debug("Invalidating " + entries.size() + " cached tool results");
+            }
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    /**
+     * Gets the number of cached entries.
+     *
+     * @return The number of entries
+     */
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Gets the number of cache hits.
+     *
+     * @return The number of hits
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Gets the number of cache misses.
+     *
+     * @return The number of misses
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Gets the number of entries evicted to stay within the bounds.
+     *
+     * @return The number of evictions
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Resets the hit, miss and eviction counters.
+     */
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        evictions.set(0);
+    }
+
+    private void removeEntry(String key) {
+        Entry removed = entries.remove(key);
+        if (removed != null) {
+            weight -= removed.weight;
+        }
+    }
+
+    /**
+     * Serializes a JSON element with object keys in sorted order.
+     *
+     * @param element The JSON element
+     * @return The canonical string form
+     */
+    private static String canonicalize(JsonElement element) {
+        if (element.isJsonObject()) {
+            TreeMap<String, JsonElement> sorted = new TreeMap<>();
+            for (Map.Entry<String, JsonElement> member : element.getAsJsonObject().entrySet()) {
+                sorted.put(member.getKey(), member.getValue());
+            }
+
+            StringBuilder builder = new StringBuilder("{");
+            for (Map.Entry<String, JsonElement> member : sorted.entrySet()) {
+                if (builder.length() > 1) {
+                    builder.append(',');
+                }
+                builder.append(new JsonPrimitive(member.getKey())).append(':')
+                        .append(canonicalize(member.getValue()));
+            }
+            return builder.append('}').toString();
+        }
+
+        if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            StringBuilder builder = new StringBuilder("[");
+            for (int i = 0; i < array.size(); i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                builder.append(canonicalize(array.get(i)));
+            }
+            return builder.append(']').toString();
+        }
+
+        return element.toString();
+    }
+
+    /**
+     * Modification stamps captured before a tool ran.
+     */
+    public static final class Stamps {
+        private final Map<String, Long> stamps;
+        private final long modificationCount;
+
+        private Stamps(Map<String, Long> stamps, long modificationCount) {
+            this.stamps = stamps;
+            this.modificationCount = modificationCount;
+        }
+    }
+
+    /**
+     * A cached result with the stamps of its dependencies.
+     */
+    private static class Entry {
+        private final ToolResult result;
+        private final Map<String, Long> stamps;
+        private final long weight;
+
+        Entry(ToolResult result, Map<String, Long> stamps, long weight) {
+            this.result = result;
+            this.stamps = stamps;
+            this.weight = weight;
+        }
+
+        boolean isValid(ToLongFunction<String> stampProvider) {
+            for (Map.Entry<String, Long> stamp : stamps.entrySet()) {
+                if (stampProvider.applyAsLong(stamp.getKey()) != stamp.getValue()) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.cline.core.tool;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonPrimitive;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+
+/**
+ * Validator compiled from the JSON schema of a tool's input.
+ * The schema is compiled once into a tree of nodes with precomputed error messages,
+ * so validating arguments does not parse the schema again and does not allocate.
+ * <p>
+ * Supports the subset of JSON schema used by tool input schemas: {@code type} (a single type or an array of types),
+ * {@code properties}, {@code required}, {@code additionalProperties: false}, {@code enum} and {@code items}.
+ * Other keywords are ignored.
+ */
+public final class ToolSchemaValidator {
+    private static final int STRING = 1;
+    private static final int NUMBER = 1 << 1;
+    private static final int INTEGER = 1 << 2;
+    private static final int BOOLEAN = 1 << 3;
+    private static final int OBJECT = 1 << 4;
+    private static final int ARRAY = 1 << 5;
+    private static final int NULL = 1 << 6;
+    private static final int ANY = STRING | NUMBER | INTEGER | BOOLEAN | OBJECT | ARRAY | NULL;
+
+    private final Node root;
+
+    private ToolSchemaValidator(@NotNull Node root) {
+        this.root = root;
+    }
+
+    /**
+     * Compiles a JSON schema into a validator.
+     *
+     * @param schema The JSON schema
+     * @return The compiled validator
+     */
+    @NotNull
+    public static ToolSchemaValidator compile(@NotNull JsonObject schema) {
+        return new ToolSchemaValidator(compileNode(schema, null));
+    }
+
+    /**
+     * Validates arguments against the schema.
+     *
+     * @param args The arguments to validate
+     * @return The error message for the first violation, or null if the arguments are valid
+     */
+    @Nullable
+    public String validate(@NotNull JsonObject args) {
+        return root.validate(args);
+    }
+
+    /**
+     * Checks if arguments are valid against the schema.
+     *
+     * @param args The arguments to validate
+     * @return True if the arguments are valid, false otherwise
+     */
+    public boolean isValid(@NotNull JsonObject args) {
+        return validate(args) == null;
+    }
+
+    private static Node compileNode(@NotNull JsonObject schema, @Nullable String path) {
+        int types = parseTypes(schema.get("type"));
+        if (types == ANY && schema.has("properties")) {
+            types = OBJECT;
+        }
+
+        // Properties
+        List<String> propertyNames = new ArrayList<>();
+        List<Node> propertyNodes = new ArrayList<>();
+        if (schema.has("properties") && schema.get("properties").isJsonObject()) {
+            for (Map.Entry<String, JsonElement> property : schema.getAsJsonObject("properties").entrySet()) {
+                if (property.getValue().isJsonObject()) {
+                    propertyNames.add(property.getKey());
+                    propertyNodes.add(compileNode(property.getValue().getAsJsonObject(), childPath(path, property.getKey())));
+                }
+            }
+        }
+
+        // Required properties
+        List<String> required = new ArrayList<>();
+        if (schema.has("required") && schema.get("required").isJsonArray()) {
+            for (JsonElement name : schema.getAsJsonArray("required")) {
+                if (name.isJsonPrimitive()) {
+                    required.add(name.getAsString());
+                }
+            }
+        }
+        String[] missingMessages = new String[required.size()];
+        for (int i = 0; i < required.size(); i++) {
+            missingMessages[i] = "Missing required parameter: " + childPath(path, required.get(i));
+        }
+
+        // Enum values
+        JsonArray enumValues = null;
+        String enumMessage = null;
+        if (schema.has("enum") && schema.get("enum").isJsonArray()) {
+            enumValues = schema.getAsJsonArray("enum");
+            StringJoiner joiner = new StringJoiner(", ");
+            for (JsonElement value : enumValues) {
+                joiner.add(value.isJsonPrimitive() ? value.getAsString() : value.toString());
+            }
+            enumMessage = (path != null ? "Parameter '" + path + "'" : "Arguments") + " must be one of: " + joiner;
+        }
+
+        // Array items
+        Node items = null;
+        if (schema.has("items") && schema.get("items").isJsonObject()) {
+            items = compileNode(schema.getAsJsonObject("items"), (path != null ? path : "") + "[]");
+        }
+
+        boolean additionalProperties = !schema.has("additionalProperties")
+                || !schema.get("additionalProperties").isJsonPrimitive()
+                || !schema.get("additionalProperties").getAsJsonPrimitive().isBoolean()
+                || schema.get("additionalProperties").getAsBoolean();
+
+        return new Node(
+                path,
+                types,
+                path != null ? "Parameter '" + path + "' must be " + describeTypes(types) : "Arguments must be " + describeTypes(types),
+                required.toArray(new String[0]),
+                missingMessages,
+                propertyNames.toArray(new String[0]),
+                propertyNodes.toArray(new Node[0]),
+                additionalProperties,
+                enumValues,
+                enumMessage,
+                items
+        );
+    }
+
+    private static int parseTypes(@Nullable JsonElement type) {
+        if (type == null) {
+            return ANY;
+        }
+
+        if (type.isJsonArray()) {
+            int types = 0;
+            for (JsonElement element : type.getAsJsonArray()) {
+                types |= parseType(element.getAsString());
+            }
+            return types != 0 ? types : ANY;
+        }
+
+        return type.isJsonPrimitive() ? parseType(type.getAsString()) : ANY;
+    }
+
+    private static int parseType(@NotNull String type) {
+        switch (type) {
+            case "string":
+                return STRING;
+            case "number":
+                return NUMBER | INTEGER;
+            case "integer":
+                return INTEGER;
+            case "boolean":
+                return BOOLEAN;
+            case "object":
+                return OBJECT;
+            case "array":
+                return ARRAY;
+            case "null":
+                return NULL;
+            default:
+                return ANY;
+        }
+    }
+
+    private static String describeTypes(int types) {
+        StringJoiner joiner = new StringJoiner(" or ");
+        if ((types & STRING) != 0) {
+            joiner.add("a string");
+        }
+        if ((types & NUMBER) != 0) {
+            joiner.add("a number");
+        } else if ((types & INTEGER) != 0) {
+            joiner.add("an integer");
+        }
+        if ((types & BOOLEAN) != 0) {
+            joiner.add("a boolean");
+        }
+        if ((types & OBJECT) != 0) {
+            joiner.add("an object");
+        }
+        if ((types & ARRAY) != 0) {
+            joiner.add("an array");
+        }
+        if ((types & NULL) != 0) {
+            joiner.add("null");
+        }
+        return joiner.toString();
+    }
+
+    private static String childPath(@Nullable String parent, @NotNull String name) {
+        return parent != null ? parent + "." + name : name;
+    }
+
+    /**
+     * A compiled schema node.
+     */
+    private static final class Node {
+        private final String path;
+        private final int types;
+        private final String typeMessage;
+        private final String[] required;
+        private final String[] missingMessages;
+        private final String[] propertyNames;
+        private final Node[] propertyNodes;
+        private final boolean additionalProperties;
+        private final JsonArray enumValues;
+        private final String enumMessage;
+        private final Node items;
+
+        Node(String path, int types, String typeMessage, String[] required, String[] missingMessages,
+             String[] propertyNames, Node[] propertyNodes, boolean additionalProperties,
+             JsonArray enumValues, String enumMessage, Node items) {
+            this.path = path;
+            this.types = types;
+            this.typeMessage = typeMessage;
+            this.required = required;
+            this.missingMessages = missingMessages;
+            this.propertyNames = propertyNames;
+            this.propertyNodes = propertyNodes;
+            this.additionalProperties = additionalProperties;
+            this.enumValues = enumValues;
+            this.enumMessage = enumMessage;
+            this.items = items;
+        }
+
+        @Nullable
+        String validate(@NotNull JsonElement value) {
+            if (!matchesType(value)) {
+                return typeMessage;
+            }
+
+            if (enumValues != null && !enumValues.contains(value)) {
+                return enumMessage;
+            }
+
+            if (value.isJsonObject()) {
+                return validateObject(value.getAsJsonObject());
+            }
+
+            if (items != null && value.isJsonArray()) {
+                JsonArray array = value.getAsJsonArray();
+                for (int i = 0; i < array.size(); i++) {
+                    String error = items.validate(array.get(i));
+                    if (error != null) {
+                        return error;
+                    }
+                }
+            }
+
+            return null;
+        }
+
+        @Nullable
+        private String validateObject(@NotNull JsonObject object) {
+            for (int i = 0; i < required.length; i++) {
+                JsonElement property = object.get(required[i]);
+                if (property == null || property.isJsonNull()) {
+                    return missingMessages[i];
+                }
+            }
+
+            for (int i = 0; i < propertyNames.length; i++) {
+                JsonElement property = object.get(propertyNames[i]);
+                if (property != null && !property.isJsonNull()) {
+                    String error = propertyNodes[i].validate(property);
+                    if (error != null) {
+                        return error;
+                    }
+                }
+            }
+
+            if (!additionalProperties) {
+                for (String name : object.keySet()) {
+                    if (!isKnownProperty(name)) {
+                        return "Unknown parameter: " + childPath(path, name);
+                    }
+                }
+            }
+
+            return null;
+        }
+
+        private boolean isKnownProperty(@NotNull String name) {
+            for (String propertyName : propertyNames) {
+                if (propertyName.equals(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean matchesType(@NotNull JsonElement value) {
+            if (types == ANY) {
+                return true;
+            }
+
+            if (value.isJsonNull()) {
+                return (types & NULL) != 0;
+            }
+
+            if (value.isJsonObject()) {
+                return (types & OBJECT) != 0;
+            }
+
+            if (value.isJsonArray()) {
+                return (types & ARRAY) != 0;
+            }
+
+            JsonPrimitive primitive = value.getAsJsonPrimitive();
+            if (primitive.isString()) {
+                return (types & STRING) != 0;
+            }
+
+            if (primitive.isBoolean()) {
+                return (types & BOOLEAN) != 0;
+            }
+
+            if ((types & NUMBER) != 0) {
+                return true;
+            }
+
+            if ((types & INTEGER) != 0) {
+                double number = primitive.getAsDouble();
+                return !Double.isInfinite(number) && number == Math.rint(number);
+            }
+
+            return false;
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.cline.core.tool.impl;
 
 import com.cline.core.tool.AbstractTool;
+import com.cline.core.tool.ToolCategory;
+import com.cline.core.tool.ToolContext;
 import com.cline.core.tool.ToolResult;
 import com.cline.services.ClineFileService;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
@@ -27,7 +30,7 @@ public class ApplyDiffTool extends AbstractTool {
      * @param project The project
      */
     public ApplyDiffTool(Project project) {
-        super(NAME, DESCRIPTION, createInputSchema());
+        super(NAME, DESCRIPTION, createInputSchema(), ToolCategory.FILE);
         this.project = project;
         this.fileService = ClineFileService.getInstance(project);
     }
@@ -64,74 +67,30 @@ public class ApplyDiffTool extends AbstractTool {
         
         schema.add("properties", properties);
         
-        JsonObject required = new JsonObject();
-        required.addProperty("0", "path");
-        required.addProperty("1", "diff");
-        required.addProperty("2", "start_line");
-        required.addProperty("3", "end_line");
+        JsonArray required = new JsonArray();
+        required.add("path");
+        required.add("diff");
+        required.add("start_line");
+        required.add("end_line");
         schema.add("required", required);
         
         return schema;
     }
     
     @Override
-    public boolean validateArgs(@NotNull JsonObject args) {
-        if (!args.has("path") || !args.get("path").isJsonPrimitive() || !args.get("path").getAsJsonPrimitive().isString()) {
-            return false;
-        }
-        
-        if (!args.has("diff") || !args.get("diff").isJsonPrimitive() || !args.get("diff").getAsJsonPrimitive().isString()) {
-            return false;
-        }
-        
-        if (!args.has("start_line") || !args.get("start_line").isJsonPrimitive() || !args.get("start_line").getAsJsonPrimitive().isNumber()) {
-            return false;
-        }
-        
-        if (!args.has("end_line") || !args.get("end_line").isJsonPrimitive() || !args.get("end_line").getAsJsonPrimitive().isNumber()) {
-            return false;
-        }
-        
+    public boolean isMutating() {
         return true;
     }
     
     @Override
     @NotNull
-    public String getValidationErrorMessage(@NotNull JsonObject args) {
-        if (!args.has("path")) {
-            return "Missing required parameter: path";
-        }
-        if (!args.get("path").isJsonPrimitive() || !args.get("path").getAsJsonPrimitive().isString()) {
-            return "Parameter 'path' must be a string";
-        }
-        
-        if (!args.has("diff")) {
-            return "Missing required parameter: diff";
-        }
-        if (!args.get("diff").isJsonPrimitive() || !args.get("diff").getAsJsonPrimitive().isString()) {
-            return "Parameter 'diff' must be a string";
-        }
-        
-        if (!args.has("start_line")) {
-            return "Missing required parameter: start_line";
-        }
-        if (!args.get("start_line").isJsonPrimitive() || !args.get("start_line").getAsJsonPrimitive().isNumber()) {
-            return "Parameter 'start_line' must be a number";
-        }
-        
-        if (!args.has("end_line")) {
-            return "Missing required parameter: end_line";
-        }
-        if (!args.get("end_line").isJsonPrimitive() || !args.get("end_line").getAsJsonPrimitive().isNumber()) {
-            return "Parameter 'end_line' must be a number";
-        }
-        
-        return null;
+    public CompletableFuture<ToolResult> execute(@NotNull JsonObject args) {
+        return execute(args, ToolContext.detached());
     }
     
     @Override
     @NotNull
-    public CompletableFuture<ToolResult> execute(@NotNull JsonObject args) {
+    public CompletableFuture<ToolResult> execute(@NotNull JsonObject args, @NotNull ToolContext context) {
         CompletableFuture<ToolResult> future = new CompletableFuture<>();
         
         try {
@@ -142,7 +101,7 @@ public class ApplyDiffTool extends AbstractTool {
             int endLine = args.get("end_line").getAsInt();
             
             // Apply the diff
-            fileService.applyDiff(path, diff, startLine, endLine)
+            fileService.applyDiff(path, diff, startLine, endLine, context)
                     .thenAccept(success -> {
                         // Create a result object
                         JsonObject result = new JsonObject();
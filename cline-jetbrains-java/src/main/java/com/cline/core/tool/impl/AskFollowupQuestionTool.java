@@ -1,7 +1,9 @@
 package com.cline.core.tool.impl;
 
 import com.cline.core.tool.AbstractTool;
+import com.cline.core.tool.ToolCategory;
 import com.cline.core.tool.ToolResult;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
@@ -26,7 +28,7 @@ public class AskFollowupQuestionTool extends AbstractTool {
      * @param project The project
      */
     public AskFollowupQuestionTool(Project project) {
-        super(NAME, DESCRIPTION, createInputSchema());
+        super(NAME, DESCRIPTION, createInputSchema(), ToolCategory.INTERACTION);
         this.project = project;
     }
     
@@ -47,33 +49,16 @@ public class AskFollowupQuestionTool extends AbstractTool {
         
         schema.add("properties", properties);
         
-        JsonObject required = new JsonObject();
-        required.addProperty("0", "question");
+        JsonArray required = new JsonArray();
+        required.add("question");
         schema.add("required", required);
         
         return schema;
     }
     
     @Override
-    public boolean validateArgs(@NotNull JsonObject args) {
-        if (!args.has("question") || !args.get("question").isJsonPrimitive() || !args.get("question").getAsJsonPrimitive().isString()) {
-            return false;
-        }
-        
-        return true;
-    }
-    
-    @Override
-    @NotNull
-    public String getValidationErrorMessage(@NotNull JsonObject args) {
-        if (!args.has("question")) {
-            return "Missing required parameter: question";
-        }
-        if (!args.get("question").isJsonPrimitive() || !args.get("question").getAsJsonPrimitive().isString()) {
-            return "Parameter 'question' must be a string";
-        }
-        
-        return null;
+    public boolean isMutating() {
+        return false;
     }
     
     @Override
@@ -1,8 +1,10 @@
 package com.cline.core.tool.impl;
 
 import com.cline.core.tool.AbstractTool;
+import com.cline.core.tool.ToolCategory;
 import com.cline.core.tool.ToolResult;
 import com.cline.services.ClineTerminalService;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
@@ -28,7 +30,7 @@ public class AttemptCompletionTool extends AbstractTool {
      * @param project The project
      */
     public AttemptCompletionTool(Project project) {
-        super(NAME, DESCRIPTION, createInputSchema());
+        super(NAME, DESCRIPTION, createInputSchema(), ToolCategory.INTERACTION);
         this.project = project;
         this.terminalService = ClineTerminalService.getInstance(project);
     }
@@ -55,41 +57,16 @@ public class AttemptCompletionTool extends AbstractTool {
         
         schema.add("properties", properties);
         
-        JsonObject required = new JsonObject();
-        required.addProperty("0", "result");
+        JsonArray required = new JsonArray();
+        required.add("result");
         schema.add("required", required);
         
         return schema;
     }
     
     @Override
-    public boolean validateArgs(@NotNull JsonObject args) {
-        if (!args.has("result") || !args.get("result").isJsonPrimitive() || !args.get("result").getAsJsonPrimitive().isString()) {
-            return false;
-        }
-        
-        if (args.has("command") && (!args.get("command").isJsonPrimitive() || !args.get("command").getAsJsonPrimitive().isString())) {
-            return false;
-        }
-        
-        return true;
-    }
-    
-    @Override
-    @NotNull
-    public String getValidationErrorMessage(@NotNull JsonObject args) {
-        if (!args.has("result")) {
-            return "Missing required parameter: result";
-        }
-        if (!args.get("result").isJsonPrimitive() || !args.get("result").getAsJsonPrimitive().isString()) {
-            return "Parameter 'result' must be a string";
-        }
-        
-        if (args.has("command") && (!args.get("command").isJsonPrimitive() || !args.get("command").getAsJsonPrimitive().isString())) {
-            return "Parameter 'command' must be a string";
-        }
-        
-        return "";
+    public boolean isMutating() {
+        return false;
     }
     
     @Override
@@ -1,12 +1,15 @@
 package com.cline.core.tool.impl;
 
 import com.cline.core.tool.AbstractTool;
+import com.cline.core.tool.ToolCategory;
 import com.cline.core.tool.ToolResult;
 import com.cline.services.ClineBrowserService;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.util.concurrent.CompletableFuture;
 
@@ -27,7 +30,7 @@ public class BrowserActionTool extends AbstractTool {
      * @param project The project
      */
     public BrowserActionTool(Project project) {
-        super(NAME, DESCRIPTION, createInputSchema());
+        super(NAME, DESCRIPTION, createInputSchema(), ToolCategory.BROWSER);
         this.project = project;
         this.browserService = ClineBrowserService.getInstance(project);
     }
@@ -45,6 +48,14 @@ public class BrowserActionTool extends AbstractTool {
         JsonObject actionProperty = new JsonObject();
         actionProperty.addProperty("type", "string");
         actionProperty.addProperty("description", "The action to perform (launch, click, type, scroll_down, scroll_up, close)");
+        JsonArray actions = new JsonArray();
+        actions.add("launch");
+        actions.add("click");
+        actions.add("type");
+        actions.add("scroll_down");
+        actions.add("scroll_up");
+        actions.add("close");
+        actionProperty.add("enum", actions);
         properties.add("action", actionProperty);
         
         JsonObject urlProperty = new JsonObject();
@@ -64,8 +75,8 @@ public class BrowserActionTool extends AbstractTool {
         
         schema.add("properties", properties);
         
-        JsonObject required = new JsonObject();
-        required.addProperty("0", "action");
+        JsonArray required = new JsonArray();
+        required.add("action");
         schema.add("required", required);
         
         return schema;
@@ -73,64 +84,25 @@ public class BrowserActionTool extends AbstractTool {
     
     @Override
     public boolean validateArgs(@NotNull JsonObject args) {
-        if (!args.has("action") || !args.get("action").isJsonPrimitive() || !args.get("action").getAsJsonPrimitive().isString()) {
-            return false;
-        }
-        
-        String action = args.get("action").getAsString();
-        
-        if (action.equals("launch") && (!args.has("url") || !args.get("url").isJsonPrimitive() || !args.get("url").getAsJsonPrimitive().isString())) {
-            return false;
-        }
-        
-        if (action.equals("click") && (!args.has("coordinate") || !args.get("coordinate").isJsonPrimitive() || !args.get("coordinate").getAsJsonPrimitive().isString())) {
-            return false;
-        }
-        
-        if (action.equals("type") && (!args.has("text") || !args.get("text").isJsonPrimitive() || !args.get("text").getAsJsonPrimitive().isString())) {
-            return false;
-        }
-        
-        return true;
+        return getValidationErrorMessage(args) == null;
     }
     
     @Override
-    @NotNull
+    @Nullable
     public String getValidationErrorMessage(@NotNull JsonObject args) {
-        if (!args.has("action")) {
-            return "Missing required parameter: action";
-        }
-        if (!args.get("action").isJsonPrimitive() || !args.get("action").getAsJsonPrimitive().isString()) {
-            return "Parameter 'action' must be a string";
-        }
-        
-        String action = args.get("action").getAsString();
+        // Types are checked against the input schema; only the per-action requirements are checked here
+        String action = args.has("action") ? args.get("action").getAsString() : "";
         
-        if (action.equals("launch")) {
-            if (!args.has("url")) {
-                return "Missing required parameter for 'launch' action: url";
-            }
-            if (!args.get("url").isJsonPrimitive() || !args.get("url").getAsJsonPrimitive().isString()) {
-                return "Parameter 'url' must be a string";
-            }
+        if (action.equals("launch") && !args.has("url")) {
+            return "Missing required parameter for 'launch' action: url";
         }
         
-        if (action.equals("click")) {
-            if (!args.has("coordinate")) {
-                return "Missing required parameter for 'click' action: coordinate";
-            }
-            if (!args.get("coordinate").isJsonPrimitive() || !args.get("coordinate").getAsJsonPrimitive().isString()) {
-                return "Parameter 'coordinate' must be a string";
-            }
+        if (action.equals("click") && !args.has("coordinate")) {
+            return "Missing required parameter for 'click' action: coordinate";
         }
         
-        if (action.equals("type")) {
-            if (!args.has("text")) {
-                return "Missing required parameter for 'type' action: text";
-            }
-            if (!args.get("text").isJsonPrimitive() || !args.get("text").getAsJsonPrimitive().isString()) {
-                return "Parameter 'text' must be a string";
-            }
+        if (action.equals("type") && !args.has("text")) {
+            return "Missing required parameter for 'type' action: text";
         }
         
         return null;
@@ -1,14 +1,18 @@
 package com.cline.core.tool.impl;
 
 import com.cline.core.tool.AbstractTool;
+import com.cline.core.tool.ToolCategory;
+import com.cline.core.tool.ToolContext;
 import com.cline.core.tool.ToolResult;
 import com.cline.services.ClineTerminalService;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import org.jetbrains.annotations.NotNull;
 
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Tool for executing a CLI command.
@@ -17,6 +21,8 @@ public class ExecuteCommandTool extends AbstractTool {
     private static final Logger LOG = Logger.getInstance(ExecuteCommandTool.class);
     private static final String NAME = "execute_command";
     private static final String DESCRIPTION = "Execute a CLI command";
+    // The command is killed this long before the executor deadline, so its output is still reported
+    private static final long KILL_MARGIN_SECONDS = 5;
     
     private final Project project;
     private final ClineTerminalService terminalService;
@@ -27,7 +33,7 @@ public class ExecuteCommandTool extends AbstractTool {
      * @param project The project
      */
     public ExecuteCommandTool(Project project) {
-        super(NAME, DESCRIPTION, createInputSchema());
+        super(NAME, DESCRIPTION, createInputSchema(), ToolCategory.COMMAND);
         this.project = project;
         this.terminalService = ClineTerminalService.getInstance(project);
     }
@@ -49,52 +55,49 @@ public class ExecuteCommandTool extends AbstractTool {
         
         schema.add("properties", properties);
         
-        JsonObject required = new JsonObject();
-        required.addProperty("0", "command");
+        JsonArray required = new JsonArray();
+        required.add("command");
         schema.add("required", required);
         
         return schema;
     }
     
     @Override
-    public boolean validateArgs(@NotNull JsonObject args) {
-        if (!args.has("command") || !args.get("command").isJsonPrimitive() || !args.get("command").getAsJsonPrimitive().isString()) {
-            return false;
-        }
-        
+    public boolean isMutating() {
         return true;
     }
     
     @Override
     @NotNull
-    public String getValidationErrorMessage(@NotNull JsonObject args) {
-        if (!args.has("command")) {
-            return "Missing required parameter: command";
-        }
-        if (!args.get("command").isJsonPrimitive() || !args.get("command").getAsJsonPrimitive().isString()) {
-            return "Parameter 'command' must be a string";
-        }
-        
-        return "";
+    public CompletableFuture<ToolResult> execute(@NotNull JsonObject args) {
+        return execute(args, ToolContext.detached());
     }
     
     @Override
     @NotNull
-    public CompletableFuture<ToolResult> execute(@NotNull JsonObject args) {
+    public CompletableFuture<ToolResult> execute(@NotNull JsonObject args, @NotNull ToolContext context) {
         CompletableFuture<ToolResult> future = new CompletableFuture<>();
         
         try {
             // Get the parameters
             String command = args.get("command").getAsString();
+            int timeoutSeconds = getCommandTimeoutSeconds();
             
-            // Execute the command
-            terminalService.executeCommandAndCaptureOutput(command, 60)
-                    .thenAccept(output -> {
+            // Execute the command, streaming its output while it runs
+            terminalService.runCommand(command, timeoutSeconds, context, context::reportProgress)
+                    .thenAccept(commandResult -> {
                         // Create a result object
                         JsonObject result = new JsonObject();
                         result.addProperty("command", command);
-                        result.addProperty("output", output);
-                        result.addProperty("success", true);
+                        result.addProperty("output", commandResult.getOutput());
+                        result.addProperty("exitCode", commandResult.getExitCode());
+                        result.addProperty("success", commandResult.isSuccess());
+                        if (commandResult.isTruncated()) {
+                            result.addProperty("truncated", true);
+                        }
+                        if (commandResult.isTimedOut()) {
+                            result.addProperty("error", "Command timed out after " + timeoutSeconds + " seconds and was killed");
+                        }
                         
                         // Complete the future with the result
                         completeSuccessfully(future, result);
@@ -117,4 +120,14 @@ public class ExecuteCommandTool extends AbstractTool {
         
         return future;
     }
+    
+    /**
+     * Gets the time after which a command is killed, derived from the tool deadline.
+     *
+     * @return The command timeout in seconds
+     */
+    private int getCommandTimeoutSeconds() {
+        long deadlineSeconds = TimeUnit.MILLISECONDS.toSeconds(getTimeoutMillis());
+        return (int) Math.max(1, deadlineSeconds - KILL_MARGIN_SECONDS);
+    }
 }
\ No newline at end of file
@@ -1,14 +1,19 @@
 package com.cline.core.tool.impl;
 
 import com.cline.core.tool.AbstractTool;
+import com.cline.core.tool.ToolCategory;
+import com.cline.core.tool.ToolContext;
 import com.cline.core.tool.ToolResult;
 import com.cline.services.ClineFileService;
 import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
@@ -30,7 +35,7 @@ public class ListCodeDefinitionsTool extends AbstractTool {
      * @param project The project
      */
     public ListCodeDefinitionsTool(Project project) {
-        super(NAME, DESCRIPTION, createInputSchema());
+        super(NAME, DESCRIPTION, createInputSchema(), ToolCategory.FILE);
         this.project = project;
         this.fileService = ClineFileService.getInstance(project);
     }
@@ -52,38 +57,49 @@ public class ListCodeDefinitionsTool extends AbstractTool {
         
         schema.add("properties", properties);
         
-        JsonObject required = new JsonObject();
-        required.addProperty("0", "path");
+        JsonArray required = new JsonArray();
+        required.add("path");
         schema.add("required", required);
         
         return schema;
     }
     
     @Override
-    public boolean validateArgs(@NotNull JsonObject args) {
-        if (!args.has("path") || !args.get("path").isJsonPrimitive() || !args.get("path").getAsJsonPrimitive().isString()) {
-            return false;
-        }
-        
+    public boolean isCacheable() {
         return true;
     }
     
     @Override
     @NotNull
-    public String getValidationErrorMessage(@NotNull JsonObject args) {
-        if (!args.has("path")) {
-            return "Missing required parameter: path";
-        }
-        if (!args.get("path").isJsonPrimitive() || !args.get("path").getAsJsonPrimitive().isString()) {
-            return "Parameter 'path' must be a string";
+    public List<String> getCacheDependencies(@NotNull JsonObject args) {
+        return Collections.singletonList(args.get("path").getAsString());
+    }
+    
+    @Override
+    @NotNull
+    public List<String> getCacheDependencies(@NotNull JsonObject args, @NotNull ToolResult result) {
+        List<String> dependencies = new ArrayList<>(getCacheDependencies(args));
+        
+        // Definitions also change when any of the listed files changes
+        JsonElement content = result.getContent();
+        if (content != null && content.isJsonObject() && content.getAsJsonObject().has("files")) {
+            for (JsonElement file : content.getAsJsonObject().getAsJsonArray("files")) {
+                dependencies.add(file.getAsJsonObject().get("file").getAsString());
+            }
         }
         
-        return null;
+        return dependencies;
     }
     
     @Override
     @NotNull
     public CompletableFuture<ToolResult> execute(@NotNull JsonObject args) {
+        return execute(args, ToolContext.detached());
+    }
+    
+    @Override
+    @NotNull
+    public CompletableFuture<ToolResult> execute(@NotNull JsonObject args, @NotNull ToolContext context) {
         CompletableFuture<ToolResult> future = new CompletableFuture<>();
         
         try {
@@ -91,7 +107,7 @@ public class ListCodeDefinitionsTool extends AbstractTool {
             String path = args.get("path").getAsString();
             
             // List the code definitions
-            fileService.listCodeDefinitions(path)
+            fileService.listCodeDefinitions(path, context)
                     .thenAccept(definitions -> {
                         // Create a result object
                         JsonObject result = new JsonObject();
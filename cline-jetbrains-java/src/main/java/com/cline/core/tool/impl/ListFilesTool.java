@@ -1,6 +1,8 @@
 package com.cline.core.tool.impl;
 
 import com.cline.core.tool.AbstractTool;
+import com.cline.core.tool.ToolCategory;
+import com.cline.core.tool.ToolContext;
 import com.cline.core.tool.ToolResult;
 import com.cline.services.ClineFileService;
 import com.google.gson.JsonArray;
@@ -9,6 +11,7 @@ import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
@@ -29,7 +32,7 @@ public class ListFilesTool extends AbstractTool {
      * @param project The project
      */
     public ListFilesTool(Project project) {
-        super(NAME, DESCRIPTION, createInputSchema());
+        super(NAME, DESCRIPTION, createInputSchema(), ToolCategory.FILE);
         this.project = project;
         this.fileService = ClineFileService.getInstance(project);
     }
@@ -56,46 +59,33 @@ public class ListFilesTool extends AbstractTool {
         
         schema.add("properties", properties);
         
-        JsonObject required = new JsonObject();
-        required.addProperty("0", "path");
+        JsonArray required = new JsonArray();
+        required.add("path");
         schema.add("required", required);
         
         return schema;
     }
     
     @Override
-    public boolean validateArgs(@NotNull JsonObject args) {
-        if (!args.has("path") || !args.get("path").isJsonPrimitive() || !args.get("path").getAsJsonPrimitive().isString()) {
-            return false;
-        }
-        
-        if (args.has("recursive") && (!args.get("recursive").isJsonPrimitive() || !args.get("recursive").getAsJsonPrimitive().isBoolean())) {
-            return false;
-        }
-        
+    public boolean isCacheable() {
         return true;
     }
     
     @Override
     @NotNull
-    public String getValidationErrorMessage(@NotNull JsonObject args) {
-        if (!args.has("path")) {
-            return "Missing required parameter: path";
-        }
-        if (!args.get("path").isJsonPrimitive() || !args.get("path").getAsJsonPrimitive().isString()) {
-            return "Parameter 'path' must be a string";
-        }
-        
-        if (args.has("recursive") && (!args.get("recursive").isJsonPrimitive() || !args.get("recursive").getAsJsonPrimitive().isBoolean())) {
-            return "Parameter 'recursive' must be a boolean";
-        }
-        
-        return null;
+    public List<String> getCacheDependencies(@NotNull JsonObject args) {
+        return Collections.singletonList(args.get("path").getAsString());
     }
     
     @Override
     @NotNull
     public CompletableFuture<ToolResult> execute(@NotNull JsonObject args) {
+        return execute(args, ToolContext.detached());
+    }
+    
+    @Override
+    @NotNull
+    public CompletableFuture<ToolResult> execute(@NotNull JsonObject args, @NotNull ToolContext context) {
         CompletableFuture<ToolResult> future = new CompletableFuture<>();
         
         try {
@@ -104,7 +94,7 @@ public class ListFilesTool extends AbstractTool {
             boolean recursive = args.has("recursive") && args.get("recursive").getAsBoolean();
             
             // List the files
-            fileService.listFiles(path, recursive)
+            fileService.listFiles(path, recursive, context)
                     .thenAccept(files -> {
                         // Create a result object
                         JsonObject result = new JsonObject();
@@ -1,12 +1,17 @@
 package com.cline.core.tool.impl;
 
 import com.cline.core.tool.AbstractTool;
+import com.cline.core.tool.ToolCategory;
+import com.cline.core.tool.ToolContext;
 import com.cline.core.tool.ToolResult;
 import com.cline.services.ClineFileService;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.intellij.openapi.project.Project;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 /**
@@ -25,7 +30,7 @@ public class ReadFileTool extends AbstractTool {
      * @param project The project
      */
     public ReadFileTool(Project project) {
-        super(NAME, DESCRIPTION, createInputSchema());
+        super(NAME, DESCRIPTION, createInputSchema(), ToolCategory.FILE);
         this.project = project;
         this.fileService = ClineFileService.getInstance(project);
     }
@@ -47,33 +52,33 @@ public class ReadFileTool extends AbstractTool {
         
         schema.add("properties", properties);
         
-        JsonObject required = new JsonObject();
-        required.addProperty("0", "path");
+        JsonArray required = new JsonArray();
+        required.add("path");
         schema.add("required", required);
         
         return schema;
     }
     
     @Override
-    public boolean validateArgs(@NotNull JsonObject args) {
-        return args.has("path") && args.get("path").isJsonPrimitive() && args.get("path").getAsJsonPrimitive().isString();
+    public boolean isCacheable() {
+        return true;
     }
     
     @Override
     @NotNull
-    public String getValidationErrorMessage(@NotNull JsonObject args) {
-        if (!args.has("path")) {
-            return "Missing required parameter: path";
-        }
-        if (!args.get("path").isJsonPrimitive() || !args.get("path").getAsJsonPrimitive().isString()) {
-            return "Parameter 'path' must be a string";
-        }
-        return null;
+    public List<String> getCacheDependencies(@NotNull JsonObject args) {
+        return Collections.singletonList(args.get("path").getAsString());
     }
     
     @Override
     @NotNull
     public CompletableFuture<ToolResult> execute(@NotNull JsonObject args) {
+        return execute(args, ToolContext.detached());
+    }
+    
+    @Override
+    @NotNull
+    public CompletableFuture<ToolResult> execute(@NotNull JsonObject args, @NotNull ToolContext context) {
         CompletableFuture<ToolResult> future = new CompletableFuture<>();
         
         try {
@@ -81,7 +86,7 @@ public class ReadFileTool extends AbstractTool {
             String path = args.get("path").getAsString();
             
             // Read the file
-            fileService.readFile(path)
+            fileService.readFile(path, context)
                     .thenAccept(content -> {
                         // Create a result object
                         JsonObject result = new JsonObject();
@@ -1,6 +1,8 @@
 package com.cline.core.tool.impl;
 
 import com.cline.core.tool.AbstractTool;
+import com.cline.core.tool.ToolCategory;
+import com.cline.core.tool.ToolContext;
 import com.cline.core.tool.ToolResult;
 import com.cline.services.ClineFileService;
 import com.google.gson.JsonArray;
@@ -30,7 +32,7 @@ public class SearchFilesTool extends AbstractTool {
      * @param project The project
      */
     public SearchFilesTool(Project project) {
-        super(NAME, DESCRIPTION, createInputSchema());
+        super(NAME, DESCRIPTION, createInputSchema(), ToolCategory.FILE);
         this.project = project;
         this.fileService = ClineFileService.getInstance(project);
     }
@@ -62,58 +64,28 @@ public class SearchFilesTool extends AbstractTool {
         
         schema.add("properties", properties);
         
-        JsonObject required = new JsonObject();
-        required.addProperty("0", "path");
-        required.addProperty("1", "regex");
+        JsonArray required = new JsonArray();
+        required.add("path");
+        required.add("regex");
         schema.add("required", required);
         
         return schema;
     }
     
     @Override
-    public boolean validateArgs(@NotNull JsonObject args) {
-        if (!args.has("path") || !args.get("path").isJsonPrimitive() || !args.get("path").getAsJsonPrimitive().isString()) {
-            return false;
-        }
-        
-        if (!args.has("regex") || !args.get("regex").isJsonPrimitive() || !args.get("regex").getAsJsonPrimitive().isString()) {
-            return false;
-        }
-        
-        if (args.has("file_pattern") && (!args.get("file_pattern").isJsonPrimitive() || !args.get("file_pattern").getAsJsonPrimitive().isString())) {
-            return false;
-        }
-        
-        return true;
+    public boolean isMutating() {
+        return false;
     }
     
     @Override
     @NotNull
-    public String getValidationErrorMessage(@NotNull JsonObject args) {
-        if (!args.has("path")) {
-            return "Missing required parameter: path";
-        }
-        if (!args.get("path").isJsonPrimitive() || !args.get("path").getAsJsonPrimitive().isString()) {
-            return "Parameter 'path' must be a string";
-        }
-        
-        if (!args.has("regex")) {
-            return "Missing required parameter: regex";
-        }
-        if (!args.get("regex").isJsonPrimitive() || !args.get("regex").getAsJsonPrimitive().isString()) {
-            return "Parameter 'regex' must be a string";
-        }
-        
-        if (args.has("file_pattern") && (!args.get("file_pattern").isJsonPrimitive() || !args.get("file_pattern").getAsJsonPrimitive().isString())) {
-            return "Parameter 'file_pattern' must be a string";
-        }
-        
-        return "";
+    public CompletableFuture<ToolResult> execute(@NotNull JsonObject args) {
+        return execute(args, ToolContext.detached());
     }
     
     @Override
     @NotNull
-    public CompletableFuture<ToolResult> execute(@NotNull JsonObject args) {
+    public CompletableFuture<ToolResult> execute(@NotNull JsonObject args, @NotNull ToolContext context) {
         CompletableFuture<ToolResult> future = new CompletableFuture<>();
         
         try {
@@ -123,7 +95,7 @@ public class SearchFilesTool extends AbstractTool {
             String filePattern = args.has("file_pattern") ? args.get("file_pattern").getAsString() : "*";
             
             // Search the files
-            fileService.searchFiles(path, regex, filePattern)
+            fileService.searchFiles(path, regex, filePattern, context)
                     .thenAccept(results -> {
                         // Create a result object
                         JsonObject result = new JsonObject();
@@ -1,8 +1,11 @@
 package com.cline.core.tool.impl;
 
 import com.cline.core.tool.AbstractTool;
+import com.cline.core.tool.ToolCategory;
+import com.cline.core.tool.ToolContext;
 import com.cline.core.tool.ToolResult;
 import com.cline.services.ClineFileService;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
@@ -27,7 +30,7 @@ public class WriteToFileTool extends AbstractTool {
      * @param project The project
      */
     public WriteToFileTool(Project project) {
-        super(NAME, DESCRIPTION, createInputSchema());
+        super(NAME, DESCRIPTION, createInputSchema(), ToolCategory.FILE);
         this.project = project;
         this.fileService = ClineFileService.getInstance(project);
     }
@@ -59,62 +62,29 @@ public class WriteToFileTool extends AbstractTool {
         
         schema.add("properties", properties);
         
-        JsonObject required = new JsonObject();
-        required.addProperty("0", "path");
-        required.addProperty("1", "content");
-        required.addProperty("2", "line_count");
+        JsonArray required = new JsonArray();
+        required.add("path");
+        required.add("content");
+        required.add("line_count");
         schema.add("required", required);
         
         return schema;
     }
     
     @Override
-    public boolean validateArgs(@NotNull JsonObject args) {
-        if (!args.has("path") || !args.get("path").isJsonPrimitive() || !args.get("path").getAsJsonPrimitive().isString()) {
-            return false;
-        }
-        
-        if (!args.has("content") || !args.get("content").isJsonPrimitive() || !args.get("content").getAsJsonPrimitive().isString()) {
-            return false;
-        }
-        
-        if (!args.has("line_count") || !args.get("line_count").isJsonPrimitive() || !args.get("line_count").getAsJsonPrimitive().isNumber()) {
-            return false;
-        }
-        
+    public boolean isMutating() {
         return true;
     }
     
     @Override
     @NotNull
-    public String getValidationErrorMessage(@NotNull JsonObject args) {
-        if (!args.has("path")) {
-            return "Missing required parameter: path";
-        }
-        if (!args.get("path").isJsonPrimitive() || !args.get("path").getAsJsonPrimitive().isString()) {
-            return "Parameter 'path' must be a string";
-        }
-        
-        if (!args.has("content")) {
-            return "Missing required parameter: content";
-        }
-        if (!args.get("content").isJsonPrimitive() || !args.get("content").getAsJsonPrimitive().isString()) {
-            return "Parameter 'content' must be a string";
-        }
-        
-        if (!args.has("line_count")) {
-            return "Missing required parameter: line_count";
-        }
-        if (!args.get("line_count").isJsonPrimitive() || !args.get("line_count").getAsJsonPrimitive().isNumber()) {
-            return "Parameter 'line_count' must be a number";
-        }
-        
-        return null;
+    public CompletableFuture<ToolResult> execute(@NotNull JsonObject args) {
+        return execute(args, ToolContext.detached());
     }
     
     @Override
     @NotNull
-    public CompletableFuture<ToolResult> execute(@NotNull JsonObject args) {
+    public CompletableFuture<ToolResult> execute(@NotNull JsonObject args, @NotNull ToolContext context) {
         CompletableFuture<ToolResult> future = new CompletableFuture<>();
         
         try {
@@ -124,7 +94,7 @@ public class WriteToFileTool extends AbstractTool {
             int lineCount = args.get("line_count").getAsInt();
             
             // Write the file
-            fileService.writeFile(path, content)
+            fileService.writeFile(path, content, context)
                     .thenAccept(success -> {
                         // Create a result object
                         JsonObject result = new JsonObject();
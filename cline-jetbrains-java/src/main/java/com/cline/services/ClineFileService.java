@@ -1,5 +1,6 @@
 package com.cline.services;
 
+import com.cline.core.tool.ToolContext;
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.application.WriteAction;
@@ -9,6 +10,7 @@ import com.intellij.openapi.fileEditor.FileEditorManager;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.LocalFileSystem;
 import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileManager;
 import com.intellij.psi.*;
 import com.intellij.psi.search.FilenameIndex;
 import com.intellij.psi.search.GlobalSearchScope;
@@ -23,6 +25,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -47,7 +50,6 @@ public final class ClineFileService {
     
     /**
      * Read the contents of a file synchronously.
-     * This method is primarily for testing purposes.
      *
      * @param path The path of the file to read
      * @return The file contents
@@ -71,7 +73,6 @@ public final class ClineFileService {
 
     /**
      * Write content to a file synchronously.
-     * This method is primarily for testing purposes.
      *
      * @param path The path of the file to write
      * @param content The content to write
@@ -111,19 +112,27 @@ public final class ClineFileService {
      * @return A CompletableFuture containing the file contents
      */
     public CompletableFuture<String> readFile(String path) {
+        return readFile(path, ToolContext.detached());
+    }
+
+    /**
+     * Read the contents of a file.
+     * The file is read on the context executor, unless the context is cancelled before the read starts.
+     *
+     * @param path The path of the file to read
+     * @param context The tool execution context
+     * @return A CompletableFuture containing the file contents
+     */
+    public CompletableFuture<String> readFile(String path, @NotNull ToolContext context) {
         return CompletableFuture.supplyAsync(() -> {
+            context.checkCancelled();
             try {
-                VirtualFile file = findFile(path);
-                if (file == null) {
-                    throw new IOException("File not found: " + path);
-                }
-                
-                return ReadAction.compute(() -> new String(file.contentsToByteArray(), file.getCharset()));
+                return readFileSync(path);
             } catch (IOException e) {
                 LOG.error("Error reading file: " + path, e);
                 throw new RuntimeException("Error reading file: " + path, e);
             }
-        });
+        }, context.getExecutor());
     }
 
     /**
@@ -134,32 +143,23 @@ public final class ClineFileService {
      * @return A CompletableFuture that completes when the file is written
      */
     public CompletableFuture<Boolean> writeFile(String path, String content) {
+        return writeFile(path, content, ToolContext.detached());
+    }
+
+    /**
+     * Write content to a file.
+     * The file is written on the context executor, unless the context is cancelled before the write starts.
+     *
+     * @param path The path of the file to write
+     * @param content The content to write
+     * @param context The tool execution context
+     * @return A CompletableFuture that completes when the file is written
+     */
+    public CompletableFuture<Boolean> writeFile(String path, String content, @NotNull ToolContext context) {
         return CompletableFuture.supplyAsync(() -> {
-            try {
-                File file = new File(path);
-                
-                // Create parent directories if they don't exist
-                if (!file.getParentFile().exists()) {
-                    if (!file.getParentFile().mkdirs()) {
-                        throw new IOException("Failed to create directories for: " + path);
-                    }
-                }
-                
-                // Write the file
-                Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
-                
-                // Refresh the VFS
-                VirtualFile virtualFile = LocalFileSystem.getInstance().refreshAndFindFileByPath(file.getAbsolutePath());
-                if (virtualFile != null) {
-                    virtualFile.refresh(false, false);
-                }
-                
-                return true;
-            } catch (IOException e) {
-                LOG.error("Error writing file: " + path, e);
-                return false;
-            }
-        });
+            context.checkCancelled();
+            return writeFileSync(path, content);
+        }, context.getExecutor());
     }
 
     /**
@@ -220,7 +220,25 @@ public final class ClineFileService {
      * @return A CompletableFuture that completes with true if the diff was applied successfully
      */
     public CompletableFuture<Boolean> applyDiff(String path, String diff, int startLine, int endLine) {
+        return applyDiff(path, diff, startLine, endLine, ToolContext.detached());
+    }
+
+    /**
+     * Apply a diff to a file using the search/replace format.
+     * The file is read and written on the context executor, and the diff is not written once the context is
+     * cancelled.
+     *
+     * @param path The path of the file to modify
+     * @param diff The diff in search/replace format
+     * @param startLine The start line of the diff (1-based)
+     * @param endLine The end line of the diff (1-based)
+     * @param context The tool execution context
+     * @return A CompletableFuture that completes with true if the diff was applied successfully
+     */
+    public CompletableFuture<Boolean> applyDiff(String path, String diff, int startLine, int endLine,
+                                                @NotNull ToolContext context) {
         return CompletableFuture.supplyAsync(() -> {
+            context.checkCancelled();
             try {
                 // Parse the diff
                 Pattern pattern = Pattern.compile("<<<<<<< SEARCH\\n(.*?)=======\\n(.*?)>>>>>>> REPLACE", Pattern.DOTALL);
@@ -234,19 +252,22 @@ public final class ClineFileService {
                 String search = matcher.group(1);
                 String replace = matcher.group(2);
                 
-                // Read the file
-                String content = readFile(path).get();
+                // Read the file on this thread, so the diff does not wait for another task on the same executor
+                String content = readFileSync(path);
                 
                 // Apply the diff
                 String newContent = content.replace(search, replace);
                 
                 // Write the file
-                return writeFile(path, newContent).get();
+                context.checkCancelled();
+                return writeFileSync(path, newContent);
+            } catch (CancellationException e) {
+                throw e;
             } catch (Exception e) {
                 LOG.error("Error applying diff to file: " + path, e);
                 return false;
             }
-        });
+        }, context.getExecutor());
     }
 
     /**
@@ -257,6 +278,19 @@ public final class ClineFileService {
      * @return A CompletableFuture containing the list of file paths
      */
     public CompletableFuture<List<String>> listFiles(String directory, boolean recursive) {
+        return listFiles(directory, recursive, ToolContext.detached());
+    }
+
+    /**
+     * List files in a directory.
+     * The walk runs on the context executor and stops when the context is cancelled.
+     *
+     * @param directory The directory to list
+     * @param recursive Whether to list files recursively
+     * @param context The tool execution context
+     * @return A CompletableFuture containing the list of file paths
+     */
+    public CompletableFuture<List<String>> listFiles(String directory, boolean recursive, @NotNull ToolContext context) {
         return CompletableFuture.supplyAsync(() -> {
             try {
                 Path dir = Paths.get(directory);
@@ -270,6 +304,7 @@ public final class ClineFileService {
                 
                 try (Stream<Path> stream = recursive ? Files.walk(dir) : Files.list(dir)) {
                     return stream
+                            .peek(path -> context.checkCancelled())
                             .filter(path -> !Files.isDirectory(path))
                             .map(Path::toString)
                             .collect(Collectors.toList());
@@ -278,7 +313,7 @@ public final class ClineFileService {
                 LOG.error("Error listing files in directory: " + directory, e);
                 throw new RuntimeException("Error listing files in directory: " + directory, e);
             }
-        });
+        }, context.getExecutor());
     }
 
     /**
@@ -288,6 +323,18 @@ public final class ClineFileService {
      * @return A CompletableFuture containing a map of file paths to lists of definition names
      */
     public CompletableFuture<Map<String, List<String>>> listCodeDefinitions(String directory) {
+        return listCodeDefinitions(directory, ToolContext.detached());
+    }
+
+    /**
+     * List code definitions in a directory.
+     * The walk runs on the context executor and stops when the context is cancelled.
+     *
+     * @param directory The directory to list code definitions for
+     * @param context The tool execution context
+     * @return A CompletableFuture containing a map of file paths to lists of definition names
+     */
+    public CompletableFuture<Map<String, List<String>>> listCodeDefinitions(String directory, @NotNull ToolContext context) {
         return CompletableFuture.supplyAsync(() -> {
             try {
                 Path dir = Paths.get(directory);
@@ -304,10 +351,13 @@ public final class ClineFileService {
                 // Get all files in the directory
                 try (Stream<Path> stream = Files.walk(dir)) {
                     List<Path> files = stream
+                            .peek(path -> context.checkCancelled())
                             .filter(path -> !Files.isDirectory(path))
                             .collect(Collectors.toList());
                     
                     for (Path file : files) {
+                        context.checkCancelled();
+                        
                         VirtualFile virtualFile = LocalFileSystem.getInstance().findFileByPath(file.toString());
                         if (virtualFile == null) {
                             continue;
@@ -375,7 +425,7 @@ public final class ClineFileService {
                 LOG.error("Error listing code definitions in directory: " + directory, e);
                 throw new RuntimeException("Error listing code definitions in directory: " + directory, e);
             }
-        });
+        }, context.getExecutor());
     }
 
     /**
@@ -387,6 +437,21 @@ public final class ClineFileService {
      * @return A CompletableFuture containing the list of matching file paths
      */
     public CompletableFuture<List<SearchResult>> searchFiles(String directory, String pattern, @Nullable String filePattern) {
+        return searchFiles(directory, pattern, filePattern, ToolContext.detached());
+    }
+
+    /**
+     * Search for files matching a pattern.
+     * The search runs on the context executor and stops when the context is cancelled.
+     *
+     * @param directory The directory to search in
+     * @param pattern The regex pattern to match
+     * @param filePattern The file name pattern to match (glob)
+     * @param context The tool execution context
+     * @return A CompletableFuture containing the list of matching file paths
+     */
+    public CompletableFuture<List<SearchResult>> searchFiles(String directory, String pattern, @Nullable String filePattern,
+                                                             @NotNull ToolContext context) {
         return CompletableFuture.supplyAsync(() -> {
             try {
                 Path dir = Paths.get(directory);
@@ -407,11 +472,14 @@ public final class ClineFileService {
                 
                 try (Stream<Path> stream = Files.walk(dir)) {
                     List<Path> files = stream
+                            .peek(path -> context.checkCancelled())
                             .filter(path -> !Files.isDirectory(path))
                             .filter(path -> fileRegex == null || fileRegex.matcher(path.getFileName().toString()).matches())
                             .collect(Collectors.toList());
                     
                     for (Path file : files) {
+                        context.checkCancelled();
+                        
                         List<String> lines = Files.readAllLines(file);
                         for (int i = 0; i < lines.size(); i++) {
                             String line = lines.get(i);
@@ -420,16 +488,16 @@ public final class ClineFileService {
                                 int startLine = Math.max(0, i - 3);
                                 int endLine = Math.min(lines.size() - 1, i + 3);
                                 
-                                List<String> context = new ArrayList<>();
+                                List<String> contextLines = new ArrayList<>();
                                 for (int j = startLine; j <= endLine; j++) {
-                                    context.add((j + 1) + " | " + lines.get(j));
+                                    contextLines.add((j + 1) + " | " + lines.get(j));
                                 }
                                 
                                 results.add(new SearchResult(
                                         file.toString(),
                                         i + 1,
                                         line,
-                                        context
+                                        contextLines
                                 ));
                             }
                         }
@@ -441,7 +509,37 @@ public final class ClineFileService {
                 LOG.error("Error searching files in directory: " + directory, e);
                 throw new RuntimeException("Error searching files in directory: " + directory, e);
             }
-        });
+        }, context.getExecutor());
+    }
+
+    /**
+     * Get the modification stamp of a file or directory.
+     * Directories report the VFS structure modification count, which changes whenever a file is
+     * created, deleted, moved or renamed.
+     *
+     * @param path The path of the file or directory
+     * @return The modification stamp, or -1 if the path is not known to the VFS
+     */
+    public long getModificationStamp(String path) {
+        VirtualFile file = ReadAction.compute(() -> findFile(path));
+        if (file == null || !file.isValid()) {
+            return -1;
+        }
+        
+        if (file.isDirectory()) {
+            return VirtualFileManager.getInstance().getStructureModificationCount();
+        }
+        
+        return file.getModificationStamp();
+    }
+
+    /**
+     * Get a counter that changes whenever any file or directory changes in the VFS.
+     *
+     * @return The modification count
+     */
+    public long getModificationCount() {
+        return VirtualFileManager.getInstance().getModificationCount();
     }
 
     /**
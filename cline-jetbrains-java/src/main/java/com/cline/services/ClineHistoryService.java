@@ -1,34 +1,74 @@
 package com.cline.services;
 
 import com.cline.core.model.Conversation;
+import com.cline.services.history.BlobStore;
+import com.cline.services.history.ConversationCache;
+import com.cline.services.history.ConversationJson;
+import com.cline.services.history.ConversationStore;
+import com.cline.services.history.ConversationSummary;
+import com.cline.services.history.HistorySearchIndex;
+import com.cline.services.history.HistoryWriter;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
 
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Service for managing conversation history.
+ * Conversations are persisted by a {@link ConversationStore} in {@code .cline/history},
+ * which only writes the conversation that changed.
+ * <p>
+ * Only the {@link ConversationSummary summaries} of the conversations are kept in memory. The messages
+ * of a conversation are loaded when it is opened, and loaded conversations are kept in a {@link ConversationCache}.
+ * <p>
+ * Changes are written by a {@link HistoryWriter}, which coalesces rapid updates of a conversation into one write.
+ * Pending changes are written when the service is disposed.
+ * <p>
+ * Written conversations are added to a {@link HistorySearchIndex}, which is saved next to the store,
+ * so the history can be searched without loading any conversation.
+ * <p>
+ * Large message contents and tool results are moved to a {@link BlobStore} in {@code .cline/blobs} when they are
+ * written, and are only loaded again when they are accessed. Blobs of deleted conversations are collected on startup.
  */
 @Service
-public final class ClineHistoryService {
+public final class ClineHistoryService implements Disposable {
     private static final Logger LOG = Logger.getInstance(ClineHistoryService.class);
-    private static final String HISTORY_FILE_NAME = "cline-history.json";
+    private static final String LEGACY_HISTORY_FILE_NAME = "cline-history.json";
+    private static final String HISTORY_DIRECTORY_NAME = "history";
+    private static final String BLOB_DIRECTORY_NAME = "blobs";
+    private static final String SEARCH_INDEX_FILE_NAME = "search.idx";
+    private static final int MAX_CACHED_CONVERSATIONS = 8;
+    private static final long WRITE_DEBOUNCE_MILLIS = 500;
+    private static final long MAX_WRITE_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(5);
+    private static final Gson EXPORT_GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final Comparator<ConversationSummary> MOST_RECENT_FIRST =
+            Comparator.comparing(ConversationSummary::getUpdatedAt).reversed();
     
     private final Project project;
-    private final Gson gson;
-    private final List<Conversation> conversations = new ArrayList<>();
+    private final ConversationStore store;
+    private final HistoryWriter writer;
+    private final HistorySearchIndex searchIndex = new HistorySearchIndex();
+    private final Path searchIndexFile;
+    private final Map<String, ConversationSummary> summaries = new LinkedHashMap<>();
+    private final ConversationCache cache = new ConversationCache(MAX_CACHED_CONVERSATIONS);
     
     /**
      * Creates a new history service.
@@ -37,9 +77,14 @@ public final class ClineHistoryService {
      */
     public ClineHistoryService(Project project) {
         this.project = project;
-        this.gson = new GsonBuilder().setPrettyPrinting().create();
+        this.store = new ConversationStore(new File(getClineDirectory(), HISTORY_DIRECTORY_NAME).toPath(),
+                new BlobStore(new File(getClineDirectory(), BLOB_DIRECTORY_NAME).toPath()));
+        this.searchIndexFile = store.getDirectory().resolve(SEARCH_INDEX_FILE_NAME);
+        this.writer = new HistoryWriter(store, WRITE_DEBOUNCE_MILLIS, MAX_WRITE_DELAY_MILLIS, new SearchIndexUpdater());
         
-        loadConversations();
+        loadSummaries();
+        writer.execute(this::loadSearchIndex);
+        writer.execute(this::collectGarbage);
     }
     
     /**
@@ -53,48 +98,134 @@ public final class ClineHistoryService {
     }
     
     /**
-     * Gets all conversations.
+     * Gets the summaries of all conversations, most recently updated first.
      *
-     * @return An unmodifiable list of conversations
+     * @return The summaries
      */
-    public List<Conversation> getConversations() {
-        return Collections.unmodifiableList(conversations);
+    @NotNull
+    public List<ConversationSummary> getSummaries() {
+        List<ConversationSummary> result;
+        synchronized (summaries) {
+            result = new ArrayList<>(summaries.values());
+        }
+        result.sort(MOST_RECENT_FIRST);
+        return result;
+    }
+    
+    /**
+     * Gets a page of the conversation summaries, most recently updated first.
+     *
+     * @param offset The index of the first summary
+     * @param limit  The maximum number of summaries
+     * @return The summaries, empty if the offset is past the end
+     */
+    @NotNull
+    public List<ConversationSummary> getSummaries(int offset, int limit) {
+        List<ConversationSummary> all = getSummaries();
+        if (offset >= all.size()) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(all.subList(offset, Math.min(all.size(), offset + limit)));
+    }
+    
+    /**
+     * Gets the number of conversations in the history.
+     *
+     * @return The number of conversations
+     */
+    public int getConversationCount() {
+        synchronized (summaries) {
+            return summaries.size();
+        }
+    }
+    
+    /**
+     * Searches the conversation history.
+     * Conversations are matched by title, message contents, tool names and file paths, and each word of the query
+     * also matches words it is a prefix of. Changes are searchable once they have been written.
+     *
+     * @param query The query
+     * @param limit The maximum number of results
+     * @return The summaries of the matching conversations, best match first
+     */
+    @NotNull
+    public List<ConversationSummary> search(@NotNull String query, int limit) {
+        List<String> ids = searchIndex.search(query, limit);
+        List<ConversationSummary> result = new ArrayList<>(ids.size());
+        synchronized (summaries) {
+            for (String id : ids) {
+                ConversationSummary summary = summaries.get(id);
+                if (summary != null) {
+                    result.add(summary);
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Loads a conversation with its messages.
+     * Recently opened conversations are served from memory.
+     *
+     * @param id The conversation ID
+     * @return A CompletableFuture that completes with the conversation, or with null if it is not in the history
+     */
+    public CompletableFuture<Conversation> loadConversation(@NotNull String id) {
+        Conversation cached = cache.get(id);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                Conversation conversation = store.load(id);
+                return conversation != null ? cache.putIfAbsent(conversation) : null;
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
+    }
+    
+    /**
+     * Exports a conversation with its messages as JSON, the interchange format of the history.
+     *
+     * @param id   The conversation ID
+     * @param file The file to write
+     * @return A CompletableFuture that completes when the file has been written, with false if the conversation
+     *         is not in the history
+     */
+    public CompletableFuture<Boolean> exportConversation(@NotNull String id, @NotNull Path file) {
+        return loadConversation(id).thenApply(conversation -> {
+            if (conversation == null) {
+                return false;
+            }
+            try {
+                Files.writeString(file, EXPORT_GSON.toJson(ConversationJson.toJson(conversation)), StandardCharsets.UTF_8);
+                return true;
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        });
     }
     
     /**
      * Adds a conversation to the history.
      *
      * @param conversation The conversation to add
-     * @return A CompletableFuture that completes when the conversation is added
+     * @return A CompletableFuture that completes when the conversation has been written
      */
     public CompletableFuture<Void> addConversation(Conversation conversation) {
-        return CompletableFuture.runAsync(() -> {
-            conversations.add(conversation);
-            saveConversations();
-        });
+        return saveConversation(conversation);
     }
     
     /**
      * Updates a conversation in the history.
      *
      * @param conversation The conversation to update
-     * @return A CompletableFuture that completes when the conversation is updated
+     * @return A CompletableFuture that completes when the conversation has been written
      */
     public CompletableFuture<Void> updateConversation(Conversation conversation) {
-        return CompletableFuture.runAsync(() -> {
-            // Find the conversation by ID
-            for (int i = 0; i < conversations.size(); i++) {
-                if (conversations.get(i).getId().equals(conversation.getId())) {
-                    conversations.set(i, conversation);
-                    saveConversations();
-                    return;
-                }
-            }
-            
-            // If not found, add it
-            conversations.add(conversation);
-            saveConversations();
-        });
+        return saveConversation(conversation);
     }
     
     /**
@@ -104,10 +235,11 @@ public final class ClineHistoryService {
      * @return A CompletableFuture that completes when the conversation is removed
      */
     public CompletableFuture<Void> removeConversation(Conversation conversation) {
-        return CompletableFuture.runAsync(() -> {
-            conversations.removeIf(c -> c.getId().equals(conversation.getId()));
-            saveConversations();
-        });
+        cache.remove(conversation.getId());
+        synchronized (summaries) {
+            summaries.remove(conversation.getId());
+        }
+        return writer.delete(conversation.getId());
     }
     
     /**
@@ -116,73 +248,152 @@ public final class ClineHistoryService {
      * @return A CompletableFuture that completes when the history is cleared
      */
     public CompletableFuture<Void> clearHistory() {
-        return CompletableFuture.runAsync(() -> {
-            conversations.clear();
-            saveConversations();
-        });
+        cache.clear();
+        synchronized (summaries) {
+            summaries.clear();
+        }
+        return writer.deleteAll();
+    }
+    
+    @Override
+    public void dispose() {
+        writer.close();
     }
     
     /**
-     * Loads conversations from storage.
+     * Loads the conversation summaries from storage.
+     * A history file written by the previous single-file format is imported first.
      */
-    private void loadConversations() {
-        File historyFile = getHistoryFile();
-        
-        if (!historyFile.exists()) {
-            LOG.info("History file does not exist: " + historyFile.getAbsolutePath());
-            return;
-        }
-        
-        try (FileReader reader = new FileReader(historyFile)) {
-            Type listType = new TypeToken<ArrayList<Conversation>>() {}.getType();
-            List<Conversation> loadedConversations = gson.fromJson(reader, listType);
+    private void loadSummaries() {
+        try {
+            store.importLegacyHistory(new File(getClineDirectory(), LEGACY_HISTORY_FILE_NAME).toPath());
             
-            if (loadedConversations != null) {
-                conversations.clear();
-                conversations.addAll(loadedConversations);
-                LOG.info("Loaded " + conversations.size() + " conversations from history");
+            List<ConversationSummary> loaded = store.loadSummaries();
+            synchronized (summaries) {
+                for (ConversationSummary summary : loaded) {
+                    summaries.put(summary.getId(), summary);
+                }
             }
+            LOG.info("Loaded " + loaded.size() + " conversation summaries from history");
         } catch (IOException e) {
             LOG.error("Error loading conversations from history", e);
         }
     }
     
     /**
-     * Saves conversations to storage.
+     * Loads the saved search index and brings it up to date with the store.
+     * Conversations missing from the index, e.g. because the index was lost or was written by another version,
+     * are loaded and indexed once. Runs on the writer thread.
      */
-    private void saveConversations() {
-        File historyFile = getHistoryFile();
-        
+    private void loadSearchIndex() {
         try {
-            // Create parent directories if they don't exist
-            if (!historyFile.getParentFile().exists()) {
-                if (!historyFile.getParentFile().mkdirs()) {
-                    LOG.error("Failed to create directories for history file: " + historyFile.getAbsolutePath());
-                    return;
+            if (!searchIndex.load(searchIndexFile)) {
+                LOG.info("Building history search index");
+            }
+        } catch (IOException e) {
+            LOG.warn("History search index is corrupt, rebuilding it", e);
+        }
+        
+        List<ConversationSummary> current = getSummaries();
+        Set<String> stale = searchIndex.getIds();
+        for (ConversationSummary summary : current) {
+            stale.remove(summary.getId());
+            if (searchIndex.contains(summary.getId())) {
+                continue;
+            }
+            try {
+                Conversation conversation = store.load(summary.getId());
+                if (conversation != null) {
+                    searchIndex.update(conversation);
                 }
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Error indexing conversation: " + summary.getId(), e);
             }
-            
-            // Write conversations to file
-            try (FileWriter writer = new FileWriter(historyFile)) {
-                gson.toJson(conversations, writer);
-                LOG.info("Saved " + conversations.size() + " conversations to history");
+        }
+        stale.forEach(searchIndex::remove);
+        saveSearchIndex();
+    }
+    
+    /**
+     * Deletes the history blobs that no conversation refers to anymore. Runs on the writer thread.
+     */
+    private void collectGarbage() {
+        try {
+            int deleted = store.collectGarbage();
+            if (deleted > 0) {
+                LOG.info("Deleted " + deleted + " unreferenced history blobs");
             }
         } catch (IOException e) {
-            LOG.error("Error saving conversations to history", e);
+            LOG.warn("Error collecting unreferenced history blobs", e);
         }
     }
     
     /**
-     * Gets the history file.
+     * Saves the search index if it changed. Runs on the writer thread.
+     */
+    private void saveSearchIndex() {
+        if (!searchIndex.isDirty()) {
+            return;
+        }
+        try {
+            searchIndex.save(searchIndexFile);
+        } catch (IOException e) {
+            LOG.warn("Error saving history search index", e);
+        }
+    }
+    
+    /**
+     * Updates the summary of a conversation and schedules it to be written.
+     * The conversation is cached, since it is the instance that is open in the chat.
+     *
+     * @param conversation The conversation to save
+     * @return A CompletableFuture that completes when the conversation has been written
+     */
+    private CompletableFuture<Void> saveConversation(Conversation conversation) {
+        cache.put(conversation);
+        ConversationSummary summary = ConversationSummary.of(conversation, conversation.getMessages());
+        synchronized (summaries) {
+            summaries.put(summary.getId(), summary);
+        }
+        return writer.save(conversation);
+    }
+    
+    /**
+     * Gets the directory for the plugin's files in the project.
      *
-     * @return The history file
+     * @return The .cline directory
      */
-    private File getHistoryFile() {
+    private File getClineDirectory() {
         String basePath = project.getBasePath();
         if (basePath == null) {
             basePath = System.getProperty("user.home");
         }
         
-        return new File(basePath, ".cline/" + HISTORY_FILE_NAME);
+        return new File(basePath, ".cline");
+    }
+    
+    /**
+     * Keeps the search index in sync with what the writer has written.
+     */
+    private class SearchIndexUpdater implements HistoryWriter.Listener {
+        @Override
+        public void conversationSaved(@NotNull Conversation conversation) {
+            searchIndex.update(conversation);
+        }
+        
+        @Override
+        public void conversationDeleted(@NotNull String id) {
+            searchIndex.remove(id);
+        }
+        
+        @Override
+        public void historyCleared() {
+            searchIndex.clear();
+        }
+        
+        @Override
+        public void flushed() {
+            saveSearchIndex();
+        }
     }
 }
\ No newline at end of file
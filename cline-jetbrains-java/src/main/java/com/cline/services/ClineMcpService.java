@@ -6,8 +6,11 @@ import com.cline.services.mcp.McpServer;
 import com.cline.services.mcp.McpServerConfig;
 import com.cline.services.mcp.McpTool;
 import com.google.gson.Gson;
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import com.google.gson.JsonParser;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
@@ -16,20 +19,24 @@ import org.jetbrains.annotations.NotNull;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.HashMap;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
 /**
  * Service for MCP operations in the Cline plugin.
+ * The servers are configured per user, like in the Cline extension, and never by a project: opening a project
+ * must not start the commands it names.
  */
 @Service
-public final class ClineMcpService {
+public final class ClineMcpService implements Disposable {
     private static final Logger LOG = Logger.getInstance(ClineMcpService.class);
     private static final String MCP_SETTINGS_FILE = "cline_mcp_settings.json";
+    private static final String SETTINGS_DIRECTORY_NAME = "settings";
     
     private final Project project;
+    private final File settingsFile;
     private final McpHub mcpHub;
     private final Gson gson;
     
@@ -39,7 +46,18 @@ public final class ClineMcpService {
      * @param project The project
      */
     public ClineMcpService(Project project) {
+        this(project, getDefaultSettingsFile());
+    }
+    
+    /**
+     * Creates a new MCP service.
+     *
+     * @param project      The project
+     * @param settingsFile The file the MCP servers are configured in
+     */
+    ClineMcpService(Project project, File settingsFile) {
         this.project = project;
+        this.settingsFile = settingsFile;
         this.mcpHub = new McpHub();
         this.gson = new Gson();
         
@@ -58,24 +76,58 @@ public final class ClineMcpService {
     }
     
     /**
-     * Load MCP servers from settings.
+     * Load MCP servers from the settings file and start them in the background.
+     * The file has the format of the Cline extension: an {@code mcpServers} object that maps server names to
+     * their command, arguments, environment variables and flags.
      */
     private void loadMcpServers() {
-        try {
-            // In a real implementation, we would load the settings from the user's settings directory
-            // For now, we'll just create a stub implementation
+        if (!settingsFile.isFile()) {
+            LOG.info("No MCP settings file found at " + settingsFile);
+            return;
+        }
+        
+        try (FileReader reader = new FileReader(settingsFile, StandardCharsets.UTF_8)) {
+            JsonElement settings = JsonParser.parseReader(reader);
+            JsonElement mcpServers = settings.isJsonObject() ? settings.getAsJsonObject().get("mcpServers") : null;
+            if (mcpServers == null || !mcpServers.isJsonObject()) {
+                LOG.warn("MCP settings file has no mcpServers object: " + settingsFile);
+                return;
+            }
             
-            // Register a stub server
-            mcpHub.registerServer("example-server", McpServerConfig.builder()
-                    .command("node")
-                    .args("example-server.js")
-                    .env("API_KEY", "test-api-key")
-                    .build());
-        } catch (Exception e) {
+            for (Map.Entry<String, JsonElement> entry : mcpServers.getAsJsonObject().entrySet()) {
+                if (!entry.getValue().isJsonObject()) {
+                    LOG.warn("Invalid configuration of MCP server: " + entry.getKey());
+                    continue;
+                }
+                McpServerConfig config;
+                try {
+                    config = McpServerConfig.fromJson(entry.getValue().getAsJsonObject());
+                } catch (RuntimeException e) {
+                    LOG.warn("Invalid configuration of MCP server: " + entry.getKey(), e);
+                    continue;
+                }
+                mcpHub.registerServer(entry.getKey(), config)
+                        .exceptionally(e -> {
+                            LOG.warn("Failed to start MCP server " + entry.getKey(), e);
+                            return null;
+                        });
+            }
+        } catch (IOException | JsonParseException e) {
             LOG.error("Error loading MCP servers", e);
         }
     }
     
+    /**
+     * Gets the default location of the MCP settings file, in the settings directory of the plugin in the
+     * user's home directory.
+     *
+     * @return The settings file
+     */
+    static File getDefaultSettingsFile() {
+        File clineDirectory = new File(System.getProperty("user.home"), ".cline");
+        return new File(new File(clineDirectory, SETTINGS_DIRECTORY_NAME), MCP_SETTINGS_FILE);
+    }
+    
     /**
      * Get all servers.
      *
@@ -127,4 +179,12 @@ public final class ClineMcpService {
         LOG.info("Accessing MCP resource: " + serverName + "/" + uri);
         return mcpHub.accessResource(serverName, uri);
     }
+    
+    /**
+     * Stops all MCP servers when the project is closed.
+     */
+    @Override
+    public void dispose() {
+        mcpHub.shutdown();
+    }
 }
\ No newline at end of file
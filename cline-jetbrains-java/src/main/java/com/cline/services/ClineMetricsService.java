@@ -1,5 +1,7 @@
 package com.cline.services;
 
+import com.cline.core.tool.ToolExecutor;
+import com.cline.core.tool.ToolResultCache;
 import com.cline.services.api.ApiMetrics;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.diagnostic.Logger;
@@ -121,6 +123,54 @@ public final class ClineMetricsService {
         apiMetrics.reset();
     }
     
+    /**
+     * Gets the number of tool calls served from the tool result cache.
+     *
+     * @return The number of tool result cache hits
+     */
+    public long getToolCacheHits() {
+        return getToolResultCache().getHits();
+    }
+    
+    /**
+     * Gets the number of cacheable tool calls that had to be executed.
+     *
+     * @return The number of tool result cache misses
+     */
+    public long getToolCacheMisses() {
+        return getToolResultCache().getMisses();
+    }
+    
+    /**
+     * Gets the ratio of cacheable tool calls served from the tool result cache.
+     *
+     * @return The hit rate between 0 and 1
+     */
+    public double getToolCacheHitRate() {
+        long hits = getToolCacheHits();
+        long total = hits + getToolCacheMisses();
+        if (total == 0) {
+            return 0;
+        }
+        return (double) hits / total;
+    }
+    
+    /**
+     * Resets the tool result cache counters.
+     */
+    public void resetToolCacheMetrics() {
+        getToolResultCache().resetStatistics();
+    }
+    
+    /**
+     * Gets the tool result cache of the project.
+     *
+     * @return The tool result cache
+     */
+    private ToolResultCache getToolResultCache() {
+        return ToolExecutor.getInstance(project).getResultCache();
+    }
+    
     /**
      * Gets the estimated cost of API usage.
      *
@@ -40,6 +40,9 @@ public class ClineSettingsService implements PersistentStateComponent<ClineSetti
     private String browserUserAgent = "";
     private int browserTimeout = 30000;
     
+    // Terminal settings
+    private int terminalSessionIdleTimeout = 600; // Seconds before an idle shell session is closed
+    
     // Auto-approval settings
     private boolean autoApprovalEnabled = false;
     private int autoApprovalMaxConsecutiveRequests = 3;
@@ -276,4 +279,13 @@ public class ClineSettingsService implements PersistentStateComponent<ClineSetti
     public void setEnablePromptCaching(boolean enablePromptCaching) {
         this.enablePromptCaching = enablePromptCaching;
     }
+
+    // Terminal getters and setters
+    public int getTerminalSessionIdleTimeout() {
+        return terminalSessionIdleTimeout;
+    }
+
+    public void setTerminalSessionIdleTimeout(int terminalSessionIdleTimeout) {
+        this.terminalSessionIdleTimeout = terminalSessionIdleTimeout;
+    }
 }
\ No newline at end of file
@@ -1,28 +1,101 @@
 package com.cline.services;
 
+import com.cline.core.tool.ToolContext;
+import com.cline.services.terminal.CommandOutputBuffer;
+import com.cline.services.terminal.CommandResult;
+import com.cline.services.terminal.ShellSession;
+import com.cline.services.terminal.ShellSessionPool;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.SystemInfo;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowManager;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.jetbrains.plugins.terminal.ShellTerminalWidget;
 import org.jetbrains.plugins.terminal.TerminalToolWindowFactory;
 import org.jetbrains.plugins.terminal.TerminalView;
 
+import java.io.File;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.IntSupplier;
 
 /**
  * Service for terminal operations in the Cline plugin.
- * This is a stub implementation that will be replaced with a real implementation later.
+ * Commands whose output is captured run in a pooled long-lived {@link ShellSession}, so the profile is only sourced
+ * once and the working directory and environment persist across commands. When the pool is exhausted, and on Windows,
+ * a command runs in its own process instead. Either way its output is collected into a bounded
+ * {@link CommandOutputBuffer} and streamed to an optional listener while the command runs.
+ * A command that exceeds its timeout or whose tool execution is cancelled is killed together with its child processes.
  */
 @Service
-public final class ClineTerminalService {
+public final class ClineTerminalService implements Disposable {
     private static final Logger LOG = Logger.getInstance(ClineTerminalService.class);
+    private static final int MAX_OUTPUT_CHARS = 64 * 1024;
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final int MAX_SHELL_SESSIONS = 2;
+    private static final long IDLE_CHECK_INTERVAL_SECONDS = 60;
+
     private final Project project;
+    private final Set<Process> runningProcesses = ConcurrentHashMap.newKeySet();
+    private final ExecutorService outputExecutor;
+    private final ScheduledExecutorService idleCheckExecutor;
+    private final ShellSessionPool sessionPool;
 
     public ClineTerminalService(Project project) {
+        this(project, () -> ClineSettingsService.getInstance().getTerminalSessionIdleTimeout());
+    }
+
+    /**
+     * Creates a new terminal service.
+     *
+     * @param project            The project
+     * @param idleTimeoutSeconds Provides the time after which an idle shell session is closed, or 0 to keep idle sessions
+     */
+    ClineTerminalService(Project project, IntSupplier idleTimeoutSeconds) {
         this.project = project;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        this.outputExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "Cline command output " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.idleCheckExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Cline shell session idle check");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        if (SystemInfo.isWindows) {
+            this.sessionPool = null;
+        } else {
+            this.sessionPool = new ShellSessionPool(
+                    () -> ShellSession.start(getShellCommand(), getWorkingDirectory(), outputExecutor),
+                    MAX_SHELL_SESSIONS,
+                    () -> TimeUnit.SECONDS.toMillis(idleTimeoutSeconds.getAsInt())
+            );
+            idleCheckExecutor.scheduleWithFixedDelay(sessionPool::evictIdleSessions,
+                    IDLE_CHECK_INTERVAL_SECONDS, IDLE_CHECK_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
     }
 
     public static ClineTerminalService getInstance(Project project) {
@@ -48,8 +121,124 @@ public final class ClineTerminalService {
      * @return A CompletableFuture containing the command output
      */
     public CompletableFuture<String> executeCommandAndCaptureOutput(String command, int timeout) {
+        return executeCommandAndCaptureOutput(command, timeout, ToolContext.detached());
+    }
+    
+    /**
+     * Execute a command in the terminal and capture the output.
+     * The command is stopped when the context is cancelled.
+     *
+     * @param command The command to execute
+     * @param timeout The timeout in seconds
+     * @param context The tool execution context
+     * @return A CompletableFuture containing the command output
+     */
+    public CompletableFuture<String> executeCommandAndCaptureOutput(String command, int timeout, ToolContext context) {
+        return runCommand(command, timeout, context, null).thenApply(CommandResult::getOutput);
+    }
+
+    /**
+     * Runs a command in a shell in the project directory.
+     * Only the last {@value #MAX_OUTPUT_CHARS} characters of the output are kept; the full output
+     * is streamed to the output listener while the command runs.
+     * A command that times out or is cancelled in a pooled session closes that session,
+     * so the next command starts in a fresh shell.
+     *
+     * @param command        The command to run
+     * @param timeout        The timeout in seconds, or 0 for no timeout
+     * @param context        The tool execution context; cancelling it kills the command
+     * @param outputListener The listener for output chunks, called on a background thread, or null
+     * @return A CompletableFuture containing the command result
+     */
+    @NotNull
+    public CompletableFuture<CommandResult> runCommand(@NotNull String command, int timeout, @NotNull ToolContext context,
+                                                      @Nullable Consumer<String> outputListener) {
         LOG.info("Executing command and capturing output: " + command);
-        return CompletableFuture.completedFuture("Command executed: " + command);
+        if (context.isCancelled()) {
+            return CompletableFuture.failedFuture(new CancellationException("Command cancelled: " + command));
+        }
+
+        ShellSession session = acquireSession();
+        if (session != null) {
+            try {
+                CompletableFuture<CommandResult> future = session.execute(command, timeout, context, outputListener, MAX_OUTPUT_CHARS);
+                future.whenComplete((result, e) -> sessionPool.release(session));
+                return future;
+            } catch (IllegalStateException e) {
+                LOG.warn("Shell session is not usable, running command in its own process", e);
+                sessionPool.release(session);
+            }
+        }
+
+        return runProcess(command, timeout, context, outputListener);
+    }
+
+    /**
+     * Runs a command in its own shell process.
+     *
+     * @param command        The command to run
+     * @param timeout        The timeout in seconds, or 0 for no timeout
+     * @param context        The tool execution context; cancelling it kills the command
+     * @param outputListener The listener for output chunks, or null
+     * @return A CompletableFuture containing the command result
+     */
+    private CompletableFuture<CommandResult> runProcess(String command, int timeout, ToolContext context,
+                                                        @Nullable Consumer<String> outputListener) {
+        Process process;
+        try {
+            process = createProcessBuilder(command).start();
+        } catch (IOException e) {
+            LOG.warn("Failed to start command: " + command, e);
+            return CompletableFuture.failedFuture(e);
+        }
+        runningProcesses.add(process);
+
+        CompletableFuture<CommandResult> future = new CompletableFuture<>();
+        AtomicBoolean timedOut = new AtomicBoolean(false);
+        Runnable kill = () -> destroyProcessTree(process);
+        context.onCancel(kill);
+
+        if (timeout > 0) {
+            CompletableFuture.delayedExecutor(timeout, TimeUnit.SECONDS).execute(() -> {
+                if (process.isAlive()) {
+                    LOG.info("Command timed out after " + timeout + " seconds, killing it: " + command);
+                    timedOut.set(true);
+                    destroyProcessTree(process);
+                }
+            });
+        }
+
+        try {
+            outputExecutor.execute(() -> {
+                try {
+                    CommandOutputBuffer output = new CommandOutputBuffer(MAX_OUTPUT_CHARS);
+                    pumpOutput(process, output, outputListener);
+                    int exitCode = process.waitFor();
+
+                    if (context.isCancelled() && !timedOut.get()) {
+                        future.completeExceptionally(new CancellationException("Command cancelled: " + command));
+                    } else {
+                        future.complete(new CommandResult(exitCode, output.toString(), output.getDroppedChars(), timedOut.get()));
+                    }
+                } catch (IOException e) {
+                    future.completeExceptionally(e);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    destroyProcessTree(process);
+                    future.completeExceptionally(new CancellationException("Command cancelled: " + command));
+                } finally {
+                    runningProcesses.remove(process);
+                    context.removeCancelListener(kill);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            runningProcesses.remove(process);
+            context.removeCancelListener(kill);
+            destroyProcessTree(process);
+            return CompletableFuture.failedFuture(e);
+        }
+
+        return future;
     }
     
     /**
@@ -63,4 +252,121 @@ public final class ClineTerminalService {
         LOG.info("Executing interactive command: " + command);
         return CompletableFuture.completedFuture(null);
     }
-}
\ No newline at end of file
+
+    @Override
+    public void dispose() {
+        if (sessionPool != null) {
+            sessionPool.close();
+        }
+        idleCheckExecutor.shutdownNow();
+        for (Process process : runningProcesses) {
+            destroyProcessTree(process);
+        }
+        runningProcesses.clear();
+        outputExecutor.shutdownNow();
+    }
+
+    /**
+     * Acquires a pooled shell session.
+     *
+     * @return The session, or null if sessions are not supported, the pool is exhausted or the shell cannot be started
+     */
+    @Nullable
+    private ShellSession acquireSession() {
+        if (sessionPool == null) {
+            return null;
+        }
+
+        try {
+            return sessionPool.acquire();
+        } catch (IOException e) {
+            LOG.warn("Failed to start shell session, running command in its own process", e);
+            return null;
+        }
+    }
+
+    /**
+     * Gets the command line that starts a long-lived shell session.
+     * Bash and zsh are started as login shells so the user's profile is sourced; other shells
+     * may not understand the POSIX syntax used to frame commands, so {@code /bin/sh} is used instead.
+     *
+     * @return The shell command line
+     */
+    private static List<String> getShellCommand() {
+        String shell = System.getenv("SHELL");
+        if (shell != null && (shell.endsWith("/bash") || shell.endsWith("/zsh"))) {
+            return List.of(shell, "-l");
+        }
+        return List.of("/bin/sh");
+    }
+
+    @Nullable
+    private File getWorkingDirectory() {
+        String basePath = project.getBasePath();
+        return basePath != null ? new File(basePath) : null;
+    }
+
+    /**
+     * Creates the process builder for a command.
+     * The command runs in the user's shell, or {@code cmd.exe} on Windows, with stderr merged into stdout
+     * so the captured output keeps the order in which it was printed.
+     *
+     * @param command The command to run
+     * @return The process builder
+     */
+    private ProcessBuilder createProcessBuilder(String command) {
+        ProcessBuilder builder;
+        if (SystemInfo.isWindows) {
+            builder = new ProcessBuilder("cmd.exe", "/c", command);
+        } else {
+            String shell = System.getenv("SHELL");
+            builder = new ProcessBuilder(shell != null && !shell.isEmpty() ? shell : "/bin/sh", "-c", command);
+        }
+
+        File workingDirectory = getWorkingDirectory();
+        if (workingDirectory != null) {
+            builder.directory(workingDirectory);
+        }
+        return builder.redirectErrorStream(true);
+    }
+
+    /**
+     * Reads the output of a process until it ends.
+     * Stdin is closed first so commands waiting for input fail instead of hanging.
+     *
+     * @param process        The process
+     * @param output         The buffer to append the output to
+     * @param outputListener The listener for output chunks, or null
+     * @throws IOException If reading the output fails
+     */
+    private static void pumpOutput(Process process, CommandOutputBuffer output, @Nullable Consumer<String> outputListener)
+            throws IOException {
+        process.getOutputStream().close();
+
+        try (Reader reader = new InputStreamReader(process.getInputStream(), Charset.defaultCharset())) {
+            char[] chars = new char[READ_BUFFER_SIZE];
+            int count;
+            while ((count = reader.read(chars)) != -1) {
+                output.append(chars, 0, count);
+                if (outputListener != null) {
+                    try {
+                        outputListener.accept(new String(chars, 0, count));
+                    } catch (Exception e) {
+                        LOG.warn("Error in command output listener", e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Kills a process and all of its descendants.
+     * The descendants are collected before the process is killed, since they are reparented once it is gone.
+     *
+     * @param process The process
+     */
+    private static void destroyProcessTree(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+}
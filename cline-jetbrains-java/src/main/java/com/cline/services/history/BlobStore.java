@@ -0,0 +1,221 @@
+package com.cline.services.history;
+
+import com.cline.core.model.ContentBlob;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Content-addressed storage for large message bodies.
+ * <p>
+ * Each body is stored once, deflated, in a file named after the SHA-256 hash of its content, so a file that was
+ * read in several turns or conversations takes up space once. Handles to bodies are shared as long as they are
+ * reachable, so identical bodies are also loaded into memory at most once.
+ * <p>
+ * Layout of the blob directory:
+ * <pre>
+ * &lt;first two hash digits&gt;/&lt;remaining hash digits&gt;
+ * </pre>
+ */
+public class BlobStore {
+    private static final Logger LOG = Logger.getInstance(BlobStore.class);
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final int PURGE_INTERVAL = 256;
+
+    private final Path directory;
+    private final ContentBlob.Source source = this::read;
+    // Guarded by this
+    private final Map<String, WeakReference<ContentBlob>> handles = new HashMap<>();
+    private int putsSincePurge = 0;
+
+    /**
+     * Creates a new blob store.
+     *
+     * @param directory The directory the store keeps its files in
+     */
+    public BlobStore(@NotNull Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Gets the directory the store keeps its files in.
+     *
+     * @return The blob directory
+     */
+    @NotNull
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Stores content, unless content with the same hash is already stored.
+     *
+     * @param content The content
+     * @return The handle to the stored content
+     * @throws IOException If the content cannot be written
+     */
+    @NotNull
+    public ContentBlob put(@NotNull String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        String hash = sha256(bytes);
+        Path file = getBlobFile(hash);
+        if (!Files.exists(file)) {
+            Files.createDirectories(file.getParent());
+            ConversationStore.writeAtomically(file, deflate(bytes));
+        }
+
+        synchronized (this) {
+            if (++putsSincePurge >= PURGE_INTERVAL) {
+                handles.values().removeIf(reference -> reference.get() == null);
+                putsSincePurge = 0;
+            }
+            ContentBlob blob = getHandle(hash);
+            if (blob == null) {
+                blob = new ContentBlob(hash, content.length(), source, content);
+                handles.put(hash, new WeakReference<>(blob));
+            }
+            return blob;
+        }
+    }
+
+    /**
+     * Gets a handle to stored content without reading it.
+     *
+     * @param hash   The content hash
+     * @param length The content length in characters
+     * @return The handle
+     */
+    @NotNull
+    public synchronized ContentBlob get(@NotNull String hash, int length) {
+        ContentBlob blob = getHandle(hash);
+        if (blob == null) {
+            blob = new ContentBlob(hash, length, source, null);
+            handles.put(hash, new WeakReference<>(blob));
+        }
+        return blob;
+    }
+
+    /**
+     * Checks whether content is stored.
+     *
+     * @param hash The content hash
+     * @return True if the content is stored
+     */
+    public boolean contains(@NotNull String hash) {
+        return Files.exists(getBlobFile(hash));
+    }
+
+    /**
+     * Deletes the stored content that is not referenced anymore.
+     *
+     * @param liveHashes The hashes of the content that is still referenced
+     * @return The number of deleted blobs
+     * @throws IOException If the blob directory cannot be listed
+     */
+    public int retainAll(@NotNull Set<String> liveHashes) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return 0;
+        }
+
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(directory, 2)) {
+            files = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        int deleted = 0;
+        for (Path file : files) {
+            Path parent = file.getParent();
+            String hash = parent.getFileName().toString() + file.getFileName();
+            if (!parent.equals(directory) && !liveHashes.contains(hash)) {
+                try {
+                    Files.delete(file);
+                    deleted++;
+                } catch (IOException e) {
+                    LOG.warn("Failed to delete unreferenced blob: " + file, e);
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Deletes all stored content, except the content of handles that are still reachable.
+     * Those are held by conversations that are still open and may be saved again, referring to their blobs.
+     *
+     * @return The number of deleted blobs
+     * @throws IOException If the blob directory cannot be listed
+     */
+    public int deleteAll() throws IOException {
+        Set<String> liveHashes = new HashSet<>();
+        synchronized (this) {
+            for (Map.Entry<String, WeakReference<ContentBlob>> handle : handles.entrySet()) {
+                if (handle.getValue().get() != null) {
+                    liveHashes.add(handle.getKey());
+                }
+            }
+        }
+        return retainAll(liveHashes);
+    }
+
+    private ContentBlob getHandle(String hash) {
+        WeakReference<ContentBlob> reference = handles.get(hash);
+        return reference != null ? reference.get() : null;
+    }
+
+    private String read(String hash) {
+        Path file = getBlobFile(hash);
+        try (InputStream in = new InflaterInputStream(Files.newInputStream(file))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            LOG.warn("Failed to read message content blob: " + file, e);
+            return "[Content unavailable: " + hash + "]";
+        }
+    }
+
+    private Path getBlobFile(String hash) {
+        return directory.resolve(hash.substring(0, 2)).resolve(hash.substring(2));
+    }
+
+    private static byte[] deflate(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 3 + 16);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DeflaterOutputStream stream = new DeflaterOutputStream(out, deflater)) {
+            stream.write(bytes);
+        } finally {
+            deflater.end();
+        }
+        return out.toByteArray();
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+                hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xF];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
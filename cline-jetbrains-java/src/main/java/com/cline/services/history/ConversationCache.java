@@ -0,0 +1,157 @@
+package com.cline.services.history;
+
+import com.cline.core.model.Conversation;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of loaded conversations.
+ * The most recently used conversations are held strongly; older ones are demoted to soft references,
+ * so they stay available until the JVM needs the memory. A conversation that is still open somewhere
+ * is therefore always returned as the same instance. Entries whose conversation has been collected are purged
+ * on the next access, so the demoted entries do not accumulate.
+ */
+public class ConversationCache {
+    private final int maxStrongEntries;
+    private final LinkedHashMap<String, Conversation> recent;
+    private final Map<String, DemotedReference> demoted = new HashMap<>();
+    private final ReferenceQueue<Conversation> collected = new ReferenceQueue<>();
+
+    /**
+     * Creates a new conversation cache.
+     *
+     * @param maxStrongEntries The number of most recently used conversations that are held strongly
+     */
+    public ConversationCache(int maxStrongEntries) {
+        this.maxStrongEntries = maxStrongEntries;
+        this.recent = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Conversation> eldest) {
+                if (size() <= ConversationCache.this.maxStrongEntries) {
+                    return false;
+                }
+                demoted.put(eldest.getKey(), new DemotedReference(eldest.getKey(), eldest.getValue(), collected));
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Gets a cached conversation and marks it as most recently used.
+     *
+     * @param id The conversation ID
+     * @return The conversation, or null if it is not cached or has been collected
+     */
+    @Nullable
+    public synchronized Conversation get(@NotNull String id) {
+        purgeCollected();
+        Conversation conversation = recent.get(id);
+        if (conversation != null) {
+            return conversation;
+        }
+
+        DemotedReference reference = demoted.remove(id);
+        conversation = reference != null ? reference.get() : null;
+        if (conversation != null) {
+            recent.put(id, conversation);
+        }
+        return conversation;
+    }
+
+    /**
+     * Caches a conversation, replacing any cached conversation with the same ID.
+     *
+     * @param conversation The conversation
+     */
+    public synchronized void put(@NotNull Conversation conversation) {
+        purgeCollected();
+        demoted.remove(conversation.getId());
+        recent.put(conversation.getId(), conversation);
+    }
+
+    /**
+     * Caches a conversation unless a conversation with the same ID is already cached.
+     * Used for conversations loaded from storage, so concurrent loads end up sharing one instance.
+     *
+     * @param conversation The conversation
+     * @return The cached conversation, which is the given one if none was cached
+     */
+    @NotNull
+    public synchronized Conversation putIfAbsent(@NotNull Conversation conversation) {
+        Conversation cached = get(conversation.getId());
+        if (cached != null) {
+            return cached;
+        }
+        put(conversation);
+        return conversation;
+    }
+
+    /**
+     * Removes a conversation from the cache.
+     *
+     * @param id The conversation ID
+     */
+    public synchronized void remove(@NotNull String id) {
+        purgeCollected();
+        recent.remove(id);
+        demoted.remove(id);
+    }
+
+    /**
+     * Removes all conversations from the cache.
+     */
+    public synchronized void clear() {
+        recent.clear();
+        demoted.clear();
+    }
+
+    /**
+     * Gets the number of cached conversations that have not been collected.
+     *
+     * @return The number of cached conversations
+     */
+    public synchronized int size() {
+        purgeCollected();
+        return recent.size() + demoted.size();
+    }
+
+    /**
+     * Clears the demoted conversations as the garbage collector would. Used by tests.
+     */
+    synchronized void collectDemoted() {
+        for (DemotedReference reference : demoted.values()) {
+            reference.clear();
+            reference.enqueue();
+        }
+    }
+
+    /**
+     * Removes the demoted entries whose conversation has been collected.
+     */
+    private void purgeCollected() {
+        Reference<? extends Conversation> reference;
+        while ((reference = collected.poll()) != null) {
+            DemotedReference demotedReference = (DemotedReference) reference;
+            demoted.remove(demotedReference.id, demotedReference);
+        }
+    }
+
+    /**
+     * Soft reference to a demoted conversation that remembers its ID, so it can be purged once collected.
+     */
+    private static final class DemotedReference extends SoftReference<Conversation> {
+        private final String id;
+
+        DemotedReference(String id, Conversation conversation, ReferenceQueue<Conversation> queue) {
+            super(conversation, queue);
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,521 @@
+package com.cline.services.history;
+
+import com.cline.core.model.ContentBlob;
+import com.cline.core.model.Message;
+import com.cline.core.model.MessageRole;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact binary encoding of messages, used by the {@link ConversationStore} for its message logs.
+ * {@link ConversationJson} remains the format for exporting conversations.
+ * <p>
+ * Messages are encoded in blocks. A block starts with the format version and a flags byte, and its payload is
+ * deflated when that makes it smaller. The payload holds a string table followed by the messages; roles, tool names,
+ * JSON keys and short JSON string values such as file paths are written once to the table and referenced by index.
+ * Tool results are stored as binary JSON, and a message content that is just the tool result as JSON text is not
+ * stored a second time. Contents and tool results that were moved to a {@link BlobStore} are stored as a reference
+ * to the blob.
+ * <p>
+ * Every message is prefixed with its length and starts with a flags field, so fields added in later versions can be
+ * appended to a message and are skipped by older readers.
+ */
+public final class ConversationCodec {
+    static final int FORMAT_VERSION = 2;
+
+    private static final int BLOCK_COMPRESSED = 1;
+    private static final int COMPRESSION_THRESHOLD = 256;
+
+    private static final int HAS_METADATA = 1;
+    private static final int HAS_TOOL_NAME = 1 << 1;
+    private static final int HAS_TOOL_INPUT = 1 << 2;
+    private static final int HAS_TOOL_RESULT = 1 << 3;
+    private static final int CONTENT_IS_TOOL_RESULT = 1 << 4;
+    private static final int CONTENT_IN_BLOB = 1 << 5;
+    private static final int TOOL_RESULT_IN_BLOB = 1 << 6;
+    private static final int BLOB_HASH_LENGTH = 64;
+
+    private static final int JSON_NULL = 0;
+    private static final int JSON_FALSE = 1;
+    private static final int JSON_TRUE = 2;
+    private static final int JSON_NUMBER = 3;
+    private static final int JSON_STRING = 4;
+    private static final int JSON_INTERNED_STRING = 5;
+    private static final int JSON_ARRAY = 6;
+    private static final int JSON_OBJECT = 7;
+    private static final int MAX_INTERNED_LENGTH = 256;
+
+    private ConversationCodec() {
+    }
+
+    /**
+     * Encodes messages into a block.
+     *
+     * @param messages The messages
+     * @return The block
+     */
+    public static byte[] encode(@NotNull List<Message> messages) {
+        BlockWriter body = new BlockWriter();
+        StringTable table = new StringTable();
+        body.writeVarInt(messages.size());
+        BlockWriter message = new BlockWriter();
+        for (Message m : messages) {
+            message.reset();
+            writeMessage(message, m, table);
+            body.writeVarInt(message.size());
+            body.write(message);
+        }
+
+        BlockWriter payload = new BlockWriter();
+        payload.writeVarInt(table.strings.size());
+        for (String string : table.strings) {
+            payload.writeString(string);
+        }
+        payload.write(body);
+
+        BlockWriter block = new BlockWriter();
+        block.writeVarInt(FORMAT_VERSION);
+        byte[] compressed = payload.size() >= COMPRESSION_THRESHOLD ? deflate(payload) : null;
+        if (compressed != null && compressed.length < payload.size()) {
+            block.writeByte(BLOCK_COMPRESSED);
+            block.writeVarInt(payload.size());
+            block.write(compressed, compressed.length);
+        } else {
+            block.writeByte(0);
+            block.write(payload);
+        }
+        return block.toByteArray();
+    }
+
+    /**
+     * Decodes a block that does not refer to any blobs.
+     *
+     * @param block The block
+     * @return The messages
+     * @throws IOException If the block is malformed or was written by a newer, incompatible version
+     */
+    @NotNull
+    public static List<Message> decode(@NotNull byte[] block) throws IOException {
+        return decode(block, null);
+    }
+
+    /**
+     * Decodes a block. Contents and tool results stored in blobs are not read until they are accessed.
+     *
+     * @param block The block
+     * @param blobs The store holding the blobs the block refers to (optional)
+     * @return The messages
+     * @throws IOException If the block is malformed, was written by a newer, incompatible version,
+     *                     or refers to blobs and no blob store is given
+     */
+    @NotNull
+    public static List<Message> decode(@NotNull byte[] block, @Nullable BlobStore blobs) throws IOException {
+        try {
+            BlockReader reader = new BlockReader(block, 0, block.length);
+            int version = reader.readVarInt();
+            if (version > FORMAT_VERSION) {
+                throw new IOException("Unsupported message block version: " + version);
+            }
+            int flags = reader.readByte();
+            if ((flags & BLOCK_COMPRESSED) != 0) {
+                int length = reader.readVarInt();
+                reader = new BlockReader(inflate(block, reader.position, block.length - reader.position, length), 0, length);
+            }
+
+            int stringCount = reader.readVarInt();
+            List<String> strings = new ArrayList<>(stringCount);
+            for (int i = 0; i < stringCount; i++) {
+                strings.add(reader.readString());
+            }
+
+            int messageCount = reader.readVarInt();
+            List<Message> messages = new ArrayList<>(messageCount);
+            for (int i = 0; i < messageCount; i++) {
+                int length = reader.readVarInt();
+                int end = reader.position + length;
+                BlockReader message = new BlockReader(reader.bytes, reader.position, end);
+                messages.add(readMessage(message, strings, blobs));
+                // Skips fields added by later versions
+                reader.position = end;
+            }
+            return messages;
+        } catch (IndexOutOfBoundsException | IllegalArgumentException | IllegalStateException | JsonParseException e) {
+            throw new IOException("Malformed message block", e);
+        }
+    }
+
+    /**
+     * Computes a 64-bit fingerprint of a message, used to detect changed messages without keeping their encoding.
+     *
+     * @param message The message
+     * @return The fingerprint
+     */
+    public static long fingerprint(@NotNull Message message) {
+        BlockWriter out = new BlockWriter();
+        StringTable table = new StringTable();
+        writeMessage(out, message, table);
+        for (String string : table.strings) {
+            out.writeString(string);
+        }
+
+        // 64-bit FNV-1a
+        long hash = 0xcbf29ce484222325L;
+        byte[] bytes = out.buffer();
+        for (int i = 0; i < out.size(); i++) {
+            hash ^= bytes[i] & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static void writeMessage(BlockWriter out, Message message, StringTable table) {
+        // Blobs are referenced, never loaded
+        ContentBlob contentBlob = message.getContentBlob();
+        ContentBlob toolResultBlob = message.getToolResultBlob();
+        JsonObject toolResult = toolResultBlob == null ? message.getToolResult() : null;
+        boolean contentIsToolResult;
+        if (contentBlob != null || toolResultBlob != null) {
+            contentIsToolResult = contentBlob != null && contentBlob.equals(toolResultBlob);
+        } else {
+            contentIsToolResult = toolResult != null && message.getContent().equals(toolResult.toString());
+        }
+        int flags = (message.getMetadata().size() > 0 ? HAS_METADATA : 0)
+                | (message.getToolName() != null ? HAS_TOOL_NAME : 0)
+                | (message.getToolInput() != null ? HAS_TOOL_INPUT : 0)
+                | (toolResult != null || toolResultBlob != null ? HAS_TOOL_RESULT : 0)
+                | (contentIsToolResult ? CONTENT_IS_TOOL_RESULT : 0)
+                | (contentBlob != null && !contentIsToolResult ? CONTENT_IN_BLOB : 0)
+                | (toolResultBlob != null ? TOOL_RESULT_IN_BLOB : 0);
+
+        out.writeVarInt(flags);
+        out.writeString(message.getId());
+        out.writeVarInt(table.indexOf(message.getRole().getValue()));
+        out.writeVarLong(message.getTimestamp().getEpochSecond());
+        out.writeVarInt(message.getTimestamp().getNano());
+        if ((flags & CONTENT_IN_BLOB) != 0) {
+            writeBlob(out, contentBlob);
+        } else if (!contentIsToolResult) {
+            out.writeString(message.getContent());
+        }
+        if ((flags & HAS_METADATA) != 0) {
+            writeJson(out, message.getMetadata(), table);
+        }
+        if ((flags & HAS_TOOL_NAME) != 0) {
+            out.writeVarInt(table.indexOf(message.getToolName()));
+        }
+        if ((flags & HAS_TOOL_INPUT) != 0) {
+            writeJson(out, message.getToolInput(), table);
+        }
+        if ((flags & TOOL_RESULT_IN_BLOB) != 0) {
+            writeBlob(out, toolResultBlob);
+        } else if ((flags & HAS_TOOL_RESULT) != 0) {
+            writeJson(out, toolResult, table);
+        }
+    }
+
+    private static Message readMessage(BlockReader in, List<String> strings, BlobStore blobs) throws IOException {
+        int flags = in.readVarInt();
+        String id = in.readString();
+        MessageRole role = MessageRole.fromString(strings.get(in.readVarInt()));
+        Instant timestamp = Instant.ofEpochSecond(in.readVarLong(), in.readVarInt());
+        String content = null;
+        ContentBlob contentBlob = null;
+        if ((flags & CONTENT_IN_BLOB) != 0) {
+            contentBlob = readBlob(in, blobs);
+        } else if ((flags & CONTENT_IS_TOOL_RESULT) == 0) {
+            content = in.readString();
+        }
+        JsonObject metadata = (flags & HAS_METADATA) != 0 ? readJson(in, strings).getAsJsonObject() : null;
+        String toolName = (flags & HAS_TOOL_NAME) != 0 ? strings.get(in.readVarInt()) : null;
+        JsonObject toolInput = (flags & HAS_TOOL_INPUT) != 0 ? readJson(in, strings).getAsJsonObject() : null;
+        JsonObject toolResult = null;
+        ContentBlob toolResultBlob = null;
+        if ((flags & TOOL_RESULT_IN_BLOB) != 0) {
+            toolResultBlob = readBlob(in, blobs);
+        } else if ((flags & HAS_TOOL_RESULT) != 0) {
+            toolResult = readJson(in, strings).getAsJsonObject();
+        }
+        if (content == null && contentBlob == null) {
+            if (toolResultBlob != null) {
+                contentBlob = toolResultBlob;
+            } else if (toolResult != null) {
+                content = toolResult.toString();
+            } else {
+                throw new IOException("Message content refers to a missing tool result");
+            }
+        }
+
+        // Placeholders are replaced by the blob handles below
+        JsonObject placeholder = toolResultBlob != null ? new JsonObject() : toolResult;
+        Message message = new Message(id, content != null ? content : "", role, timestamp, metadata, toolName, placeholder);
+        message.setToolInput(toolInput);
+        if (contentBlob != null) {
+            message.spillContent(message.getContent(), contentBlob);
+        }
+        if (toolResultBlob != null) {
+            message.spillToolResult(placeholder, toolResultBlob);
+        }
+        return message;
+    }
+
+    private static void writeBlob(BlockWriter out, ContentBlob blob) {
+        out.writeString(blob.getHash());
+        out.writeVarInt(blob.getLength());
+    }
+
+    private static ContentBlob readBlob(BlockReader in, BlobStore blobs) throws IOException {
+        String hash = in.readString();
+        int length = in.readVarInt();
+        if (hash.length() != BLOB_HASH_LENGTH) {
+            throw new IOException("Malformed blob reference in message block");
+        }
+        if (blobs == null) {
+            throw new IOException("Message block refers to a blob but no blob store is available");
+        }
+        return blobs.get(hash, length);
+    }
+
+    private static void writeJson(BlockWriter out, JsonElement element, StringTable table) {
+        if (element == null || element.isJsonNull()) {
+            out.writeByte(JSON_NULL);
+        } else if (element.isJsonObject()) {
+            JsonObject object = element.getAsJsonObject();
+            out.writeByte(JSON_OBJECT);
+            out.writeVarInt(object.size());
+            for (Map.Entry<String, JsonElement> entry : object.entrySet()) {
+                out.writeVarInt(table.indexOf(entry.getKey()));
+                writeJson(out, entry.getValue(), table);
+            }
+        } else if (element.isJsonArray()) {
+            JsonArray array = element.getAsJsonArray();
+            out.writeByte(JSON_ARRAY);
+            out.writeVarInt(array.size());
+            for (JsonElement item : array) {
+                writeJson(out, item, table);
+            }
+        } else {
+            JsonPrimitive primitive = element.getAsJsonPrimitive();
+            if (primitive.isBoolean()) {
+                out.writeByte(primitive.getAsBoolean() ? JSON_TRUE : JSON_FALSE);
+            } else if (primitive.isNumber()) {
+                out.writeByte(JSON_NUMBER);
+                out.writeString(primitive.getAsString());
+            } else {
+                String value = primitive.getAsString();
+                if (value.length() <= MAX_INTERNED_LENGTH) {
+                    out.writeByte(JSON_INTERNED_STRING);
+                    out.writeVarInt(table.indexOf(value));
+                } else {
+                    out.writeByte(JSON_STRING);
+                    out.writeString(value);
+                }
+            }
+        }
+    }
+
+    private static JsonElement readJson(BlockReader in, List<String> strings) throws IOException {
+        int type = in.readByte();
+        switch (type) {
+            case JSON_NULL:
+                return JsonNull.INSTANCE;
+            case JSON_FALSE:
+                return new JsonPrimitive(false);
+            case JSON_TRUE:
+                return new JsonPrimitive(true);
+            case JSON_NUMBER:
+                return JsonParser.parseString(in.readString()).getAsJsonPrimitive();
+            case JSON_STRING:
+                return new JsonPrimitive(in.readString());
+            case JSON_INTERNED_STRING:
+                return new JsonPrimitive(strings.get(in.readVarInt()));
+            case JSON_ARRAY: {
+                int size = in.readVarInt();
+                JsonArray array = new JsonArray(size);
+                for (int i = 0; i < size; i++) {
+                    array.add(readJson(in, strings));
+                }
+                return array;
+            }
+            case JSON_OBJECT: {
+                int size = in.readVarInt();
+                JsonObject object = new JsonObject();
+                for (int i = 0; i < size; i++) {
+                    String key = strings.get(in.readVarInt());
+                    object.add(key, readJson(in, strings));
+                }
+                return object;
+            }
+            default:
+                throw new IOException("Unknown JSON type in message block: " + type);
+        }
+    }
+
+    private static byte[] deflate(BlockWriter payload) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(payload.buffer(), 0, payload.size());
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(payload.size() / 2 + 16);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(chunk);
+                out.write(chunk, 0, count);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] bytes, int offset, int length, int inflatedLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(bytes, offset, length);
+            byte[] result = new byte[inflatedLength];
+            int position = 0;
+            while (position < inflatedLength) {
+                int count = inflater.inflate(result, position, inflatedLength - position);
+                if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IOException("Truncated compressed message block");
+                }
+                position += count;
+            }
+            return result;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt compressed message block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Strings written once per block and referenced by index.
+     */
+    private static class StringTable {
+        private final Map<String, Integer> indexes = new HashMap<>();
+        private final List<String> strings = new ArrayList<>();
+
+        private int indexOf(String string) {
+            Integer index = indexes.get(string);
+            if (index == null) {
+                index = strings.size();
+                indexes.put(string, index);
+                strings.add(string);
+            }
+            return index;
+        }
+    }
+
+    /**
+     * Growable byte buffer with variable-length integer and string encoding.
+     */
+    private static class BlockWriter extends ByteArrayOutputStream {
+        private void writeByte(int value) {
+            write(value);
+        }
+
+        private void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        private void writeString(String value) {
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            write(bytes, 0, bytes.length);
+        }
+
+        private void write(BlockWriter other) {
+            write(other.buf, 0, other.count);
+        }
+
+        private void write(byte[] bytes, int length) {
+            write(bytes, 0, length);
+        }
+
+        private byte[] buffer() {
+            return buf;
+        }
+    }
+
+    /**
+     * Reads what a {@link BlockWriter} wrote from a range of a byte array.
+     */
+    private static class BlockReader {
+        private final byte[] bytes;
+        private final int end;
+        private int position;
+
+        private BlockReader(byte[] bytes, int position, int end) {
+            if (end > bytes.length || position > end) {
+                throw new IndexOutOfBoundsException("Message block is truncated");
+            }
+            this.bytes = bytes;
+            this.position = position;
+            this.end = end;
+        }
+
+        private int readByte() {
+            if (position >= end) {
+                throw new IndexOutOfBoundsException("Message block is truncated");
+            }
+            return bytes[position++] & 0xFF;
+        }
+
+        private int readVarInt() throws IOException {
+            long value = readVarLong();
+            if (value > 0xFFFFFFFFL) {
+                throw new IOException("Malformed variable-length integer");
+            }
+            return (int) value;
+        }
+
+        private long readVarLong() throws IOException {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Malformed variable-length integer");
+        }
+
+        private String readString() throws IOException {
+            int length = readVarInt();
+            if (length < 0 || length > end - position) {
+                throw new IOException("Message block is truncated");
+            }
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
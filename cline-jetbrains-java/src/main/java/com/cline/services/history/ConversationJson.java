@@ -0,0 +1,180 @@
+package com.cline.services.history;
+
+import com.cline.core.model.Conversation;
+import com.cline.core.model.Message;
+import com.cline.core.model.MessageRole;
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.reflect.TypeToken;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.lang.reflect.Type;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Explicit JSON mapping of conversations and messages.
+ * Timestamps are written as ISO-8601 strings. When reading, the {@code seconds}/{@code nanos} objects
+ * written by the reflective Gson serialization of the old history file are accepted as well.
+ */
+public final class ConversationJson {
+    private static final Gson GSON = new Gson();
+    private static final Type METADATA_TYPE = new TypeToken<Map<String, Object>>() {}.getType();
+
+    private ConversationJson() {
+    }
+
+    /**
+     * Converts a conversation to JSON, including its messages.
+     *
+     * @param conversation The conversation
+     * @return The JSON object
+     */
+    @NotNull
+    public static JsonObject toJson(@NotNull Conversation conversation) {
+        JsonObject json = headerToJson(conversation);
+        JsonArray messages = new JsonArray();
+        for (Message message : conversation.getMessages()) {
+            messages.add(messageToJson(message));
+        }
+        json.add("messages", messages);
+        return json;
+    }
+
+    /**
+     * Converts a conversation to JSON, without its messages.
+     *
+     * @param conversation The conversation
+     * @return The JSON object
+     */
+    @NotNull
+    public static JsonObject headerToJson(@NotNull Conversation conversation) {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", conversation.getId());
+        if (conversation.getTitle() != null) {
+            json.addProperty("title", conversation.getTitle());
+        }
+        json.addProperty("createdAt", conversation.getCreatedAt().toString());
+        json.addProperty("updatedAt", conversation.getUpdatedAt().toString());
+        json.add("metadata", GSON.toJsonTree(conversation.getMetadata()));
+        return json;
+    }
+
+    /**
+     * Converts JSON to a conversation.
+     *
+     * @param json     The JSON object written by {@link #toJson(Conversation)} or {@link #headerToJson(Conversation)}
+     * @param messages The messages, or null to read them from the {@code messages} array of the JSON object
+     * @return The conversation
+     */
+    @NotNull
+    public static Conversation fromJson(@NotNull JsonObject json, @Nullable List<Message> messages) {
+        if (messages == null) {
+            messages = new ArrayList<>();
+            if (json.has("messages") && json.get("messages").isJsonArray()) {
+                for (JsonElement message : json.getAsJsonArray("messages")) {
+                    messages.add(messageFromJson(message.getAsJsonObject()));
+                }
+            }
+        }
+
+        Map<String, Object> metadata = json.has("metadata") && json.get("metadata").isJsonObject()
+                ? GSON.fromJson(json.get("metadata"), METADATA_TYPE)
+                : null;
+
+        return new Conversation(
+                getString(json, "id"),
+                getString(json, "title"),
+                messages,
+                metadata,
+                getInstant(json, "createdAt"),
+                getInstant(json, "updatedAt")
+        );
+    }
+
+    /**
+     * Converts a message to JSON.
+     *
+     * @param message The message
+     * @return The JSON object
+     */
+    @NotNull
+    public static JsonObject messageToJson(@NotNull Message message) {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", message.getId());
+        json.addProperty("role", message.getRole().getValue());
+        json.addProperty("content", message.getContent());
+        json.addProperty("timestamp", message.getTimestamp().toString());
+        if (message.getMetadata().size() > 0) {
+            json.add("metadata", message.getMetadata());
+        }
+        if (message.getToolName() != null) {
+            json.addProperty("toolName", message.getToolName());
+        }
+        if (message.getToolInput() != null) {
+            json.add("toolInput", message.getToolInput());
+        }
+        if (message.getToolResult() != null) {
+            json.add("toolResult", message.getToolResult());
+        }
+        return json;
+    }
+
+    /**
+     * Converts JSON to a message.
+     *
+     * @param json The JSON object
+     * @return The message
+     */
+    @NotNull
+    public static Message messageFromJson(@NotNull JsonObject json) {
+        String content = getString(json, "content");
+        String role = getString(json, "role");
+
+        Message message = new Message(
+                getString(json, "id"),
+                content != null ? content : "",
+                role != null ? MessageRole.fromString(role) : MessageRole.USER,
+                getInstant(json, "timestamp"),
+                getObject(json, "metadata"),
+                getString(json, "toolName"),
+                getObject(json, "toolResult")
+        );
+        message.setToolInput(getObject(json, "toolInput"));
+        return message;
+    }
+
+    @Nullable
+    private static String getString(JsonObject json, String key) {
+        JsonElement element = json.get(key);
+        return element != null && element.isJsonPrimitive() ? element.getAsString() : null;
+    }
+
+    @Nullable
+    private static JsonObject getObject(JsonObject json, String key) {
+        JsonElement element = json.get(key);
+        return element != null && element.isJsonObject() ? element.getAsJsonObject() : null;
+    }
+
+    @Nullable
+    private static Instant getInstant(JsonObject json, String key) {
+        JsonElement element = json.get(key);
+        if (element == null || element.isJsonNull()) {
+            return null;
+        }
+
+        if (element.isJsonObject()) {
+            JsonObject object = element.getAsJsonObject();
+            long seconds = object.has("seconds") ? object.get("seconds").getAsLong() : 0;
+            long nanos = object.has("nanos") ? object.get("nanos").getAsLong() : 0;
+            return Instant.ofEpochSecond(seconds, nanos);
+        }
+
+        return Instant.parse(element.getAsString());
+    }
+}
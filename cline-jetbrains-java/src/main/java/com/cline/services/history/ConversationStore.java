@@ -0,0 +1,688 @@
+package com.cline.services.history;
+
+import com.cline.core.model.ContentBlob;
+import com.cline.core.model.Conversation;
+import com.cline.core.model.Message;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Storage engine for conversation history.
+ * <p>
+ * Each conversation has its own directory with a small JSON header file and an append-only binary message log.
+ * The log is a sequence of checksummed frames, each holding a block of messages encoded by {@link ConversationCodec}.
+ * Saving a conversation only appends a frame with the messages that were added or changed since it was last saved;
+ * the log is compacted into a single frame once superseded messages outweigh the live ones.
+ * A small index file holds a {@link ConversationSummary} of every conversation, so the history can be listed
+ * without reading any message log, and unchanged conversations are never rewritten.
+ * <p>
+ * If the store has a {@link BlobStore}, message contents and tool results above a size threshold are moved to it
+ * when they are saved, and the messages only keep a {@link ContentBlob} handle to them. The hashes of the blobs a
+ * conversation refers to are listed next to its log, so unreferenced blobs can be collected without reading any log.
+ * <p>
+ * Layout of the store directory:
+ * <pre>
+ * index.json
+ * &lt;conversation id&gt;/conversation.json
+ * &lt;conversation id&gt;/messages.bin
+ * &lt;conversation id&gt;/blobs
+ * </pre>
+ * Message logs written as JSON lines by an earlier version are read and converted on the next save.
+ */
+public class ConversationStore {
+    private static final Logger LOG = Logger.getInstance(ConversationStore.class);
+    private static final String INDEX_FILE_NAME = "index.json";
+    private static final String HEADER_FILE_NAME = "conversation.json";
+    private static final String LOG_FILE_NAME = "messages.bin";
+    private static final String JSON_LOG_FILE_NAME = "messages.jsonl";
+    private static final String BLOB_REFS_FILE_NAME = "blobs";
+    private static final String OP_PUT = "put";
+    private static final byte[] LOG_MAGIC = {'C', 'L', 'N', 'M'};
+    private static final int FRAME_HEADER_SIZE = 8;
+    private static final int COMPACTION_FACTOR = 2;
+    private static final int COMPACTION_SLACK = 32;
+    private static final int REWRITE_LOG = Integer.MAX_VALUE / 2;
+    private static final int DEFAULT_BLOB_THRESHOLD = 16 * 1024;
+
+    private final Path directory;
+    private final BlobStore blobs;
+    private final int blobThreshold;
+    private Map<String, ConversationSummary> index;
+    private final Map<String, PersistedConversation> persisted = new HashMap<>();
+
+    /**
+     * Creates a new conversation store.
+     *
+     * @param directory The directory the store keeps its files in
+     */
+    public ConversationStore(@NotNull Path directory) {
+        this(directory, null, DEFAULT_BLOB_THRESHOLD);
+    }
+
+    /**
+     * Creates a new conversation store that moves large message bodies to a blob store.
+     *
+     * @param directory The directory the store keeps its files in
+     * @param blobs     The blob store (optional)
+     */
+    public ConversationStore(@NotNull Path directory, @Nullable BlobStore blobs) {
+        this(directory, blobs, DEFAULT_BLOB_THRESHOLD);
+    }
+
+    /**
+     * Creates a new conversation store that moves large message bodies to a blob store.
+     *
+     * @param directory     The directory the store keeps its files in
+     * @param blobs         The blob store (optional)
+     * @param blobThreshold The length in characters from which message bodies are moved to the blob store
+     */
+    public ConversationStore(@NotNull Path directory, @Nullable BlobStore blobs, int blobThreshold) {
+        this.directory = directory;
+        this.blobs = blobs;
+        this.blobThreshold = blobThreshold;
+    }
+
+    /**
+     * Gets the directory the store keeps its files in.
+     *
+     * @return The store directory
+     */
+    @NotNull
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Loads the summaries of all conversations in the order they were first saved.
+     * Only the index is read.
+     *
+     * @return The summaries
+     * @throws IOException If the index cannot be read
+     */
+    @NotNull
+    public synchronized List<ConversationSummary> loadSummaries() throws IOException {
+        return new ArrayList<>(loadIndex().values());
+    }
+
+    /**
+     * Loads a conversation.
+     *
+     * @param id The conversation ID
+     * @return The conversation, or null if it is not in the store
+     * @throws IOException If the conversation files cannot be read
+     */
+    @Nullable
+    public synchronized Conversation load(@NotNull String id) throws IOException {
+        Path conversationDirectory = getConversationDirectory(id);
+        Path headerFile = conversationDirectory.resolve(HEADER_FILE_NAME);
+        if (!Files.exists(headerFile)) {
+            return null;
+        }
+
+        String header = Files.readString(headerFile, StandardCharsets.UTF_8);
+        Map<String, Message> messageRecords = new LinkedHashMap<>();
+        Path logFile = conversationDirectory.resolve(LOG_FILE_NAME);
+        int logRecords = Files.exists(logFile)
+                ? replayLog(logFile, messageRecords, blobs)
+                : replayJsonLog(conversationDirectory.resolve(JSON_LOG_FILE_NAME), messageRecords);
+
+        List<Message> messages = new ArrayList<>(messageRecords.values());
+        PersistedConversation state = new PersistedConversation();
+        for (Message message : messages) {
+            state.messageHashes.put(message.getId(), ConversationCodec.fingerprint(message));
+        }
+        state.header = header;
+        state.blobHashes = readBlobRefs(conversationDirectory);
+        state.logRecords = logRecords >= 0 ? logRecords : REWRITE_LOG;
+        persisted.put(id, state);
+
+        return ConversationJson.fromJson(JsonParser.parseString(header).getAsJsonObject(), messages);
+    }
+
+    /**
+     * Saves a conversation.
+     * Only the header, the messages added or changed since the last save and the index entry are written.
+     *
+     * @param conversation The conversation
+     * @return The summary of the saved conversation
+     * @throws IOException If the conversation cannot be written
+     */
+    @NotNull
+    public synchronized ConversationSummary save(@NotNull Conversation conversation) throws IOException {
+        String id = conversation.getId();
+        Path conversationDirectory = getConversationDirectory(id);
+        Files.createDirectories(conversationDirectory);
+
+        PersistedConversation state = persisted.get(id);
+        if (state == null) {
+            state = readPersistedState(id);
+            persisted.put(id, state);
+        }
+
+        // Header
+        String header = ConversationJson.headerToJson(conversation).toString();
+        if (!header.equals(state.header)) {
+            writeAtomically(conversationDirectory.resolve(HEADER_FILE_NAME), header);
+            state.header = header;
+        }
+
+        // Messages
+        List<Message> messages = conversation.getMessages();
+        if (blobs != null) {
+            spillLargeBodies(messages);
+        }
+        Map<String, Long> messageHashes = new LinkedHashMap<>();
+        List<Message> appended = new ArrayList<>();
+        for (Message message : messages) {
+            long messageHash = ConversationCodec.fingerprint(message);
+            messageHashes.put(message.getId(), messageHash);
+
+            Long persistedHash = state.messageHashes.get(message.getId());
+            if (persistedHash == null || persistedHash != messageHash) {
+                appended.add(message);
+            }
+        }
+
+        Path logFile = conversationDirectory.resolve(LOG_FILE_NAME);
+        int appendedRecords = appended.size();
+        boolean messagesRemoved = !messageHashes.keySet().containsAll(state.messageHashes.keySet());
+        if (messagesRemoved || !Files.exists(logFile)
+                || state.logRecords + appendedRecords > COMPACTION_FACTOR * messages.size() + COMPACTION_SLACK) {
+            rewriteLog(logFile, messages);
+            Files.deleteIfExists(conversationDirectory.resolve(JSON_LOG_FILE_NAME));
+            state.logRecords = messages.size();
+        } else if (appendedRecords > 0) {
+            try {
+                Files.write(logFile, createFrame(ConversationCodec.encode(appended)),
+                        StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                // The log may end with a partial record now, rewrite it on the next save
+                state.logRecords = REWRITE_LOG;
+                throw e;
+            }
+            state.logRecords += appendedRecords;
+        }
+        state.messageHashes = messageHashes;
+
+        // Blob references, written after the log so they never miss a blob the log refers to
+        Set<String> blobHashes = collectBlobHashes(messages);
+        if (!blobHashes.equals(state.blobHashes)) {
+            Path refsFile = conversationDirectory.resolve(BLOB_REFS_FILE_NAME);
+            if (blobHashes.isEmpty()) {
+                Files.deleteIfExists(refsFile);
+            } else {
+                writeAtomically(refsFile, String.join("\n", blobHashes));
+            }
+            state.blobHashes = blobHashes;
+        }
+
+        // Index
+        ConversationSummary summary = ConversationSummary.of(conversation, messages);
+        Map<String, ConversationSummary> index = loadIndex();
+        if (!summary.equals(index.get(id))) {
+            index.put(id, summary);
+            writeIndex();
+        }
+        return summary;
+    }
+
+    /**
+     * Deletes a conversation.
+     *
+     * @param id The conversation ID
+     * @throws IOException If the conversation files cannot be deleted
+     */
+    public synchronized void delete(@NotNull String id) throws IOException {
+        persisted.remove(id);
+        if (loadIndex().remove(id) != null) {
+            writeIndex();
+        }
+        deleteRecursively(getConversationDirectory(id));
+    }
+
+    /**
+     * Deletes all conversations.
+     * Blobs that conversations which are still open refer to are kept, so saving those conversations again
+     * does not lose their bodies.
+     *
+     * @throws IOException If the files cannot be deleted
+     */
+    public synchronized void deleteAll() throws IOException {
+        persisted.clear();
+        index = new LinkedHashMap<>();
+        deleteRecursively(directory);
+        if (blobs != null) {
+            blobs.deleteAll();
+        }
+    }
+
+    /**
+     * Deletes the blobs that no conversation refers to anymore, e.g. those of deleted conversations.
+     * Only the blob reference lists of the conversations are read.
+     *
+     * @return The number of deleted blobs
+     * @throws IOException If the store or blob directory cannot be read
+     */
+    public synchronized int collectGarbage() throws IOException {
+        if (blobs == null) {
+            return 0;
+        }
+
+        Set<String> liveHashes = new HashSet<>();
+        if (Files.isDirectory(directory)) {
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, Files::isDirectory)) {
+                for (Path conversationDirectory : stream) {
+                    liveHashes.addAll(readBlobRefs(conversationDirectory));
+                }
+            }
+        }
+        return blobs.retainAll(liveHashes);
+    }
+
+    /**
+     * Imports the conversations of a history file written by the previous storage format.
+     * The file is renamed afterwards so it is only imported once.
+     *
+     * @param legacyFile The history file, a JSON array of conversations
+     * @return The number of imported conversations
+     * @throws IOException If the file cannot be read
+     */
+    public synchronized int importLegacyHistory(@NotNull Path legacyFile) throws IOException {
+        if (!Files.exists(legacyFile)) {
+            return 0;
+        }
+
+        int imported = 0;
+        try (BufferedReader reader = Files.newBufferedReader(legacyFile, StandardCharsets.UTF_8)) {
+            JsonElement root = JsonParser.parseReader(reader);
+            if (root.isJsonArray()) {
+                for (JsonElement element : root.getAsJsonArray()) {
+                    try {
+                        save(ConversationJson.fromJson(element.getAsJsonObject(), null));
+                        imported++;
+                    } catch (RuntimeException e) {
+                        LOG.warn("Skipping unreadable conversation in legacy history file", e);
+                    }
+                }
+            }
+        } catch (JsonParseException e) {
+            LOG.warn("Legacy history file is not valid JSON: " + legacyFile, e);
+        }
+
+        Files.move(legacyFile, legacyFile.resolveSibling(legacyFile.getFileName() + ".bak"),
+                StandardCopyOption.REPLACE_EXISTING);
+        LOG.info("Imported " + imported + " conversations from legacy history file");
+        return imported;
+    }
+
+    /**
+     * Loads the index if it has not been loaded yet.
+     *
+     * @return The index entries by conversation ID, in the order the conversations were first saved
+     * @throws IOException If the index cannot be read
+     */
+    private Map<String, ConversationSummary> loadIndex() throws IOException {
+        if (index != null) {
+            return index;
+        }
+
+        index = new LinkedHashMap<>();
+        Path indexFile = directory.resolve(INDEX_FILE_NAME);
+        if (Files.exists(indexFile)) {
+            try {
+                JsonArray entries = JsonParser.parseString(Files.readString(indexFile, StandardCharsets.UTF_8)).getAsJsonArray();
+                for (JsonElement entry : entries) {
+                    ConversationSummary summary = ConversationSummary.fromJson(entry.getAsJsonObject());
+                    index.put(summary.getId(), summary);
+                }
+            } catch (JsonParseException | IllegalStateException | NullPointerException | DateTimeParseException e) {
+                LOG.warn("History index is corrupt, rebuilding it", e);
+                rebuildIndex();
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Rebuilds the index from the conversation directories.
+     *
+     * @throws IOException If the store directory cannot be read
+     */
+    private void rebuildIndex() throws IOException {
+        index = new LinkedHashMap<>();
+        List<Conversation> conversations = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, Files::isDirectory)) {
+            for (Path conversationDirectory : stream) {
+                Path headerFile = conversationDirectory.resolve(HEADER_FILE_NAME);
+                if (!Files.exists(headerFile)) {
+                    continue;
+                }
+                try {
+                    String id = JsonParser.parseString(Files.readString(headerFile, StandardCharsets.UTF_8))
+                            .getAsJsonObject().get("id").getAsString();
+                    Conversation conversation = load(id);
+                    if (conversation != null) {
+                        conversations.add(conversation);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    LOG.warn("Skipping unreadable conversation directory: " + conversationDirectory, e);
+                }
+            }
+        }
+
+        conversations.sort(Comparator.comparing(Conversation::getCreatedAt));
+        for (Conversation conversation : conversations) {
+            index.put(conversation.getId(), ConversationSummary.of(conversation, conversation.getMessages()));
+        }
+        writeIndex();
+    }
+
+    private void writeIndex() throws IOException {
+        JsonArray entries = new JsonArray();
+        for (ConversationSummary summary : index.values()) {
+            entries.add(summary.toJson());
+        }
+        Files.createDirectories(directory);
+        writeAtomically(directory.resolve(INDEX_FILE_NAME), entries.toString());
+    }
+
+    /**
+     * Reads what is on disk for a conversation that has not been loaded or saved in this session.
+     *
+     * @param id The conversation ID
+     * @return The persisted state, empty if the conversation is not in the store
+     * @throws IOException If the conversation files cannot be read
+     */
+    private PersistedConversation readPersistedState(String id) throws IOException {
+        if (load(id) != null) {
+            return persisted.get(id);
+        }
+        return new PersistedConversation();
+    }
+
+    /**
+     * Replays a message log.
+     * Replay stops at a frame that is incomplete or fails its checksum, e.g. one cut short by a crash while appending.
+     *
+     * @param logFile        The log file
+     * @param messageRecords Receives the live messages by message ID, in message order
+     * @param blobs          The store holding the blobs the log refers to (optional)
+     * @return The number of message records in the log, or -1 if it is damaged and must be rewritten
+     * @throws IOException If the log cannot be read
+     */
+    private static int replayLog(Path logFile, Map<String, Message> messageRecords, BlobStore blobs) throws IOException {
+        ByteBuffer log = ByteBuffer.wrap(Files.readAllBytes(logFile));
+        byte[] magic = new byte[LOG_MAGIC.length];
+        if (log.remaining() < magic.length || !Arrays.equals(LOG_MAGIC, readBytes(log, magic))) {
+            LOG.warn("Message log has an unknown format: " + logFile);
+            return -1;
+        }
+
+        int records = 0;
+        while (log.hasRemaining()) {
+            if (log.remaining() < FRAME_HEADER_SIZE) {
+                LOG.warn("Skipping truncated frame in message log: " + logFile);
+                return -1;
+            }
+            int length = log.getInt();
+            int checksum = log.getInt();
+            if (length < 0 || length > log.remaining()) {
+                LOG.warn("Skipping truncated frame in message log: " + logFile);
+                return -1;
+            }
+            byte[] block = readBytes(log, new byte[length]);
+            CRC32 crc = new CRC32();
+            crc.update(block);
+            if ((int) crc.getValue() != checksum) {
+                LOG.warn("Skipping corrupt frame in message log: " + logFile);
+                return -1;
+            }
+
+            for (Message message : ConversationCodec.decode(block, blobs)) {
+                messageRecords.put(message.getId(), message);
+                records++;
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Replays a message log written as JSON lines by an earlier version.
+     * A malformed line is skipped.
+     *
+     * @param logFile        The log file
+     * @param messageRecords Receives the live messages by message ID, in message order
+     * @return -1 if the log exists, since it must be rewritten in the current format, otherwise 0
+     * @throws IOException If the log cannot be read
+     */
+    private static int replayJsonLog(Path logFile, Map<String, Message> messageRecords) throws IOException {
+        if (!Files.exists(logFile)) {
+            return 0;
+        }
+
+        try (BufferedReader reader = Files.newBufferedReader(logFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                try {
+                    JsonObject record = JsonParser.parseString(line).getAsJsonObject();
+                    if (OP_PUT.equals(record.get("op").getAsString())) {
+                        Message message = ConversationJson.messageFromJson(record.getAsJsonObject("message"));
+                        messageRecords.put(message.getId(), message);
+                    }
+                } catch (JsonParseException | IllegalStateException | NullPointerException e) {
+                    LOG.warn("Skipping malformed record in message log: " + logFile);
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Moves message contents and tool results above the threshold to the blob store.
+     * The last message is skipped since it may still be streaming.
+     *
+     * @param messages The messages
+     * @throws IOException If a blob cannot be written
+     */
+    private void spillLargeBodies(List<Message> messages) throws IOException {
+        for (int i = 0; i < messages.size() - 1; i++) {
+            Message message = messages.get(i);
+            if (message.getToolResultBlob() == null) {
+                JsonObject toolResult = message.getToolResult();
+                String json = toolResult != null ? toolResult.toString() : null;
+                if (json != null && json.length() >= blobThreshold) {
+                    message.spillToolResult(toolResult, blobs.put(json));
+                }
+            }
+            if (message.getContentBlob() == null) {
+                String content = message.getContent();
+                if (content != null && content.length() >= blobThreshold) {
+                    message.spillContent(content, blobs.put(content));
+                }
+            }
+        }
+    }
+
+    private static Set<String> collectBlobHashes(List<Message> messages) {
+        Set<String> hashes = new LinkedHashSet<>();
+        for (Message message : messages) {
+            ContentBlob contentBlob = message.getContentBlob();
+            if (contentBlob != null) {
+                hashes.add(contentBlob.getHash());
+            }
+            ContentBlob toolResultBlob = message.getToolResultBlob();
+            if (toolResultBlob != null) {
+                hashes.add(toolResultBlob.getHash());
+            }
+        }
+        return hashes;
+    }
+
+    private static Set<String> readBlobRefs(Path conversationDirectory) throws IOException {
+        Path refsFile = conversationDirectory.resolve(BLOB_REFS_FILE_NAME);
+        Set<String> hashes = new LinkedHashSet<>();
+        if (Files.exists(refsFile)) {
+            for (String line : Files.readAllLines(refsFile, StandardCharsets.UTF_8)) {
+                if (!line.isEmpty()) {
+                    hashes.add(line);
+                }
+            }
+        }
+        return hashes;
+    }
+
+    private static void rewriteLog(Path logFile, List<Message> messages) throws IOException {
+        byte[] frame = createFrame(ConversationCodec.encode(messages));
+        byte[] log = Arrays.copyOf(LOG_MAGIC, LOG_MAGIC.length + frame.length);
+        System.arraycopy(frame, 0, log, LOG_MAGIC.length, frame.length);
+        writeAtomically(logFile, log);
+    }
+
+    private static byte[] createFrame(byte[] block) {
+        CRC32 crc = new CRC32();
+        crc.update(block);
+        return ByteBuffer.allocate(FRAME_HEADER_SIZE + block.length)
+                .putInt(block.length)
+                .putInt((int) crc.getValue())
+                .put(block)
+                .array();
+    }
+
+    private static byte[] readBytes(ByteBuffer buffer, byte[] bytes) {
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    /**
+     * Writes a file by writing a temporary file next to it, forcing it to disk and renaming it,
+     * so a crash leaves either the old or the new content.
+     *
+     * @param file    The file
+     * @param content The content
+     * @throws IOException If the file cannot be written
+     */
+    static void writeAtomically(Path file, CharSequence content) throws IOException {
+        writeAtomically(file, StandardCharsets.UTF_8.encode(CharBuffer.wrap(content)));
+    }
+
+    /**
+     * Writes a binary file by writing a temporary file next to it, forcing it to disk and renaming it,
+     * so a crash leaves either the old or the new content.
+     *
+     * @param file    The file
+     * @param content The content
+     * @throws IOException If the file cannot be written
+     */
+    static void writeAtomically(Path file, byte[] content) throws IOException {
+        writeAtomically(file, ByteBuffer.wrap(content));
+    }
+
+    private static void writeAtomically(Path file, ByteBuffer buffer) throws IOException {
+        Path tempFile = Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            try {
+                Files.move(tempFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+
+    static void deleteRecursively(Path path) throws IOException {
+        if (!Files.exists(path)) {
+            return;
+        }
+
+        try (Stream<Path> paths = Files.walk(path)) {
+            List<Path> sorted = new ArrayList<>();
+            paths.forEach(sorted::add);
+            sorted.sort(Comparator.reverseOrder());
+            for (Path file : sorted) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    /**
+     * Gets the directory of a conversation.
+     * IDs that are not safe file names are mapped to a name derived from their hash.
+     *
+     * @param id The conversation ID
+     * @return The conversation directory
+     */
+    private Path getConversationDirectory(String id) {
+        if (id.matches("[A-Za-z0-9_-]+")) {
+            return directory.resolve(id);
+        }
+        return directory.resolve("c" + Long.toHexString(hash(id)));
+    }
+
+    /**
+     * 64-bit FNV-1a hash, used to derive directory names from conversation IDs.
+     *
+     * @param value The string to hash
+     * @return The hash
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * What was last written for a conversation.
+     */
+    private static class PersistedConversation {
+        private String header;
+        private Map<String, Long> messageHashes = new LinkedHashMap<>();
+        private Set<String> blobHashes = new LinkedHashSet<>();
+        private int logRecords = 0;
+    }
+}
@@ -0,0 +1,205 @@
+package com.cline.services.history;
+
+import com.cline.core.model.Conversation;
+import com.cline.core.model.Message;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Compact summary of a conversation, kept in the history index.
+ * Summaries are enough to list and sort the history without loading any messages.
+ */
+public final class ConversationSummary {
+    private final String id;
+    private final String title;
+    private final Instant createdAt;
+    private final Instant updatedAt;
+    private final int messageCount;
+    private final long inputTokens;
+    private final long outputTokens;
+    private final double cost;
+
+    /**
+     * Creates a new conversation summary.
+     *
+     * @param id           The conversation ID
+     * @param title        The conversation title, or null if not set
+     * @param createdAt    The creation timestamp
+     * @param updatedAt    The last update timestamp
+     * @param messageCount The number of messages
+     * @param inputTokens  The total number of input tokens
+     * @param outputTokens The total number of output tokens
+     * @param cost         The total cost
+     */
+    public ConversationSummary(@NotNull String id, @Nullable String title, @NotNull Instant createdAt,
+                               @NotNull Instant updatedAt, int messageCount, long inputTokens,
+                               long outputTokens, double cost) {
+        this.id = id;
+        this.title = title;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.messageCount = messageCount;
+        this.inputTokens = inputTokens;
+        this.outputTokens = outputTokens;
+        this.cost = cost;
+    }
+
+    /**
+     * Creates the summary of a conversation.
+     * Token counts and cost are summed from the {@code inputTokens}, {@code outputTokens} and {@code cost}
+     * metadata of the messages.
+     *
+     * @param conversation The conversation
+     * @param messages     The messages of the conversation
+     * @return The summary
+     */
+    @NotNull
+    public static ConversationSummary of(@NotNull Conversation conversation, @NotNull List<Message> messages) {
+        long inputTokens = 0;
+        long outputTokens = 0;
+        double cost = 0;
+        for (Message message : messages) {
+            JsonObject metadata = message.getMetadata();
+            inputTokens += getLong(metadata, "inputTokens");
+            outputTokens += getLong(metadata, "outputTokens");
+            cost += getDouble(metadata, "cost");
+        }
+
+        return new ConversationSummary(conversation.getId(), conversation.getTitle(), conversation.getCreatedAt(),
+                conversation.getUpdatedAt(), messages.size(), inputTokens, outputTokens, cost);
+    }
+
+    /**
+     * Converts the summary to its index entry.
+     *
+     * @return The JSON object
+     */
+    @NotNull
+    public JsonObject toJson() {
+        JsonObject json = new JsonObject();
+        json.addProperty("id", id);
+        if (title != null) {
+            json.addProperty("title", title);
+        }
+        json.addProperty("createdAt", createdAt.toString());
+        json.addProperty("updatedAt", updatedAt.toString());
+        json.addProperty("messageCount", messageCount);
+        json.addProperty("inputTokens", inputTokens);
+        json.addProperty("outputTokens", outputTokens);
+        json.addProperty("cost", cost);
+        return json;
+    }
+
+    /**
+     * Converts an index entry to a summary.
+     * Missing token counts and cost default to zero.
+     *
+     * @param json The JSON object
+     * @return The summary
+     */
+    @NotNull
+    public static ConversationSummary fromJson(@NotNull JsonObject json) {
+        return new ConversationSummary(
+                json.get("id").getAsString(),
+                json.has("title") ? json.get("title").getAsString() : null,
+                Instant.parse(json.get("createdAt").getAsString()),
+                Instant.parse(json.get("updatedAt").getAsString()),
+                (int) getLong(json, "messageCount"),
+                getLong(json, "inputTokens"),
+                getLong(json, "outputTokens"),
+                getDouble(json, "cost")
+        );
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    @Nullable
+    public String getTitle() {
+        return title;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    public long getInputTokens() {
+        return inputTokens;
+    }
+
+    public long getOutputTokens() {
+        return outputTokens;
+    }
+
+    /**
+     * Gets the total number of input and output tokens.
+     *
+     * @return The total number of tokens
+     */
+    public long getTotalTokens() {
+        return inputTokens + outputTokens;
+    }
+
+    public double getCost() {
+        return cost;
+    }
+
+    private static long getLong(JsonObject json, String key) {
+        JsonElement element = json.get(key);
+        return element != null && element.isJsonPrimitive() && element.getAsJsonPrimitive().isNumber()
+                ? element.getAsLong()
+                : 0;
+    }
+
+    private static double getDouble(JsonObject json, String key) {
+        JsonElement element = json.get(key);
+        return element != null && element.isJsonPrimitive() && element.getAsJsonPrimitive().isNumber()
+                ? element.getAsDouble()
+                : 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        ConversationSummary that = (ConversationSummary) o;
+        return messageCount == that.messageCount
+                && inputTokens == that.inputTokens
+                && outputTokens == that.outputTokens
+                && Double.compare(that.cost, cost) == 0
+                && id.equals(that.id)
+                && Objects.equals(title, that.title)
+                && createdAt.equals(that.createdAt)
+                && updatedAt.equals(that.updatedAt);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(id, title, createdAt, updatedAt, messageCount, inputTokens, outputTokens, cost);
+    }
+
+    @Override
+    public String toString() {
+        return "ConversationSummary{" +
+                "id='" + id + '\'' +
+                ", title='" + title + '\'' +
+                ", messageCount=" + messageCount +
+                ", updatedAt=" + updatedAt +
+                '}';
+    }
+}
@@ -0,0 +1,646 @@
+package com.cline.services.history;
+
+import com.cline.core.model.Conversation;
+import com.cline.core.model.Message;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over the conversation history.
+ * <p>
+ * Conversations are indexed by their title, message contents, tool names and the file paths passed to or
+ * returned by tools. The term dictionary is sorted, so the terms starting with a query prefix are found with a
+ * range lookup. Queries are ranked with a BM25-style score, exact term matches counting more than prefix matches,
+ * and only return conversations that match every query term.
+ * <p>
+ * Every conversation is a numbered document. Postings are kept as sorted arrays of document numbers and term
+ * frequencies, and every document keeps its terms, so reindexing a changed conversation only touches the postings
+ * of the terms that changed. Documents also remember the fingerprints of the messages they were indexed from, so a
+ * saved conversation only has its new or changed messages tokenized. The index is saved and loaded as a whole,
+ * without reading any conversation.
+ */
+public class HistorySearchIndex {
+    private static final int FORMAT_VERSION = 1;
+    private static final int MIN_TERM_LENGTH = 2;
+    private static final int MAX_TERM_LENGTH = 64;
+    private static final int TITLE_WEIGHT = 3;
+    private static final int TOOL_WEIGHT = 2;
+    private static final int PATH_WEIGHT = 2;
+    private static final double PREFIX_MATCH_FACTOR = 0.5;
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // Guarded by lock
+    private final TreeMap<String, Posting> dictionary = new TreeMap<>();
+    private final Map<String, Integer> documentNumbers = new HashMap<>();
+    private final List<Document> documents = new ArrayList<>();
+    private long totalLength = 0;
+    private volatile boolean dirty = false;
+
+    /**
+     * Indexes a conversation, replacing what was indexed for it before.
+     * Only the messages added or changed since the conversation was last indexed are tokenized. Messages are
+     * compared by their fingerprints, so unchanged messages are not read and their blobs are not loaded. The whole
+     * conversation is tokenized the first time it is indexed after loading, and when a message other than the
+     * last indexed one changed or was removed.
+     *
+     * @param conversation The conversation
+     */
+    public synchronized void update(@NotNull Conversation conversation) {
+        List<Message> messages = conversation.getMessages();
+        String[] messageIds = new String[messages.size()];
+        long[] fingerprints = new long[messages.size()];
+        for (int i = 0; i < messages.size(); i++) {
+            messageIds[i] = messages.get(i).getId();
+            fingerprints[i] = ConversationCodec.fingerprint(messages.get(i));
+        }
+
+        IndexedMessages previous = null;
+        Map<String, Integer> terms = null;
+        lock.readLock().lock();
+        try {
+            Integer number = documentNumbers.get(conversation.getId());
+            if (number != null && documents.get(number).indexed != null) {
+                previous = documents.get(number).indexed;
+                terms = documents.get(number).getTerms();
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        int start = previous != null ? previous.getUnchangedCount(messageIds, fingerprints) : -1;
+        boolean incremental = start >= 0;
+        if (incremental) {
+            if (start < previous.messageIds.length) {
+                // The last indexed message changed, e.g. while it was streamed
+                removeTerms(terms, previous.lastMessageTerms);
+            }
+            if (!Objects.equals(previous.title, conversation.getTitle())) {
+                Map<String, Integer> titleTerms = new HashMap<>();
+                addTerms(titleTerms, previous.title, TITLE_WEIGHT, MIN_TERM_LENGTH);
+                removeTerms(terms, titleTerms);
+                addTerms(terms, conversation.getTitle(), TITLE_WEIGHT, MIN_TERM_LENGTH);
+            }
+        } else {
+            start = 0;
+            terms = new HashMap<>();
+            addTerms(terms, conversation.getTitle(), TITLE_WEIGHT, MIN_TERM_LENGTH);
+        }
+
+        Map<String, Integer> lastMessageTerms = incremental && start == messages.size()
+                ? previous.lastMessageTerms : new HashMap<>();
+        for (int i = start; i < messages.size(); i++) {
+            lastMessageTerms = getMessageTerms(messages.get(i));
+            for (Map.Entry<String, Integer> entry : lastMessageTerms.entrySet()) {
+                terms.merge(entry.getKey(), entry.getValue(), Integer::sum);
+            }
+        }
+        IndexedMessages indexed = new IndexedMessages(conversation.getTitle(), messageIds, fingerprints,
+                lastMessageTerms);
+
+        lock.writeLock().lock();
+        try {
+            Integer number = documentNumbers.get(conversation.getId());
+            if (number == null) {
+                number = documents.size();
+                documents.add(new Document(conversation.getId()));
+                documentNumbers.put(conversation.getId(), number);
+            }
+            if (updateDocument(number, terms, indexed)) {
+                dirty = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a conversation from the index.
+     *
+     * @param id The conversation ID
+     */
+    public void remove(@NotNull String id) {
+        lock.writeLock().lock();
+        try {
+            Integer number = documentNumbers.remove(id);
+            if (number != null) {
+                updateDocument(number, new HashMap<>(), null);
+                documents.set(number, null);
+                dirty = true;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes all conversations from the index.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            dictionary.clear();
+            documentNumbers.clear();
+            documents.clear();
+            totalLength = 0;
+            dirty = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Checks whether a conversation is indexed.
+     *
+     * @param id The conversation ID
+     * @return True if the conversation is indexed
+     */
+    public boolean contains(@NotNull String id) {
+        lock.readLock().lock();
+        try {
+            return documentNumbers.containsKey(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the IDs of the indexed conversations.
+     *
+     * @return The conversation IDs
+     */
+    @NotNull
+    public Set<String> getIds() {
+        lock.readLock().lock();
+        try {
+            return new HashSet<>(documentNumbers.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Searches the index.
+     * Every term of the query must match a term of a conversation exactly or as a prefix.
+     *
+     * @param query The query
+     * @param limit The maximum number of results
+     * @return The IDs of the matching conversations, best match first
+     */
+    @NotNull
+    public List<String> search(@NotNull String query, int limit) {
+        Map<String, Integer> parsed = new HashMap<>();
+        addTerms(parsed, query, 1, 1);
+        List<String> queryTerms = new ArrayList<>(parsed.keySet());
+        if (queryTerms.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        lock.readLock().lock();
+        try {
+            int documentCount = documentNumbers.size();
+            double averageLength = documentCount > 0 ? (double) totalLength / documentCount : 1;
+            double[] scores = new double[documents.size()];
+            // The number of query terms a document matched so far; documents that missed one are skipped
+            int[] matchedTerms = new int[documents.size()];
+            for (int i = 0; i < queryTerms.size(); i++) {
+                String queryTerm = queryTerms.get(i);
+                boolean matched = false;
+                for (Posting posting : dictionary.subMap(queryTerm, queryTerm + Character.MAX_VALUE).values()) {
+                    double idf = Math.log(1 + (documentCount - posting.size + 0.5) / (posting.size + 0.5));
+                    double factor = posting.term.equals(queryTerm) ? 1 : PREFIX_MATCH_FACTOR;
+                    for (int j = 0; j < posting.size; j++) {
+                        int number = posting.documents[j];
+                        if (matchedTerms[number] == i) {
+                            matchedTerms[number] = i + 1;
+                        } else if (matchedTerms[number] != i + 1) {
+                            continue;
+                        }
+                        double tf = posting.frequencies[j];
+                        double length = documents.get(number).length;
+                        scores[number] += factor * idf * tf * (K1 + 1) / (tf + K1 * (1 - B + B * length / averageLength));
+                        matched = true;
+                    }
+                }
+                if (!matched) {
+                    return new ArrayList<>();
+                }
+            }
+
+            List<Integer> ranked = new ArrayList<>();
+            for (int number = 0; number < matchedTerms.length; number++) {
+                if (matchedTerms[number] == queryTerms.size()) {
+                    ranked.add(number);
+                }
+            }
+            ranked.sort((a, b) -> Double.compare(scores[b], scores[a]));
+            List<String> result = new ArrayList<>(Math.min(limit, ranked.size()));
+            for (int i = 0; i < ranked.size() && i < limit; i++) {
+                result.add(documents.get(ranked.get(i)).id);
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Checks whether the index changed since it was last saved or loaded.
+     *
+     * @return True if the index changed
+     */
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    /**
+     * Saves the index.
+     * The file lists the conversation IDs followed by the posting list of every term.
+     *
+     * @param file The index file
+     * @throws IOException If the file cannot be written
+     */
+    public void save(@NotNull Path file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            // Documents are renumbered without the gaps left by removed conversations
+            int[] savedNumbers = new int[documents.size()];
+            out.writeInt(FORMAT_VERSION);
+            writeVarInt(out, documentNumbers.size());
+            int savedNumber = 0;
+            for (int number = 0; number < documents.size(); number++) {
+                Document document = documents.get(number);
+                if (document != null) {
+                    out.writeUTF(document.id);
+                    savedNumbers[number] = savedNumber++;
+                }
+            }
+
+            writeVarInt(out, dictionary.size());
+            for (Posting posting : dictionary.values()) {
+                out.writeUTF(posting.term);
+                writeVarInt(out, posting.size);
+                int previous = 0;
+                for (int i = 0; i < posting.size; i++) {
+                    int number = savedNumbers[posting.documents[i]];
+                    writeVarInt(out, number - previous);
+                    writeVarInt(out, posting.frequencies[i]);
+                    previous = number;
+                }
+            }
+            dirty = false;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Files.createDirectories(file.getParent());
+        ConversationStore.writeAtomically(file, bytes.toByteArray());
+    }
+
+    /**
+     * Loads a saved index, replacing the current content.
+     *
+     * @param file The index file
+     * @return True if the index was loaded, false if the file does not exist or was written by another version
+     * @throws IOException If the file cannot be read or is corrupt
+     */
+    public boolean load(@NotNull Path file) throws IOException {
+        List<Document> loadedDocuments = new ArrayList<>();
+        TreeMap<String, Posting> loadedDictionary = new TreeMap<>();
+        try (InputStream input = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(input))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return false;
+            }
+
+            int documentCount = readVarInt(in);
+            for (int i = 0; i < documentCount; i++) {
+                loadedDocuments.add(new Document(in.readUTF()));
+            }
+
+            int termCount = readVarInt(in);
+            for (int i = 0; i < termCount; i++) {
+                String term = in.readUTF();
+                int size = readVarInt(in);
+                Posting posting = new Posting(term, size);
+                int number = 0;
+                for (int j = 0; j < size; j++) {
+                    number += readVarInt(in);
+                    int frequency = readVarInt(in);
+                    posting.documents[j] = number;
+                    posting.frequencies[j] = frequency;
+                    loadedDocuments.get(number).addTerm(term, frequency);
+                }
+                posting.size = size;
+                loadedDictionary.put(term, posting);
+            }
+        } catch (NoSuchFileException e) {
+            return false;
+        } catch (IndexOutOfBoundsException | NegativeArraySizeException e) {
+            throw new IOException("Corrupt search index: " + file, e);
+        }
+
+        lock.writeLock().lock();
+        try {
+            dictionary.clear();
+            dictionary.putAll(loadedDictionary);
+            documents.clear();
+            documentNumbers.clear();
+            totalLength = 0;
+            for (Document document : loadedDocuments) {
+                document.trim();
+                documentNumbers.put(document.id, documents.size());
+                documents.add(document);
+                totalLength += document.length;
+            }
+            dirty = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Splits text into lowercase terms at every character that is not a letter or digit,
+     * so file paths are split into their directory and file name parts.
+     *
+     * @param text The text
+     * @return The number of occurrences of every term
+     */
+    @NotNull
+    static Map<String, Integer> tokenize(@Nullable String text) {
+        Map<String, Integer> terms = new HashMap<>();
+        addTerms(terms, text, 1, MIN_TERM_LENGTH);
+        return terms;
+    }
+
+    private static void addTerms(Map<String, Integer> terms, @Nullable String text, int weight, int minLength) {
+        if (text == null) {
+            return;
+        }
+
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean termChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (termChar && start < 0) {
+                start = i;
+            } else if (!termChar && start >= 0) {
+                int length = i - start;
+                if (length >= minLength && length <= MAX_TERM_LENGTH) {
+                    terms.merge(text.substring(start, i).toLowerCase(Locale.ROOT), weight, Integer::sum);
+                }
+                start = -1;
+            }
+        }
+    }
+
+    private static Map<String, Integer> getMessageTerms(Message message) {
+        Map<String, Integer> terms = new HashMap<>();
+        addTerms(terms, message.getContent(), 1, MIN_TERM_LENGTH);
+        addTerms(terms, message.getToolName(), TOOL_WEIGHT, MIN_TERM_LENGTH);
+        addPath(terms, message.getToolInput());
+        addPath(terms, message.getToolResult());
+        return terms;
+    }
+
+    private static void removeTerms(Map<String, Integer> terms, Map<String, Integer> removed) {
+        for (Map.Entry<String, Integer> entry : removed.entrySet()) {
+            terms.computeIfPresent(entry.getKey(), (term, frequency) ->
+                    frequency > entry.getValue() ? frequency - entry.getValue() : null);
+        }
+    }
+
+    private static void addPath(Map<String, Integer> terms, @Nullable JsonObject json) {
+        if (json == null) {
+            return;
+        }
+        JsonElement path = json.get("path");
+        if (path != null && path.isJsonPrimitive()) {
+            addTerms(terms, path.getAsString(), PATH_WEIGHT, MIN_TERM_LENGTH);
+        }
+    }
+
+    /**
+     * Replaces the terms of a document, updating only the postings of the terms that changed.
+     *
+     * @param number  The document number
+     * @param terms   The new term frequencies
+     * @param indexed The messages the terms were taken from, or null if unknown
+     * @return True if anything changed
+     */
+    private boolean updateDocument(int number, Map<String, Integer> terms, @Nullable IndexedMessages indexed) {
+        Document document = documents.get(number);
+        boolean changed = false;
+        Set<String> existing = new HashSet<>(document.termCount * 4 / 3 + 1);
+        for (int i = 0; i < document.termCount; i++) {
+            String term = document.terms[i];
+            existing.add(term);
+            Integer frequency = terms.get(term);
+            if (frequency == null) {
+                Posting posting = dictionary.get(term);
+                posting.remove(number);
+                if (posting.size == 0) {
+                    dictionary.remove(term);
+                }
+                changed = true;
+            } else if (frequency != document.frequencies[i]) {
+                dictionary.get(term).put(number, frequency);
+                changed = true;
+            }
+        }
+
+        Document updated = new Document(document.id);
+        for (Map.Entry<String, Integer> entry : terms.entrySet()) {
+            String term = entry.getKey();
+            Posting posting = dictionary.get(term);
+            if (!existing.contains(term)) {
+                if (posting == null) {
+                    posting = new Posting(term, 1);
+                    dictionary.put(term, posting);
+                }
+                posting.put(number, entry.getValue());
+                changed = true;
+            }
+            // Share the dictionary's instance of the term
+            updated.addTerm(posting.term, entry.getValue());
+        }
+
+        updated.trim();
+        updated.indexed = indexed;
+        totalLength += updated.length - document.length;
+        documents.set(number, updated);
+        return changed;
+    }
+
+    private static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInput in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed variable-length integer");
+    }
+
+    /**
+     * The documents containing a term, sorted by document number, with the frequency of the term in each.
+     */
+    private static class Posting {
+        private final String term;
+        private int[] documents;
+        private int[] frequencies;
+        private int size = 0;
+
+        private Posting(String term, int capacity) {
+            this.term = term;
+            this.documents = new int[Math.max(1, capacity)];
+            this.frequencies = new int[documents.length];
+        }
+
+        private void put(int document, int frequency) {
+            int index = Arrays.binarySearch(documents, 0, size, document);
+            if (index >= 0) {
+                frequencies[index] = frequency;
+                return;
+            }
+
+            index = -index - 1;
+            if (size == documents.length) {
+                documents = Arrays.copyOf(documents, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            System.arraycopy(documents, index, documents, index + 1, size - index);
+            System.arraycopy(frequencies, index, frequencies, index + 1, size - index);
+            documents[index] = document;
+            frequencies[index] = frequency;
+            size++;
+        }
+
+        private void remove(int document) {
+            int index = Arrays.binarySearch(documents, 0, size, document);
+            if (index < 0) {
+                return;
+            }
+            System.arraycopy(documents, index + 1, documents, index, size - index - 1);
+            System.arraycopy(frequencies, index + 1, frequencies, index, size - index - 1);
+            size--;
+        }
+    }
+
+    /**
+     * The terms of an indexed conversation.
+     */
+    private static class Document {
+        private final String id;
+        private String[] terms = new String[8];
+        private int[] frequencies = new int[8];
+        private int termCount = 0;
+        private int length = 0;
+        // Not saved, so a loaded document is tokenized again on its next update
+        private IndexedMessages indexed;
+
+        private Document(String id) {
+            this.id = id;
+        }
+
+        private Map<String, Integer> getTerms() {
+            Map<String, Integer> map = new HashMap<>(termCount * 4 / 3 + 1);
+            for (int i = 0; i < termCount; i++) {
+                map.put(terms[i], frequencies[i]);
+            }
+            return map;
+        }
+
+        private void addTerm(String term, int frequency) {
+            if (termCount == terms.length) {
+                terms = Arrays.copyOf(terms, Math.max(8, termCount * 2));
+                frequencies = Arrays.copyOf(frequencies, terms.length);
+            }
+            terms[termCount] = term;
+            frequencies[termCount] = frequency;
+            termCount++;
+            length += frequency;
+        }
+
+        private void trim() {
+            terms = Arrays.copyOf(terms, termCount);
+            frequencies = Arrays.copyOf(frequencies, termCount);
+        }
+    }
+
+    /**
+     * The messages a document was last indexed from, used to tokenize only what changed on the next update.
+     * The terms of the last message are kept, as it is the one that changes while a response is streamed.
+     */
+    private static class IndexedMessages {
+        private final String title;
+        private final String[] messageIds;
+        private final long[] fingerprints;
+        private final Map<String, Integer> lastMessageTerms;
+
+        private IndexedMessages(String title, String[] messageIds, long[] fingerprints,
+                                Map<String, Integer> lastMessageTerms) {
+            this.title = title;
+            this.messageIds = messageIds;
+            this.fingerprints = fingerprints;
+            this.lastMessageTerms = lastMessageTerms;
+        }
+
+        /**
+         * Gets the number of leading messages that are unchanged, if only new messages were added after them.
+         *
+         * @param ids          The IDs of the current messages
+         * @param fingerprints The fingerprints of the current messages
+         * @return The number of unchanged messages, or -1 if the conversation must be tokenized again
+         */
+        private int getUnchangedCount(String[] ids, long[] fingerprints) {
+            int count = 0;
+            while (count < messageIds.length && count < ids.length
+                    && messageIds[count].equals(ids[count]) && this.fingerprints[count] == fingerprints[count]) {
+                count++;
+            }
+            if (count == messageIds.length || (count == messageIds.length - 1 && ids.length >= messageIds.length)) {
+                return count;
+            }
+            return -1;
+        }
+    }
+}
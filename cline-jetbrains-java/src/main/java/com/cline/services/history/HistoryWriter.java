@@ -0,0 +1,326 @@
+package com.cline.services.history;
+
+import com.cline.core.model.Conversation;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Single writer for a {@link ConversationStore}.
+ * <p>
+ * Changes are recorded as pending operations and written by one background thread once no change has been made
+ * for the debounce delay, or at the latest after the maximum delay while changes keep coming in. Pending operations
+ * for the same conversation are coalesced, so a conversation that is updated many times in a row, e.g. while a
+ * response is streamed, is written once. Only the writer thread writes to the store.
+ * A {@link Listener} is notified on the writer thread of everything that has been written.
+ */
+public class HistoryWriter {
+    private static final Logger LOG = Logger.getInstance(HistoryWriter.class);
+    private static final long CLOSE_TIMEOUT_SECONDS = 10;
+
+    private final ConversationStore store;
+    private final long debounceMillis;
+    private final long maxDelayMillis;
+    private final Listener listener;
+    private final ScheduledExecutorService executor;
+
+    // Guarded by this
+    private final Map<String, PendingOperation> pending = new LinkedHashMap<>();
+    private final List<CompletableFuture<Void>> pendingDeleteAllFutures = new ArrayList<>();
+    private boolean pendingDeleteAll = false;
+    private boolean flushScheduled = false;
+    private boolean closed = false;
+    private long firstChangeTime;
+    private long lastChangeTime;
+
+    /**
+     * Creates a new history writer.
+     *
+     * @param store          The store to write to
+     * @param debounceMillis The time without changes after which pending changes are written
+     * @param maxDelayMillis The maximum time a change stays pending while changes keep coming in
+     */
+    public HistoryWriter(@NotNull ConversationStore store, long debounceMillis, long maxDelayMillis) {
+        this(store, debounceMillis, maxDelayMillis, new Listener() {});
+    }
+
+    /**
+     * Creates a new history writer.
+     *
+     * @param store          The store to write to
+     * @param debounceMillis The time without changes after which pending changes are written
+     * @param maxDelayMillis The maximum time a change stays pending while changes keep coming in
+     * @param listener       Notified of everything that has been written
+     */
+    public HistoryWriter(@NotNull ConversationStore store, long debounceMillis, long maxDelayMillis,
+                         @NotNull Listener listener) {
+        this.store = store;
+        this.listener = listener;
+        this.debounceMillis = debounceMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Cline history writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Schedules a conversation to be saved.
+     * The conversation is read when it is written, so the latest state is saved.
+     *
+     * @param conversation The conversation
+     * @return A CompletableFuture that completes when the conversation has been written
+     */
+    public CompletableFuture<Void> save(@NotNull Conversation conversation) {
+        return enqueue(conversation.getId(), conversation);
+    }
+
+    /**
+     * Schedules a conversation to be deleted, discarding any pending save of it.
+     *
+     * @param id The conversation ID
+     * @return A CompletableFuture that completes when the conversation has been deleted
+     */
+    public CompletableFuture<Void> delete(@NotNull String id) {
+        return enqueue(id, null);
+    }
+
+    /**
+     * Schedules all conversations to be deleted, discarding all pending operations.
+     * Conversations saved after this call are written after the deletion.
+     *
+     * @return A CompletableFuture that completes when the conversations have been deleted
+     */
+    public CompletableFuture<Void> deleteAll() {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        synchronized (this) {
+            if (closed) {
+                return CompletableFuture.failedFuture(new IllegalStateException("History writer is closed"));
+            }
+            for (PendingOperation operation : pending.values()) {
+                pendingDeleteAllFutures.addAll(operation.futures);
+            }
+            pending.clear();
+            pendingDeleteAll = true;
+            pendingDeleteAllFutures.add(future);
+            scheduleFlush();
+        }
+        return future;
+    }
+
+    /**
+     * Runs a task on the writer thread, after the operations that are currently being written.
+     *
+     * @param task The task
+     * @return A CompletableFuture that completes when the task has run
+     */
+    public CompletableFuture<Void> execute(@NotNull Runnable task) {
+        try {
+            return CompletableFuture.runAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Writes all pending operations now and waits until they have been written.
+     */
+    public void flush() {
+        try {
+            executor.submit(this::writePending).get(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            LOG.warn("Error flushing conversation history", e);
+        }
+    }
+
+    /**
+     * Writes all pending operations and stops the writer thread.
+     * Operations scheduled afterwards fail.
+     */
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        flush();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Gets the number of conversations with pending operations.
+     *
+     * @return The number of conversations
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    private CompletableFuture<Void> enqueue(String id, Conversation conversation) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        synchronized (this) {
+            if (closed) {
+                return CompletableFuture.failedFuture(new IllegalStateException("History writer is closed"));
+            }
+            PendingOperation operation = pending.computeIfAbsent(id, key -> new PendingOperation());
+            operation.conversation = conversation;
+            operation.futures.add(future);
+            scheduleFlush();
+        }
+        return future;
+    }
+
+    /**
+     * Records a change and makes sure a flush is scheduled. Must be called while holding the lock.
+     */
+    private void scheduleFlush() {
+        long now = System.currentTimeMillis();
+        lastChangeTime = now;
+        if (!flushScheduled) {
+            flushScheduled = true;
+            firstChangeTime = now;
+            executor.schedule(this::onFlushTimer, debounceMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Writes the pending operations, unless changes are still coming in and the maximum delay has not passed,
+     * in which case the timer is rescheduled.
+     */
+    private void onFlushTimer() {
+        synchronized (this) {
+            long now = System.currentTimeMillis();
+            long quietDeadline = lastChangeTime + debounceMillis;
+            long maxDeadline = firstChangeTime + maxDelayMillis;
+            if (now < quietDeadline && now < maxDeadline) {
+                executor.schedule(this::onFlushTimer, Math.min(quietDeadline, maxDeadline) - now, TimeUnit.MILLISECONDS);
+                return;
+            }
+        }
+        writePending();
+    }
+
+    /**
+     * Takes the pending operations and writes them. Only runs on the writer thread.
+     */
+    private void writePending() {
+        boolean deleteAll;
+        List<CompletableFuture<Void>> deleteAllFutures;
+        Map<String, PendingOperation> operations;
+        synchronized (this) {
+            deleteAll = pendingDeleteAll;
+            deleteAllFutures = new ArrayList<>(pendingDeleteAllFutures);
+            operations = new LinkedHashMap<>(pending);
+            pendingDeleteAll = false;
+            pendingDeleteAllFutures.clear();
+            pending.clear();
+            flushScheduled = false;
+        }
+
+        if (deleteAll) {
+            try {
+                store.deleteAll();
+                listener.historyCleared();
+                complete(deleteAllFutures, null);
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Error clearing conversation history", e);
+                complete(deleteAllFutures, e);
+            }
+        }
+
+        for (Map.Entry<String, PendingOperation> entry : operations.entrySet()) {
+            PendingOperation operation = entry.getValue();
+            try {
+                if (operation.conversation != null) {
+                    store.save(operation.conversation);
+                    listener.conversationSaved(operation.conversation);
+                } else {
+                    store.delete(entry.getKey());
+                    listener.conversationDeleted(entry.getKey());
+                }
+                complete(operation.futures, null);
+            } catch (IOException | RuntimeException e) {
+                LOG.warn("Error writing conversation to history: " + entry.getKey(), e);
+                complete(operation.futures, e);
+            }
+        }
+
+        if (deleteAll || !operations.isEmpty()) {
+            try {
+                listener.flushed();
+            } catch (RuntimeException e) {
+                LOG.warn("Error in history writer listener", e);
+            }
+        }
+    }
+
+    private static void complete(List<CompletableFuture<Void>> futures, Throwable error) {
+        for (CompletableFuture<Void> future : futures) {
+            if (error == null) {
+                future.complete(null);
+            } else {
+                future.completeExceptionally(error);
+            }
+        }
+    }
+
+    /**
+     * Notified on the writer thread of what has been written.
+     */
+    public interface Listener {
+        /**
+         * Called after a conversation has been saved.
+         *
+         * @param conversation The conversation
+         */
+        default void conversationSaved(@NotNull Conversation conversation) {
+        }
+
+        /**
+         * Called after a conversation has been deleted.
+         *
+         * @param id The conversation ID
+         */
+        default void conversationDeleted(@NotNull String id) {
+        }
+
+        /**
+         * Called after all conversations have been deleted.
+         */
+        default void historyCleared() {
+        }
+
+        /**
+         * Called after a batch of pending operations has been written.
+         */
+        default void flushed() {
+        }
+    }
+
+    /**
+     * The latest pending operation for a conversation.
+     */
+    private static class PendingOperation {
+        /**
+         * The conversation to save, or null to delete it.
+         */
+        private Conversation conversation;
+        private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+    }
+}
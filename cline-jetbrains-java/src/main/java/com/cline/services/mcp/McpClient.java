@@ -0,0 +1,427 @@
+package com.cline.services.mcp;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.util.SystemInfo;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * JSON-RPC 2.0 connection to an MCP server process over its stdin and stdout.
+ * <p>
+ * Requests are written by a writer thread, so callers never block on a full pipe, and responses are read by a
+ * reader thread and matched to their requests by ID, so any number of requests can be in flight at once. To keep
+ * a slow server from being flooded, at most {@code maxInFlight} requests are sent before earlier ones are answered;
+ * further requests wait in a queue until a response arrives. Requests that time out are cancelled on the server.
+ * <p>
+ * Continuations of the returned futures run on the reader thread unless an async stage is used, so they must not
+ * block.
+ */
+public class McpClient {
+    private static final Logger LOG = Logger.getInstance(McpClient.class);
+    private static final Gson GSON = new Gson();
+    static final int DEFAULT_MAX_IN_FLIGHT = 32;
+    static final long MAX_MESSAGE_LENGTH = 256L * 1024 * 1024;
+    private static final long STOP_TIMEOUT_MILLIS = 2000;
+
+    private final String name;
+    private final Process process;
+    private final Writer stdin;
+    private final ExecutorService writer;
+    private final int maxInFlight;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final Map<Long, PendingRequest> pending = new ConcurrentHashMap<>();
+    private final Object lock = new Object();
+    // Guarded by lock
+    private final Deque<PendingRequest> queued = new ArrayDeque<>();
+    private int inFlight = 0;
+    private volatile boolean closed = false;
+    private volatile BiConsumer<String, JsonElement> notificationHandler = (method, params) -> { };
+
+    private McpClient(@NotNull String name, @NotNull Process process, int maxInFlight) {
+        this.name = name;
+        this.process = process;
+        this.stdin = new OutputStreamWriter(new BufferedOutputStream(process.getOutputStream()), StandardCharsets.UTF_8);
+        this.maxInFlight = maxInFlight;
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Cline MCP writer " + name);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts the server process and connects to it.
+     *
+     * @param name        The server name, used in thread names and logs
+     * @param config      The server configuration, with the command, its arguments and environment variables
+     * @param maxInFlight The maximum number of requests sent before earlier ones are answered
+     * @return The connected client
+     * @throws IOException If the process cannot be started
+     */
+    @NotNull
+    public static McpClient start(@NotNull String name, @NotNull McpServerConfig config, int maxInFlight) throws IOException {
+        if (config.getCommand() == null || config.getCommand().isEmpty()) {
+            throw new IOException("No command configured for MCP server: " + name);
+        }
+
+        List<String> command = new ArrayList<>();
+        if (SystemInfo.isWindows) {
+            // Commands such as npx are batch files, which only cmd can run
+            command.add("cmd.exe");
+            command.add("/c");
+        }
+        command.add(config.getCommand());
+        if (config.getArgs() != null) {
+            command.addAll(Arrays.asList(config.getArgs()));
+        }
+
+        ProcessBuilder builder = new ProcessBuilder(command);
+        if (config.getEnv() != null) {
+            builder.environment().putAll(config.getEnv());
+        }
+
+        McpClient client = new McpClient(name, builder.start(), maxInFlight);
+        client.startThread("Cline MCP reader " + name, client::readMessages);
+        client.startThread("Cline MCP log " + name, client::logErrors);
+        client.process.onExit().thenAccept(exited -> client.processExited());
+        return client;
+    }
+
+    /**
+     * Sets the handler for notifications from the server.
+     *
+     * @param handler The handler, called on the reader thread with the method and the parameters
+     */
+    public void setNotificationHandler(@NotNull BiConsumer<String, JsonElement> handler) {
+        this.notificationHandler = handler;
+    }
+
+    /**
+     * Sends a request.
+     *
+     * @param method        The method
+     * @param params        The parameters, or null for none
+     * @param timeoutMillis The time after which the request fails and is cancelled, or 0 for no timeout
+     * @return A CompletableFuture containing the result
+     */
+    @NotNull
+    public CompletableFuture<JsonElement> request(@NotNull String method, @Nullable JsonObject params, long timeoutMillis) {
+        if (closed) {
+            return CompletableFuture.failedFuture(new IllegalStateException("MCP server is not running: " + name));
+        }
+
+        PendingRequest request = new PendingRequest(nextId.getAndIncrement(), method, params);
+        pending.put(request.id, request);
+        if (timeoutMillis > 0) {
+            request.future.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        boolean send;
+        synchronized (lock) {
+            send = inFlight < maxInFlight;
+            if (send) {
+                inFlight++;
+            } else {
+                queued.add(request);
+            }
+        }
+        request.future.whenComplete((result, e) -> requestCompleted(request, e));
+        if (send) {
+            send(request);
+        }
+        return request.future;
+    }
+
+    /**
+     * Sends a notification.
+     *
+     * @param method The method
+     * @param params The parameters, or null for none
+     */
+    public void sendNotification(@NotNull String method, @Nullable JsonObject params) {
+        JsonObject message = new JsonObject();
+        message.addProperty("jsonrpc", "2.0");
+        message.addProperty("method", method);
+        if (params != null) {
+            message.add("params", params);
+        }
+        write(message);
+    }
+
+    /**
+     * Checks if the server process is running and the connection is open.
+     *
+     * @return True if the client can send requests, false otherwise
+     */
+    public boolean isAlive() {
+        return !closed && process.isAlive();
+    }
+
+    /**
+     * Gets the number of requests that have not been answered yet, including queued ones.
+     *
+     * @return The number of pending requests
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Closes the connection and stops the server. Closing stdin asks the server to exit; it is killed if it
+     * does not exit in time. Pending requests fail.
+     *
+     * @return A CompletableFuture that completes when the process has exited
+     */
+    @NotNull
+    public CompletableFuture<Void> close() {
+        if (!closed) {
+            closed = true;
+            writer.execute(() -> {
+                try {
+                    stdin.close();
+                } catch (IOException e) {
+                    LOG.debug("Failed to close stdin of MCP server " + name + ": " + e.getMessage());
+                }
+            });
+            writer.shutdown();
+            failAll(new IllegalStateException("MCP server stopped: " + name));
+        }
+
+        return process.onExit()
+                .completeOnTimeout(null, STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                .thenCompose(exited -> {
+                    if (exited != null) {
+                        return CompletableFuture.<Void>completedFuture(null);
+                    }
+                    LOG.info("MCP server " + name + " did not exit, killing it");
+                    process.destroyForcibly();
+                    return process.onExit().thenApply(p -> (Void) null);
+                });
+    }
+
+    private void send(PendingRequest request) {
+        if (request.future.isDone()) {
+            // Cancelled or timed out while it was queued; requestCompleted passes its slot on
+            return;
+        }
+        JsonObject message = new JsonObject();
+        message.addProperty("jsonrpc", "2.0");
+        message.addProperty("id", request.id);
+        message.addProperty("method", request.method);
+        if (request.params != null) {
+            message.add("params", request.params);
+        }
+        request.sent = true;
+        write(message);
+    }
+
+    private void write(JsonObject message) {
+        if (closed) {
+            return;
+        }
+        try {
+            writer.execute(() -> {
+                try {
+                    JsonWriter jsonWriter = new JsonWriter(stdin);
+                    GSON.toJson(message, jsonWriter);
+                    stdin.write('\n');
+                    stdin.flush();
+                } catch (IOException e) {
+                    if (!closed) {
+                        LOG.warn("Failed to write to MCP server " + name, e);
+                        failAll(e);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The client was closed concurrently
+        }
+    }
+
+    private void requestCompleted(PendingRequest request, @Nullable Throwable error) {
+        pending.remove(request.id);
+        if (request.sent && error instanceof TimeoutException) {
+            JsonObject params = new JsonObject();
+            params.addProperty("requestId", request.id);
+            params.addProperty("reason", "Request timed out");
+            sendNotification("notifications/cancelled", params);
+        }
+
+        // A request that is answered or was never sent frees its slot for the next queued request
+        PendingRequest next;
+        synchronized (lock) {
+            if (!request.sent && queued.remove(request)) {
+                return;
+            }
+            next = queued.poll();
+            if (next == null) {
+                inFlight--;
+            }
+        }
+        if (next != null) {
+            send(next);
+        }
+    }
+
+    private void readMessages() {
+        McpMessageReader reader = new McpMessageReader(process.getInputStream(),
+                McpMessageReader.DEFAULT_BUFFER_SIZE, MAX_MESSAGE_LENGTH);
+        try {
+            JsonElement message;
+            while ((message = reader.readMessage()) != null) {
+                if (message.isJsonObject()) {
+                    handleMessage(message.getAsJsonObject());
+                } else {
+                    LOG.warn("Ignoring MCP message that is not an object from " + name);
+                }
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                LOG.warn("Failed to read from MCP server " + name, e);
+            }
+        }
+    }
+
+    private void handleMessage(JsonObject message) {
+        JsonElement id = message.get("id");
+        JsonElement method = message.get("method");
+
+        if (method != null && method.isJsonPrimitive()) {
+            if (id != null && !id.isJsonNull()) {
+                handleServerRequest(id, method.getAsString());
+            } else {
+                try {
+                    notificationHandler.accept(method.getAsString(), message.get("params"));
+                } catch (Exception e) {
+                    LOG.error("MCP notification handler failed", e);
+                }
+            }
+            return;
+        }
+
+        if (id == null || !id.isJsonPrimitive() || !id.getAsJsonPrimitive().isNumber()) {
+            LOG.warn("Ignoring MCP response without a valid ID from " + name);
+            return;
+        }
+        PendingRequest request = pending.get(id.getAsLong());
+        if (request == null) {
+            // The request timed out or was cancelled
+            return;
+        }
+
+        JsonElement error = message.get("error");
+        if (error != null && !error.isJsonNull()) {
+            request.future.completeExceptionally(new IllegalStateException(
+                    "MCP server " + name + " failed " + request.method + ": " + describeError(error)));
+        } else {
+            JsonElement result = message.get("result");
+            request.future.complete(result != null ? result : JsonNull.INSTANCE);
+        }
+    }
+
+    /**
+     * Answers a request the server sends to the client. Only pings are supported.
+     */
+    private void handleServerRequest(JsonElement id, String method) {
+        JsonObject response = new JsonObject();
+        response.addProperty("jsonrpc", "2.0");
+        response.add("id", id);
+        if ("ping".equals(method)) {
+            response.add("result", new JsonObject());
+        } else {
+            JsonObject error = new JsonObject();
+            error.addProperty("code", -32601);
+            error.addProperty("message", "Method not found: " + method);
+            response.add("error", error);
+        }
+        write(response);
+    }
+
+    private static String describeError(JsonElement error) {
+        if (!error.isJsonObject()) {
+            return error.toString();
+        }
+        JsonObject object = error.getAsJsonObject();
+        JsonElement message = object.get("message");
+        JsonElement code = object.get("code");
+        return (message != null && message.isJsonPrimitive() ? message.getAsString() : object.toString())
+                + (code != null ? " (" + code + ")" : "");
+    }
+
+    private void logErrors() {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                LOG.info("MCP server " + name + ": " + line);
+            }
+        } catch (IOException e) {
+            // The process exited
+        }
+    }
+
+    private void processExited() {
+        if (!closed) {
+            LOG.warn("MCP server " + name + " exited with code " + process.exitValue());
+            closed = true;
+            writer.shutdown();
+        }
+        failAll(new IllegalStateException("MCP server exited: " + name));
+    }
+
+    private void failAll(Throwable error) {
+        for (PendingRequest request : pending.values()) {
+            request.future.completeExceptionally(error);
+        }
+    }
+
+    private void startThread(String threadName, Runnable runnable) {
+        Thread thread = new Thread(runnable, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * A request that has not been answered yet.
+     */
+    private static final class PendingRequest {
+        final long id;
+        final String method;
+        final JsonObject params;
+        final CompletableFuture<JsonElement> future = new CompletableFuture<>();
+        volatile boolean sent = false;
+
+        PendingRequest(long id, String method, @Nullable JsonObject params) {
+            this.id = id;
+            this.method = method;
+            this.params = params;
+        }
+    }
+}
@@ -4,27 +4,86 @@ import com.google.gson.JsonObject;
 import com.intellij.openapi.diagnostic.Logger;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
 import java.util.stream.Collectors;
 
 /**
  * Hub for managing MCP servers.
+ * Servers are started in parallel in the background, so registering a server never waits for its process. A
+ * supervisor checks the servers periodically, restarting those that crashed or hang and stopping those that are
+ * not used; see {@link SupervisedMcpServer}.
  */
 public class McpHub {
     private static final Logger LOG = Logger.getInstance(McpHub.class);
+    private static final long HEALTH_CHECK_INTERVAL_MILLIS = 30_000;
+    private static final long INITIAL_BACKOFF_MILLIS = 1_000;
+    private static final long MAX_BACKOFF_MILLIS = 60_000;
+    private static final long IDLE_TIMEOUT_MILLIS = 30 * 60_000;
     
-    private final Map<String, McpServer> servers = new HashMap<>();
-    private final Map<String, McpServerConfig> configs = new HashMap<>();
+    private final Map<String, SupervisedMcpServer> servers = new ConcurrentHashMap<>();
+    private final Map<String, McpServerConfig> configs = new ConcurrentHashMap<>();
+    private final BiFunction<String, McpServerConfig, McpServer> serverFactory;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long idleTimeoutMillis;
+    private final ScheduledExecutorService supervisor;
+    private final ExecutorService startExecutor;
     
     /**
-     * Register a server.
+     * Creates a new MCP hub for servers that run as local processes.
+     */
+    public McpHub() {
+        this(StdioMcpServer::new, HEALTH_CHECK_INTERVAL_MILLIS, INITIAL_BACKOFF_MILLIS, MAX_BACKOFF_MILLIS,
+                IDLE_TIMEOUT_MILLIS);
+    }
+    
+    /**
+     * Creates a new MCP hub.
+     *
+     * @param serverFactory             Creates a server from its name and configuration
+     * @param healthCheckIntervalMillis The interval between health checks of the servers
+     * @param initialBackoffMillis      The delay before the first restart of a failed server
+     * @param maxBackoffMillis          The maximum delay before the restart of a failed server
+     * @param idleTimeoutMillis         The time after which an unused server is stopped, or 0 to keep it running
+     */
+    McpHub(BiFunction<String, McpServerConfig, McpServer> serverFactory, long healthCheckIntervalMillis,
+           long initialBackoffMillis, long maxBackoffMillis, long idleTimeoutMillis) {
+        this.serverFactory = serverFactory;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        
+        AtomicInteger threadCount = new AtomicInteger();
+        this.startExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "Cline MCP server start " + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.supervisor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "Cline MCP supervisor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        supervisor.scheduleWithFixedDelay(this::superviseServers,
+                healthCheckIntervalMillis, healthCheckIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+    
+    /**
+     * Register a server and start it in the background.
+     * A server that is already registered under the name is stopped and replaced.
      *
      * @param name The server name
      * @param config The server configuration
-     * @return A CompletableFuture that completes when the server is registered
+     * @return A CompletableFuture that completes when the server is started
      */
     public CompletableFuture<Void> registerServer(String name, McpServerConfig config) {
         LOG.info("Registering MCP server: " + name);
@@ -32,15 +91,17 @@ public class McpHub {
         
         if (config.isDisabled()) {
             LOG.info("MCP server is disabled: " + name);
-            return CompletableFuture.completedFuture(null);
+            McpServer previous = servers.remove(name);
+            return previous != null ? previous.stop() : CompletableFuture.completedFuture(null);
         }
         
-        // In a real implementation, we would create a real MCP server here
-        // For now, we'll just create a stub implementation
-        McpServer server = new StubMcpServer(name);
-        servers.put(name, server);
-        
-        return server.start();
+        SupervisedMcpServer server = new SupervisedMcpServer(serverFactory.apply(name, config), supervisor,
+                startExecutor, initialBackoffMillis, maxBackoffMillis, idleTimeoutMillis);
+        McpServer previous = servers.put(name, server);
+        if (previous == null) {
+            return server.start();
+        }
+        return previous.stop().handle((v, e) -> null).thenCompose(v -> server.start());
     }
     
     /**
@@ -61,6 +122,40 @@ public class McpHub {
         return CompletableFuture.completedFuture(null);
     }
     
+    /**
+     * Stop all servers.
+     *
+     * @return A CompletableFuture that completes when all servers are stopped
+     */
+    public CompletableFuture<Void> stopAll() {
+        return CompletableFuture.allOf(servers.values().stream()
+                .map(McpServer::stop)
+                .toArray(CompletableFuture[]::new));
+    }
+    
+    /**
+     * Stop all servers and the supervisor. The hub cannot be used afterwards.
+     *
+     * @return A CompletableFuture that completes when all servers are stopped
+     */
+    public CompletableFuture<Void> shutdown() {
+        supervisor.shutdownNow();
+        return stopAll().whenComplete((v, e) -> startExecutor.shutdown());
+    }
+    
+    /**
+     * Check the health of all servers.
+     */
+    private void superviseServers() {
+        for (SupervisedMcpServer server : servers.values()) {
+            try {
+                server.supervise();
+            } catch (RuntimeException e) {
+                LOG.error("Failed to check MCP server " + server.getName(), e);
+            }
+        }
+    }
+    
     /**
      * Get a server by name.
      *
@@ -116,6 +211,17 @@ public class McpHub {
             return CompletableFuture.failedFuture(new IllegalArgumentException("Server not found: " + serverName));
         }
         
+        // Validate the arguments against the tool's compiled input schema
+        for (McpTool tool : server.getTools()) {
+            if (tool.getName().equals(toolName)) {
+                String error = tool.getValidator().validate(args);
+                if (error != null) {
+                    return CompletableFuture.failedFuture(new IllegalArgumentException(error));
+                }
+                break;
+            }
+        }
+        
         return server.executeTool(toolName, args);
     }
     
@@ -134,76 +240,4 @@ public class McpHub {
         
         return server.accessResource(uri);
     }
-    
-    /**
-     * Stub implementation of McpServer for testing.
-     */
-    private static class StubMcpServer implements McpServer {
-        private final String name;
-        private final List<McpTool> tools = new ArrayList<>();
-        private final List<McpResource> resources = new ArrayList<>();
-        private boolean running = false;
-        
-        public StubMcpServer(String name) {
-            this.name = name;
-            
-            // Add some stub tools and resources
-            tools.add(new McpTool(
-                "example-tool",
-                "An example tool",
-                new JsonObject()
-            ));
-            
-            resources.add(new McpResource(
-                "example://resource",
-                "Example Resource",
-                "text/plain",
-                "An example resource"
-            ));
-        }
-        
-        @Override
-        public String getName() {
-            return name;
-        }
-        
-        @Override
-        public List<McpTool> getTools() {
-            return tools;
-        }
-        
-        @Override
-        public List<McpResource> getResources() {
-            return resources;
-        }
-        
-        @Override
-        public CompletableFuture<JsonObject> executeTool(String toolName, JsonObject args) {
-            JsonObject result = new JsonObject();
-            result.addProperty("result", "Tool executed: " + toolName);
-            return CompletableFuture.completedFuture(result);
-        }
-        
-        @Override
-        public CompletableFuture<String> accessResource(String uri) {
-            return CompletableFuture.completedFuture("Resource content: " + uri);
-        }
-        
-        @Override
-        public boolean isRunning() {
-            return running;
-        }
-        
-        @Override
-        public CompletableFuture<Void> start() {
-            running = true;
-            return CompletableFuture.completedFuture(null);
-        }
-        
-        @Override
-        public CompletableFuture<Void> stop() {
-            running = false;
-            return CompletableFuture.completedFuture(null);
-        }
-    }
 }
\ No newline at end of file
@@ -0,0 +1,180 @@
+package com.cline.services.mcp;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reads the messages an MCP server writes to its stdout.
+ * Over stdio, MCP messages are JSON-RPC objects delimited by newlines. Each message is parsed straight from
+ * the read buffer, one chunk at a time, so a large tool result is never held as a line of bytes or a string
+ * before it becomes a JSON tree.
+ * <p>
+ * Lines that are not valid JSON, such as log output of a misbehaving server, are skipped, as are messages
+ * longer than the maximum length.
+ */
+class McpMessageReader {
+    private static final Logger LOG = Logger.getInstance(McpMessageReader.class);
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final InputStream input;
+    private final byte[] buffer;
+    private final long maxMessageLength;
+    private int position = 0;
+    private int limit = 0;
+
+    /**
+     * Creates a new message reader.
+     *
+     * @param input            The stdout of the server
+     * @param bufferSize       The size of the read buffer
+     * @param maxMessageLength The maximum length of a message in bytes
+     */
+    McpMessageReader(@NotNull InputStream input, int bufferSize, long maxMessageLength) {
+        this.input = input;
+        this.buffer = new byte[bufferSize];
+        this.maxMessageLength = maxMessageLength;
+    }
+
+    /**
+     * Reads the next message, blocking until it is complete.
+     *
+     * @return The message, or null if the stream has ended
+     * @throws IOException If the stream cannot be read
+     */
+    @Nullable
+    JsonElement readMessage() throws IOException {
+        while (skipBlankLines()) {
+            LineStream line = new LineStream();
+            try {
+                // The reader is not closed, as that would close the underlying stream
+                JsonElement message = JsonParser.parseReader(new InputStreamReader(line, StandardCharsets.UTF_8));
+                if (!line.tooLong) {
+                    return message;
+                }
+                LOG.warn("Skipping MCP message longer than " + maxMessageLength + " bytes");
+                line.skipRest();
+            } catch (JsonIOException e) {
+                throw e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e);
+            } catch (JsonParseException e) {
+                if (line.tooLong) {
+                    LOG.warn("Skipping MCP message longer than " + maxMessageLength + " bytes");
+                } else {
+                    LOG.warn("Skipping invalid MCP message: " + e.getMessage());
+                }
+                line.skipRest();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Skips whitespace between messages.
+     *
+     * @return True if a message follows, false if the stream has ended
+     * @throws IOException If the stream cannot be read
+     */
+    private boolean skipBlankLines() throws IOException {
+        while (true) {
+            if (position == limit && !fill()) {
+                return false;
+            }
+            byte b = buffer[position];
+            if (b != '\n' && b != '\r' && b != ' ' && b != '\t') {
+                return true;
+            }
+            position++;
+        }
+    }
+
+    private boolean fill() throws IOException {
+        int read = input.read(buffer, 0, buffer.length);
+        if (read <= 0) {
+            position = limit = 0;
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+
+    /**
+     * The bytes of the current line, up to but not including the newline, which is consumed.
+     */
+    private class LineStream extends InputStream {
+        private boolean ended = false;
+        private boolean tooLong = false;
+        private long length = 0;
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] target, int offset, int count) throws IOException {
+            if (ended || tooLong) {
+                return -1;
+            }
+            if (count == 0) {
+                return 0;
+            }
+            if (position == limit && !fill()) {
+                ended = true;
+                return -1;
+            }
+            int end = Math.min(limit, position + count);
+            int newline = -1;
+            for (int i = position; i < end; i++) {
+                if (buffer[i] == '\n') {
+                    newline = i;
+                    break;
+                }
+            }
+            int chunk = (newline >= 0 ? newline : end) - position;
+            length += chunk;
+            if (length > maxMessageLength) {
+                tooLong = true;
+                return -1;
+            }
+            System.arraycopy(buffer, position, target, offset, chunk);
+            position += chunk;
+            if (newline >= 0) {
+                position++;
+                ended = true;
+                if (chunk == 0) {
+                    return -1;
+                }
+            }
+            return chunk;
+        }
+
+        /**
+         * Skips the rest of the line after an invalid message.
+         */
+        void skipRest() throws IOException {
+            while (!ended) {
+                if (position == limit && !fill()) {
+                    return;
+                }
+                for (; position < limit; position++) {
+                    if (buffer[position] == '\n') {
+                        position++;
+                        ended = true;
+                        return;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -54,6 +54,17 @@ public interface McpServer {
      */
     boolean isRunning();
     
+    /**
+     * Check that the server responds. Servers that cannot be pinged only check that they are running.
+     *
+     * @return A CompletableFuture that completes when the server has responded
+     */
+    default CompletableFuture<Void> ping() {
+        return isRunning()
+                ? CompletableFuture.completedFuture(null)
+                : CompletableFuture.failedFuture(new IllegalStateException("MCP server is not running: " + getName()));
+    }
+    
     /**
      * Start the server.
      *
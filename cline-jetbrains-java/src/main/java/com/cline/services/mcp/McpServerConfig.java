@@ -1,5 +1,9 @@
 package com.cline.services.mcp;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
 import java.util.HashMap;
 import java.util.Map;
 
@@ -75,6 +79,41 @@ public class McpServerConfig {
         return alwaysAllow;
     }
     
+    /**
+     * Create an MCP server configuration from a JSON object in the format of the MCP settings file.
+     * Missing properties get the defaults of the builder.
+     *
+     * @param json The JSON object
+     * @return The configuration
+     */
+    public static McpServerConfig fromJson(JsonObject json) {
+        Builder builder = builder()
+                .command(json.has("command") ? json.get("command").getAsString() : null)
+                .disabled(json.has("disabled") && json.get("disabled").getAsBoolean());
+        
+        if (json.has("args")) {
+            builder.args(toStrings(json.getAsJsonArray("args")));
+        }
+        if (json.has("env")) {
+            for (Map.Entry<String, JsonElement> entry : json.getAsJsonObject("env").entrySet()) {
+                builder.env(entry.getKey(), entry.getValue().getAsString());
+            }
+        }
+        if (json.has("alwaysAllow")) {
+            builder.alwaysAllow(toStrings(json.getAsJsonArray("alwaysAllow")));
+        }
+        
+        return builder.build();
+    }
+    
+    private static String[] toStrings(JsonArray array) {
+        String[] strings = new String[array.size()];
+        for (int i = 0; i < array.size(); i++) {
+            strings[i] = array.get(i).getAsString();
+        }
+        return strings;
+    }
+    
     /**
      * Create a new builder for MCP server configuration.
      *
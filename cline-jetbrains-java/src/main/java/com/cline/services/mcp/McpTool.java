@@ -1,5 +1,6 @@
 package com.cline.services.mcp;
 
+import com.cline.core.tool.ToolSchemaValidator;
 import com.google.gson.JsonObject;
 
 /**
@@ -9,6 +10,7 @@ public class McpTool {
     private final String name;
     private final String description;
     private final JsonObject inputSchema;
+    private final ToolSchemaValidator validator;
     
     /**
      * Create a new MCP tool.
@@ -21,6 +23,7 @@ public class McpTool {
         this.name = name;
         this.description = description;
         this.inputSchema = inputSchema;
+        this.validator = ToolSchemaValidator.compile(inputSchema != null ? inputSchema : new JsonObject());
     }
     
     /**
@@ -49,4 +52,13 @@ public class McpTool {
     public JsonObject getInputSchema() {
         return inputSchema;
     }
-}
\ No newline at end of file
+    
+    /**
+     * Get the validator compiled from the input schema.
+     *
+     * @return The input validator
+     */
+    public ToolSchemaValidator getValidator() {
+        return validator;
+    }
+}
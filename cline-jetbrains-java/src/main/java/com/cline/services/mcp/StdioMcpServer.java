@@ -0,0 +1,253 @@
+package com.cline.services.mcp;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * MCP server that runs as a local process and is spoken to over stdio.
+ * Starting the server launches the configured command, performs the MCP initialization handshake and lists the
+ * tools and resources the server offers. The lists are refreshed when the server reports that they changed, and are
+ * kept after the server stops, so its tools stay known while it is not running.
+ */
+public class StdioMcpServer implements McpServer {
+    private static final Logger LOG = Logger.getInstance(StdioMcpServer.class);
+    static final String PROTOCOL_VERSION = "2024-11-05";
+    private static final long REQUEST_TIMEOUT_MILLIS = 30_000;
+    private static final long TOOL_TIMEOUT_MILLIS = 60_000;
+    private static final long PING_TIMEOUT_MILLIS = 10_000;
+
+    private final String name;
+    private final McpServerConfig config;
+    private final int maxInFlight;
+    private volatile McpClient client;
+    private volatile JsonObject capabilities = new JsonObject();
+    private volatile List<McpTool> tools = Collections.emptyList();
+    private volatile List<McpResource> resources = Collections.emptyList();
+
+    /**
+     * Creates a new stdio MCP server.
+     *
+     * @param name   The server name
+     * @param config The server configuration
+     */
+    public StdioMcpServer(String name, McpServerConfig config) {
+        this(name, config, McpClient.DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Creates a new stdio MCP server.
+     *
+     * @param name        The server name
+     * @param config      The server configuration
+     * @param maxInFlight The maximum number of requests sent before earlier ones are answered
+     */
+    StdioMcpServer(String name, McpServerConfig config, int maxInFlight) {
+        this.name = name;
+        this.config = config;
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public List<McpTool> getTools() {
+        return tools;
+    }
+
+    @Override
+    public List<McpResource> getResources() {
+        return resources;
+    }
+
+    @Override
+    public CompletableFuture<JsonObject> executeTool(String toolName, JsonObject args) {
+        JsonObject params = new JsonObject();
+        params.addProperty("name", toolName);
+        params.add("arguments", args != null ? args : new JsonObject());
+        return request("tools/call", params, TOOL_TIMEOUT_MILLIS).thenApply(StdioMcpServer::asObject);
+    }
+
+    @Override
+    public CompletableFuture<String> accessResource(String uri) {
+        JsonObject params = new JsonObject();
+        params.addProperty("uri", uri);
+        return request("resources/read", params, REQUEST_TIMEOUT_MILLIS).thenApply(result -> {
+            StringBuilder content = new StringBuilder();
+            JsonElement contents = asObject(result).get("contents");
+            if (contents != null && contents.isJsonArray()) {
+                for (JsonElement item : contents.getAsJsonArray()) {
+                    String text = getString(asObject(item), "text");
+                    if (text != null) {
+                        content.append(text);
+                    }
+                }
+            }
+            return content.toString();
+        });
+    }
+
+    @Override
+    public boolean isRunning() {
+        McpClient current = client;
+        return current != null && current.isAlive();
+    }
+
+    @Override
+    public CompletableFuture<Void> ping() {
+        return request("ping", null, PING_TIMEOUT_MILLIS).thenApply(result -> null);
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> start() {
+        if (isRunning()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        LOG.info("Starting MCP server: " + name);
+        McpClient started;
+        try {
+            started = McpClient.start(name, config, maxInFlight);
+        } catch (IOException e) {
+            LOG.warn("Failed to start MCP server " + name, e);
+            return CompletableFuture.failedFuture(e);
+        }
+        started.setNotificationHandler(this::handleNotification);
+        client = started;
+
+        JsonObject clientInfo = new JsonObject();
+        clientInfo.addProperty("name", "cline-jetbrains");
+        clientInfo.addProperty("version", "1.0");
+        JsonObject params = new JsonObject();
+        params.addProperty("protocolVersion", PROTOCOL_VERSION);
+        params.add("capabilities", new JsonObject());
+        params.add("clientInfo", clientInfo);
+
+        return started.request("initialize", params, REQUEST_TIMEOUT_MILLIS)
+                .thenCompose(result -> {
+                    JsonElement serverCapabilities = asObject(result).get("capabilities");
+                    capabilities = serverCapabilities != null && serverCapabilities.isJsonObject()
+                            ? serverCapabilities.getAsJsonObject() : new JsonObject();
+                    started.sendNotification("notifications/initialized", null);
+                    return CompletableFuture.allOf(refreshTools(), refreshResources());
+                })
+                .whenComplete((v, e) -> {
+                    if (e != null) {
+                        LOG.warn("Failed to initialize MCP server " + name, e);
+                        started.close();
+                    } else {
+                        LOG.info("MCP server " + name + " started with " + tools.size() + " tools and "
+                                + resources.size() + " resources");
+                    }
+                });
+    }
+
+    @Override
+    public synchronized CompletableFuture<Void> stop() {
+        McpClient current = client;
+        client = null;
+        if (current == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        LOG.info("Stopping MCP server: " + name);
+        return current.close();
+    }
+
+    private CompletableFuture<JsonElement> request(String method, JsonObject params, long timeoutMillis) {
+        McpClient current = client;
+        if (current == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException("MCP server is not running: " + name));
+        }
+        return current.request(method, params, timeoutMillis);
+    }
+
+    private void handleNotification(String method, @Nullable JsonElement params) {
+        switch (method) {
+            case "notifications/tools/list_changed":
+                refreshTools();
+                break;
+            case "notifications/resources/list_changed":
+                refreshResources();
+                break;
+            default:
+                LOG.debug("Ignoring MCP notification from " + name + ": " + method);
+                break;
+        }
+    }
+
+    private CompletableFuture<Void> refreshTools() {
+        if (!capabilities.has("tools")) {
+            tools = Collections.emptyList();
+            return CompletableFuture.completedFuture(null);
+        }
+        return listAll("tools/list", "tools", item -> {
+            JsonElement schema = item.get("inputSchema");
+            return new McpTool(getString(item, "name"), getString(item, "description"),
+                    schema != null && schema.isJsonObject() ? schema.getAsJsonObject() : new JsonObject());
+        }).thenAccept(list -> tools = list);
+    }
+
+    private CompletableFuture<Void> refreshResources() {
+        if (!capabilities.has("resources")) {
+            resources = Collections.emptyList();
+            return CompletableFuture.completedFuture(null);
+        }
+        return listAll("resources/list", "resources", item -> new McpResource(getString(item, "uri"),
+                getString(item, "name"), getString(item, "mimeType"), getString(item, "description")))
+                .thenAccept(list -> resources = list);
+    }
+
+    /**
+     * Lists all items of a paginated list method, following the cursors.
+     */
+    private <T> CompletableFuture<List<T>> listAll(String method, String field, Function<JsonObject, T> converter) {
+        return listPage(method, field, converter, null, new ArrayList<>())
+                .thenApply(Collections::unmodifiableList);
+    }
+
+    private <T> CompletableFuture<List<T>> listPage(String method, String field, Function<JsonObject, T> converter,
+                                                    @Nullable String cursor, List<T> items) {
+        JsonObject params = new JsonObject();
+        if (cursor != null) {
+            params.addProperty("cursor", cursor);
+        }
+        return request(method, params, REQUEST_TIMEOUT_MILLIS).thenCompose(result -> {
+            JsonObject page = asObject(result);
+            JsonElement list = page.get(field);
+            if (list != null && list.isJsonArray()) {
+                for (JsonElement item : list.getAsJsonArray()) {
+                    if (item.isJsonObject()) {
+                        items.add(converter.apply(item.getAsJsonObject()));
+                    }
+                }
+            }
+            String nextCursor = getString(page, "nextCursor");
+            return nextCursor != null
+                    ? listPage(method, field, converter, nextCursor, items)
+                    : CompletableFuture.completedFuture(items);
+        });
+    }
+
+    @NotNull
+    private static JsonObject asObject(JsonElement element) {
+        return element != null && element.isJsonObject() ? element.getAsJsonObject() : new JsonObject();
+    }
+
+    @Nullable
+    private static String getString(JsonObject object, String field) {
+        JsonElement value = object.get(field);
+        return value != null && value.isJsonPrimitive() ? value.getAsString() : null;
+    }
+}
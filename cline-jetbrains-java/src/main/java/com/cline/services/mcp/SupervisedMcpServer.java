@@ -0,0 +1,253 @@
+package com.cline.services.mcp;
+
+import com.google.gson.JsonObject;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * MCP server that is kept running by a supervisor.
+ * <p>
+ * Starting the server launches it on the start executor, so callers never wait for the process to spawn.
+ * The hub calls {@link #supervise()} periodically: a server that crashed or stopped answering pings is restarted
+ * after a delay that doubles with every consecutive failure, and a server that has not been used for the idle
+ * timeout is stopped. A stopped server keeps its last known tools and is started again when one of them is used.
+ */
+class SupervisedMcpServer implements McpServer {
+    private static final Logger LOG = Logger.getInstance(SupervisedMcpServer.class);
+    static final int MAX_CONSECUTIVE_FAILURES = 5;
+
+    private final McpServer server;
+    private final ScheduledExecutorService scheduler;
+    private final Executor startExecutor;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long idleTimeoutMillis;
+    private final AtomicInteger activeCalls = new AtomicInteger();
+    private volatile long lastUsed = System.currentTimeMillis();
+    // Guarded by this
+    private boolean wanted = false;
+    private int failures = 0;
+    private CompletableFuture<Void> starting;
+    private CompletableFuture<Void> stopping;
+    private ScheduledFuture<?> restart;
+
+    /**
+     * Creates a new supervised MCP server.
+     *
+     * @param server               The server to supervise
+     * @param scheduler            Runs the delayed restarts
+     * @param startExecutor        Starts and stops the server
+     * @param initialBackoffMillis The delay before the first restart after a failure
+     * @param maxBackoffMillis     The maximum delay before a restart
+     * @param idleTimeoutMillis    The time after which an unused server is stopped, or 0 to keep it running
+     */
+    SupervisedMcpServer(@NotNull McpServer server, @NotNull ScheduledExecutorService scheduler,
+                        @NotNull Executor startExecutor, long initialBackoffMillis, long maxBackoffMillis,
+                        long idleTimeoutMillis) {
+        this.server = server;
+        this.scheduler = scheduler;
+        this.startExecutor = startExecutor;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    @Override
+    public String getName() {
+        return server.getName();
+    }
+
+    @Override
+    public List<McpTool> getTools() {
+        return server.getTools();
+    }
+
+    @Override
+    public List<McpResource> getResources() {
+        return server.getResources();
+    }
+
+    @Override
+    public CompletableFuture<JsonObject> executeTool(String toolName, JsonObject args) {
+        return use(() -> server.executeTool(toolName, args));
+    }
+
+    @Override
+    public CompletableFuture<String> accessResource(String uri) {
+        return use(() -> server.accessResource(uri));
+    }
+
+    @Override
+    public boolean isRunning() {
+        return server.isRunning();
+    }
+
+    @Override
+    public CompletableFuture<Void> ping() {
+        return server.ping();
+    }
+
+    /**
+     * Starts the server in the background. Starting a server that is already starting or running has no effect.
+     *
+     * @return A CompletableFuture that completes when the server is started
+     */
+    @Override
+    public synchronized CompletableFuture<Void> start() {
+        wanted = true;
+        failures = 0;
+        return startServer();
+    }
+
+    /**
+     * Stops the server in the background. A call or start made while the server is stopping waits for the stop
+     * to finish and starts the server again.
+     *
+     * @return A CompletableFuture that completes when the server is stopped
+     */
+    @Override
+    public synchronized CompletableFuture<Void> stop() {
+        wanted = false;
+        cancelRestart();
+        // A start in progress is allowed to finish, so that the process it launches is stopped as well
+        CompletableFuture<Void> started = starting != null
+                ? starting.handle((v, e) -> null) : CompletableFuture.completedFuture(null);
+        CompletableFuture<Void> stopped = started.thenComposeAsync(v -> server.stop(), startExecutor);
+        stopping = stopped;
+        return stopped;
+    }
+
+    /**
+     * Checks the health of the server. A server that exited or does not answer a ping is restarted after a
+     * delay, and a server that has been unused for the idle timeout is stopped.
+     */
+    void supervise() {
+        synchronized (this) {
+            if (!wanted || restart != null || (starting != null && !starting.isDone())) {
+                return;
+            }
+        }
+
+        if (!server.isRunning()) {
+            serverFailed("exited");
+            return;
+        }
+        if (idleTimeoutMillis > 0 && activeCalls.get() == 0
+                && System.currentTimeMillis() - lastUsed >= idleTimeoutMillis) {
+            stopIdle();
+            return;
+        }
+        server.ping().whenComplete((v, e) -> {
+            if (e == null) {
+                synchronized (this) {
+                    failures = 0;
+                }
+            } else if (server.isRunning()) {
+                LOG.warn("MCP server " + getName() + " does not respond: " + e.getMessage());
+                server.stop().whenComplete((stopped, stopError) -> serverFailed("stopped responding"));
+            }
+        });
+    }
+
+    /**
+     * Checks if the server is meant to be running, that is, it was started and has not been stopped since.
+     *
+     * @return True if the server is kept running, false otherwise
+     */
+    synchronized boolean isSupervised() {
+        return wanted;
+    }
+
+    /**
+     * Stops the server unless a call started after the idle check. Calls register themselves before they take the
+     * lock, so a call either keeps the server running or sees the pending stop and starts the server again.
+     */
+    private synchronized void stopIdle() {
+        if (activeCalls.get() > 0) {
+            return;
+        }
+        LOG.info("Stopping idle MCP server: " + getName());
+        stop();
+    }
+
+    private <T> CompletableFuture<T> use(Supplier<CompletableFuture<T>> call) {
+        activeCalls.incrementAndGet();
+        lastUsed = System.currentTimeMillis();
+        CompletableFuture<Void> started;
+        synchronized (this) {
+            started = wanted && server.isRunning() && starting != null && starting.isDone()
+                    ? CompletableFuture.completedFuture(null) : start();
+        }
+        CompletableFuture<T> result = started.thenCompose(v -> call.get());
+        result.whenComplete((value, e) -> {
+            lastUsed = System.currentTimeMillis();
+            activeCalls.decrementAndGet();
+        });
+        return result;
+    }
+
+    private synchronized CompletableFuture<Void> startServer() {
+        if (starting != null && !starting.isDone()) {
+            return starting;
+        }
+        boolean stopPending = stopping != null && !stopping.isDone();
+        if (starting != null && !starting.isCompletedExceptionally() && server.isRunning() && !stopPending) {
+            return starting;
+        }
+
+        cancelRestart();
+        lastUsed = System.currentTimeMillis();
+        // A stop in progress finishes first, so it cannot stop the process this start launches
+        CompletableFuture<Void> stopped = stopPending
+                ? stopping.handle((v, e) -> null) : CompletableFuture.completedFuture(null);
+        CompletableFuture<Void> started = stopped.thenComposeAsync(v -> server.start(), startExecutor);
+        starting = started;
+        started.whenComplete((v, e) -> {
+            if (e != null) {
+                serverFailed("failed to start");
+            }
+        });
+        return started;
+    }
+
+    private synchronized void serverFailed(String reason) {
+        if (!wanted || restart != null || (starting != null && !starting.isDone())) {
+            return;
+        }
+
+        failures++;
+        if (failures > MAX_CONSECUTIVE_FAILURES) {
+            LOG.warn("MCP server " + getName() + " " + reason + " " + MAX_CONSECUTIVE_FAILURES
+                    + " times in a row, not restarting it until it is used again");
+            wanted = false;
+            return;
+        }
+        long delay = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(failures - 1, 20));
+        LOG.warn("MCP server " + getName() + " " + reason + ", restarting it in " + delay + " ms");
+        restart = scheduler.schedule(this::restart, delay, TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void restart() {
+        restart = null;
+        if (wanted) {
+            startServer();
+        }
+    }
+
+    private void cancelRestart() {
+        ScheduledFuture<?> pending = restart;
+        if (pending != null) {
+            pending.cancel(false);
+            restart = null;
+        }
+    }
+}
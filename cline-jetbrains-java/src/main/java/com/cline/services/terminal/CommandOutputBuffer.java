@@ -0,0 +1,115 @@
+package com.cline.services.terminal;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Bounded ring buffer for the output of a command.
+ * Only the last {@code capacity} characters are kept, so a command that prints a lot of output
+ * uses a fixed amount of memory and the most recent output (usually the errors and the summary) survives.
+ */
+public class CommandOutputBuffer {
+    private final char[] buffer;
+    private int start = 0;
+    private int length = 0;
+    private long totalChars = 0;
+
+    /**
+     * Creates a new command output buffer.
+     *
+     * @param capacity The maximum number of characters to keep
+     */
+    public CommandOutputBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.buffer = new char[capacity];
+    }
+
+    /**
+     * Appends characters, dropping the oldest characters if the buffer is full.
+     *
+     * @param chars  The characters
+     * @param offset The offset of the first character
+     * @param count  The number of characters
+     */
+    public synchronized void append(@NotNull char[] chars, int offset, int count) {
+        totalChars += count;
+
+        // Only the last part of a chunk larger than the buffer can survive
+        if (count >= buffer.length) {
+            System.arraycopy(chars, offset + count - buffer.length, buffer, 0, buffer.length);
+            start = 0;
+            length = buffer.length;
+            return;
+        }
+
+        int end = (start + length) % buffer.length;
+        int firstPart = Math.min(count, buffer.length - end);
+        System.arraycopy(chars, offset, buffer, end, firstPart);
+        System.arraycopy(chars, offset + firstPart, buffer, 0, count - firstPart);
+
+        int overflow = length + count - buffer.length;
+        if (overflow > 0) {
+            start = (start + overflow) % buffer.length;
+            length = buffer.length;
+        } else {
+            length += count;
+        }
+    }
+
+    /**
+     * Appends a string, dropping the oldest characters if the buffer is full.
+     *
+     * @param text The string
+     */
+    public void append(@NotNull String text) {
+        append(text.toCharArray(), 0, text.length());
+    }
+
+    /**
+     * Gets the total number of characters appended, including dropped characters.
+     *
+     * @return The total number of characters
+     */
+    public synchronized long getTotalChars() {
+        return totalChars;
+    }
+
+    /**
+     * Gets the number of characters dropped because the buffer was full.
+     *
+     * @return The number of dropped characters
+     */
+    public synchronized long getDroppedChars() {
+        return totalChars - length;
+    }
+
+    /**
+     * Gets the characters currently kept in the buffer.
+     *
+     * @return The last characters of the output
+     */
+    @NotNull
+    public synchronized String getTail() {
+        int firstPart = Math.min(length, buffer.length - start);
+        StringBuilder builder = new StringBuilder(length);
+        builder.append(buffer, start, firstPart);
+        builder.append(buffer, 0, length - firstPart);
+        return builder.toString();
+    }
+
+    /**
+     * Gets the output, prefixed with a note about the dropped characters if the output was truncated.
+     *
+     * @return The output
+     */
+    @Override
+    @NotNull
+    public synchronized String toString() {
+        long dropped = getDroppedChars();
+        if (dropped == 0) {
+            return getTail();
+        }
+        return "[... " + dropped + " characters of earlier output omitted ...]\n" + getTail();
+    }
+}
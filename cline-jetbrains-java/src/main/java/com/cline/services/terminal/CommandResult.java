@@ -0,0 +1,84 @@
+package com.cline.services.terminal;
+
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Result of a command run by the terminal service.
+ */
+public class CommandResult {
+    private final int exitCode;
+    private final String output;
+    private final long droppedChars;
+    private final boolean timedOut;
+
+    /**
+     * Creates a new command result.
+     *
+     * @param exitCode     The exit code of the process
+     * @param output       The captured output, stdout and stderr interleaved
+     * @param droppedChars The number of characters dropped from the start of the output
+     * @param timedOut     Whether the process was killed because it exceeded its timeout
+     */
+    public CommandResult(int exitCode, @NotNull String output, long droppedChars, boolean timedOut) {
+        this.exitCode = exitCode;
+        this.output = output;
+        this.droppedChars = droppedChars;
+        this.timedOut = timedOut;
+    }
+
+    /**
+     * Gets the exit code of the process.
+     *
+     * @return The exit code
+     */
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    /**
+     * Gets the captured output.
+     * If the output was truncated, only its tail is returned, prefixed with a note about the omitted part.
+     *
+     * @return The output
+     */
+    @NotNull
+    public String getOutput() {
+        return output;
+    }
+
+    /**
+     * Gets the number of characters dropped from the start of the output.
+     *
+     * @return The number of dropped characters
+     */
+    public long getDroppedChars() {
+        return droppedChars;
+    }
+
+    /**
+     * Checks if the output was truncated.
+     *
+     * @return True if the output was truncated, false otherwise
+     */
+    public boolean isTruncated() {
+        return droppedChars > 0;
+    }
+
+    /**
+     * Checks if the process was killed because it exceeded its timeout.
+     *
+     * @return True if the process timed out, false otherwise
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Checks if the command completed successfully.
+     *
+     * @return True if the process exited with code 0 before its timeout, false otherwise
+     */
+    public boolean isSuccess() {
+        return exitCode == 0 && !timedOut;
+    }
+}
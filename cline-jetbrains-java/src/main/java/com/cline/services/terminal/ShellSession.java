@@ -0,0 +1,346 @@
+package com.cline.services.terminal;
+
+import com.cline.core.tool.ToolContext;
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Long-lived shell process that runs commands one at a time.
+ * The shell reads commands from stdin, so the working directory and exported variables persist across commands
+ * and the profile is only sourced once. Each command is framed with unique start and exit markers,
+ * which delimit its output and carry its exit code.
+ * <p>
+ * A session that times out, is cancelled or whose shell exits is closed and must not be reused.
+ */
+public class ShellSession {
+    private static final Logger LOG = Logger.getInstance(ShellSession.class);
+    private static final int READ_BUFFER_SIZE = 8192;
+    private static final String MARKER_PREFIX = "__CLINE_";
+
+    private final Process process;
+    private final Writer stdin;
+    private final Object lock = new Object();
+    private PendingCommand current;
+    private volatile boolean closed = false;
+    private volatile boolean killed = false;
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    private ShellSession(@NotNull Process process) {
+        this.process = process;
+        this.stdin = new OutputStreamWriter(process.getOutputStream(), Charset.defaultCharset());
+    }
+
+    /**
+     * Starts a shell session.
+     *
+     * @param shellCommand   The command line that starts a POSIX shell reading commands from stdin
+     * @param directory      The initial working directory, or null for the current directory
+     * @param readerExecutor The executor that runs the thread reading the shell's output
+     * @return The started session
+     * @throws IOException If the shell cannot be started
+     */
+    @NotNull
+    public static ShellSession start(@NotNull List<String> shellCommand, @Nullable File directory,
+                                     @NotNull Executor readerExecutor) throws IOException {
+        ProcessBuilder builder = new ProcessBuilder(shellCommand).redirectErrorStream(true);
+        if (directory != null) {
+            builder.directory(directory);
+        }
+
+        ShellSession session = new ShellSession(builder.start());
+        readerExecutor.execute(session::readOutput);
+        return session;
+    }
+
+    /**
+     * Runs a command in the session.
+     * Stdin of the command is redirected from {@code /dev/null}, so commands waiting for input fail instead of hanging.
+     *
+     * @param command        The command to run
+     * @param timeout        The timeout in seconds, or 0 for no timeout
+     * @param context        The tool execution context; cancelling it kills the session
+     * @param outputListener The listener for output chunks, called on the reader thread, or null
+     * @param maxOutputChars The maximum number of characters of output to keep
+     * @return A CompletableFuture containing the command result
+     * @throws IllegalStateException If the session is busy or closed
+     */
+    @NotNull
+    public CompletableFuture<CommandResult> execute(@NotNull String command, int timeout, @NotNull ToolContext context,
+                                                    @Nullable Consumer<String> outputListener, int maxOutputChars) {
+        String id = Long.toHexString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE);
+        PendingCommand pending = new PendingCommand(id, new CommandOutputBuffer(maxOutputChars), outputListener);
+
+        synchronized (lock) {
+            if (closed) {
+                throw new IllegalStateException("Shell session is closed");
+            }
+            if (current != null) {
+                throw new IllegalStateException("Shell session is busy");
+            }
+            current = pending;
+        }
+        lastUsed = System.currentTimeMillis();
+
+        Runnable kill = () -> {
+            LOG.info("Command cancelled, closing shell session: " + command);
+            close();
+        };
+        context.onCancel(kill);
+        pending.future.whenComplete((result, e) -> {
+            context.removeCancelListener(kill);
+            lastUsed = System.currentTimeMillis();
+        });
+
+        if (timeout > 0) {
+            CompletableFuture.delayedExecutor(timeout, TimeUnit.SECONDS).execute(() -> {
+                if (!pending.future.isDone()) {
+                    LOG.info("Command timed out after " + timeout + " seconds, closing shell session: " + command);
+                    pending.timedOut = true;
+                    close();
+                }
+            });
+        }
+
+        try {
+            // The command is parsed by eval, and first in a subshell, so that a syntax error such as an
+            // unbalanced quote neither swallows the exit marker nor exits the shell
+            String quoted = "'" + command.replace("'", "'\\''") + "\n'";
+            stdin.write("printf '%s\\n' '" + pending.startMarker + "'\n"
+                    + "if ( eval '__cline_parse() { '" + quoted + "'}' ); then eval " + quoted + " < /dev/null; "
+                    + "else (exit 2); fi\n"
+                    + "printf '%s%s\\n' '" + pending.exitMarker + "' \"$?\"\n");
+            stdin.flush();
+        } catch (IOException e) {
+            LOG.warn("Failed to write command to shell session", e);
+            close();
+        }
+
+        return pending.future;
+    }
+
+    /**
+     * Checks if the session can run another command.
+     *
+     * @return True if the shell is running and the session has not been closed, false otherwise
+     */
+    public boolean isAlive() {
+        return !closed && process.isAlive();
+    }
+
+    /**
+     * Checks if the session is running a command.
+     *
+     * @return True if a command is running, false otherwise
+     */
+    public boolean isBusy() {
+        synchronized (lock) {
+            return current != null;
+        }
+    }
+
+    /**
+     * Gets the time the session last started or finished a command.
+     *
+     * @return The time in milliseconds since the epoch
+     */
+    public long getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * Closes the session, killing the shell and any command it is running.
+     * A running command completes once the reader thread sees the end of the output.
+     */
+    public void close() {
+        closed = true;
+        killed = true;
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    /**
+     * Reads the output of the shell until it exits and routes it to the running command.
+     * Output outside of a command's start and exit markers is discarded.
+     */
+    private void readOutput() {
+        StringBuilder pending = new StringBuilder();
+        try (Reader reader = new InputStreamReader(process.getInputStream(), Charset.defaultCharset())) {
+            char[] chars = new char[READ_BUFFER_SIZE];
+            int count;
+            while ((count = reader.read(chars)) != -1) {
+                pending.append(chars, 0, count);
+                processOutput(pending);
+            }
+        } catch (IOException e) {
+            if (!closed) {
+                LOG.warn("Error reading shell session output", e);
+            }
+        }
+
+        closed = true;
+        finishOnExit(pending);
+    }
+
+    /**
+     * Consumes as much of the pending output as can be attributed.
+     * Output that may be the start of a marker split across reads is kept until more output arrives.
+     *
+     * @param pending The output read but not yet consumed
+     */
+    private void processOutput(StringBuilder pending) {
+        while (true) {
+            PendingCommand command;
+            synchronized (lock) {
+                command = current;
+            }
+
+            if (command == null) {
+                pending.setLength(0);
+                return;
+            }
+
+            if (!command.started) {
+                int start = pending.indexOf(command.startMarker + "\n");
+                if (start < 0) {
+                    keepTail(pending, command.startMarker.length());
+                    return;
+                }
+                pending.delete(0, start + command.startMarker.length() + 1);
+                command.started = true;
+            }
+
+            int exit = pending.indexOf(command.exitMarker);
+            if (exit < 0) {
+                int safeLength = pending.length() - command.exitMarker.length();
+                if (safeLength > 0) {
+                    command.emit(pending.substring(0, safeLength));
+                    pending.delete(0, safeLength);
+                }
+                return;
+            }
+
+            int lineEnd = pending.indexOf("\n", exit);
+            if (lineEnd < 0) {
+                if (exit > 0) {
+                    command.emit(pending.substring(0, exit));
+                    pending.delete(0, exit);
+                }
+                return;
+            }
+
+            if (exit > 0) {
+                command.emit(pending.substring(0, exit));
+            }
+            int exitCode = parseExitCode(pending.substring(exit + command.exitMarker.length(), lineEnd));
+            pending.delete(0, lineEnd + 1);
+
+            synchronized (lock) {
+                current = null;
+            }
+            command.complete(exitCode);
+        }
+    }
+
+    /**
+     * Completes the running command, if any, after the shell exited.
+     *
+     * @param pending The output read but not yet consumed
+     */
+    private void finishOnExit(StringBuilder pending) {
+        PendingCommand command;
+        synchronized (lock) {
+            command = current;
+            current = null;
+        }
+
+        if (command == null) {
+            return;
+        }
+
+        if (command.started && pending.length() > 0) {
+            command.emit(pending.toString());
+        }
+
+        int exitCode;
+        try {
+            exitCode = process.waitFor();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exitCode = -1;
+        }
+
+        if (command.timedOut) {
+            command.complete(exitCode);
+        } else if (killed || !command.started) {
+            command.future.completeExceptionally(new CancellationException("Shell session was closed"));
+        } else {
+            // The command itself ended the shell, e.g. with exit
+            command.complete(exitCode);
+        }
+    }
+
+    private static void keepTail(StringBuilder pending, int length) {
+        if (pending.length() > length) {
+            pending.delete(0, pending.length() - length);
+        }
+    }
+
+    private static int parseExitCode(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * A command waiting for its exit marker.
+     */
+    private static class PendingCommand {
+        private final String startMarker;
+        private final String exitMarker;
+        private final CommandOutputBuffer output;
+        private final Consumer<String> outputListener;
+        private final CompletableFuture<CommandResult> future = new CompletableFuture<>();
+        private boolean started = false;
+        private volatile boolean timedOut = false;
+
+        PendingCommand(String id, CommandOutputBuffer output, @Nullable Consumer<String> outputListener) {
+            this.startMarker = MARKER_PREFIX + "START_" + id;
+            this.exitMarker = MARKER_PREFIX + "EXIT_" + id + ":";
+            this.output = output;
+            this.outputListener = outputListener;
+        }
+
+        void emit(String chunk) {
+            output.append(chunk);
+            if (outputListener != null) {
+                try {
+                    outputListener.accept(chunk);
+                } catch (Exception e) {
+                    LOG.warn("Error in command output listener", e);
+                }
+            }
+        }
+
+        void complete(int exitCode) {
+            future.complete(new CommandResult(exitCode, output.toString(), output.getDroppedChars(), timedOut));
+        }
+    }
+}
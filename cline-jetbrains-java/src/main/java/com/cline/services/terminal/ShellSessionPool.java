@@ -0,0 +1,197 @@
+package com.cline.services.terminal;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.LongSupplier;
+
+/**
+ * Small pool of long-lived shell sessions.
+ * The most recently used idle session is handed out first, so sequential commands run in the same shell
+ * and see the working directory and environment left by the previous command. Additional sessions are only
+ * started for concurrent commands, up to the maximum size.
+ * <p>
+ * Sessions that have been closed or whose shell exited are dropped when they are released,
+ * and idle sessions are closed once they have been unused for the idle timeout.
+ */
+public class ShellSessionPool {
+    private static final Logger LOG = Logger.getInstance(ShellSessionPool.class);
+
+    private final SessionFactory sessionFactory;
+    private final int maxSessions;
+    private final LongSupplier idleTimeoutMillis;
+    private final Deque<ShellSession> idleSessions = new ArrayDeque<>();
+    private final Set<ShellSession> sessions = new HashSet<>();
+    private int sessionCount = 0;
+    private boolean closed = false;
+
+    /**
+     * Creates a new shell session pool.
+     *
+     * @param sessionFactory    Starts new sessions
+     * @param maxSessions       The maximum number of sessions, idle or busy
+     * @param idleTimeoutMillis Provides the time after which an idle session is closed, or 0 to keep idle sessions
+     */
+    public ShellSessionPool(@NotNull SessionFactory sessionFactory, int maxSessions, @NotNull LongSupplier idleTimeoutMillis) {
+        this.sessionFactory = sessionFactory;
+        this.maxSessions = maxSessions;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+    }
+
+    /**
+     * Acquires a session, starting a new one if no idle session is available.
+     * The session must be returned with {@link #release(ShellSession)} once its command has completed.
+     *
+     * @return The session, or null if the pool is exhausted or closed
+     * @throws IOException If a new session cannot be started
+     */
+    @Nullable
+    public ShellSession acquire() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return null;
+            }
+
+            evictIdleSessions();
+            ShellSession session = idleSessions.pollFirst();
+            if (session != null) {
+                return session;
+            }
+
+            if (sessionCount >= maxSessions) {
+                return null;
+            }
+            sessionCount++;
+        }
+
+        ShellSession session;
+        try {
+            LOG.info("Starting shell session");
+            session = sessionFactory.start();
+        } catch (IOException | RuntimeException e) {
+            synchronized (this) {
+                sessionCount--;
+            }
+            throw e;
+        }
+
+        synchronized (this) {
+            if (!closed) {
+                sessions.add(session);
+                return session;
+            }
+            sessionCount--;
+        }
+        session.close();
+        return null;
+    }
+
+    /**
+     * Returns a session to the pool.
+     * Sessions that can no longer run commands are dropped, so the next command gets a fresh shell.
+     *
+     * @param session The session
+     */
+    public void release(@NotNull ShellSession session) {
+        synchronized (this) {
+            if (!sessions.contains(session)) {
+                return;
+            }
+            if (!closed && session.isAlive()) {
+                idleSessions.addFirst(session);
+                return;
+            }
+            sessions.remove(session);
+            sessionCount--;
+        }
+
+        LOG.info("Discarding shell session");
+        session.close();
+    }
+
+    /**
+     * Closes the sessions that have been idle for longer than the idle timeout.
+     */
+    public void evictIdleSessions() {
+        List<ShellSession> evicted = new ArrayList<>();
+        synchronized (this) {
+            long timeout = idleTimeoutMillis.getAsLong();
+            long now = System.currentTimeMillis();
+            Iterator<ShellSession> iterator = idleSessions.iterator();
+            while (iterator.hasNext()) {
+                ShellSession session = iterator.next();
+                if (!session.isAlive() || (timeout > 0 && now - session.getLastUsed() > timeout)) {
+                    iterator.remove();
+                    sessions.remove(session);
+                    sessionCount--;
+                    evicted.add(session);
+                }
+            }
+        }
+
+        for (ShellSession session : evicted) {
+            LOG.info("Closing idle shell session");
+            session.close();
+        }
+    }
+
+    /**
+     * Gets the number of idle sessions.
+     *
+     * @return The number of idle sessions
+     */
+    public synchronized int getIdleCount() {
+        return idleSessions.size();
+    }
+
+    /**
+     * Gets the number of sessions, idle or busy.
+     *
+     * @return The number of sessions
+     */
+    public synchronized int getSessionCount() {
+        return sessionCount;
+    }
+
+    /**
+     * Closes all sessions, killing any running commands, and stops handing out sessions.
+     */
+    public void close() {
+        List<ShellSession> closedSessions;
+        synchronized (this) {
+            closed = true;
+            closedSessions = new ArrayList<>(sessions);
+            sessionCount -= sessions.size();
+            sessions.clear();
+            idleSessions.clear();
+        }
+
+        for (ShellSession session : closedSessions) {
+            session.close();
+        }
+    }
+
+    /**
+     * Starts shell sessions for the pool.
+     */
+    @FunctionalInterface
+    public interface SessionFactory {
+        /**
+         * Starts a new shell session.
+         *
+         * @return The started session
+         * @throws IOException If the shell cannot be started
+         */
+        @NotNull
+        ShellSession start() throws IOException;
+    }
+}
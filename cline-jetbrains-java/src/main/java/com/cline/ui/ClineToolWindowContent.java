@@ -7,8 +7,10 @@ import com.cline.ui.chat.ChatView;
 import com.cline.ui.history.HistoryView;
 import com.cline.ui.settings.SettingsView;
 import com.cline.ui.tool.ToolTestView;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.ui.components.JBTabbedPane;
 import com.intellij.util.ui.JBUI;
@@ -21,8 +23,9 @@ import java.awt.event.ActionListener;
 /**
  * Main content for the Cline tool window.
  * This class creates and manages the UI components for the Cline tool window.
+ * It is disposed with the tool window content, which disposes the chat view.
  */
-public class ClineToolWindowContent {
+public class ClineToolWindowContent implements Disposable {
     private static final Logger LOG = Logger.getInstance(ClineToolWindowContent.class);
     
     private final Project project;
@@ -67,6 +70,7 @@ public class ClineToolWindowContent {
         
         // Create chat view
         chatView = new ChatView(project);
+        Disposer.register(this, chatView);
         chatView.setOnShowHistoryView(show -> {
             if (show) {
                 tabbedPane.setSelectedComponent(historyView);
@@ -138,4 +142,11 @@ public class ClineToolWindowContent {
     public JComponent getContent() {
         return mainPanel;
     }
+    
+    /**
+     * Called when the tool window content is removed. The chat view is disposed as a child.
+     */
+    @Override
+    public void dispose() {
+    }
 }
\ No newline at end of file
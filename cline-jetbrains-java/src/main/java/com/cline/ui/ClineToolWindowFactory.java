@@ -18,6 +18,7 @@ public class ClineToolWindowFactory implements ToolWindowFactory {
         ClineToolWindowContent toolWindowContent = new ClineToolWindowContent(project, toolWindow);
         Content content = ContentFactory.getInstance().createContent(
                 toolWindowContent.getContent(), "", false);
+        content.setDisposer(toolWindowContent);
         toolWindow.getContentManager().addContent(content);
     }
     
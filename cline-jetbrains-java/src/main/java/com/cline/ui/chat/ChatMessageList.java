@@ -0,0 +1,441 @@
+package com.cline.ui.chat;
+
+import com.cline.core.model.ContentBlob;
+import com.cline.core.model.Message;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.util.ui.JBUI;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import javax.swing.event.ChangeListener;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Virtualized list of chat messages.
+ * <p>
+ * Only the rows of the messages in the visible area, plus a buffer above and below it, exist as components.
+ * The height of every row is measured when it is realized and cached by message ID, and rows that were never
+ * realized are given the height cached in the {@link RenderCache} when the conversation was shown before, or an
+ * estimated height, so the scroll bar covers the whole conversation. Rows that leave the
+ * buffered area are disposed, which releases their editors.
+ * <p>
+ * An optional header component, such as the task header, is always shown above the messages.
+ */
+public class ChatMessageList extends JPanel implements Scrollable {
+    private static final int BUFFER_ROWS = 3;
+    private static final int ESTIMATED_ROW_HEIGHT = 60;
+    private static final int ESTIMATED_LINE_HEIGHT = 16;
+    private static final int ESTIMATED_LINE_LENGTH = 100;
+    private static final int MAX_ESTIMATED_ROW_HEIGHT = 2000;
+    private static final int MAX_LAYOUT_PASSES = 3;
+
+    private final Function<Message, ChatRow> rowFactory;
+    private final RenderCache renderCache;
+    private JComponent header;
+    private List<Message> messages = new ArrayList<>();
+    private final Map<String, ChatRow> realizedRows = new HashMap<>();
+    private final Map<String, Integer> rowHeights = new HashMap<>();
+    private final Set<String> measuredRows = new HashSet<>();
+    private int measuredWidth = -1;
+    private int[] offsets = new int[1];
+    private int realizedTop = 0;
+    private int realizedBottom = Integer.MAX_VALUE;
+    private final ChangeListener viewportListener = e -> onViewportChanged();
+
+    /**
+     * Creates a new message list.
+     *
+     * @param rowFactory  Creates the row of a message when it becomes visible
+     * @param renderCache The cache for the measured row heights (optional)
+     */
+    public ChatMessageList(@NotNull Function<Message, ChatRow> rowFactory, @Nullable RenderCache renderCache) {
+        super(null);
+        this.rowFactory = rowFactory;
+        this.renderCache = renderCache;
+    }
+
+    /**
+     * Sets the component shown above the messages.
+     *
+     * @param header The header (optional)
+     * @return Whether the header differs from the one shown before
+     */
+    public boolean setHeader(@Nullable JComponent header) {
+        if (header == this.header) {
+            return false;
+        }
+        if (this.header != null) {
+            remove(this.header);
+        }
+        this.header = header;
+        if (header != null) {
+            add(header);
+        }
+        revalidate();
+        repaint();
+        return true;
+    }
+
+    /**
+     * Sets the messages to show.
+     * Rows of messages that are still shown are kept, the others are disposed.
+     *
+     * @param messages The messages
+     * @return Whether the messages differ from the ones shown before
+     */
+    public boolean setMessages(@NotNull List<Message> messages) {
+        boolean changed = messages.size() != this.messages.size();
+        for (int i = 0; !changed && i < messages.size(); i++) {
+            changed = messages.get(i) != this.messages.get(i);
+        }
+
+        Set<String> ids = new HashSet<>();
+        for (Message message : messages) {
+            ids.add(message.getId());
+        }
+        for (Iterator<Map.Entry<String, ChatRow>> it = realizedRows.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, ChatRow> entry = it.next();
+            if (!ids.contains(entry.getKey())) {
+                releaseRow(entry.getValue());
+                it.remove();
+            } else if (entry.getValue().updateContent()) {
+                measuredRows.remove(entry.getKey());
+                changed = true;
+            }
+        }
+        rowHeights.keySet().retainAll(ids);
+        measuredRows.retainAll(ids);
+
+        this.messages = new ArrayList<>(messages);
+        if (measuredWidth >= 0) {
+            loadCachedHeights(measuredWidth);
+        }
+        if (changed) {
+            revalidate();
+            repaint();
+        }
+        return changed;
+    }
+
+    /**
+     * Re-renders the row of a message that changed in place, if the row is realized.
+     *
+     * @param message The message
+     * @return Whether the row was re-rendered
+     */
+    public boolean updateMessage(@NotNull Message message) {
+        ChatRow row = realizedRows.get(message.getId());
+        if (row == null) {
+            // Estimate the height again when the row is realized
+            measuredRows.remove(message.getId());
+            rowHeights.remove(message.getId());
+            return false;
+        }
+        if (!row.updateContent()) {
+            return false;
+        }
+        measuredRows.remove(message.getId());
+        revalidate();
+        repaint();
+        return true;
+    }
+
+    /**
+     * Gets the number of rows that currently exist as components.
+     *
+     * @return The number of realized rows
+     */
+    public int getRealizedRowCount() {
+        return realizedRows.size();
+    }
+
+    /**
+     * Disposes all realized rows.
+     */
+    public void releaseRows() {
+        for (ChatRow row : realizedRows.values()) {
+            releaseRow(row);
+        }
+        realizedRows.clear();
+        revalidate();
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        Insets insets = getInsets();
+        int width = getWidth() > 0 ? getWidth() : insets.left + insets.right;
+        int height = insets.top + insets.bottom + getHeaderHeight(width - insets.left - insets.right);
+        for (Message message : messages) {
+            height += getRowHeight(message);
+        }
+        return new Dimension(width, height);
+    }
+
+    @Override
+    public void doLayout() {
+        Insets insets = getInsets();
+        int width = Math.max(0, getWidth() - insets.left - insets.right);
+        if (width != measuredWidth) {
+            // Heights depend on the width, keep them as estimates only
+            measuredRows.clear();
+            measuredWidth = width;
+            loadCachedHeights(width);
+        }
+
+        int headerHeight = getHeaderHeight(width);
+        if (header != null) {
+            header.setBounds(insets.left, insets.top, width, headerHeight);
+        }
+
+        Rectangle visible = getVisibleRect();
+        JViewport viewport = getViewport();
+        boolean atBottom = viewport != null
+                && viewport.getViewPosition().y + viewport.getExtentSize().height >= getHeight() - 1;
+        int anchor = -1;
+        int anchorOffset = 0;
+
+        int[] realizedRange = new int[]{0, -1};
+        for (int pass = 0; pass < MAX_LAYOUT_PASSES; pass++) {
+            computeOffsets(insets.top + headerHeight);
+            if (anchor < 0) {
+                anchor = findRow(visible.y);
+                anchorOffset = anchor < messages.size() ? offsets[anchor] : 0;
+            }
+
+            int first = Math.max(0, findRow(visible.y) - BUFFER_ROWS);
+            int last = visible.height > 0
+                    ? Math.min(messages.size() - 1, findRow(visible.y + visible.height) + BUFFER_ROWS)
+                    : -1;
+            realizedRange = new int[]{first, last};
+
+            boolean remeasured = false;
+            for (int i = first; i <= last; i++) {
+                remeasured |= realizeRow(messages.get(i), width);
+            }
+            if (!remeasured) {
+                break;
+            }
+        }
+        computeOffsets(insets.top + headerHeight);
+
+        // Dispose the rows that left the buffered area
+        Set<String> keep = new HashSet<>();
+        for (int i = realizedRange[0]; i <= realizedRange[1]; i++) {
+            Message message = messages.get(i);
+            keep.add(message.getId());
+            ChatRow row = realizedRows.get(message.getId());
+            row.setBounds(insets.left, offsets[i], width, getRowHeight(message));
+        }
+        for (Iterator<Map.Entry<String, ChatRow>> it = realizedRows.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, ChatRow> entry = it.next();
+            if (!keep.contains(entry.getKey())) {
+                releaseRow(entry.getValue());
+                it.remove();
+            }
+        }
+
+        // Remember the area covered by the realized rows, the list is laid out again when scrolled past it
+        if (realizedRange[0] <= realizedRange[1]) {
+            realizedTop = realizedRange[0] == 0 ? 0 : offsets[realizedRange[0]];
+            realizedBottom = realizedRange[1] == messages.size() - 1 ? Integer.MAX_VALUE : offsets[realizedRange[1] + 1];
+        } else if (messages.isEmpty()) {
+            realizedTop = 0;
+            realizedBottom = Integer.MAX_VALUE;
+        } else {
+            realizedTop = Integer.MAX_VALUE;
+            realizedBottom = Integer.MIN_VALUE;
+        }
+
+        // Keep the visible content in place when rows above it were measured, or stay at the bottom
+        int preferredHeight = offsets[messages.size()] + insets.bottom;
+        if (preferredHeight != getHeight()) {
+            revalidate();
+        }
+        if (viewport != null) {
+            Point position = viewport.getViewPosition();
+            int y = position.y;
+            if (atBottom) {
+                y = Math.max(0, preferredHeight - viewport.getExtentSize().height);
+            } else if (anchor < messages.size()) {
+                y += offsets[anchor] - anchorOffset;
+            }
+            if (y != position.y) {
+                Point target = new Point(position.x, y);
+                SwingUtilities.invokeLater(() -> viewport.setViewPosition(target));
+            }
+        }
+    }
+
+    @Override
+    public void addNotify() {
+        super.addNotify();
+        JViewport viewport = getViewport();
+        if (viewport != null) {
+            viewport.addChangeListener(viewportListener);
+        }
+    }
+
+    @Override
+    public void removeNotify() {
+        JViewport viewport = getViewport();
+        if (viewport != null) {
+            viewport.removeChangeListener(viewportListener);
+        }
+        super.removeNotify();
+    }
+
+    @Override
+    public Dimension getPreferredScrollableViewportSize() {
+        return getPreferredSize();
+    }
+
+    @Override
+    public int getScrollableUnitIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return JBUI.scale(16);
+    }
+
+    @Override
+    public int getScrollableBlockIncrement(Rectangle visibleRect, int orientation, int direction) {
+        return orientation == SwingConstants.VERTICAL ? visibleRect.height : visibleRect.width;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportWidth() {
+        return true;
+    }
+
+    @Override
+    public boolean getScrollableTracksViewportHeight() {
+        return false;
+    }
+
+    /**
+     * Creates the row of a message, or measures it again if it was not measured at the current width or
+     * its layout was invalidated.
+     *
+     * @param message The message
+     * @param width   The row width
+     * @return Whether the height of the row changed
+     */
+    private boolean realizeRow(Message message, int width) {
+        ChatRow row = realizedRows.get(message.getId());
+        if (row == null) {
+            row = rowFactory.apply(message);
+            realizedRows.put(message.getId(), row);
+            add(row);
+        } else if (measuredRows.contains(message.getId()) && row.isValid()) {
+            // Rows whose content changed size, e.g. when an image was loaded, are invalid
+            return false;
+        }
+
+        // Wrapping text computes its preferred height from the width it was laid out with
+        row.setSize(width, Short.MAX_VALUE);
+        row.validate();
+        int height = row.getPreferredSize().height;
+        measuredRows.add(message.getId());
+        if (renderCache != null) {
+            renderCache.putHeight(message, width, height);
+        }
+        Integer previous = rowHeights.put(message.getId(), height);
+        return previous == null ? height != estimateHeight(message) : previous != height;
+    }
+
+    /**
+     * Lays the list out again when the visible area reaches beyond the realized rows.
+     */
+    private void onViewportChanged() {
+        Rectangle visible = getVisibleRect();
+        if (visible.y < realizedTop || visible.y + visible.height > realizedBottom) {
+            revalidate();
+            repaint();
+        }
+    }
+
+    /**
+     * Uses the cached heights of the rows that were measured at a width before, instead of estimates.
+     *
+     * @param width The row width
+     */
+    private void loadCachedHeights(int width) {
+        if (renderCache == null) {
+            return;
+        }
+        for (Message message : messages) {
+            if (!measuredRows.contains(message.getId())) {
+                int height = renderCache.getHeight(message, width);
+                if (height >= 0) {
+                    rowHeights.put(message.getId(), height);
+                }
+            }
+        }
+    }
+
+    private void releaseRow(ChatRow row) {
+        remove(row);
+        Disposer.dispose(row);
+    }
+
+    private void computeOffsets(int top) {
+        if (offsets.length != messages.size() + 1) {
+            offsets = new int[messages.size() + 1];
+        }
+        offsets[0] = top;
+        for (int i = 0; i < messages.size(); i++) {
+            offsets[i + 1] = offsets[i] + getRowHeight(messages.get(i));
+        }
+    }
+
+    /**
+     * Finds the row at a vertical position.
+     *
+     * @param y The position
+     * @return The index of the row, or the number of rows if the position is below the last row
+     */
+    private int findRow(int y) {
+        int index = Arrays.binarySearch(offsets, 0, messages.size() + 1, y);
+        int row = index >= 0 ? index : -index - 2;
+        return Math.max(0, Math.min(messages.size(), row));
+    }
+
+    private int getRowHeight(Message message) {
+        Integer height = rowHeights.get(message.getId());
+        return height != null ? height : estimateHeight(message);
+    }
+
+    private int getHeaderHeight(int width) {
+        if (header == null || !header.isVisible()) {
+            return 0;
+        }
+        header.setSize(width, Short.MAX_VALUE);
+        header.validate();
+        return header.getPreferredSize().height;
+    }
+
+    private JViewport getViewport() {
+        return getParent() instanceof JViewport ? (JViewport) getParent() : null;
+    }
+
+    /**
+     * Estimates the height of a row that was not measured yet from the length of its content.
+     * Content moved to a blob is not loaded for this.
+     *
+     * @param message The message
+     * @return The estimated height
+     */
+    private static int estimateHeight(Message message) {
+        ContentBlob blob = message.getContentBlob();
+        int length = blob != null ? blob.getLength() : message.getContent() != null ? message.getContent().length() : 0;
+        int lines = length / ESTIMATED_LINE_LENGTH + 1;
+        return JBUI.scale(Math.min(MAX_ESTIMATED_ROW_HEIGHT, ESTIMATED_ROW_HEIGHT + lines * ESTIMATED_LINE_HEIGHT));
+    }
+}
@@ -1,11 +1,14 @@
 package com.cline.ui.chat;
 
+import com.cline.core.model.ContentBlob;
 import com.cline.core.model.Message;
 import com.cline.core.model.MessageRole;
 import com.cline.ui.code.CodeBlockRenderer;
 import com.cline.ui.image.ImageRenderer;
 import com.cline.ui.markdown.MarkdownRenderer;
 import com.intellij.icons.AllIcons;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.ui.JBColor;
 import com.intellij.ui.components.JBLabel;
@@ -16,14 +19,25 @@ import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
 import java.awt.*;
+import java.lang.ref.Reference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * Component for displaying a single message in the chat.
  * This is the Java equivalent of the ChatRow.tsx component in the TypeScript version.
+ * <p>
+ * A row must be disposed with {@link com.intellij.openapi.util.Disposer} when it is no longer shown,
+ * which releases the editors of its code blocks.
+ * While a text message streams, appended content is rendered into the existing components of the row.
+ * Content moved to a blob that is no longer in memory is read in the background, never on the EDT.
  */
-public class ChatRow extends JBPanel<ChatRow> {
+public class ChatRow extends JBPanel<ChatRow> implements Disposable {
+    private static final Logger LOG = Logger.getInstance(ChatRow.class);
     private static final Pattern CODE_BLOCK_PATTERN = Pattern.compile("```(\\w*)\\s*([\\s\\S]*?)```");
     private static final Pattern IMAGE_PATTERN = Pattern.compile("!\\[(.*?)\\]\\((.*?)\\)");
     
@@ -34,6 +48,12 @@ public class ChatRow extends JBPanel<ChatRow> {
     
     private boolean isExpanded = false;
     private JPanel contentPanel;
+    private int renderedContentLength = -1;
+    private int renderedContentHash;
+    private ContentBlob renderedContentBlob;
+    private ContentBlob loadingContentBlob;
+    private List<ContentSegment> renderedSegments;
+    private JTextPane lastMarkdownPane;
     
     /**
      * Creates a new chat row.
@@ -45,8 +65,8 @@ public class ChatRow extends JBPanel<ChatRow> {
         super(new BorderLayout());
         this.message = message;
         this.project = project;
-        this.markdownRenderer = new MarkdownRenderer();
-        this.codeBlockRenderer = new CodeBlockRenderer(project);
+        this.markdownRenderer = new MarkdownRenderer(new MessageHtmlCache());
+        this.codeBlockRenderer = new CodeBlockRenderer(project, this);
         
         setBorder(JBUI.Borders.empty(10, 6, 10, 15));
         setOpaque(false);
@@ -58,6 +78,22 @@ public class ChatRow extends JBPanel<ChatRow> {
      * Creates the UI components.
      */
     private void createUIComponents() {
+        ContentBlob contentBlob = message.getContentBlob();
+        // Holding the content keeps a loaded blob in memory while the components are created from it
+        String content = message.getContentIfLoaded();
+        renderedSegments = null;
+        lastMarkdownPane = null;
+        if (content == null && contentBlob != null) {
+            renderedContentBlob = null;
+            renderedContentLength = -1;
+            add(createLoadingLabel(), BorderLayout.CENTER);
+            loadContent(contentBlob);
+            return;
+        }
+        renderedContentBlob = contentBlob;
+        renderedContentLength = content != null ? content.length() : -1;
+        renderedContentHash = content != null ? content.hashCode() : 0;
+        
         // Create header panel with icon and title
         JPanel headerPanel = createHeaderPanel();
         
@@ -73,6 +109,46 @@ public class ChatRow extends JBPanel<ChatRow> {
         // Add components to main panel
         add(headerPanel, BorderLayout.NORTH);
         add(contentPanel, BorderLayout.CENTER);
+        Reference.reachabilityFence(content);
+    }
+    
+    /**
+     * Creates the label shown while the content of the message is read.
+     *
+     * @return The label
+     */
+    private JComponent createLoadingLabel() {
+        JBLabel label = new JBLabel("Loading message...");
+        label.setForeground(JBColor.GRAY);
+        return label;
+    }
+    
+    /**
+     * Reads the content of a blob in the background and updates the row once it is in memory.
+     * Reading a blob that is already being read has no effect.
+     *
+     * @param contentBlob The blob holding the message content
+     */
+    private void loadContent(@NotNull ContentBlob contentBlob) {
+        if (contentBlob == loadingContentBlob) {
+            return;
+        }
+        loadingContentBlob = contentBlob;
+        CompletableFuture.supplyAsync(contentBlob::load).whenComplete((content, error) -> SwingUtilities.invokeLater(() -> {
+            if (loadingContentBlob != contentBlob) {
+                return;
+            }
+            loadingContentBlob = null;
+            if (error != null) {
+                LOG.warn("Error reading message content", error);
+                return;
+            }
+            // The row may have been disposed, or the message changed, while the content was read
+            if (getComponentCount() > 0 && message.getContentBlob() == contentBlob) {
+                updateContent();
+            }
+            Reference.reachabilityFence(content);
+        }));
     }
     
     /**
@@ -287,10 +363,21 @@ public class ChatRow extends JBPanel<ChatRow> {
      * @param content The content to process
      */
     private void processContent(String content) {
-        // Create a text pane for the markdown content
-        JTextPane textPane = new JTextPane();
-        textPane.setEditable(false);
-        textPane.setOpaque(false);
+        renderedSegments = splitContent(content);
+        for (ContentSegment segment : renderedSegments) {
+            addSegment(segment);
+        }
+    }
+    
+    /**
+     * Splits text content into markdown, code block and image segments.
+     * Images are only extracted after the last code block.
+     *
+     * @param content The content to split
+     * @return The segments in order
+     */
+    private static List<ContentSegment> splitContent(String content) {
+        List<ContentSegment> segments = new ArrayList<>();
         
         // Find all code blocks
         Matcher codeBlockMatcher = CODE_BLOCK_PATTERN.matcher(content);
@@ -305,20 +392,12 @@ public class ChatRow extends JBPanel<ChatRow> {
             
             // Add the content before the code block
             if (processedContent.length() > 0) {
-                JTextPane contentPane = new JTextPane();
-                contentPane.setEditable(false);
-                contentPane.setOpaque(false);
-                markdownRenderer.render(processedContent.toString(), contentPane);
-                contentPanel.add(contentPane);
+                segments.add(new ContentSegment(ContentSegment.Kind.MARKDOWN, processedContent.toString(), null));
                 processedContent.setLength(0);
             }
             
             // Add the code block
-            JComponent codeComponent = codeBlockRenderer.createCodeComponent(code, language);
-            JPanel codePanel = new JPanel(new BorderLayout());
-            codePanel.setBorder(JBUI.Borders.empty(5, 0));
-            codePanel.add(codeComponent, BorderLayout.CENTER);
-            contentPanel.add(codePanel);
+            segments.add(new ContentSegment(ContentSegment.Kind.CODE, code, language));
         }
         
         // Add any remaining content
@@ -329,7 +408,6 @@ public class ChatRow extends JBPanel<ChatRow> {
         StringBuffer contentWithoutImages = new StringBuffer();
         
         while (imageMatcher.find()) {
-            String altText = imageMatcher.group(1);
             String imageUrl = imageMatcher.group(2);
             
             // Replace the image with a placeholder
@@ -337,37 +415,97 @@ public class ChatRow extends JBPanel<ChatRow> {
             
             // Add the content before the image
             if (contentWithoutImages.length() > 0) {
-                JTextPane contentPane = new JTextPane();
-                contentPane.setEditable(false);
-                contentPane.setOpaque(false);
-                markdownRenderer.render(contentWithoutImages.toString(), contentPane);
-                contentPanel.add(contentPane);
+                segments.add(new ContentSegment(ContentSegment.Kind.MARKDOWN, contentWithoutImages.toString(), null));
                 contentWithoutImages.setLength(0);
             }
             
             // Add the image
-            JComponent imageComponent = ImageRenderer.createImageComponent(imageUrl);
-            if (imageComponent != null) {
-                JPanel imagePanel = new JPanel(new BorderLayout());
-                imagePanel.setBorder(JBUI.Borders.empty(5, 0));
-                imagePanel.add(imageComponent, BorderLayout.CENTER);
-                contentPanel.add(imagePanel);
-            }
+            segments.add(new ContentSegment(ContentSegment.Kind.IMAGE, imageUrl, null));
         }
         
         // Add any remaining content
         imageMatcher.appendTail(contentWithoutImages);
-        
-        // Render the remaining content as markdown
         if (contentWithoutImages.length() > 0) {
+            segments.add(new ContentSegment(ContentSegment.Kind.MARKDOWN, contentWithoutImages.toString(), null));
+        }
+        return segments;
+    }
+    
+    /**
+     * Adds the component of a content segment to the content panel.
+     *
+     * @param segment The segment
+     */
+    private void addSegment(ContentSegment segment) {
+        lastMarkdownPane = null;
+        if (segment.kind == ContentSegment.Kind.MARKDOWN) {
+            // Render the content as markdown
             JTextPane contentPane = new JTextPane();
             contentPane.setEditable(false);
             contentPane.setOpaque(false);
-            markdownRenderer.render(contentWithoutImages.toString(), contentPane);
+            markdownRenderer.render(segment.text, contentPane);
             contentPanel.add(contentPane);
+            lastMarkdownPane = contentPane;
+        } else if (segment.kind == ContentSegment.Kind.CODE) {
+            JComponent codeComponent = codeBlockRenderer.createCodeComponent(segment.text, segment.language);
+            JPanel codePanel = new JPanel(new BorderLayout());
+            codePanel.setBorder(JBUI.Borders.empty(5, 0));
+            codePanel.add(codeComponent, BorderLayout.CENTER);
+            contentPanel.add(codePanel);
+        } else {
+            JComponent imageComponent = ImageRenderer.createImageComponent(segment.text);
+            if (imageComponent != null) {
+                JPanel imagePanel = new JPanel(new BorderLayout());
+                imagePanel.setBorder(JBUI.Borders.empty(5, 0));
+                imagePanel.add(imageComponent, BorderLayout.CENTER);
+                contentPanel.add(imagePanel);
+            }
         }
     }
     
+    /**
+     * Renders the content of a text message into the existing components if it continues the rendered
+     * content. Only the last markdown segment is rendered again, incrementally, and new segments are added.
+     *
+     * @param content The content
+     * @return Whether the content was rendered in place
+     */
+    private boolean renderInPlace(String content) {
+        if (renderedSegments == null || message.getRole() != MessageRole.ASSISTANT
+                || message.isToolUse() || message.isCommand() || message.isError()) {
+            return false;
+        }
+        
+        List<ContentSegment> segments = splitContent(content);
+        int last = renderedSegments.size() - 1;
+        if (segments.size() <= last) {
+            return false;
+        }
+        for (int i = 0; i < last; i++) {
+            if (!segments.get(i).equals(renderedSegments.get(i))) {
+                return false;
+            }
+        }
+        if (last >= 0 && !segments.get(last).equals(renderedSegments.get(last))) {
+            if (segments.get(last).kind != ContentSegment.Kind.MARKDOWN || lastMarkdownPane == null) {
+                return false;
+            }
+            markdownRenderer.render(segments.get(last).text, lastMarkdownPane);
+        }
+        JTextPane markdownPane = lastMarkdownPane;
+        for (int i = last + 1; i < segments.size(); i++) {
+            addSegment(segments.get(i));
+        }
+        if (segments.size() == last + 1) {
+            lastMarkdownPane = markdownPane;
+        }
+        renderedSegments = segments;
+        
+        contentPanel.revalidate();
+        contentPanel.repaint();
+        return true;
+    }
+    
     /**
      * Adds user content to the content panel.
      */
@@ -461,19 +599,77 @@ public class ChatRow extends JBPanel<ChatRow> {
         contentPanel.add(toolResultPanel);
     }
     
+    /**
+     * Gets the message displayed by this row.
+     *
+     * @return The message
+     */
+    @NotNull
+    public Message getMessage() {
+        return message;
+    }
+    
+    /**
+     * Re-renders the row in place if the message content changed since it was rendered,
+     * e.g. while the message is streaming.
+     *
+     * @return Whether the row was re-rendered
+     */
+    public boolean updateContent() {
+        // Content moved to a blob does not change, so it is not loaded again
+        ContentBlob contentBlob = message.getContentBlob();
+        if (contentBlob != null && contentBlob == renderedContentBlob) {
+            return false;
+        }
+        String content = message.getContentIfLoaded();
+        if (content == null && contentBlob != null) {
+            // Compared once the content has been read in the background
+            loadContent(contentBlob);
+            return false;
+        }
+        if (content != null && content.length() == renderedContentLength && content.hashCode() == renderedContentHash) {
+            renderedContentBlob = contentBlob;
+            return false;
+        }
+        if (content != null && renderInPlace(content)) {
+            renderedContentBlob = contentBlob;
+            renderedContentLength = content.length();
+            renderedContentHash = content.hashCode();
+        } else {
+            rebuild();
+        }
+        Reference.reachabilityFence(content);
+        return true;
+    }
+    
     /**
      * Toggles whether the message is expanded.
      */
     private void toggleExpanded() {
         isExpanded = !isExpanded;
-        
-        // Refresh the UI
+        rebuild();
+    }
+    
+    /**
+     * Rebuilds the UI components of this row.
+     */
+    private void rebuild() {
         removeAll();
+        codeBlockRenderer.releaseEditors();
         createUIComponents();
         revalidate();
         repaint();
     }
     
+    /**
+     * Removes the components of this row. The editors of its code blocks are released by
+     * the code block renderer, which is disposed with the row.
+     */
+    @Override
+    public void dispose() {
+        removeAll();
+    }
+    
     /**
      * Checks if the message is expandable.
      *
@@ -482,4 +678,49 @@ public class ChatRow extends JBPanel<ChatRow> {
     private boolean isExpandable() {
         return message.isToolUse() || message.isCommand();
     }
-}
\ No newline at end of file
+    
+    /**
+     * Keeps the HTML of the markdown of this row in the {@link RenderCache}.
+     */
+    private class MessageHtmlCache implements MarkdownRenderer.HtmlCache {
+        @Override
+        public String get(@NotNull String markdown) {
+            return RenderCache.getInstance().getHtml(message, markdown);
+        }
+        
+        @Override
+        public void put(@NotNull String markdown, @NotNull String html) {
+            RenderCache.getInstance().putHtml(message, markdown, html);
+        }
+    }
+    
+    /**
+     * A part of a text message that is shown by its own component.
+     */
+    private static final class ContentSegment {
+        enum Kind { MARKDOWN, CODE, IMAGE }
+        
+        final Kind kind;
+        final String text;
+        final String language;
+        
+        ContentSegment(Kind kind, String text, String language) {
+            this.kind = kind;
+            this.text = text;
+            this.language = language;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            ContentSegment that = (ContentSegment) o;
+            return kind == that.kind && text.equals(that.text) && Objects.equals(language, that.language);
+        }
+        
+        @Override
+        public int hashCode() {
+            return Objects.hash(kind, text, language);
+        }
+    }
+}
@@ -8,6 +8,7 @@ import com.cline.services.ClineApiService;
 import com.cline.services.ClineSettingsService;
 import com.cline.services.api.ApiProvider;
 import com.google.gson.JsonObject;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.ui.JBColor;
@@ -26,21 +27,27 @@ import java.awt.event.KeyEvent;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Consumer;
 
 /**
  * Main chat view component for the Cline plugin.
  * This is the Java equivalent of the ChatView.tsx component in the TypeScript version.
+ * <p>
+ * Messages are shown in a {@link ChatMessageList}, which only creates rows for the visible messages and keeps
+ * them while they stay visible. Streamed text only re-renders the row of the streaming message, at most
+ * once per frame. Disposing the view disposes the rows that are still shown, which releases their editors.
  */
-public class ChatView extends JPanel {
+public class ChatView extends JPanel implements Disposable {
     private static final Logger LOG = Logger.getInstance(ChatView.class);
+    private static final int STREAMING_REFRESH_INTERVAL_MILLIS = 16;
     
     private final Project project;
     private final ClineSettingsService settingsService;
     private final ClineApiService apiService;
     private final ToolExecutor toolExecutor;
     
-    private JPanel messagesPanel;
+    private ChatMessageList messagesPanel;
     private JTextArea inputArea;
     private JButton sendButton;
     private JButton primaryButton;
@@ -48,6 +55,9 @@ public class ChatView extends JPanel {
     private JScrollPane scrollPane;
     
     private Conversation conversation;
+    private TaskHeader taskHeader;
+    private Message taskHeaderMessage;
+    private JPanel welcomePanel;
     private boolean isInputDisabled = false;
     private boolean isStreaming = false;
     private List<String> selectedImages = new ArrayList<>();
@@ -77,8 +87,7 @@ public class ChatView extends JPanel {
      */
     private void createUIComponents() {
         // Messages panel
-        messagesPanel = new JPanel();
-        messagesPanel.setLayout(new BoxLayout(messagesPanel, BoxLayout.Y_AXIS));
+        messagesPanel = new ChatMessageList(message -> new ChatRow(message, project), RenderCache.getInstance());
         messagesPanel.setBorder(JBUI.Borders.empty(10));
         
         // Scroll pane for messages
@@ -150,35 +159,58 @@ public class ChatView extends JPanel {
     
     /**
      * Refreshes the messages display.
+     * Rows are kept for messages that are still shown and only created for visible messages.
      */
     private void refreshMessages() {
-        messagesPanel.removeAll();
+        JComponent header;
+        List<Message> messages;
         
         if (conversation == null) {
             // Show welcome view
-            JPanel welcomePanel = createWelcomePanel();
-            messagesPanel.add(welcomePanel);
+            if (welcomePanel == null) {
+                welcomePanel = createWelcomePanel();
+            }
+            header = welcomePanel;
+            messages = List.of();
+            taskHeader = null;
+            taskHeaderMessage = null;
         } else {
             // Add task header if available
-            Message task = conversation.getMessages().isEmpty() ? null : conversation.getMessages().get(0);
-            if (task != null) {
-                TaskHeader taskHeader = new TaskHeader(task, conversation);
-                messagesPanel.add(taskHeader);
+            messages = conversation.getMessages();
+            Message task = messages.isEmpty() ? null : messages.get(0);
+            if (task != taskHeaderMessage) {
+                taskHeader = task != null ? new TaskHeader(task, conversation) : null;
+                taskHeaderMessage = task;
             }
+            header = taskHeader;
             
-            // Add messages
-            for (Message message : conversation.getMessages()) {
-                if (message == task) continue; // Skip the task message
-                
-                ChatRow chatRow = new ChatRow(message, project);
-                messagesPanel.add(chatRow);
+            // Skip the task message
+            if (task != null) {
+                messages = messages.subList(1, messages.size());
             }
         }
         
-        messagesPanel.revalidate();
-        messagesPanel.repaint();
-        
-        // Scroll to bottom
+        boolean headerChanged = messagesPanel.setHeader(header);
+        if (messagesPanel.setMessages(messages) || headerChanged) {
+            scrollToBottom();
+        }
+    }
+    
+    /**
+     * Re-renders the row of a message that changed in place.
+     *
+     * @param message The message
+     */
+    private void refreshMessage(@NotNull Message message) {
+        if (messagesPanel.updateMessage(message)) {
+            scrollToBottom();
+        }
+    }
+    
+    /**
+     * Scrolls the messages to the bottom once the pending layout is done.
+     */
+    private void scrollToBottom() {
         SwingUtilities.invokeLater(() -> {
             JScrollBar verticalScrollBar = scrollPane.getVerticalScrollBar();
             verticalScrollBar.setValue(verticalScrollBar.getMaximum());
@@ -265,21 +297,14 @@ public class ChatView extends JPanel {
         conversation.addMessage(streamingMessage);
         refreshMessages();
         
-        // Create a string builder for the streaming content
-        StringBuilder contentBuilder = new StringBuilder();
+        // Collects the streamed content and updates the streaming message at most once per frame
+        StreamingRefresh streamingRefresh = new StreamingRefresh(streamingMessage);
         
         // Send the conversation to the API with streaming
         apiService.sendConversationStreaming(conversation, new ApiProvider.StreamHandler() {
             @Override
             public void onTextChunk(String text) {
-                // Append the text chunk to the content builder
-                contentBuilder.append(text);
-                
-                // Update the streaming message
-                SwingUtilities.invokeLater(() -> {
-                    streamingMessage.setContent(contentBuilder.toString());
-                    refreshMessages();
-                });
+                streamingRefresh.append(text);
             }
             
             @Override
@@ -287,7 +312,8 @@ public class ChatView extends JPanel {
                 // Handle tool use
                 SwingUtilities.invokeLater(() -> {
                     // Remove the streaming message
-                    conversation.getMessages().remove(streamingMessage);
+                    streamingRefresh.stop();
+                    conversation.removeMessage(streamingMessage);
                     
                     // Add a tool use message
                     Message toolUseMessage = Message.createAssistantMessage(toolInput.toString());
@@ -319,13 +345,9 @@ public class ChatView extends JPanel {
                 SwingUtilities.invokeLater(() -> {
                     isStreaming = false;
                     
-                    // If we have a streaming message, finalize it
-                    if (conversation.getMessages().contains(streamingMessage)) {
-                        // Replace the streaming message with a final message
-                        conversation.getMessages().remove(streamingMessage);
-                        Message finalMessage = Message.createAssistantMessage(contentBuilder.toString());
-                        conversation.addMessage(finalMessage);
-                    }
+                    // Finalize the streaming message in place, so its row is kept
+                    streamingRefresh.stop();
+                    streamingMessage.setContent(streamingRefresh.getContent());
                     
                     // Enable input
                     setInputDisabled(false);
@@ -345,7 +367,8 @@ public class ChatView extends JPanel {
                     isStreaming = false;
                     
                     // Remove the streaming message
-                    conversation.getMessages().remove(streamingMessage);
+                    streamingRefresh.stop();
+                    conversation.removeMessage(streamingMessage);
                     
                     // Add an error message
                     JsonObject metadata = new JsonObject();
@@ -602,4 +625,68 @@ public class ChatView extends JPanel {
     public void setOnShowHistoryView(Consumer<Boolean> onShowHistoryView) {
         this.onShowHistoryView = onShowHistoryView;
     }
+    
+    /**
+     * Disposes the rows of the shown messages.
+     */
+    @Override
+    public void dispose() {
+        messagesPanel.releaseRows();
+    }
+    
+    /**
+     * Coalesces streamed text chunks, which arrive on a background thread, into at most one
+     * update of the streaming message and its row per frame.
+     */
+    private final class StreamingRefresh {
+        private final Message message;
+        private final StringBuilder content = new StringBuilder();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+        private final Timer timer;
+        
+        private StreamingRefresh(Message message) {
+            this.message = message;
+            this.timer = new Timer(STREAMING_REFRESH_INTERVAL_MILLIS, e -> flush());
+            this.timer.setRepeats(false);
+        }
+        
+        /**
+         * Appends a chunk and schedules an update unless one is pending.
+         *
+         * @param text The text chunk
+         */
+        private void append(String text) {
+            synchronized (content) {
+                content.append(text);
+            }
+            if (scheduled.compareAndSet(false, true)) {
+                timer.restart();
+            }
+        }
+        
+        /**
+         * Gets the content streamed so far.
+         *
+         * @return The content
+         */
+        private String getContent() {
+            synchronized (content) {
+                return content.toString();
+            }
+        }
+        
+        /**
+         * Cancels a pending update.
+         */
+        private void stop() {
+            timer.stop();
+        }
+        
+        private void flush() {
+            // Chunks appended from now on schedule the next update
+            scheduled.set(false);
+            message.setContent(getContent());
+            refreshMessage(message);
+        }
+    }
 }
\ No newline at end of file
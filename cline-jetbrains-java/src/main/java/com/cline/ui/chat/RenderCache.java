@@ -0,0 +1,209 @@
+package com.cline.ui.chat;
+
+import com.cline.core.model.ContentBlob;
+import com.cline.core.model.Message;
+import com.intellij.ide.ui.LafManagerListener;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.editor.colors.EditorColorsManager;
+import com.intellij.util.messages.MessageBusConnection;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Cache of rendered chat messages, so conversations that are opened again are shown without rendering
+ * and measuring all their messages again.
+ * <p>
+ * Entries are kept per message and are only used while the message content is unchanged, which is checked by
+ * comparing the content, or the SHA-256 hash of content that was moved to a blob. An entry holds the HTML that the
+ * markdown segments of the message were rendered to, keyed by the segment text, and the height of the row at the
+ * width it was last measured at. The cache is bounded by the length of the cached text and HTML, evicts the least recently used messages first, and is cleared when the theme or the editor color scheme changes,
+ * since both change how messages are rendered.
+ */
+@Service
+public final class RenderCache implements Disposable {
+    private static final long DEFAULT_MAX_SIZE = 4L * 1024 * 1024;
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final long maxSize;
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long size = 0;
+
+    /**
+     * Creates the render cache, which is cleared on theme changes.
+     */
+    public RenderCache() {
+        this(DEFAULT_MAX_SIZE);
+        MessageBusConnection connection = ApplicationManager.getApplication().getMessageBus().connect(this);
+        connection.subscribe(LafManagerListener.TOPIC, source -> clear());
+        connection.subscribe(EditorColorsManager.TOPIC, scheme -> clear());
+    }
+
+    /**
+     * Creates a render cache.
+     *
+     * @param maxSize The maximum number of cached HTML characters
+     */
+    RenderCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Gets the render cache instance.
+     *
+     * @return The render cache instance
+     */
+    public static RenderCache getInstance() {
+        return ApplicationManager.getApplication().getService(RenderCache.class);
+    }
+
+    /**
+     * Gets the HTML a markdown segment of a message was rendered to.
+     *
+     * @param message  The message
+     * @param markdown The markdown segment
+     * @return The HTML, or null if it is not cached for the current content of the message
+     */
+    @Nullable
+    public synchronized String getHtml(@NotNull Message message, @NotNull String markdown) {
+        Entry entry = getEntry(message, false);
+        return entry != null ? entry.html.get(markdown) : null;
+    }
+
+    /**
+     * Caches the HTML a markdown segment of a message was rendered to.
+     *
+     * @param message  The message
+     * @param markdown The markdown segment
+     * @param html     The HTML
+     */
+    public synchronized void putHtml(@NotNull Message message, @NotNull String markdown, @NotNull String html) {
+        if (markdown.length() + html.length() > maxSize) {
+            return;
+        }
+        Entry entry = getEntry(message, true);
+        String previous = entry.html.put(markdown, html);
+        size += previous != null ? html.length() - previous.length() : markdown.length() + html.length();
+        evict();
+    }
+
+    /**
+     * Gets the measured height of the row of a message.
+     *
+     * @param message The message
+     * @param width   The width of the row
+     * @return The height, or -1 if the row was not measured at this width with the current content
+     */
+    public synchronized int getHeight(@NotNull Message message, int width) {
+        Entry entry = getEntry(message, false);
+        return entry != null && entry.width == width ? entry.height : -1;
+    }
+
+    /**
+     * Caches the measured height of the row of a message.
+     *
+     * @param message The message
+     * @param width   The width of the row
+     * @param height  The height of the row
+     */
+    public synchronized void putHeight(@NotNull Message message, int width, int height) {
+        Entry entry = getEntry(message, true);
+        entry.width = width;
+        entry.height = height;
+        evict();
+    }
+
+    /**
+     * Gets the number of cached text and HTML characters, including a fixed overhead per message.
+     *
+     * @return The size of the cache
+     */
+    public synchronized long getSize() {
+        return size;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    @Override
+    public void dispose() {
+        clear();
+    }
+
+    /**
+     * Gets the entry of a message, dropping it if it was created for other content.
+     *
+     * @param message The message
+     * @param create  Whether to create the entry if there is none
+     * @return The entry, or null if there is none and none was created
+     */
+    private Entry getEntry(Message message, boolean create) {
+        // Content moved to a blob is identified by its hash, so it does not have to be loaded
+        ContentBlob blob = message.getContentBlob();
+        String blobHash = blob != null ? blob.getHash() : null;
+        String content = blob == null ? message.getContentIfLoaded() : null;
+
+        Entry entry = entries.get(message.getId());
+        if (entry != null && !(Objects.equals(entry.blobHash, blobHash) && Objects.equals(entry.content, content))) {
+            remove(message.getId());
+            entry = null;
+        }
+        if (entry == null && create) {
+            entry = new Entry(blobHash, content);
+            entries.put(message.getId(), entry);
+            size += entry.getSize();
+        }
+        return entry;
+    }
+
+    private void remove(String messageId) {
+        Entry entry = entries.remove(messageId);
+        if (entry != null) {
+            size -= entry.getSize();
+        }
+    }
+
+    private void evict() {
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (size > maxSize && iterator.hasNext()) {
+            size -= iterator.next().getSize();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * What is cached for one message.
+     */
+    private static final class Entry {
+        final String blobHash;
+        final String content;
+        final Map<String, String> html = new HashMap<>();
+        int width = -1;
+        int height = -1;
+
+        Entry(@Nullable String blobHash, @Nullable String content) {
+            this.blobHash = blobHash;
+            this.content = content;
+        }
+
+        long getSize() {
+            long size = ENTRY_OVERHEAD + (content != null ? content.length() : 0);
+            for (Map.Entry<String, String> segment : html.entrySet()) {
+                size += segment.getKey().length() + segment.getValue().length();
+            }
+            return size;
+        }
+    }
+}
@@ -15,6 +15,7 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -62,8 +63,18 @@ public class TaskHeader extends JPanel {
         taskTextPane.setEditable(false);
         taskTextPane.setOpaque(false);
         
-        // Render the task content as markdown
-        markdownRenderer.render(task.getContent(), taskTextPane);
+        // Render the task content as markdown, reading content moved to a blob in the background
+        String content = task.getContentIfLoaded();
+        if (content != null || task.getContentBlob() == null) {
+            markdownRenderer.render(content, taskTextPane);
+        } else {
+            taskTextPane.setText("Loading task...");
+            CompletableFuture.supplyAsync(task::getContent).thenAccept(loaded -> SwingUtilities.invokeLater(() -> {
+                markdownRenderer.render(loaded, taskTextPane);
+                revalidate();
+                repaint();
+            }));
+        }
         
         // Task timestamp
         SimpleDateFormat dateFormat = new SimpleDateFormat("MMM d, yyyy h:mm a");
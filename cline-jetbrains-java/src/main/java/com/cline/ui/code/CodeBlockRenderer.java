@@ -1,26 +1,31 @@
 package com.cline.ui.code;
 
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.diagnostic.Logger;
-import com.intellij.openapi.editor.Document;
-import com.intellij.openapi.editor.EditorFactory;
-import com.intellij.openapi.editor.colors.EditorColorsManager;
 import com.intellij.openapi.editor.ex.EditorEx;
 import com.intellij.openapi.editor.highlighter.EditorHighlighterFactory;
 import com.intellij.openapi.fileTypes.FileType;
 import com.intellij.openapi.fileTypes.FileTypeManager;
 import com.intellij.openapi.fileTypes.PlainTextFileType;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
  * Renderer for code blocks with syntax highlighting.
+ * <p>
+ * Code blocks are shown by editors from the {@link CodeEditorPool}, which are returned to the pool when the
+ * renderer is disposed together with its parent. A code block is only highlighted once it is painted.
  */
-public class CodeBlockRenderer {
+public class CodeBlockRenderer implements Disposable {
     private static final Logger LOG = Logger.getInstance(CodeBlockRenderer.class);
     private static final Map<String, String> LANGUAGE_TO_EXTENSION = new HashMap<>();
     
@@ -43,9 +48,17 @@ public class CodeBlockRenderer {
     }
     
     private final Project project;
+    private final List<CodeBlock> codeBlocks = new ArrayList<>();
     
-    public CodeBlockRenderer(Project project) {
+    /**
+     * Creates a new code block renderer.
+     *
+     * @param project The project
+     * @param parent  The disposable the editors of the renderer are released with
+     */
+    public CodeBlockRenderer(@NotNull Project project, @NotNull Disposable parent) {
         this.project = project;
+        Disposer.register(parent, this);
     }
     
     /**
@@ -60,29 +73,11 @@ public class CodeBlockRenderer {
             // Determine the file type based on the language
             FileType fileType = getFileTypeForLanguage(language);
             
-            // Create a document with the code
-            Document document = EditorFactory.getInstance().createDocument(code);
-            
-            // Create an editor for the document
-            EditorEx editor = (EditorEx) EditorFactory.getInstance().createViewer(document, project);
-            
-            // Configure the editor
-            // Use EditorHighlighterFactory to set the highlighter
-            editor.setHighlighter(EditorHighlighterFactory.getInstance().createEditorHighlighter(
-                    project, fileType));
-            
-            editor.getSettings().setLineNumbersShown(true);
-            editor.getSettings().setFoldingOutlineShown(false);
-            editor.getSettings().setLineMarkerAreaShown(false);
-            editor.getSettings().setIndentGuidesShown(true);
-            editor.getSettings().setVirtualSpace(false);
-            editor.getSettings().setWheelFontChangeEnabled(false);
-            editor.getSettings().setAdditionalLinesCount(0);
-            editor.getSettings().setAdditionalColumnsCount(0);
-            editor.getSettings().setRightMarginShown(false);
-            
-            // Return the editor component
-            return editor.getComponent();
+            // Get an editor showing the code, highlighted once it is painted
+            EditorEx editor = CodeEditorPool.getInstance(project).acquire(code);
+            CodeBlock codeBlock = new CodeBlock(editor, fileType);
+            codeBlocks.add(codeBlock);
+            return codeBlock;
         } catch (Exception e) {
             LOG.error("Error creating code component", e);
             
@@ -94,6 +89,22 @@ public class CodeBlockRenderer {
         }
     }
     
+    /**
+     * Releases the editors of the code components created by this renderer.
+     * The components must not be shown anymore.
+     */
+    public void releaseEditors() {
+        for (CodeBlock codeBlock : codeBlocks) {
+            codeBlock.release();
+        }
+        codeBlocks.clear();
+    }
+    
+    @Override
+    public void dispose() {
+        releaseEditors();
+    }
+    
     /**
      * Gets the file type for a language.
      *
@@ -113,4 +124,48 @@ public class CodeBlockRenderer {
         FileType fileType = FileTypeManager.getInstance().getFileTypeByExtension(extension);
         return fileType != null ? fileType : PlainTextFileType.INSTANCE;
     }
-}
\ No newline at end of file
+    
+    /**
+     * Component of a code block, which sets the syntax highlighter of its editor when it is first painted.
+     * Painting only happens once the block is in the visible area, so blocks that are never scrolled to
+     * are never highlighted.
+     */
+    private class CodeBlock extends JPanel {
+        private final FileType fileType;
+        private EditorEx editor;
+        private boolean highlightScheduled;
+        
+        CodeBlock(EditorEx editor, FileType fileType) {
+            super(new BorderLayout());
+            this.editor = editor;
+            this.fileType = fileType;
+            this.highlightScheduled = fileType == PlainTextFileType.INSTANCE;
+            add(editor.getComponent(), BorderLayout.CENTER);
+        }
+        
+        @Override
+        public void paint(Graphics g) {
+            if (!highlightScheduled) {
+                // Changing the highlighter repaints the editor, so do not change it while painting
+                highlightScheduled = true;
+                SwingUtilities.invokeLater(this::highlight);
+            }
+            super.paint(g);
+        }
+        
+        private void highlight() {
+            if (editor != null && !editor.isDisposed()) {
+                editor.setHighlighter(EditorHighlighterFactory.getInstance().createEditorHighlighter(
+                        project, fileType));
+            }
+        }
+        
+        void release() {
+            if (editor != null) {
+                remove(editor.getComponent());
+                CodeEditorPool.getInstance(project).release(editor);
+                editor = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.cline.ui.code;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.ex.EditorEx;
+import com.intellij.openapi.editor.highlighter.EditorHighlighterFactory;
+import com.intellij.openapi.fileTypes.PlainTextFileType;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Pool of the read-only editors that show code blocks in the chat.
+ * <p>
+ * Creating an editor is expensive, and code blocks are created again whenever a message is re-rendered or
+ * scrolled back into view, so released editors are kept for reuse, up to a bound. Acquired editors show their
+ * text without syntax highlighting until a highlighter is set. All editors are released when the project is closed.
+ * <p>
+ * The pool is only accessed on the event dispatch thread.
+ */
+@Service
+public final class CodeEditorPool implements Disposable {
+    private static final int MAX_IDLE_EDITORS = 8;
+
+    private final Project project;
+    private final Deque<EditorEx> idleEditors = new ArrayDeque<>();
+    private final Set<EditorEx> usedEditors = new HashSet<>();
+    private boolean disposed = false;
+
+    /**
+     * Creates a new editor pool.
+     *
+     * @param project The project
+     */
+    public CodeEditorPool(Project project) {
+        this.project = project;
+    }
+
+    /**
+     * Gets the editor pool instance.
+     *
+     * @param project The project
+     * @return The editor pool instance
+     */
+    public static CodeEditorPool getInstance(Project project) {
+        return project.getService(CodeEditorPool.class);
+    }
+
+    /**
+     * Gets an editor showing text, reusing a released editor if there is one.
+     * The editor must be {@link #release(EditorEx) released} when it is no longer shown.
+     *
+     * @param text The text to show
+     * @return The editor, without syntax highlighting
+     */
+    @NotNull
+    public EditorEx acquire(@NotNull String text) {
+        EditorEx editor = idleEditors.pollLast();
+        if (editor == null) {
+            editor = createEditor();
+        } else {
+            editor.setHighlighter(EditorHighlighterFactory.getInstance().createEditorHighlighter(
+                    project, PlainTextFileType.INSTANCE));
+        }
+        setText(editor, StringUtil.convertLineSeparators(text));
+        usedEditors.add(editor);
+        return editor;
+    }
+
+    /**
+     * Returns an editor to the pool, or releases it if the pool is full.
+     * The editor component must have been removed from its parent.
+     *
+     * @param editor The editor
+     */
+    public void release(@NotNull EditorEx editor) {
+        if (!usedEditors.remove(editor) || editor.isDisposed()) {
+            return;
+        }
+        if (disposed || idleEditors.size() >= MAX_IDLE_EDITORS) {
+            EditorFactory.getInstance().releaseEditor(editor);
+            return;
+        }
+
+        // Do not keep the text of large blocks alive
+        setText(editor, "");
+        idleEditors.addLast(editor);
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        List<EditorEx> editors = new ArrayList<>(idleEditors);
+        editors.addAll(usedEditors);
+        idleEditors.clear();
+        usedEditors.clear();
+        for (EditorEx editor : editors) {
+            if (!editor.isDisposed()) {
+                EditorFactory.getInstance().releaseEditor(editor);
+            }
+        }
+    }
+
+    /**
+     * Creates an editor for code blocks.
+     *
+     * @return The editor
+     */
+    private EditorEx createEditor() {
+        Document document = EditorFactory.getInstance().createDocument("");
+        EditorEx editor = (EditorEx) EditorFactory.getInstance().createViewer(document, project);
+
+        editor.getSettings().setLineNumbersShown(true);
+        editor.getSettings().setFoldingOutlineShown(false);
+        editor.getSettings().setLineMarkerAreaShown(false);
+        editor.getSettings().setIndentGuidesShown(true);
+        editor.getSettings().setVirtualSpace(false);
+        editor.getSettings().setWheelFontChangeEnabled(false);
+        editor.getSettings().setAdditionalLinesCount(0);
+        editor.getSettings().setAdditionalColumnsCount(0);
+        editor.getSettings().setRightMarginShown(false);
+        return editor;
+    }
+
+    private static void setText(EditorEx editor, String text) {
+        ApplicationManager.getApplication().runWriteAction(() -> editor.getDocument().setText(text));
+    }
+}
@@ -0,0 +1,242 @@
+package com.cline.ui.history;
+
+import com.cline.services.history.ConversationSummary;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * List model of the conversation history.
+ * <p>
+ * The model holds the summaries of all conversations, sorted by the selected {@link SortOrder}, and shows the ones
+ * that match the filter. The shown summaries are kept as indexes into the sorted summaries, so filtering never
+ * copies summaries. A conversation matches the filter if its title contains the filter text, or if the search
+ * function finds it. Both only match fewer conversations as text is appended, so a filter that extends the
+ * previous one, as it does while the user types, only checks the conversations that matched the previous one.
+ * <p>
+ * The model is only accessed on the event dispatch thread.
+ */
+public class HistoryListModel extends AbstractListModel<ConversationSummary> {
+    private static final Comparator<ConversationSummary> MOST_RECENT_FIRST =
+            Comparator.comparing(ConversationSummary::getUpdatedAt).reversed();
+
+    /**
+     * The orders the history can be sorted in. Conversations that are equal in the order are sorted by date.
+     */
+    public enum SortOrder {
+        DATE("Date", MOST_RECENT_FIRST),
+        TOKENS("Tokens", Comparator.comparingLong(ConversationSummary::getTotalTokens).reversed()
+                .thenComparing(MOST_RECENT_FIRST)),
+        COST("Cost", Comparator.comparingDouble(ConversationSummary::getCost).reversed()
+                .thenComparing(MOST_RECENT_FIRST));
+
+        private final String displayName;
+        private final Comparator<ConversationSummary> comparator;
+
+        SortOrder(String displayName, Comparator<ConversationSummary> comparator) {
+            this.displayName = displayName;
+            this.comparator = comparator;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+    }
+
+    private final Function<String, Collection<String>> search;
+
+    private ConversationSummary[] summaries = new ConversationSummary[0];
+    // The lower case titles of the sorted summaries
+    private String[] titles = new String[0];
+    // The indexes of the shown summaries, of which the first shownCount are used
+    private int[] shown = new int[0];
+    private int shownCount = 0;
+
+    private SortOrder sortOrder = SortOrder.DATE;
+    private String filter = "";
+    private Set<String> searchMatches = Collections.emptySet();
+
+    /**
+     * Creates a new history list model.
+     *
+     * @param search The function that gets the IDs of all conversations matching a filter, by more than their title
+     */
+    public HistoryListModel(@NotNull Function<String, Collection<String>> search) {
+        this.search = search;
+    }
+
+    @Override
+    public int getSize() {
+        return shownCount;
+    }
+
+    @Override
+    public ConversationSummary getElementAt(int index) {
+        if (index < 0 || index >= shownCount) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + shownCount);
+        }
+        return summaries[shown[index]];
+    }
+
+    /**
+     * Replaces all summaries, keeping the sort order and the filter.
+     *
+     * @param summaries The summaries of all conversations
+     */
+    public void setSummaries(@NotNull List<ConversationSummary> summaries) {
+        int oldSize = shownCount;
+        this.summaries = summaries.toArray(new ConversationSummary[0]);
+        sort();
+        // The conversations may have changed since the filter was searched
+        searchMatches = filter.isEmpty() ? Collections.emptySet() : searchIds(filter);
+        filterAll();
+        fireChanged(oldSize);
+    }
+
+    /**
+     * Gets the order the summaries are sorted in.
+     *
+     * @return The sort order
+     */
+    @NotNull
+    public SortOrder getSortOrder() {
+        return sortOrder;
+    }
+
+    /**
+     * Sorts the summaries.
+     *
+     * @param sortOrder The sort order
+     */
+    public void setSortOrder(@NotNull SortOrder sortOrder) {
+        if (sortOrder == this.sortOrder) {
+            return;
+        }
+        this.sortOrder = sortOrder;
+        int oldSize = shownCount;
+        sort();
+        filterAll();
+        fireChanged(oldSize);
+    }
+
+    /**
+     * Gets the filter.
+     *
+     * @return The filter, trimmed and in lower case; empty if all summaries are shown
+     */
+    @NotNull
+    public String getFilter() {
+        return filter;
+    }
+
+    /**
+     * Shows only the summaries of the conversations matching a filter.
+     *
+     * @param text The filter text, or an empty string to show all summaries
+     */
+    public void setFilter(@NotNull String text) {
+        String newFilter = text.trim().toLowerCase(Locale.ROOT);
+        if (newFilter.equals(filter)) {
+            return;
+        }
+
+        // A filter without a searchable term matched titles only, so it cannot be narrowed by search matches
+        boolean narrowing = newFilter.startsWith(filter) && hasTerm(filter);
+        filter = newFilter;
+        searchMatches = filter.isEmpty() ? Collections.emptySet() : searchIds(filter);
+        int oldSize = shownCount;
+        if (narrowing) {
+            int count = 0;
+            for (int i = 0; i < shownCount; i++) {
+                if (matches(shown[i])) {
+                    shown[count++] = shown[i];
+                }
+            }
+            shownCount = count;
+        } else {
+            filterAll();
+        }
+        fireChanged(oldSize);
+    }
+
+    /**
+     * Gets the index of the summary of a conversation in the list.
+     *
+     * @param id The conversation ID
+     * @return The index, or -1 if the conversation is not shown
+     */
+    public int indexOf(@NotNull String id) {
+        for (int i = 0; i < shownCount; i++) {
+            if (summaries[shown[i]].getId().equals(id)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void sort() {
+        Arrays.sort(summaries, sortOrder.comparator);
+        titles = new String[summaries.length];
+        for (int i = 0; i < summaries.length; i++) {
+            String title = summaries[i].getTitle();
+            titles[i] = title != null ? title.toLowerCase(Locale.ROOT) : "";
+        }
+    }
+
+    private void filterAll() {
+        if (shown.length != summaries.length) {
+            shown = new int[summaries.length];
+        }
+        int count = 0;
+        for (int i = 0; i < summaries.length; i++) {
+            if (matches(i)) {
+                shown[count++] = i;
+            }
+        }
+        shownCount = count;
+    }
+
+    private boolean matches(int index) {
+        return filter.isEmpty() || titles[index].contains(filter) || searchMatches.contains(summaries[index].getId());
+    }
+
+    private Set<String> searchIds(String filter) {
+        return new HashSet<>(search.apply(filter));
+    }
+
+    private static boolean hasTerm(String filter) {
+        for (int i = 0; i < filter.length(); i++) {
+            if (Character.isLetterOrDigit(filter.charAt(i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Notifies the listeners that the shown summaries changed.
+     *
+     * @param oldSize The number of summaries shown before
+     */
+    private void fireChanged(int oldSize) {
+        if (oldSize > shownCount) {
+            fireIntervalRemoved(this, shownCount, oldSize - 1);
+        } else if (shownCount > oldSize) {
+            fireIntervalAdded(this, oldSize, shownCount - 1);
+        }
+        int common = Math.min(oldSize, shownCount);
+        if (common > 0) {
+            fireContentsChanged(this, 0, common - 1);
+        }
+    }
+}
@@ -2,15 +2,21 @@ package com.cline.ui.history;
 
 import com.cline.core.model.Conversation;
 import com.cline.services.ClineHistoryService;
+import com.cline.services.history.ConversationSummary;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
+import com.intellij.ui.DocumentAdapter;
+import com.intellij.ui.SearchTextField;
 import com.intellij.ui.components.JBList;
 import com.intellij.ui.components.JBScrollPane;
 import com.intellij.util.ui.JBUI;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
 import java.awt.*;
+import java.text.NumberFormat;
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 import java.util.function.Consumer;
@@ -18,15 +24,25 @@ import java.util.function.Consumer;
 /**
  * View for displaying conversation history.
  * This is the Java equivalent of the HistoryView.tsx component in the TypeScript version.
+ * <p>
+ * The list shows the summaries of all conversations through a {@link HistoryListModel}, which sorts them by date,
+ * tokens or cost. Cells have a fixed size, so the list only renders the visible summaries, even for very long
+ * histories. The messages of a conversation are only loaded once it is selected.
+ * Typing in the search field filters the list by title and by the history search index as the user types.
  */
 public class HistoryView extends JPanel {
     private static final Logger LOG = Logger.getInstance(HistoryView.class);
+    private static final int FILTER_DELAY_MILLIS = 100;
+    // Cells fill the width of the list anyway; a fixed width keeps the list from measuring every cell
+    private static final int MIN_CELL_WIDTH = 100;
     
     private final Project project;
     private final ClineHistoryService historyService;
     
-    private JBList<Conversation> conversationList;
-    private DefaultListModel<Conversation> listModel;
+    private JBList<ConversationSummary> conversationList;
+    private HistoryListModel listModel;
+    private SearchTextField searchField;
+    private Timer filterTimer;
     
     private Consumer<Conversation> onSelectConversation;
     
@@ -51,15 +67,18 @@ public class HistoryView extends JPanel {
      */
     private void createUIComponents() {
         // Create list model and list
-        listModel = new DefaultListModel<>();
+        listModel = new HistoryListModel(this::searchIds);
         conversationList = new JBList<>(listModel);
-        conversationList.setCellRenderer(new ConversationCellRenderer());
+        ConversationCellRenderer renderer = new ConversationCellRenderer();
+        conversationList.setCellRenderer(renderer);
+        conversationList.setFixedCellHeight(renderer.getCellHeight());
+        conversationList.setFixedCellWidth(JBUI.scale(MIN_CELL_WIDTH));
         conversationList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         conversationList.addListSelectionListener(e -> {
             if (!e.getValueIsAdjusting()) {
-                Conversation selected = conversationList.getSelectedValue();
-                if (selected != null && onSelectConversation != null) {
-                    onSelectConversation.accept(selected);
+                ConversationSummary selected = conversationList.getSelectedValue();
+                if (selected != null) {
+                    openConversation(selected);
                 }
             }
         });
@@ -78,8 +97,36 @@ public class HistoryView extends JPanel {
         JButton clearButton = new JButton("Clear History");
         clearButton.addActionListener(e -> clearHistory());
         
+        // Filter once typing pauses, so the search index is not searched for every keystroke
+        filterTimer = new Timer(FILTER_DELAY_MILLIS, e -> applyFilter());
+        filterTimer.setRepeats(false);
+        searchField = new SearchTextField(false);
+        searchField.getTextEditor().getEmptyText().setText("Search history");
+        searchField.addDocumentListener(new DocumentAdapter() {
+            @Override
+            protected void textChanged(DocumentEvent e) {
+                filterTimer.restart();
+            }
+        });
+        
+        JComboBox<HistoryListModel.SortOrder> sortComboBox = new JComboBox<>(HistoryListModel.SortOrder.values());
+        sortComboBox.setSelectedItem(listModel.getSortOrder());
+        sortComboBox.addActionListener(e -> {
+            HistoryListModel.SortOrder sortOrder = (HistoryListModel.SortOrder) sortComboBox.getSelectedItem();
+            if (sortOrder != null) {
+                conversationList.clearSelection();
+                listModel.setSortOrder(sortOrder);
+            }
+        });
+        
+        JPanel filterPanel = new JPanel(new BorderLayout(JBUI.scale(5), 0));
+        filterPanel.setBorder(JBUI.Borders.emptyTop(5));
+        filterPanel.add(searchField, BorderLayout.CENTER);
+        filterPanel.add(sortComboBox, BorderLayout.EAST);
+        
         headerPanel.add(titleLabel, BorderLayout.WEST);
         headerPanel.add(clearButton, BorderLayout.EAST);
+        headerPanel.add(filterPanel, BorderLayout.SOUTH);
         
         // Add components to main panel
         add(headerPanel, BorderLayout.NORTH);
@@ -87,23 +134,56 @@ public class HistoryView extends JPanel {
     }
     
     /**
-     * Loads conversations from the history service.
+     * Reloads the summaries of all conversations from the history service, keeping the sort order and the filter.
      */
     private void loadConversations() {
-        List<Conversation> conversations = historyService.getConversations();
-        updateList(conversations);
+        conversationList.clearSelection();
+        listModel.setSummaries(historyService.getSummaries());
+    }
+    
+    /**
+     * Filters the list by the text of the search field.
+     */
+    private void applyFilter() {
+        conversationList.clearSelection();
+        listModel.setFilter(searchField.getText());
+    }
+    
+    /**
+     * Gets the IDs of all conversations the history search index matches a filter to.
+     *
+     * @param filter The filter
+     * @return The conversation IDs
+     */
+    private List<String> searchIds(String filter) {
+        List<ConversationSummary> matches = historyService.search(filter, Integer.MAX_VALUE);
+        List<String> ids = new ArrayList<>(matches.size());
+        for (ConversationSummary summary : matches) {
+            ids.add(summary.getId());
+        }
+        return ids;
     }
     
     /**
-     * Updates the list with the given conversations.
+     * Loads a conversation and passes it to the selection callback.
      *
-     * @param conversations The conversations to display
+     * @param summary The summary of the conversation
      */
-    private void updateList(List<Conversation> conversations) {
-        listModel.clear();
-        for (Conversation conversation : conversations) {
-            listModel.addElement(conversation);
+    private void openConversation(ConversationSummary summary) {
+        if (onSelectConversation == null) {
+            return;
         }
+        
+        historyService.loadConversation(summary.getId())
+                .thenAccept(conversation -> {
+                    if (conversation != null) {
+                        SwingUtilities.invokeLater(() -> onSelectConversation.accept(conversation));
+                    }
+                })
+                .exceptionally(e -> {
+                    LOG.error("Error loading conversation from history", e);
+                    return null;
+                });
     }
     
     /**
@@ -122,7 +202,7 @@ public class HistoryView extends JPanel {
             historyService.clearHistory()
                     .thenRun(() -> {
                         SwingUtilities.invokeLater(() -> {
-                            listModel.clear();
+                            loadConversations();
                             JOptionPane.showMessageDialog(
                                     this,
                                     "Conversation history cleared.",
@@ -204,30 +284,62 @@ public class HistoryView extends JPanel {
     }
     
     /**
-     * Cell renderer for conversations.
+     * Cell renderer for conversation summaries.
+     * The title and the details are plain labels rather than HTML, which would be parsed again for every cell
+     * that is painted.
      */
-    private static class ConversationCellRenderer extends DefaultListCellRenderer {
+    private static class ConversationCellRenderer extends JPanel implements ListCellRenderer<ConversationSummary> {
         private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("MMM d, yyyy h:mm a");
+        private static final NumberFormat NUMBER_FORMAT = NumberFormat.getIntegerInstance();
+        
+        private final JLabel titleLabel = new JLabel();
+        private final JLabel detailsLabel = new JLabel();
+        
+        ConversationCellRenderer() {
+            super(new BorderLayout());
+            setBorder(JBUI.Borders.empty(5, 10));
+            titleLabel.setFont(titleLabel.getFont().deriveFont(Font.BOLD));
+            detailsLabel.setFont(detailsLabel.getFont().deriveFont(detailsLabel.getFont().getSize2D() - 2));
+            add(titleLabel, BorderLayout.NORTH);
+            add(detailsLabel, BorderLayout.SOUTH);
+        }
+        
+        /**
+         * Gets the height of every cell.
+         *
+         * @return The cell height
+         */
+        int getCellHeight() {
+            titleLabel.setText("Untitled Conversation");
+            detailsLabel.setText(DATE_FORMAT.format(new Date()));
+            return getPreferredSize().height;
+        }
         
         @Override
-        public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus) {
-            JLabel label = (JLabel) super.getListCellRendererComponent(list, value, index, isSelected, cellHasFocus);
+        public Component getListCellRendererComponent(JList<? extends ConversationSummary> list, ConversationSummary summary,
+                                                      int index, boolean isSelected, boolean cellHasFocus) {
+            String title = summary.getTitle();
+            if (title == null || title.isEmpty()) {
+                title = "Untitled Conversation";
+            }
+            titleLabel.setText(title);
             
-            if (value instanceof Conversation) {
-                Conversation conversation = (Conversation) value;
-                
-                String title = conversation.getTitle();
-                if (title == null || title.isEmpty()) {
-                    title = "Untitled Conversation";
-                }
-                
-                String date = DATE_FORMAT.format(Date.from(conversation.getUpdatedAt()));
-                
-                label.setText("<html><b>" + title + "</b><br><small>" + date + "</small></html>");
-                label.setBorder(JBUI.Borders.empty(5, 10));
+            StringBuilder details = new StringBuilder(DATE_FORMAT.format(Date.from(summary.getUpdatedAt())))
+                    .append(" \u00b7 ").append(summary.getMessageCount()).append(" messages");
+            if (summary.getTotalTokens() > 0) {
+                details.append(" \u00b7 ").append(NUMBER_FORMAT.format(summary.getTotalTokens())).append(" tokens");
+            }
+            if (summary.getCost() > 0) {
+                details.append(" \u00b7 ").append(String.format("$%.4f", summary.getCost()));
             }
+            detailsLabel.setText(details.toString());
             
-            return label;
+            Color background = isSelected ? list.getSelectionBackground() : list.getBackground();
+            Color foreground = isSelected ? list.getSelectionForeground() : list.getForeground();
+            setBackground(background);
+            titleLabel.setForeground(foreground);
+            detailsLabel.setForeground(foreground);
+            return this;
         }
     }
-}
\ No newline at end of file
+}
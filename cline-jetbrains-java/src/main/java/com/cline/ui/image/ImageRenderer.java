@@ -7,25 +7,61 @@ import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.image.BufferedImage;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Renderer for images in messages.
+ * <p>
+ * Images are decoded in the background while a placeholder is shown. Large images are subsampled while they are
+ * decoded, so they are never held in memory at full resolution, and the scaled images are kept in a
+ * {@link ThumbnailCache} keyed by the hash of their source, so rendering a message again does not decode its
+ * images again. Sources that fail to load are cached too, so they are not retried on every render.
  */
 public class ImageRenderer {
     private static final Logger LOG = Logger.getInstance(ImageRenderer.class);
     private static final int MAX_WIDTH = 600;
     private static final int MAX_HEIGHT = 400;
+    private static final int DECODER_THREADS = 2;
+    private static final long MAX_CACHE_BYTES = 32L * 1024 * 1024;
+    private static final int URL_TIMEOUT_MILLIS = 10_000;
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    
+    private static final ThumbnailCache CACHE = new ThumbnailCache(MAX_CACHE_BYTES);
+    // Guarded by PENDING
+    private static final Map<String, CompletableFuture<BufferedImage>> PENDING = new HashMap<>();
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static final ExecutorService DECODER = Executors.newFixedThreadPool(DECODER_THREADS, runnable -> {
+        Thread thread = new Thread(runnable, "Cline image decoder " + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
     
     /**
      * Creates a JComponent with the rendered image.
+     * If the image is not cached, a placeholder is returned and the image is shown in it once it is decoded.
      *
      * @param source The image source (URL, file path, or base64 data)
      * @return A JComponent with the rendered image, or null if the image could not be loaded
@@ -33,24 +69,29 @@ public class ImageRenderer {
     @Nullable
     public static JComponent createImageComponent(@NotNull String source) {
         try {
-            BufferedImage image = loadImage(source);
-            if (image == null) {
-                return createErrorLabel("Failed to load image");
-            }
-            
-            // Scale the image if needed
-            Dimension scaledSize = calculateScaledSize(image.getWidth(), image.getHeight());
-            if (scaledSize.width != image.getWidth() || scaledSize.height != image.getHeight()) {
-                image = scaleImage(image, scaledSize.width, scaledSize.height);
+            String key = hash(source);
+            BufferedImage cached = CACHE.get(key);
+            if (cached != null) {
+                JLabel label = new JLabel(new ImageIcon(cached));
+                label.setBorder(JBUI.Borders.empty(4));
+                return label;
             }
             
-            // Create an image icon
-            ImageIcon icon = new ImageIcon(image);
-            
-            // Create a label with the image
-            JLabel label = new JLabel(icon);
+            // Show a placeholder until the image is decoded
+            JLabel label = new JLabel("Loading image...");
+            label.setForeground(JBColor.GRAY);
             label.setBorder(JBUI.Borders.empty(4));
-            
+            loadThumbnail(key, source).whenComplete((image, error) -> SwingUtilities.invokeLater(() -> {
+                if (error == null) {
+                    label.setText(null);
+                    label.setIcon(new ImageIcon(image));
+                } else {
+                    label.setText("Error: " + unwrap(error).getMessage());
+                    label.setForeground(JBColor.RED);
+                }
+                label.revalidate();
+                label.repaint();
+            }));
             return label;
         } catch (Exception e) {
             LOG.error("Error creating image component", e);
@@ -59,30 +100,75 @@ public class ImageRenderer {
     }
     
     /**
-     * Loads an image from a source.
+     * Decodes and scales an image in the background and caches the result, or the failure to load it.
+     * Requests for an image that is already being decoded share that decoding.
      *
-     * @param source The image source (URL, file path, or base64 data)
-     * @return The loaded image, or null if the image could not be loaded
+     * @param key    The source hash
+     * @param source The image source
+     * @return A future completed with the scaled image, or completed exceptionally if the image could not be loaded
      */
-    @Nullable
-    private static BufferedImage loadImage(@NotNull String source) {
-        try {
-            // Check if the source is a base64 data URL
-            if (source.startsWith("data:image/")) {
-                return loadBase64Image(source);
+    static CompletableFuture<BufferedImage> loadThumbnail(@NotNull String key, @NotNull String source) {
+        String failure = CACHE.getFailure(key);
+        if (failure != null) {
+            return CompletableFuture.failedFuture(new IOException(failure));
+        }
+        
+        synchronized (PENDING) {
+            CompletableFuture<BufferedImage> pending = PENDING.get(key);
+            if (pending != null) {
+                return pending;
             }
             
-            // Check if the source is a URL
-            if (source.startsWith("http://") || source.startsWith("https://")) {
-                return loadUrlImage(source);
+            CompletableFuture<BufferedImage> future = CompletableFuture.supplyAsync(() -> {
+                try {
+                    return loadImage(source);
+                } catch (IOException e) {
+                    throw new CompletionException(e);
+                }
+            }, DECODER).whenComplete((image, error) -> {
+                if (error == null) {
+                    CACHE.put(key, image);
+                } else {
+                    Throwable cause = unwrap(error);
+                    LOG.warn("Error loading image", cause);
+                    CACHE.putFailure(key, String.valueOf(cause.getMessage()));
+                }
+                synchronized (PENDING) {
+                    PENDING.remove(key);
+                }
+            });
+            // The decoding may already be done, in which case it has already been removed
+            if (!future.isDone()) {
+                PENDING.put(key, future);
             }
-            
+            return future;
+        }
+    }
+    
+    /**
+     * Loads an image from a source, scaled to fit the maximum size.
+     *
+     * @param source The image source (URL, file path, or base64 data)
+     * @return The loaded image
+     * @throws IOException If the image cannot be read or its format is not supported
+     */
+    @NotNull
+    private static BufferedImage loadImage(@NotNull String source) throws IOException {
+        BufferedImage image;
+        if (source.startsWith("data:image/")) {
+            // The source is a base64 data URL
+            image = loadBase64Image(source);
+        } else if (source.startsWith("http://") || source.startsWith("https://")) {
+            image = loadUrlImage(source);
+        } else {
             // Assume the source is a file path
-            return loadFileImage(source);
-        } catch (Exception e) {
-            LOG.error("Error loading image", e);
-            return null;
+            image = loadFileImage(source);
         }
+        
+        if (image == null) {
+            throw new IOException("Unsupported image format");
+        }
+        return image;
     }
     
     private static BufferedImage loadBase64Image(@NotNull String dataUrl) throws IOException {
@@ -92,24 +178,80 @@ public class ImageRenderer {
         }
         
         String base64Data = dataUrl.substring(commaIndex + 1);
-        byte[] imageData = Base64.getDecoder().decode(base64Data);
-        
-        try (ByteArrayInputStream stream = new ByteArrayInputStream(imageData)) {
-            return ImageIO.read(stream);
+        byte[] imageData;
+        try {
+            imageData = Base64.getDecoder().decode(base64Data);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid base64 data", e);
         }
+        return decodeThumbnail(new ByteArrayInputStream(imageData));
     }
     
     private static BufferedImage loadUrlImage(@NotNull String url) throws IOException {
-        return ImageIO.read(new URL(url));
+        URLConnection connection = new URL(url).openConnection();
+        connection.setConnectTimeout(URL_TIMEOUT_MILLIS);
+        connection.setReadTimeout(URL_TIMEOUT_MILLIS);
+        try (InputStream stream = connection.getInputStream()) {
+            return decodeThumbnail(stream);
+        }
     }
     
     private static BufferedImage loadFileImage(@NotNull String path) throws IOException {
-        return ImageIO.read(new File(path));
+        File file = new File(path);
+        if (!file.isFile()) {
+            throw new IOException("File not found: " + path);
+        }
+        return decodeThumbnail(file);
+    }
+    
+    /**
+     * Decodes an image scaled to fit the maximum size. Only every n-th pixel of images that are at least
+     * twice as large as the maximum size is read, and the result is scaled to the exact size.
+     *
+     * @param input The image data, as a file or stream
+     * @return The scaled image, or null if the format is not supported
+     * @throws IOException If the image cannot be read
+     */
+    @Nullable
+    static BufferedImage decodeThumbnail(@NotNull Object input) throws IOException {
+        try (ImageInputStream stream = ImageIO.createImageInputStream(input)) {
+            if (stream == null) {
+                throw new IOException("Cannot read image data");
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(stream);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(stream, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                Dimension scaledSize = calculateScaledSize(width, height);
+                
+                ImageReadParam param = reader.getDefaultReadParam();
+                int subsampling = Math.min(width / scaledSize.width, height / scaledSize.height);
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                BufferedImage image = reader.read(0, param);
+                
+                // Scale the image if needed
+                if (scaledSize.width != image.getWidth() || scaledSize.height != image.getHeight()) {
+                    image = scaleImage(image, scaledSize.width, scaledSize.height);
+                }
+                return image;
+            } finally {
+                reader.dispose();
+            }
+        }
     }
     
     private static BufferedImage scaleImage(@NotNull BufferedImage image, int width, int height) {
         BufferedImage scaledImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
         Graphics2D g = scaledImage.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
         g.drawImage(image, 0, 0, width, height, null);
         g.dispose();
         return scaledImage;
@@ -131,7 +273,25 @@ public class ImageRenderer {
             scaledWidth = (int) (scaledWidth * ratio);
         }
         
-        return new Dimension(scaledWidth, scaledHeight);
+        return new Dimension(Math.max(1, scaledWidth), Math.max(1, scaledHeight));
+    }
+    
+    private static Throwable unwrap(@NotNull Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+    
+    private static String hash(String source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+            char[] hex = new char[digest.length * 2];
+            for (int i = 0; i < digest.length; i++) {
+                hex[2 * i] = HEX_DIGITS[(digest[i] >> 4) & 0xF];
+                hex[2 * i + 1] = HEX_DIGITS[digest[i] & 0xF];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
     }
     
     private static JLabel createErrorLabel(@NotNull String message) {
@@ -140,4 +300,4 @@ public class ImageRenderer {
         label.setBorder(JBUI.Borders.empty(4));
         return label;
     }
-}
\ No newline at end of file
+}
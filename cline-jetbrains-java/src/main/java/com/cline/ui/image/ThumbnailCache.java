@@ -0,0 +1,160 @@
+package com.cline.ui.image;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of scaled images, keyed by the hash of their source.
+ * The cache is bounded by the memory the pixels of its images take up, and evicts the least recently used
+ * images first.
+ * <p>
+ * Sources that failed to load are cached as well, with the error message, so that a broken image is not loaded
+ * again every time its message is rendered. Failures expire after a while, since the source may become
+ * available later.
+ */
+public class ThumbnailCache {
+    private static final int MAX_FAILURES = 256;
+    private static final long FAILURE_TTL_MILLIS = 60_000;
+
+    private final long maxBytes;
+    private final int maxFailures;
+    private final long failureTtlMillis;
+    private final LinkedHashMap<String, BufferedImage> images = new LinkedHashMap<>(16, 0.75f, true);
+    private final LinkedHashMap<String, Failure> failures = new LinkedHashMap<>(16, 0.75f, true);
+    private long bytes = 0;
+
+    /**
+     * Creates a new thumbnail cache.
+     *
+     * @param maxBytes The maximum number of bytes the cached images may take up
+     */
+    public ThumbnailCache(long maxBytes) {
+        this(maxBytes, MAX_FAILURES, FAILURE_TTL_MILLIS);
+    }
+
+    /**
+     * Creates a new thumbnail cache.
+     *
+     * @param maxBytes         The maximum number of bytes the cached images may take up
+     * @param maxFailures      The maximum number of failures to keep
+     * @param failureTtlMillis The time after which failures expire
+     */
+    ThumbnailCache(long maxBytes, int maxFailures, long failureTtlMillis) {
+        this.maxBytes = maxBytes;
+        this.maxFailures = maxFailures;
+        this.failureTtlMillis = failureTtlMillis;
+    }
+
+    /**
+     * Gets a cached image and marks it as most recently used.
+     *
+     * @param key The source hash
+     * @return The image, or null if it is not cached
+     */
+    @Nullable
+    public synchronized BufferedImage get(@NotNull String key) {
+        return images.get(key);
+    }
+
+    /**
+     * Caches an image. Images larger than the cache are not cached.
+     *
+     * @param key   The source hash
+     * @param image The image
+     */
+    public synchronized void put(@NotNull String key, @NotNull BufferedImage image) {
+        failures.remove(key);
+        long size = sizeOf(image);
+        if (size > maxBytes) {
+            return;
+        }
+
+        BufferedImage previous = images.put(key, image);
+        if (previous != null) {
+            bytes -= sizeOf(previous);
+        }
+        bytes += size;
+
+        Iterator<Map.Entry<String, BufferedImage>> iterator = images.entrySet().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<String, BufferedImage> eldest = iterator.next();
+            bytes -= sizeOf(eldest.getValue());
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Gets the error of a source that failed to load, unless it has expired.
+     *
+     * @param key The source hash
+     * @return The error message, or null if no unexpired failure is cached
+     */
+    @Nullable
+    public synchronized String getFailure(@NotNull String key) {
+        Failure failure = failures.get(key);
+        if (failure == null) {
+            return null;
+        }
+        if (System.currentTimeMillis() - failure.time >= failureTtlMillis) {
+            failures.remove(key);
+            return null;
+        }
+        return failure.message;
+    }
+
+    /**
+     * Caches the failure to load a source.
+     *
+     * @param key     The source hash
+     * @param message The error message
+     */
+    public synchronized void putFailure(@NotNull String key, @NotNull String message) {
+        failures.put(key, new Failure(message, System.currentTimeMillis()));
+
+        Iterator<String> iterator = failures.keySet().iterator();
+        while (failures.size() > maxFailures && iterator.hasNext()) {
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    /**
+     * Gets the number of bytes the cached images take up.
+     *
+     * @return The number of bytes
+     */
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Removes all images and failures.
+     */
+    public synchronized void clear() {
+        images.clear();
+        failures.clear();
+        bytes = 0;
+    }
+
+    private static long sizeOf(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * 4;
+    }
+
+    /**
+     * A source that failed to load.
+     */
+    private static class Failure {
+        private final String message;
+        private final long time;
+
+        Failure(String message, long time) {
+            this.message = message;
+            this.time = time;
+        }
+    }
+}
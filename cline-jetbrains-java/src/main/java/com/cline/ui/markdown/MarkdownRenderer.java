@@ -9,96 +9,313 @@ import org.commonmark.renderer.NodeRenderer;
 import org.commonmark.renderer.html.HtmlNodeRendererContext;
 import org.commonmark.renderer.html.HtmlRenderer;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
 import javax.swing.text.*;
 import javax.swing.text.html.HTML;
 import javax.swing.text.html.HTMLDocument;
 import javax.swing.text.html.HTMLEditorKit;
+import javax.swing.text.html.StyleSheet;
 import java.awt.*;
+import java.io.IOException;
 import java.io.StringReader;
 import java.util.Collections;
+import java.util.Locale;
 import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
  * Renderer for Markdown content in the chat view.
+ * <p>
+ * Rendering is incremental when a text pane already shows a prefix of the markdown, as it does while a message
+ * is streamed. Blocks that are finished stay in the document, and only the trailing block, which may still
+ * change, is parsed and rendered again. The style sheet is built once per theme and shared by all panes.
+ * <p>
+ * The HTML of complete renders can be kept in an {@link HtmlCache}, so markdown that was rendered before is not
+ * parsed again.
  */
 public class MarkdownRenderer {
     private static final Logger LOG = Logger.getInstance(MarkdownRenderer.class);
     private static final Pattern CODE_BLOCK_PATTERN = Pattern.compile("```(\\w*)\\s*([\\s\\S]*?)```");
+    private static final Pattern FENCE_PATTERN = Pattern.compile("^ {0,3}(`{3,}|~{3,})");
+    private static final Pattern LIST_ITEM_PATTERN = Pattern.compile("^(?:[-+*]|\\d{1,9}[.)])(?:[ \\t]|$)");
+    // Raw HTML blocks that only end at their closing tag or marker, so they may contain blank lines
+    private static final Pattern HTML_BLOCK_PATTERN = Pattern.compile(
+            "^ {0,3}(?:<((?i:script|pre|style|textarea))(?:[\\s>]|$)|(<!--)|(<\\?)|(<![A-Za-z])|(<!\\[CDATA\\[))");
+    private static final String TAIL_ID = "cline-markdown-tail";
+    private static final String RENDER_STATE_KEY = "cline.markdown.renderState";
+    
+    // Accessed on the event dispatch thread only
+    private static String sharedCss;
+    private static StyleSheet sharedStyleSheet;
     
     private final Parser parser;
     private final HtmlRenderer renderer;
+    private final HtmlCache htmlCache;
+    
+    /**
+     * Cache of the HTML that markdown was rendered to.
+     */
+    public interface HtmlCache {
+        /**
+         * Gets the HTML that markdown was rendered to.
+         *
+         * @param markdown The markdown content
+         * @return The HTML, or null if it is not cached
+         */
+        @Nullable
+        String get(@NotNull String markdown);
+        
+        /**
+         * Caches the HTML that markdown was rendered to.
+         *
+         * @param markdown The markdown content
+         * @param html     The HTML
+         */
+        void put(@NotNull String markdown, @NotNull String html);
+    }
     
     public MarkdownRenderer() {
+        this(null);
+    }
+    
+    /**
+     * Creates a new markdown renderer.
+     *
+     * @param htmlCache The cache for the HTML of rendered markdown (optional)
+     */
+    public MarkdownRenderer(@Nullable HtmlCache htmlCache) {
         this.parser = Parser.builder().build();
         this.renderer = HtmlRenderer.builder()
                 .nodeRendererFactory(context -> new CustomNodeRenderer(context))
                 .build();
+        this.htmlCache = htmlCache;
     }
     
     /**
      * Renders markdown content to a JTextPane.
+     * If the pane shows a prefix of the content, only the part after its last finished block is rendered again.
      *
      * @param markdown The markdown content
      * @param textPane The text pane to render to
      */
     public void render(@NotNull String markdown, @NotNull JTextPane textPane) {
         try {
-            // Pre-process code blocks
-            markdown = preprocessCodeBlocks(markdown);
+            StyleSheet styleSheet = getSharedStyleSheet();
+            RenderState state = getRenderState(textPane);
             
-            // Parse markdown to HTML
-            Node document = parser.parse(markdown);
-            String html = renderer.render(document);
-            
-            // Set up the text pane for HTML
-            textPane.setContentType("text/html");
-            HTMLDocument htmlDoc = (HTMLDocument) textPane.getDocument();
-            HTMLEditorKit editorKit = (HTMLEditorKit) textPane.getEditorKit();
-            
-            // Apply custom styles
-            String css = "body { font-family: " + JBUI.Fonts.label().getFamily() + "; font-size: " + JBUI.Fonts.label().getSize() + "pt; }" +
-                    "pre { background-color: " + toHex(JBColor.background().darker()) + "; padding: 8px; border-radius: 4px; }" +
-                    "code { font-family: monospace; background-color: " + toHex(JBColor.background().darker()) + "; padding: 2px 4px; border-radius: 3px; }" +
-                    "blockquote { border-left: 4px solid " + toHex(JBColor.gray) + "; margin-left: 0; padding-left: 10px; color: " + toHex(JBColor.gray) + "; }" +
-                    "a { color: " + toHex(JBColor.blue) + "; }" +
-                    "ul, ol { margin-left: 20px; }" +
-                    "li { margin-bottom: 5px; }" +
-                    "p { margin-top: 0; margin-bottom: 10px; }" +
-                    "h1, h2, h3, h4, h5, h6 { margin-top: 20px; margin-bottom: 10px; }" +
-                    "img { max-width: 100%; }";
-            
-            // Apply the CSS
-            editorKit.getStyleSheet().loadRules(new StringReader(css), null);
-            
-            // Set the HTML content
-            textPane.setText("<html><body>" + html + "</body></html>");
+            if (state.editorKit != null && state.editorKit.getStyleSheet() == styleSheet
+                    && textPane.getEditorKit() == state.editorKit && markdown.startsWith(state.markdown)) {
+                HTMLDocument htmlDoc = (HTMLDocument) textPane.getDocument();
+                Element tail = htmlDoc.getElement(TAIL_ID);
+                if (tail != null) {
+                    if (!markdown.equals(state.markdown)) {
+                        renderAppended(markdown, htmlDoc, tail, state);
+                    }
+                    return;
+                }
+            }
             
-            // Make the text pane non-editable and set other properties
-            textPane.setEditable(false);
-            textPane.setBorder(JBUI.Borders.empty(8));
-            textPane.setBackground(JBColor.background());
+            // Set up the text pane for HTML with the shared styles
+            if (state.editorKit == null || state.editorKit.getStyleSheet() != styleSheet
+                    || textPane.getEditorKit() != state.editorKit) {
+                state.editorKit = new MarkdownEditorKit(styleSheet);
+                textPane.setEditorKit(state.editorKit);
+            }
             
-            // Add hyperlink support
-            textPane.addHyperlinkListener(e -> {
-                if (e.getEventType() == javax.swing.event.HyperlinkEvent.EventType.ACTIVATED) {
-                    try {
-                        Desktop.getDesktop().browse(e.getURL().toURI());
-                    } catch (Exception ex) {
-                        LOG.error("Error opening URL: " + e.getURL(), ex);
-                    }
+            // Set the HTML content, with the trailing block in its own element so it can be replaced
+            int stableLength = findTailStart(markdown, 0);
+            String html = htmlCache != null ? htmlCache.get(markdown) : null;
+            if (html == null) {
+                html = "<html><body>" + toHtml(markdown.substring(0, stableLength)) +
+                        "<div id=\"" + TAIL_ID + "\">" + toHtml(markdown.substring(stableLength)) + "</div></body></html>";
+                if (htmlCache != null) {
+                    htmlCache.put(markdown, html);
                 }
-            });
+            }
+            textPane.setText(html);
+            state.markdown = markdown;
+            state.stableLength = stableLength;
         } catch (Exception e) {
             LOG.error("Error rendering markdown", e);
+            textPane.putClientProperty(RENDER_STATE_KEY, null);
             textPane.setContentType("text/plain");
             textPane.setText("Error rendering markdown: " + e.getMessage() + "\n\nOriginal content:\n" + markdown);
         }
     }
     
+    /**
+     * Renders content that was appended to the content shown by a pane.
+     * Blocks that were finished by the appended content are inserted before the trailing block,
+     * which is then rendered again.
+     *
+     * @param markdown The markdown content
+     * @param htmlDoc  The document of the pane
+     * @param tail     The element containing the trailing block
+     * @param state    The render state of the pane
+     */
+    private void renderAppended(String markdown, HTMLDocument htmlDoc, Element tail, RenderState state)
+            throws BadLocationException, IOException {
+        int stableLength = findTailStart(markdown, state.stableLength);
+        if (stableLength > state.stableLength) {
+            htmlDoc.insertBeforeStart(tail, toHtml(markdown.substring(state.stableLength, stableLength)));
+        }
+        htmlDoc.setInnerHTML(tail, toHtml(markdown.substring(stableLength)));
+        state.markdown = markdown;
+        state.stableLength = stableLength;
+    }
+    
+    /**
+     * Converts markdown to HTML.
+     *
+     * @param markdown The markdown content
+     * @return The HTML
+     */
+    String toHtml(String markdown) {
+        // Pre-process code blocks
+        markdown = preprocessCodeBlocks(markdown);
+        
+        // Parse markdown to HTML
+        Node document = parser.parse(markdown);
+        return renderer.render(document);
+    }
+    
+    /**
+     * Finds where the last top-level block of the markdown starts. Appending text can only change how that
+     * block is parsed, so the blocks before it are finished.
+     * <p>
+     * A block is only taken to start on a complete line after a blank line outside of fenced code and of raw HTML
+     * blocks such as {@code <pre>}, which end at their closing tag, and if the line is neither indented nor a list
+     * item, because those may continue the block before the blank line.
+     *
+     * @param markdown The markdown content
+     * @param from     The offset of a block start to search from
+     * @return The offset of the last block start
+     */
+    static int findTailStart(@NotNull String markdown, int from) {
+        int tailStart = from;
+        String fence = null;
+        String htmlBlockEnd = null;
+        boolean afterBlankLine = false;
+        int lineStart = from;
+        int lineEnd;
+        while ((lineEnd = markdown.indexOf('\n', lineStart)) >= 0) {
+            String line = markdown.substring(lineStart, lineEnd);
+            if (fence != null) {
+                String trimmed = line.strip();
+                char fenceChar = fence.charAt(0);
+                if (trimmed.length() >= fence.length() && trimmed.chars().allMatch(c -> c == fenceChar)) {
+                    fence = null;
+                }
+            } else if (htmlBlockEnd != null) {
+                if (line.toLowerCase(Locale.ROOT).contains(htmlBlockEnd)) {
+                    htmlBlockEnd = null;
+                }
+            } else if (line.isBlank()) {
+                afterBlankLine = true;
+            } else {
+                if (afterBlankLine && !Character.isWhitespace(line.charAt(0))
+                        && !LIST_ITEM_PATTERN.matcher(line).find()) {
+                    tailStart = lineStart;
+                }
+                afterBlankLine = false;
+                Matcher fenceMatcher = FENCE_PATTERN.matcher(line);
+                if (fenceMatcher.find()) {
+                    fence = fenceMatcher.group(1);
+                } else {
+                    htmlBlockEnd = findHtmlBlockEnd(line);
+                }
+            }
+            lineStart = lineEnd + 1;
+        }
+        return tailStart;
+    }
+    
+    /**
+     * Finds the end marker of a raw HTML block that starts on a line and does not end on it.
+     *
+     * @param line The line
+     * @return The lower case end marker, or null if no such block starts on the line
+     */
+    @Nullable
+    private static String findHtmlBlockEnd(@NotNull String line) {
+        Matcher matcher = HTML_BLOCK_PATTERN.matcher(line);
+        if (!matcher.find()) {
+            return null;
+        }
+        
+        String end;
+        if (matcher.group(1) != null) {
+            end = "</" + matcher.group(1).toLowerCase(Locale.ROOT) + ">";
+        } else if (matcher.group(2) != null) {
+            end = "-->";
+        } else if (matcher.group(3) != null) {
+            end = "?>";
+        } else if (matcher.group(4) != null) {
+            end = ">";
+        } else {
+            end = "]]>";
+        }
+        return line.substring(matcher.end()).toLowerCase(Locale.ROOT).contains(end) ? null : end;
+    }
+    
+    /**
+     * Gets the render state of a text pane, setting the pane up on first use.
+     *
+     * @param textPane The text pane
+     * @return The render state
+     */
+    private static RenderState getRenderState(JTextPane textPane) {
+        Object property = textPane.getClientProperty(RENDER_STATE_KEY);
+        if (property instanceof RenderState) {
+            return (RenderState) property;
+        }
+        
+        RenderState state = new RenderState();
+        textPane.putClientProperty(RENDER_STATE_KEY, state);
+        
+        // Make the text pane non-editable and set other properties
+        textPane.setEditable(false);
+        textPane.setBorder(JBUI.Borders.empty(8));
+        textPane.setBackground(JBColor.background());
+        
+        // Add hyperlink support
+        if (!Boolean.TRUE.equals(textPane.getClientProperty(HyperlinkHandler.class))) {
+            textPane.putClientProperty(HyperlinkHandler.class, Boolean.TRUE);
+            textPane.addHyperlinkListener(new HyperlinkHandler());
+        }
+        return state;
+    }
+    
+    /**
+     * Gets the style sheet shared by all panes, building it again if the theme changed.
+     *
+     * @return The style sheet
+     */
+    private static StyleSheet getSharedStyleSheet() throws IOException {
+        String css = "body { font-family: " + JBUI.Fonts.label().getFamily() + "; font-size: " + JBUI.Fonts.label().getSize() + "pt; }" +
+                "pre { background-color: " + toHex(JBColor.background().darker()) + "; padding: 8px; border-radius: 4px; }" +
+                "code { font-family: monospace; background-color: " + toHex(JBColor.background().darker()) + "; padding: 2px 4px; border-radius: 3px; }" +
+                "blockquote { border-left: 4px solid " + toHex(JBColor.gray) + "; margin-left: 0; padding-left: 10px; color: " + toHex(JBColor.gray) + "; }" +
+                "a { color: " + toHex(JBColor.blue) + "; }" +
+                "ul, ol { margin-left: 20px; }" +
+                "li { margin-bottom: 5px; }" +
+                "p { margin-top: 0; margin-bottom: 10px; }" +
+                "h1, h2, h3, h4, h5, h6 { margin-top: 20px; margin-bottom: 10px; }" +
+                "img { max-width: 100%; }";
+        
+        if (!css.equals(sharedCss)) {
+            StyleSheet styleSheet = new StyleSheet();
+            styleSheet.addStyleSheet(new HTMLEditorKit().getStyleSheet());
+            styleSheet.loadRules(new StringReader(css), null);
+            sharedStyleSheet = styleSheet;
+            sharedCss = css;
+        }
+        return sharedStyleSheet;
+    }
+    
     /**
      * Pre-processes code blocks to ensure proper rendering.
      *
@@ -133,10 +350,51 @@ public class MarkdownRenderer {
      * @param color The color
      * @return The hex string
      */
-    private String toHex(Color color) {
+    private static String toHex(Color color) {
         return String.format("#%02x%02x%02x", color.getRed(), color.getGreen(), color.getBlue());
     }
     
+    /**
+     * What a text pane shows, so appended content can be rendered incrementally.
+     */
+    private static class RenderState {
+        MarkdownEditorKit editorKit;
+        String markdown = "";
+        int stableLength;
+    }
+    
+    /**
+     * HTML editor kit whose documents use the shared style sheet.
+     */
+    private static class MarkdownEditorKit extends HTMLEditorKit {
+        private final StyleSheet styleSheet;
+        
+        MarkdownEditorKit(StyleSheet styleSheet) {
+            this.styleSheet = styleSheet;
+        }
+        
+        @Override
+        public StyleSheet getStyleSheet() {
+            return styleSheet;
+        }
+    }
+    
+    /**
+     * Opens activated links in the browser.
+     */
+    private static class HyperlinkHandler implements javax.swing.event.HyperlinkListener {
+        @Override
+        public void hyperlinkUpdate(javax.swing.event.HyperlinkEvent e) {
+            if (e.getEventType() == javax.swing.event.HyperlinkEvent.EventType.ACTIVATED) {
+                try {
+                    Desktop.getDesktop().browse(e.getURL().toURI());
+                } catch (Exception ex) {
+                    LOG.error("Error opening URL: " + e.getURL(), ex);
+                }
+            }
+        }
+    }
+    
     /**
      * Custom node renderer for special markdown elements.
      * This is a simplified implementation that doesn't handle images specially.
@@ -0,0 +1,100 @@
+package com.cline.core.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the MessageLog class.
+ */
+public class MessageLogTest {
+
+    @Test
+    public void testSnapshotsAreNotAffectedByLaterChanges() {
+        MessageLog log = new MessageLog(List.of(Message.createUserMessage("first")));
+        List<Message> snapshot = log.getMessages();
+
+        for (int i = 0; i < 100; i++) {
+            log.add(Message.createAssistantMessage("reply " + i));
+        }
+        assertEquals(1, snapshot.size());
+        assertEquals("first", snapshot.get(0).getContent());
+        assertEquals(101, log.size());
+
+        log.clear();
+        assertEquals(1, snapshot.size());
+        assertEquals(0, log.size());
+        assertNull(log.getLast());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.add(Message.createUserMessage("x")));
+    }
+
+    @Test
+    public void testRoleIndexes() {
+        MessageLog log = new MessageLog(List.of(Message.createSystemMessage("system")));
+        for (int i = 0; i < 40; i++) {
+            log.add(Message.createUserMessage("question " + i));
+            log.add(Message.createAssistantMessage("answer " + i));
+        }
+
+        assertEquals(1, log.getMessagesByRole(MessageRole.SYSTEM).size());
+        List<Message> users = log.getMessagesByRole(MessageRole.USER);
+        assertEquals(40, users.size());
+        assertEquals("question 39", users.get(39).getContent());
+        assertEquals("answer 0", log.getMessagesByRole(MessageRole.ASSISTANT).get(0).getContent());
+        assertTrue(log.getMessagesByRole(MessageRole.TOOL).isEmpty());
+    }
+
+    @Test
+    public void testRemoveRebuildsIndexes() {
+        Message user = Message.createUserMessage("question");
+        Message streaming = Message.createAssistantMessage("partial");
+        MessageLog log = new MessageLog(null);
+        log.add(user);
+        log.add(streaming);
+        List<Message> before = log.getMessages();
+
+        assertTrue(log.remove(streaming));
+        assertFalse(log.remove(streaming));
+        assertEquals(List.of(user), log.getMessages());
+        assertEquals(List.of(user, streaming), before);
+        assertTrue(log.getMessagesByRole(MessageRole.ASSISTANT).isEmpty());
+        assertSame(user, log.getLast());
+    }
+
+    @Test
+    public void testConcurrentAppends() throws Exception {
+        MessageLog log = new MessageLog(null);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < 1000; i++) {
+                        log.add(Message.createUserMessage("message " + i));
+                        List<Message> snapshot = log.getMessages();
+                        assertNotNull(snapshot.get(snapshot.size() - 1));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(4000, log.size());
+        assertEquals(4000, log.getMessagesByRole(MessageRole.USER).size());
+    }
+}
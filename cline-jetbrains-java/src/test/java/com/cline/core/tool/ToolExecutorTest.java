@@ -0,0 +1,244 @@
+package com.cline.core.tool;
+
+import com.cline.services.ClineFileService;
+import com.google.gson.JsonObject;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for the ToolExecutor class.
+ */
+public class ToolExecutorTest {
+
+    @Mock
+    private Project project;
+
+    @Mock
+    private ClineFileService fileService;
+
+    private ToolExecutor toolExecutor;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(project.getService(ClineFileService.class)).thenReturn(fileService);
+        toolExecutor = new ToolExecutor(project);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        toolExecutor.dispose();
+    }
+
+    @Test
+    public void testExecuteTool() throws Exception {
+        toolExecutor.registerTool(new TestTool("echo", ToolCategory.FILE, 0) {
+            @Override
+            @NotNull
+            public CompletableFuture<ToolResult> execute(@NotNull JsonObject args, @NotNull ToolContext context) {
+                return CompletableFuture.supplyAsync(() -> ToolResult.success("echo"), context.getExecutor());
+            }
+        });
+
+        ToolResult result = toolExecutor.executeTool("echo", new JsonObject()).get(5, TimeUnit.SECONDS);
+
+        assertTrue(result.isSuccess());
+    }
+
+    @Test
+    public void testToolNotFound() throws Exception {
+        ToolResult result = toolExecutor.executeTool("missing", new JsonObject()).get(5, TimeUnit.SECONDS);
+
+        assertFalse(result.isSuccess());
+        assertEquals("Tool not found: missing", result.getErrorMessage());
+    }
+
+    @Test
+    public void testTimeoutCancelsTool() throws Exception {
+        CountDownLatch cancelled = new CountDownLatch(1);
+        toolExecutor.registerTool(new TestTool("hang", ToolCategory.COMMAND, 100) {
+            @Override
+            @NotNull
+            public CompletableFuture<ToolResult> execute(@NotNull JsonObject args, @NotNull ToolContext context) {
+                context.onCancel(cancelled::countDown);
+                return new CompletableFuture<>();
+            }
+        });
+
+        ToolResult result = toolExecutor.executeTool("hang", new JsonObject()).get(5, TimeUnit.SECONDS);
+
+        assertFalse(result.isSuccess());
+        assertTrue(result.getErrorMessage().startsWith("Tool timed out"));
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testCancelPropagatesToTool() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        toolExecutor.registerTool(new TestTool("hang", ToolCategory.COMMAND, 0) {
+            @Override
+            @NotNull
+            public CompletableFuture<ToolResult> execute(@NotNull JsonObject args, @NotNull ToolContext context) {
+                context.onCancel(cancelled::countDown);
+                started.countDown();
+                return new CompletableFuture<>();
+            }
+        });
+
+        CompletableFuture<ToolResult> future = toolExecutor.executeTool("hang", new JsonObject());
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        future.cancel(true);
+
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testTimedOutCommandInvalidatesCachedResults() throws Exception {
+        AtomicInteger reads = new AtomicInteger();
+        toolExecutor.registerTool(new TestTool("read", ToolCategory.FILE, 0) {
+            @Override
+            public boolean isCacheable() {
+                return true;
+            }
+
+            @Override
+            @NotNull
+            public CompletableFuture<ToolResult> execute(@NotNull JsonObject args, @NotNull ToolContext context) {
+                return CompletableFuture.completedFuture(ToolResult.success("read " + reads.incrementAndGet()));
+            }
+        });
+        toolExecutor.registerTool(new TestTool("hang", ToolCategory.COMMAND, 100) {
+            @Override
+            @NotNull
+            public CompletableFuture<ToolResult> execute(@NotNull JsonObject args, @NotNull ToolContext context) {
+                return new CompletableFuture<>();
+            }
+        });
+
+        toolExecutor.executeTool("read", new JsonObject()).get(5, TimeUnit.SECONDS);
+        toolExecutor.executeTool("read", new JsonObject()).get(5, TimeUnit.SECONDS);
+        assertEquals(1, reads.get());
+
+        // The command may have written files before it timed out
+        assertFalse(toolExecutor.executeTool("hang", new JsonObject()).get(5, TimeUnit.SECONDS).isSuccess());
+        toolExecutor.executeTool("read", new JsonObject()).get(5, TimeUnit.SECONDS);
+        assertEquals(2, reads.get());
+    }
+
+    @Test
+    public void testOnlyMutatingToolsInvalidateCachedResults() throws Exception {
+        AtomicInteger reads = new AtomicInteger();
+        toolExecutor.registerTool(new TestTool("read", ToolCategory.FILE, 0) {
+            @Override
+            public boolean isCacheable() {
+                return true;
+            }
+
+            @Override
+            @NotNull
+            public CompletableFuture<ToolResult> execute(@NotNull JsonObject args, @NotNull ToolContext context) {
+                return CompletableFuture.completedFuture(ToolResult.success("read " + reads.incrementAndGet()));
+            }
+        });
+        toolExecutor.registerTool(new TestTool("search", ToolCategory.FILE, 0) {
+            @Override
+            public boolean isMutating() {
+                return false;
+            }
+
+            @Override
+            @NotNull
+            public CompletableFuture<ToolResult> execute(@NotNull JsonObject args, @NotNull ToolContext context) {
+                return CompletableFuture.completedFuture(ToolResult.success("found"));
+            }
+        });
+        // Tools that do not declare their side effects, such as MCP tools, may write files
+        toolExecutor.registerTool(new TestTool("mcp_tool", ToolCategory.GENERAL, 0) {
+            @Override
+            @NotNull
+            public CompletableFuture<ToolResult> execute(@NotNull JsonObject args, @NotNull ToolContext context) {
+                return CompletableFuture.completedFuture(ToolResult.success("done"));
+            }
+        });
+
+        toolExecutor.executeTool("read", new JsonObject()).get(5, TimeUnit.SECONDS);
+        toolExecutor.executeTool("search", new JsonObject()).get(5, TimeUnit.SECONDS);
+        toolExecutor.executeTool("read", new JsonObject()).get(5, TimeUnit.SECONDS);
+        assertEquals(1, reads.get());
+
+        toolExecutor.executeTool("mcp_tool", new JsonObject()).get(5, TimeUnit.SECONDS);
+        toolExecutor.executeTool("read", new JsonObject()).get(5, TimeUnit.SECONDS);
+        assertEquals(2, reads.get());
+    }
+
+    @Test
+    public void testSlowCategoryDoesNotBlockOtherCategories() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        toolExecutor.registerTool(new TestTool("slow_browser", ToolCategory.BROWSER, 0) {
+            @Override
+            @NotNull
+            public CompletableFuture<ToolResult> execute(@NotNull JsonObject args, @NotNull ToolContext context) {
+                return CompletableFuture.supplyAsync(() -> {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return ToolResult.success("done");
+                }, context.getExecutor());
+            }
+        });
+        toolExecutor.registerTool(new TestTool("read", ToolCategory.FILE, 0) {
+            @Override
+            @NotNull
+            public CompletableFuture<ToolResult> execute(@NotNull JsonObject args, @NotNull ToolContext context) {
+                return CompletableFuture.supplyAsync(() -> ToolResult.success("read"), context.getExecutor());
+            }
+        });
+
+        CompletableFuture<ToolResult> browser = toolExecutor.executeTool("slow_browser", new JsonObject());
+        ToolResult read = toolExecutor.executeTool("read", new JsonObject()).get(5, TimeUnit.SECONDS);
+
+        assertTrue(read.isSuccess());
+        assertFalse(browser.isDone());
+        release.countDown();
+        assertTrue(browser.get(5, TimeUnit.SECONDS).isSuccess());
+    }
+
+    /**
+     * Tool with a fixed category and timeout for testing.
+     */
+    private abstract static class TestTool extends AbstractTool {
+        private final long timeoutMillis;
+
+        TestTool(String name, ToolCategory category, long timeoutMillis) {
+            super(name, "Test tool", new JsonObject(), category);
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        public long getTimeoutMillis() {
+            return timeoutMillis;
+        }
+
+        @Override
+        @NotNull
+        public CompletableFuture<ToolResult> execute(@NotNull JsonObject args) {
+            return execute(args, ToolContext.detached());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.cline.core.tool;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ToolResultCache class.
+ */
+public class ToolResultCacheTest {
+
+    private final Map<String, Long> stamps = new HashMap<>();
+    private final AtomicLong modificationCount = new AtomicLong();
+    private ToolResultCache cache;
+
+    @BeforeEach
+    public void setUp() {
+        stamps.clear();
+        cache = new ToolResultCache(path -> stamps.getOrDefault(path, -1L), modificationCount::get, 2, 1024);
+    }
+
+    private void put(String key, ToolResult result, List<String> dependencies) {
+        cache.put(key, result, cache.captureStamps(dependencies), dependencies);
+    }
+
+    @Test
+    public void testKeyIgnoresArgumentOrder() {
+        JsonObject first = JsonParser.parseString("{\"path\":\"a.txt\",\"recursive\":true}").getAsJsonObject();
+        JsonObject second = JsonParser.parseString("{\"recursive\":true,\"path\":\"a.txt\"}").getAsJsonObject();
+
+        assertEquals(ToolResultCache.createKey("list_files", first), ToolResultCache.createKey("list_files", second));
+        assertNotEquals(ToolResultCache.createKey("list_files", first), ToolResultCache.createKey("read_file", first));
+    }
+
+    @Test
+    public void testHitWhileStampUnchanged() {
+        stamps.put("a.txt", 1L);
+        put("key", ToolResult.success("content"), List.of("a.txt"));
+
+        ToolResult cached = cache.get("key");
+
+        assertNotNull(cached);
+        assertTrue(cached.isSuccess());
+        assertEquals("content", cached.getContent().getAsJsonObject().get("text").getAsString());
+        assertEquals(1, cache.getHits());
+        assertEquals(0, cache.getMisses());
+    }
+
+    @Test
+    public void testMissAfterStampChanged() {
+        stamps.put("a.txt", 1L);
+        put("key", ToolResult.success("content"), List.of("a.txt"));
+        stamps.put("a.txt", 2L);
+
+        assertNull(cache.get("key"));
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testChangeWhileToolRunsInvalidatesResult() {
+        stamps.put("a.txt", 1L);
+        ToolResultCache.Stamps captured = cache.captureStamps(List.of("a.txt"));
+        // The file is edited while the tool runs
+        stamps.put("a.txt", 2L);
+        modificationCount.incrementAndGet();
+        cache.put("key", ToolResult.success("content"), captured, List.of("a.txt"));
+
+        assertNull(cache.get("key"));
+    }
+
+    @Test
+    public void testFoundDependencyIsOnlyCachedIfNothingChanged() {
+        stamps.put("dir", 1L);
+        stamps.put("dir/a.txt", 1L);
+        ToolResultCache.Stamps captured = cache.captureStamps(List.of("dir"));
+        cache.put("unchanged", ToolResult.success("content"), captured, List.of("dir", "dir/a.txt"));
+        assertNotNull(cache.get("unchanged"));
+
+        captured = cache.captureStamps(List.of("dir"));
+        modificationCount.incrementAndGet();
+        cache.put("changed", ToolResult.success("content"), captured, List.of("dir", "dir/a.txt"));
+        assertNull(cache.get("changed"));
+    }
+
+    @Test
+    public void testUnknownDependencyIsNotCached() {
+        assertNull(cache.captureStamps(List.of("missing.txt")));
+
+        cache.put("key", ToolResult.success("content"), cache.captureStamps(List.of()), List.of("missing.txt"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testFailureIsNotCached() {
+        put("key", ToolResult.failure("error"), Collections.emptyList());
+
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntryIsEvicted() {
+        put("first", ToolResult.success("1"), Collections.emptyList());
+        put("second", ToolResult.success("2"), Collections.emptyList());
+        cache.get("first");
+        put("third", ToolResult.success("3"), Collections.emptyList());
+
+        assertNotNull(cache.get("first"));
+        assertNull(cache.get("second"));
+        assertNotNull(cache.get("third"));
+        assertEquals(1, cache.getEvictions());
+    }
+
+    @Test
+    public void testOversizedResultIsNotCached() {
+        put("key", ToolResult.success("x".repeat(2048)), Collections.emptyList());
+
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,82 @@
+package com.cline.core.tool;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ToolSchemaValidator class.
+ */
+public class ToolSchemaValidatorTest {
+
+    private ToolSchemaValidator validator;
+
+    @BeforeEach
+    public void setUp() {
+        validator = ToolSchemaValidator.compile(parse("{"
+                + "\"properties\": {"
+                + "  \"path\": {\"type\": \"string\"},"
+                + "  \"recursive\": {\"type\": \"boolean\"},"
+                + "  \"start_line\": {\"type\": \"integer\"},"
+                + "  \"mode\": {\"type\": \"string\", \"enum\": [\"fast\", \"full\"]},"
+                + "  \"options\": {\"type\": \"object\", \"properties\": {\"depth\": {\"type\": \"number\"}}, \"required\": [\"depth\"]},"
+                + "  \"tags\": {\"type\": \"array\", \"items\": {\"type\": \"string\"}}"
+                + "},"
+                + "\"required\": [\"path\"]"
+                + "}"));
+    }
+
+    @Test
+    public void testValidArguments() {
+        assertNull(validator.validate(parse("{\"path\": \"a.txt\"}")));
+        assertNull(validator.validate(parse("{\"path\": \"a.txt\", \"recursive\": true, \"start_line\": 3, \"mode\": \"fast\","
+                + " \"options\": {\"depth\": 1.5}, \"tags\": [\"x\", \"y\"]}")));
+    }
+
+    @Test
+    public void testMissingRequiredParameter() {
+        assertEquals("Missing required parameter: path", validator.validate(parse("{}")));
+        assertEquals("Missing required parameter: path", validator.validate(parse("{\"path\": null}")));
+    }
+
+    @Test
+    public void testWrongType() {
+        assertEquals("Parameter 'path' must be a string", validator.validate(parse("{\"path\": 1}")));
+        assertEquals("Parameter 'recursive' must be a boolean", validator.validate(parse("{\"path\": \"a\", \"recursive\": \"yes\"}")));
+        assertEquals("Parameter 'start_line' must be an integer", validator.validate(parse("{\"path\": \"a\", \"start_line\": 1.5}")));
+    }
+
+    @Test
+    public void testEnum() {
+        assertEquals("Parameter 'mode' must be one of: fast, full", validator.validate(parse("{\"path\": \"a\", \"mode\": \"slow\"}")));
+    }
+
+    @Test
+    public void testNestedObjectsAndArrays() {
+        assertEquals("Missing required parameter: options.depth", validator.validate(parse("{\"path\": \"a\", \"options\": {}}")));
+        assertEquals("Parameter 'tags[]' must be a string", validator.validate(parse("{\"path\": \"a\", \"tags\": [\"x\", 1]}")));
+    }
+
+    @Test
+    public void testAdditionalPropertiesFalse() {
+        ToolSchemaValidator strict = ToolSchemaValidator.compile(parse(
+                "{\"type\": \"object\", \"properties\": {\"path\": {\"type\": \"string\"}}, \"additionalProperties\": false}"));
+
+        assertNull(strict.validate(parse("{\"path\": \"a\"}")));
+        assertEquals("Unknown parameter: other", strict.validate(parse("{\"path\": \"a\", \"other\": 1}")));
+    }
+
+    @Test
+    public void testEmptySchemaAcceptsAnything() {
+        ToolSchemaValidator empty = ToolSchemaValidator.compile(new JsonObject());
+
+        assertTrue(empty.isValid(parse("{\"anything\": [1, 2, 3]}")));
+    }
+
+    private static JsonObject parse(String json) {
+        return JsonParser.parseString(json).getAsJsonObject();
+    }
+}
@@ -0,0 +1,103 @@
+package com.cline.services;
+
+import com.cline.core.model.Conversation;
+import com.cline.services.history.ConversationJson;
+import com.google.gson.JsonParser;
+import com.intellij.openapi.project.Project;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.when;
+
+/**
+ * Tests for the ClineHistoryService class.
+ */
+public class ClineHistoryServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Mock
+    private Project project;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(project.getBasePath()).thenReturn(tempDir.toString());
+    }
+
+    @Test
+    public void testConversationsAreLoadedLazily() throws Exception {
+        ClineHistoryService service = new ClineHistoryService(project);
+        Conversation conversation = Conversation.createEmpty();
+        conversation.setTitle("Lazy");
+        conversation.addUserMessage("hello");
+        service.addConversation(conversation);
+        assertEquals(1, service.getSummaries().size());
+        service.dispose();
+
+        ClineHistoryService reopened = new ClineHistoryService(project);
+        assertEquals("Lazy", reopened.getSummaries().get(0).getTitle());
+        Conversation loaded = reopened.loadConversation(conversation.getId()).get(5, TimeUnit.SECONDS);
+        assertNotNull(loaded);
+        assertEquals("hello", loaded.getMessages().get(0).getContent());
+        assertSame(loaded, reopened.loadConversation(conversation.getId()).get(5, TimeUnit.SECONDS));
+        reopened.dispose();
+    }
+
+    @Test
+    public void testExportConversation() throws Exception {
+        ClineHistoryService service = new ClineHistoryService(project);
+        Conversation conversation = Conversation.createEmpty();
+        conversation.addUserMessage("exported");
+        service.addConversation(conversation);
+        Path file = tempDir.resolve("export.json");
+
+        assertTrue(service.exportConversation(conversation.getId(), file).get(5, TimeUnit.SECONDS));
+
+        Conversation imported = ConversationJson.fromJson(JsonParser.parseString(Files.readString(file)).getAsJsonObject(), null);
+        assertEquals(conversation.getId(), imported.getId());
+        assertEquals("exported", imported.getMessages().get(0).getContent());
+        assertFalse(service.exportConversation("missing", file).get(5, TimeUnit.SECONDS));
+        service.dispose();
+    }
+
+    @Test
+    public void testSearchFindsWrittenConversations() throws Exception {
+        ClineHistoryService service = new ClineHistoryService(project);
+        Conversation conversation = Conversation.createEmpty();
+        conversation.addUserMessage("migrate the gradle build");
+        service.addConversation(conversation).get(5, TimeUnit.SECONDS);
+
+        assertEquals(conversation.getId(), service.search("grad", 10).get(0).getId());
+        service.removeConversation(conversation).get(5, TimeUnit.SECONDS);
+        assertTrue(service.search("grad", 10).isEmpty());
+        service.dispose();
+    }
+
+    @Test
+    public void testSearchIndexIsRebuiltWhenMissing() throws Exception {
+        ClineHistoryService service = new ClineHistoryService(project);
+        Conversation conversation = Conversation.createEmpty();
+        conversation.addUserMessage("rebuild the index");
+        service.addConversation(conversation);
+        service.dispose();
+        Files.delete(tempDir.resolve(".cline").resolve("history").resolve("search.idx"));
+
+        ClineHistoryService reopened = new ClineHistoryService(project);
+        long deadline = System.currentTimeMillis() + 5000;
+        while (reopened.search("rebuild", 10).isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, reopened.search("rebuild", 10).size());
+        reopened.dispose();
+    }
+}
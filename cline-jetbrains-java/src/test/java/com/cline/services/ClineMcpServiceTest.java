@@ -2,22 +2,32 @@ package com.cline.services;
 
 import com.cline.services.mcp.McpResource;
 import com.cline.services.mcp.McpServer;
+import com.cline.services.mcp.McpServerConfig;
 import com.cline.services.mcp.McpTool;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.intellij.openapi.project.Project;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
  * Tests for the ClineMcpService class.
+ * The configured server is the FakeMcpServer of the MCP tests.
  */
 public class ClineMcpServiceTest {
     
@@ -26,10 +36,47 @@ public class ClineMcpServiceTest {
     @Mock
     private Project project;
     
+    @TempDir
+    Path tempDir;
+    
     @BeforeEach
-    public void setUp() {
+    public void setUp() throws Exception {
         MockitoAnnotations.openMocks(this);
-        mcpService = new ClineMcpService(project);
+        
+        McpServerConfig fake = McpServerConfig.builder()
+                .command(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java")
+                .args("-cp", System.getProperty("java.class.path"), "com.cline.services.mcp.FakeMcpServer")
+                .build();
+        JsonArray args = new JsonArray();
+        for (String arg : fake.getArgs()) {
+            args.add(arg);
+        }
+        JsonObject server = new JsonObject();
+        server.addProperty("command", fake.getCommand());
+        server.add("args", args);
+        JsonObject disabled = new JsonObject();
+        disabled.addProperty("command", "does-not-exist");
+        disabled.addProperty("disabled", true);
+        JsonObject servers = new JsonObject();
+        servers.add("fake-server", server);
+        servers.add("disabled-server", disabled);
+        JsonObject settings = new JsonObject();
+        settings.add("mcpServers", servers);
+        
+        File settingsFile = tempDir.resolve("cline_mcp_settings.json").toFile();
+        Files.writeString(settingsFile.toPath(), settings.toString(), StandardCharsets.UTF_8);
+        mcpService = new ClineMcpService(project, settingsFile);
+        
+        // Servers start in the background
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (mcpService.getAllTools().isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+    }
+    
+    @AfterEach
+    public void tearDown() {
+        mcpService.dispose();
     }
     
     @Test
@@ -38,7 +85,8 @@ public class ClineMcpServiceTest {
         
         assertNotNull(servers);
         assertEquals(1, servers.size());
-        assertEquals("example-server", servers.get(0).getName());
+        assertEquals("fake-server", servers.get(0).getName());
+        assertTrue(servers.get(0).isRunning());
     }
     
     @Test
@@ -46,8 +94,8 @@ public class ClineMcpServiceTest {
         List<McpTool> tools = mcpService.getAllTools();
         
         assertNotNull(tools);
-        assertEquals(1, tools.size());
-        assertEquals("example-tool", tools.get(0).getName());
+        assertEquals(4, tools.size());
+        assertEquals("echo", tools.get(0).getName());
     }
     
     @Test
@@ -56,29 +104,37 @@ public class ClineMcpServiceTest {
         
         assertNotNull(resources);
         assertEquals(1, resources.size());
-        assertEquals("example://resource", resources.get(0).getUri());
+        assertEquals("fake://greeting", resources.get(0).getUri());
     }
     
     @Test
-    public void testExecuteTool() throws ExecutionException, InterruptedException {
+    public void testExecuteTool() throws Exception {
         JsonObject args = new JsonObject();
-        args.addProperty("param", "value");
+        args.addProperty("text", "value");
         
-        CompletableFuture<JsonObject> result = mcpService.executeTool("example-server", "example-tool", args);
-        JsonObject jsonResult = result.get();
+        CompletableFuture<JsonObject> result = mcpService.executeTool("fake-server", "echo", args);
+        JsonObject jsonResult = result.get(10, TimeUnit.SECONDS);
         
         assertNotNull(jsonResult);
-        assertTrue(jsonResult.has("result"));
-        assertEquals("Tool executed: example-tool", jsonResult.get("result").getAsString());
+        assertTrue(jsonResult.has("content"));
+        assertEquals("value", jsonResult.getAsJsonArray("content").get(0).getAsJsonObject().get("text").getAsString());
     }
     
     @Test
-    public void testAccessResource() throws ExecutionException, InterruptedException {
-        CompletableFuture<String> result = mcpService.accessResource("example-server", "example://resource");
-        String content = result.get();
+    public void testAccessResource() throws Exception {
+        CompletableFuture<String> result = mcpService.accessResource("fake-server", "fake://greeting");
+        String content = result.get(10, TimeUnit.SECONDS);
         
         assertNotNull(content);
-        assertEquals("Resource content: example://resource", content);
+        assertEquals("Hello from fake://greeting", content);
+    }
+    
+    @Test
+    public void testSettingsAreReadFromTheUserDirectory() {
+        File settingsFile = ClineMcpService.getDefaultSettingsFile();
+        
+        assertTrue(settingsFile.toPath().startsWith(Path.of(System.getProperty("user.home"))));
+        assertEquals("cline_mcp_settings.json", settingsFile.getName());
     }
     
     @Test
@@ -97,4 +153,4 @@ public class ClineMcpServiceTest {
         
         assertThrows(ExecutionException.class, () -> result.get());
     }
-}
\ No newline at end of file
+}
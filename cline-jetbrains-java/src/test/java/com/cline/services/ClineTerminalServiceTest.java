@@ -0,0 +1,143 @@
+package com.cline.services;
+
+import com.cline.core.tool.ToolContext;
+import com.cline.services.terminal.CommandResult;
+import com.intellij.openapi.project.Project;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.nio.file.Path;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for the ClineTerminalService class.
+ * The commands used here need a POSIX shell.
+ */
+@DisabledOnOs(OS.WINDOWS)
+public class ClineTerminalServiceTest {
+
+    @Mock
+    private Project project;
+
+    @TempDir
+    Path tempDir;
+
+    private ClineTerminalService terminalService;
+
+    @BeforeEach
+    public void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(project.getBasePath()).thenReturn(tempDir.toString());
+        terminalService = new ClineTerminalService(project, () -> 600);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        terminalService.dispose();
+    }
+
+    @Test
+    public void testCapturesOutputAndExitCode() throws Exception {
+        CommandResult result = terminalService.runCommand("echo out; echo err 1>&2; exit 3", 10, ToolContext.detached(), null)
+                .get(10, TimeUnit.SECONDS);
+
+        assertEquals(3, result.getExitCode());
+        assertFalse(result.isSuccess());
+        assertTrue(result.getOutput().contains("out"));
+        assertTrue(result.getOutput().contains("err"));
+    }
+
+    @Test
+    public void testRunsInProjectDirectory() throws Exception {
+        String output = terminalService.executeCommandAndCaptureOutput("pwd", 10).get(10, TimeUnit.SECONDS);
+
+        assertEquals(tempDir.toRealPath().toString(), output.trim());
+    }
+
+    @Test
+    public void testStreamsOutput() throws Exception {
+        StringBuffer streamed = new StringBuffer();
+
+        CommandResult result = terminalService.runCommand("echo first; echo second", 10, ToolContext.detached(), streamed::append)
+                .get(10, TimeUnit.SECONDS);
+
+        assertEquals(result.getOutput(), streamed.toString());
+    }
+
+    @Test
+    public void testTailsLargeOutput() throws Exception {
+        CommandResult result = terminalService.runCommand("i=0; while [ $i -lt 20000 ]; do echo line $i; i=$((i+1)); done",
+                30, ToolContext.detached(), null).get(30, TimeUnit.SECONDS);
+
+        assertTrue(result.isSuccess());
+        assertTrue(result.isTruncated());
+        assertTrue(result.getOutput().startsWith("[... "));
+        assertTrue(result.getOutput().endsWith("line 19999\n"));
+    }
+
+    @Test
+    public void testTimeoutKillsCommand() throws Exception {
+        CommandResult result = terminalService.runCommand("sleep 30", 1, ToolContext.detached(), null)
+                .get(10, TimeUnit.SECONDS);
+
+        assertTrue(result.isTimedOut());
+        assertFalse(result.isSuccess());
+    }
+
+    @Test
+    public void testWorkingDirectoryAndEnvironmentPersist() throws Exception {
+        tempDir.resolve("sub").toFile().mkdir();
+
+        terminalService.runCommand("cd sub && export CLINE_TEST_VAR=kept", 10, ToolContext.detached(), null)
+                .get(10, TimeUnit.SECONDS);
+        String output = terminalService.executeCommandAndCaptureOutput("pwd; echo $CLINE_TEST_VAR", 10)
+                .get(10, TimeUnit.SECONDS);
+
+        assertEquals(tempDir.resolve("sub").toRealPath() + "\nkept\n", output);
+    }
+
+    @Test
+    public void testSessionIsReplacedAfterShellExits() throws Exception {
+        CommandResult exited = terminalService.runCommand("echo bye; exit 4", 10, ToolContext.detached(), null)
+                .get(10, TimeUnit.SECONDS);
+        CommandResult next = terminalService.runCommand("echo hello", 10, ToolContext.detached(), null)
+                .get(10, TimeUnit.SECONDS);
+
+        assertEquals(4, exited.getExitCode());
+        assertEquals("bye\n", exited.getOutput());
+        assertTrue(next.isSuccess());
+        assertEquals("hello\n", next.getOutput());
+    }
+
+    @Test
+    public void testSessionIsReplacedAfterTimeout() throws Exception {
+        CommandResult timedOut = terminalService.runCommand("sleep 30", 1, ToolContext.detached(), null)
+                .get(10, TimeUnit.SECONDS);
+        CommandResult next = terminalService.runCommand("echo hello", 10, ToolContext.detached(), null)
+                .get(10, TimeUnit.SECONDS);
+
+        assertTrue(timedOut.isTimedOut());
+        assertEquals("hello\n", next.getOutput());
+    }
+
+    @Test
+    public void testCancelKillsCommand() {
+        ToolContext context = ToolContext.detached();
+        CompletableFuture<CommandResult> future = terminalService.runCommand("sleep 30", 0, context, null);
+
+        context.cancel();
+
+        assertThrows(CancellationException.class, () -> future.get(10, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,68 @@
+package com.cline.services.history;
+
+import com.cline.core.model.ContentBlob;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the BlobStore class.
+ */
+public class BlobStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testIdenticalContentIsStoredOnce() throws Exception {
+        BlobStore blobs = new BlobStore(tempDir);
+        ContentBlob first = blobs.put("same content");
+        ContentBlob second = blobs.put("same content");
+        ContentBlob other = blobs.put("other content");
+
+        assertSame(first, second);
+        assertNotEquals(first.getHash(), other.getHash());
+        assertEquals(2, countFiles());
+    }
+
+    @Test
+    public void testContentIsLoadedLazily() throws Exception {
+        String content = "line\n".repeat(1000) + "\u00e9\u2713";
+        String hash = new BlobStore(tempDir).put(content).getHash();
+
+        ContentBlob blob = new BlobStore(tempDir).get(hash, content.length());
+        assertFalse(blob.isLoaded());
+        assertEquals(content, blob.load());
+        assertTrue(blob.isLoaded());
+    }
+
+    @Test
+    public void testMissingBlobLoadsPlaceholder() {
+        ContentBlob blob = new BlobStore(tempDir).get("0".repeat(64), 10);
+        assertTrue(blob.load().contains("unavailable"));
+        assertFalse(blob.isLoaded());
+    }
+
+    @Test
+    public void testRetainAll() throws Exception {
+        BlobStore blobs = new BlobStore(tempDir);
+        ContentBlob live = blobs.put("live");
+        ContentBlob dead = blobs.put("dead");
+
+        assertEquals(1, blobs.retainAll(Set.of(live.getHash())));
+        assertTrue(blobs.contains(live.getHash()));
+        assertFalse(blobs.contains(dead.getHash()));
+    }
+
+    private long countFiles() throws Exception {
+        try (Stream<Path> files = Files.walk(tempDir)) {
+            return files.filter(Files::isRegularFile).count();
+        }
+    }
+}
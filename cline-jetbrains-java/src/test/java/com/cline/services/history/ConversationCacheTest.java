@@ -0,0 +1,76 @@
+package com.cline.services.history;
+
+import com.cline.core.model.Conversation;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ConversationCache class.
+ */
+public class ConversationCacheTest {
+
+    @Test
+    public void testGetReturnsCachedInstance() {
+        ConversationCache cache = new ConversationCache(2);
+        Conversation conversation = Conversation.createEmpty();
+        cache.put(conversation);
+
+        assertSame(conversation, cache.get(conversation.getId()));
+        assertNull(cache.get("missing"));
+    }
+
+    @Test
+    public void testEvictedConversationStaysReachableWhileInUse() {
+        ConversationCache cache = new ConversationCache(1);
+        Conversation first = Conversation.createEmpty();
+        Conversation second = Conversation.createEmpty();
+        cache.put(first);
+        cache.put(second);
+
+        // The first conversation is only softly referenced now, but still strongly held by this test
+        assertSame(first, cache.get(first.getId()));
+        assertSame(second, cache.get(second.getId()));
+    }
+
+    @Test
+    public void testPutIfAbsentKeepsExistingInstance() {
+        ConversationCache cache = new ConversationCache(2);
+        Conversation open = Conversation.createEmpty();
+        cache.put(open);
+        Conversation loaded = new Conversation(open.getId(), null, null, null);
+
+        assertSame(open, cache.putIfAbsent(loaded));
+    }
+
+    @Test
+    public void testCollectedConversationsArePurged() {
+        ConversationCache cache = new ConversationCache(1);
+        for (int i = 0; i < 10; i++) {
+            cache.put(Conversation.createEmpty());
+        }
+        assertEquals(10, cache.size());
+
+        cache.collectDemoted();
+
+        // Only the strongly held conversation is left
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testRemoveAndClear() {
+        ConversationCache cache = new ConversationCache(1);
+        Conversation first = Conversation.createEmpty();
+        Conversation second = Conversation.createEmpty();
+        cache.put(first);
+        cache.put(second);
+        assertEquals(2, cache.size());
+
+        cache.remove(first.getId());
+        assertNull(cache.get(first.getId()));
+        assertEquals(1, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+}
@@ -0,0 +1,115 @@
+package com.cline.services.history;
+
+import com.cline.core.model.Message;
+import com.cline.core.model.MessageRole;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ConversationCodec class.
+ */
+public class ConversationCodecTest {
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        Message user = Message.createUserMessage("h\u00e9llo \u2713");
+        user.getMetadata().addProperty("inputTokens", 12);
+        Message tool = Message.createToolMessage("read_file", "Tool executed successfully", createToolResult("src/Main.java"));
+        JsonObject toolInput = new JsonObject();
+        toolInput.addProperty("path", "src/Main.java");
+        tool.setToolInput(toolInput);
+
+        List<Message> decoded = ConversationCodec.decode(ConversationCodec.encode(List.of(user, tool)));
+
+        assertEquals(2, decoded.size());
+        assertMessageEquals(user, decoded.get(0));
+        assertMessageEquals(tool, decoded.get(1));
+    }
+
+    @Test
+    public void testToolResultContentIsStoredOnce() throws Exception {
+        JsonObject toolResult = createToolResult("x".repeat(1000));
+        Message duplicated = Message.createToolMessage("read_file", toolResult.toString(), toolResult);
+        Message distinct = Message.createToolMessage("read_file", "y".repeat(1000), toolResult);
+
+        byte[] duplicatedBlock = ConversationCodec.encode(List.of(duplicated));
+        byte[] distinctBlock = ConversationCodec.encode(List.of(distinct));
+
+        assertTrue(duplicatedBlock.length < distinctBlock.length);
+        Message decoded = ConversationCodec.decode(duplicatedBlock).get(0);
+        assertEquals(duplicated.getContent(), decoded.getContent());
+        assertEquals(toolResult, decoded.getToolResult());
+    }
+
+    @Test
+    public void testRepeatedStringsAreCompressed() throws Exception {
+        List<Message> messages = new ArrayList<>();
+        int jsonSize = 0;
+        for (int i = 0; i < 50; i++) {
+            Message message = Message.createToolMessage("list_files", "Listed files", createToolResult("src/main/java/com/cline"));
+            messages.add(message);
+            jsonSize += ConversationJson.messageToJson(message).toString().getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        byte[] block = ConversationCodec.encode(messages);
+
+        assertTrue(block.length * 4 < jsonSize, block.length + " bytes, JSON is " + jsonSize + " bytes");
+        assertEquals(50, ConversationCodec.decode(block).size());
+    }
+
+    @Test
+    public void testFingerprintDetectsChanges() {
+        Message message = Message.createAssistantMessage("partial");
+        long fingerprint = ConversationCodec.fingerprint(message);
+        assertEquals(fingerprint, ConversationCodec.fingerprint(message));
+
+        message.setContent("complete");
+        assertNotEquals(fingerprint, ConversationCodec.fingerprint(message));
+    }
+
+    @Test
+    public void testMalformedBlocksAreRejected() {
+        byte[] block = ConversationCodec.encode(List.of(Message.createUserMessage("hello")));
+
+        assertThrows(IOException.class, () -> ConversationCodec.decode(Arrays.copyOf(block, block.length - 2)));
+
+        byte[] newer = block.clone();
+        newer[0] = (byte) (ConversationCodec.FORMAT_VERSION + 1);
+        assertThrows(IOException.class, () -> ConversationCodec.decode(newer));
+    }
+
+    private static JsonObject createToolResult(String path) {
+        JsonObject result = new JsonObject();
+        result.addProperty("success", true);
+        result.addProperty("path", path);
+        result.addProperty("lines", 42);
+        result.addProperty("ratio", 0.5);
+        JsonArray entries = new JsonArray();
+        entries.add("a.txt");
+        entries.add(path);
+        result.add("entries", entries);
+        result.add("error", null);
+        return result;
+    }
+
+    private static void assertMessageEquals(Message expected, Message actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getRole(), actual.getRole());
+        assertEquals(expected.getContent(), actual.getContent());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getMetadata(), actual.getMetadata());
+        assertEquals(expected.getToolName(), actual.getToolName());
+        assertEquals(expected.getToolInput(), actual.getToolInput());
+        assertEquals(expected.getToolResult(), actual.getToolResult());
+        assertEquals(expected.getRole() == MessageRole.TOOL, actual.getToolName() != null);
+    }
+}
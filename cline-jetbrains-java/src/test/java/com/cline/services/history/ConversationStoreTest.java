@@ -0,0 +1,305 @@
+package com.cline.services.history;
+
+import com.cline.core.model.ContentBlob;
+import com.cline.core.model.Conversation;
+import com.cline.core.model.Message;
+import com.cline.core.model.MessageRole;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ConversationStore class.
+ */
+public class ConversationStoreTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path storeDirectory;
+    private ConversationStore store;
+
+    @BeforeEach
+    public void setUp() {
+        storeDirectory = tempDir.resolve("history");
+        store = new ConversationStore(storeDirectory);
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        Conversation conversation = Conversation.createWithSystemMessage("system");
+        conversation.setTitle("Title");
+        conversation.setMetadata("mode", "act");
+        conversation.addUserMessage("hello");
+        JsonObject toolResult = new JsonObject();
+        toolResult.addProperty("success", true);
+        conversation.addToolMessage("read_file", "Tool executed successfully", toolResult);
+        store.save(conversation);
+
+        Conversation restored = new ConversationStore(storeDirectory).load(conversation.getId());
+
+        assertNotNull(restored);
+        assertEquals(conversation.getId(), restored.getId());
+        assertEquals("Title", restored.getTitle());
+        assertEquals("act", restored.getMetadata("mode"));
+        assertEquals(conversation.getCreatedAt(), restored.getCreatedAt());
+        assertEquals(conversation.getUpdatedAt(), restored.getUpdatedAt());
+        assertEquals(3, restored.getMessageCount());
+        Message toolMessage = restored.getMessages().get(2);
+        assertEquals(MessageRole.TOOL, toolMessage.getRole());
+        assertEquals("read_file", toolMessage.getToolName());
+        assertEquals(toolResult, toolMessage.getToolResult());
+    }
+
+    @Test
+    public void testOnlyNewMessagesAreAppended() throws Exception {
+        Conversation conversation = Conversation.createEmpty();
+        conversation.addUserMessage("first");
+        store.save(conversation);
+        byte[] first = readLog(conversation);
+        conversation.addAssistantMessage("second");
+        store.save(conversation);
+        byte[] second = readLog(conversation);
+        store.save(conversation);
+
+        assertTrue(second.length > first.length);
+        assertArrayEquals(first, Arrays.copyOf(second, first.length));
+        assertArrayEquals(second, readLog(conversation));
+    }
+
+    @Test
+    public void testChangedMessageIsAppendedAndReplayed() throws Exception {
+        Conversation conversation = Conversation.createEmpty();
+        Message message = conversation.addAssistantMessage("partial");
+        store.save(conversation);
+        int size = readLog(conversation).length;
+        message.setContent("complete");
+        store.save(conversation);
+
+        assertTrue(readLog(conversation).length > size);
+        Conversation restored = new ConversationStore(storeDirectory).load(conversation.getId());
+        assertNotNull(restored);
+        assertEquals(1, restored.getMessageCount());
+        assertEquals("complete", restored.getMessages().get(0).getContent());
+    }
+
+    @Test
+    public void testUnchangedConversationIsNotWritten() throws Exception {
+        Conversation first = Conversation.createEmpty();
+        first.addUserMessage("first");
+        Conversation second = Conversation.createEmpty();
+        second.addUserMessage("second");
+        store.save(first);
+        store.save(second);
+        Path firstLog = storeDirectory.resolve(first.getId()).resolve("messages.bin");
+        Files.setLastModifiedTime(firstLog, FileTime.fromMillis(0));
+
+        second.addAssistantMessage("reply");
+        store.save(second);
+
+        assertEquals(0, Files.getLastModifiedTime(firstLog).toMillis());
+    }
+
+    @Test
+    public void testClearedMessagesRewriteLog() throws Exception {
+        Conversation conversation = Conversation.createEmpty();
+        conversation.addUserMessage("first");
+        conversation.addUserMessage("second");
+        store.save(conversation);
+        conversation.clearMessages();
+        conversation.addUserMessage("third");
+        store.save(conversation);
+
+        Conversation restored = new ConversationStore(storeDirectory).load(conversation.getId());
+        assertNotNull(restored);
+        assertEquals("third", restored.getMessages().get(0).getContent());
+    }
+
+    @Test
+    public void testTruncatedRecordIsSkipped() throws Exception {
+        Conversation conversation = Conversation.createEmpty();
+        conversation.addUserMessage("kept");
+        store.save(conversation);
+        Path log = storeDirectory.resolve(conversation.getId()).resolve("messages.bin");
+        Files.write(log, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+
+        ConversationStore reopened = new ConversationStore(storeDirectory);
+        Conversation restored = reopened.load(conversation.getId());
+        assertNotNull(restored);
+        assertEquals(1, restored.getMessageCount());
+
+        restored.addUserMessage("added");
+        reopened.save(restored);
+        Conversation reloaded = new ConversationStore(storeDirectory).load(conversation.getId());
+        assertNotNull(reloaded);
+        assertEquals(2, reloaded.getMessageCount());
+    }
+
+    @Test
+    public void testDelete() throws Exception {
+        Conversation conversation = Conversation.createEmpty();
+        store.save(conversation);
+
+        store.delete(conversation.getId());
+
+        assertFalse(Files.exists(storeDirectory.resolve(conversation.getId())));
+        assertTrue(new ConversationStore(storeDirectory).loadSummaries().isEmpty());
+    }
+
+    @Test
+    public void testImportLegacyHistory() throws Exception {
+        Path legacyFile = tempDir.resolve("cline-history.json");
+        Files.writeString(legacyFile, "[{\"id\":\"legacy\",\"title\":\"Old\","
+                + "\"createdAt\":{\"seconds\":1700000000,\"nanos\":0},\"updatedAt\":{\"seconds\":1700000100,\"nanos\":0},"
+                + "\"metadata\":{},\"messages\":[{\"id\":\"m1\",\"content\":\"hi\",\"role\":\"USER\","
+                + "\"timestamp\":{\"seconds\":1700000000,\"nanos\":0},\"metadata\":{}}]}]");
+
+        assertEquals(1, store.importLegacyHistory(legacyFile));
+
+        assertFalse(Files.exists(legacyFile));
+        List<ConversationSummary> summaries = new ConversationStore(storeDirectory).loadSummaries();
+        assertEquals(1, summaries.size());
+        assertEquals("Old", summaries.get(0).getTitle());
+        Conversation restored = new ConversationStore(storeDirectory).load("legacy");
+        assertNotNull(restored);
+        assertEquals("hi", restored.getMessages().get(0).getContent());
+    }
+
+    @Test
+    public void testSummariesAreLoadedFromIndex() throws Exception {
+        Conversation conversation = Conversation.createEmpty();
+        conversation.setTitle("Tokens");
+        conversation.addUserMessage("question");
+        Message reply = conversation.addAssistantMessage("answer");
+        reply.getMetadata().addProperty("inputTokens", 100);
+        reply.getMetadata().addProperty("outputTokens", 20);
+        reply.getMetadata().addProperty("cost", 0.5);
+        ConversationSummary saved = store.save(conversation);
+        // Summaries must not need the message log
+        Files.delete(storeDirectory.resolve(conversation.getId()).resolve("messages.bin"));
+
+        List<ConversationSummary> summaries = new ConversationStore(storeDirectory).loadSummaries();
+
+        assertEquals(List.of(saved), summaries);
+        ConversationSummary summary = summaries.get(0);
+        assertEquals("Tokens", summary.getTitle());
+        assertEquals(2, summary.getMessageCount());
+        assertEquals(100, summary.getInputTokens());
+        assertEquals(20, summary.getOutputTokens());
+        assertEquals(120, summary.getTotalTokens());
+        assertEquals(0.5, summary.getCost(), 1e-9);
+        assertEquals(conversation.getUpdatedAt(), summary.getUpdatedAt());
+    }
+
+    @Test
+    public void testJsonLogIsConverted() throws Exception {
+        Conversation conversation = Conversation.createEmpty();
+        Message message = conversation.addUserMessage("from a json log");
+        Path conversationDirectory = Files.createDirectories(storeDirectory.resolve(conversation.getId()));
+        Files.writeString(conversationDirectory.resolve("conversation.json"),
+                ConversationJson.headerToJson(conversation).toString());
+        Path jsonLog = conversationDirectory.resolve("messages.jsonl");
+        Files.writeString(jsonLog, "{\"op\":\"put\",\"message\":" + ConversationJson.messageToJson(message) + "}\n");
+
+        Conversation restored = store.load(conversation.getId());
+        assertNotNull(restored);
+        store.save(restored);
+
+        assertFalse(Files.exists(jsonLog));
+        assertTrue(Files.exists(conversationDirectory.resolve("messages.bin")));
+        Conversation reloaded = new ConversationStore(storeDirectory).load(conversation.getId());
+        assertNotNull(reloaded);
+        assertEquals("from a json log", reloaded.getMessages().get(0).getContent());
+    }
+
+    @Test
+    public void testLargeBodiesAreMovedToBlobs() throws Exception {
+        BlobStore blobs = new BlobStore(tempDir.resolve("blobs"));
+        ConversationStore blobStore = new ConversationStore(storeDirectory, blobs, 100);
+        JsonObject toolResult = new JsonObject();
+        toolResult.addProperty("content", "x".repeat(500));
+        Conversation first = Conversation.createEmpty();
+        Message toolMessage = first.addToolMessage("read_file", toolResult.toString(), toolResult);
+        first.addUserMessage("y".repeat(500));
+        Conversation second = Conversation.createEmpty();
+        second.addToolMessage("read_file", toolResult.toString(), toolResult);
+        second.addUserMessage("thanks");
+        blobStore.save(first);
+        blobStore.save(second);
+
+        assertNotNull(toolMessage.getContentBlob());
+        assertSame(toolMessage.getContentBlob(), toolMessage.getToolResultBlob());
+        assertSame(toolMessage.getContentBlob(), second.getMessages().get(0).getContentBlob());
+        // The last message may still be streaming
+        assertNull(first.getMessages().get(1).getContentBlob());
+        assertEquals(toolResult, toolMessage.getToolResult());
+
+        Conversation restored = new ConversationStore(storeDirectory, new BlobStore(tempDir.resolve("blobs")), 100)
+                .load(first.getId());
+        assertNotNull(restored);
+        Message restoredTool = restored.getMessages().get(0);
+        ContentBlob blob = restoredTool.getContentBlob();
+        assertNotNull(blob);
+        assertFalse(blob.isLoaded());
+        assertEquals(toolResult.toString(), restoredTool.getContent());
+        assertEquals(toolResult, restoredTool.getToolResult());
+        assertEquals("y".repeat(500), restored.getMessages().get(1).getContent());
+    }
+
+    @Test
+    public void testUnreferencedBlobsAreCollected() throws Exception {
+        BlobStore blobs = new BlobStore(tempDir.resolve("blobs"));
+        ConversationStore blobStore = new ConversationStore(storeDirectory, blobs, 100);
+        Conversation kept = Conversation.createEmpty();
+        ContentBlob keptBlob = spill(blobStore, kept, "k".repeat(200));
+        Conversation deleted = Conversation.createEmpty();
+        ContentBlob deletedBlob = spill(blobStore, deleted, "d".repeat(200));
+        blobStore.delete(deleted.getId());
+
+        assertEquals(1, new ConversationStore(storeDirectory, blobs, 100).collectGarbage());
+        assertTrue(blobs.contains(keptBlob.getHash()));
+        assertFalse(blobs.contains(deletedBlob.getHash()));
+    }
+
+    @Test
+    public void testBlobsOfOpenConversationsSurviveDeleteAll() throws Exception {
+        BlobStore blobs = new BlobStore(tempDir.resolve("blobs"));
+        ConversationStore blobStore = new ConversationStore(storeDirectory, blobs, 100);
+        Conversation open = Conversation.createEmpty();
+        ContentBlob blob = spill(blobStore, open, "o".repeat(200));
+
+        // The history is cleared while the conversation is still shown, and the conversation is saved again
+        blobStore.deleteAll();
+        open.addUserMessage("more");
+        blobStore.save(open);
+
+        assertTrue(blobs.contains(blob.getHash()));
+        Conversation restored = new ConversationStore(storeDirectory, new BlobStore(tempDir.resolve("blobs")), 100)
+                .load(open.getId());
+        assertNotNull(restored);
+        assertEquals(3, restored.getMessageCount());
+        assertEquals("o".repeat(200), restored.getMessages().get(0).getContent());
+    }
+
+    private static ContentBlob spill(ConversationStore store, Conversation conversation, String content) throws Exception {
+        Message message = conversation.addUserMessage(content);
+        conversation.addAssistantMessage("ok");
+        store.save(conversation);
+        assertNotNull(message.getContentBlob());
+        return message.getContentBlob();
+    }
+
+    private byte[] readLog(Conversation conversation) throws Exception {
+        return Files.readAllBytes(storeDirectory.resolve(conversation.getId()).resolve("messages.bin"));
+    }
+}
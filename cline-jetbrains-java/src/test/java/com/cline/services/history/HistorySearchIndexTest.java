@@ -0,0 +1,187 @@
+package com.cline.services.history;
+
+import com.cline.core.model.Conversation;
+import com.cline.core.model.Message;
+import com.cline.core.model.MessageRole;
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the HistorySearchIndex class.
+ */
+public class HistorySearchIndexTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testTokenize() {
+        assertEquals(2, HistorySearchIndex.tokenize("Fix the fix").get("fix"));
+        assertTrue(HistorySearchIndex.tokenize("src/main/ChatView.java").keySet()
+                .containsAll(List.of("src", "main", "chatview", "java")));
+    }
+
+    @Test
+    public void testSearchMatchesContentsToolNamesAndPaths() {
+        HistorySearchIndex index = new HistorySearchIndex();
+        Conversation conversation = Conversation.createEmpty();
+        conversation.addUserMessage("Please refactor the renderer");
+        JsonObject toolInput = new JsonObject();
+        toolInput.addProperty("path", "src/ui/MarkdownRenderer.java");
+        conversation.addToolMessage("read_file", "Tool executed successfully", null).setToolInput(toolInput);
+        index.update(conversation);
+
+        assertEquals(List.of(conversation.getId()), index.search("refactor", 10));
+        assertEquals(List.of(conversation.getId()), index.search("read_file", 10));
+        assertEquals(List.of(conversation.getId()), index.search("markdownrenderer", 10));
+        assertTrue(index.search("compiler", 10).isEmpty());
+    }
+
+    @Test
+    public void testPrefixMatchingRanksExactMatchesFirst() {
+        HistorySearchIndex index = new HistorySearchIndex();
+        Conversation exact = Conversation.createEmpty();
+        exact.addUserMessage("update the test");
+        Conversation prefix = Conversation.createEmpty();
+        prefix.addUserMessage("update the testing setup");
+        index.update(exact);
+        index.update(prefix);
+
+        assertEquals(List.of(exact.getId(), prefix.getId()), index.search("test", 10));
+        assertEquals(List.of(prefix.getId()), index.search("testi", 10));
+    }
+
+    @Test
+    public void testAllQueryTermsMustMatch() {
+        HistorySearchIndex index = new HistorySearchIndex();
+        Conversation both = Conversation.createEmpty();
+        both.addUserMessage("gradle build fails");
+        Conversation one = Conversation.createEmpty();
+        one.addUserMessage("gradle sync");
+        index.update(both);
+        index.update(one);
+
+        assertEquals(List.of(both.getId()), index.search("gradle fail", 10));
+        assertEquals(2, index.search("gradle", 10).size());
+        assertEquals(1, index.search("gradle", 1).size());
+    }
+
+    @Test
+    public void testTitleMatchesRankHigher() {
+        HistorySearchIndex index = new HistorySearchIndex();
+        Conversation titled = Conversation.createEmpty();
+        titled.setTitle("Terminal sessions");
+        titled.addUserMessage("keep the shell alive");
+        Conversation mentioned = Conversation.createEmpty();
+        mentioned.addUserMessage("open a terminal and keep the shell alive");
+        index.update(mentioned);
+        index.update(titled);
+
+        assertEquals(titled.getId(), index.search("terminal", 10).get(0));
+    }
+
+    @Test
+    public void testUpdateAndRemove() {
+        HistorySearchIndex index = new HistorySearchIndex();
+        Conversation conversation = Conversation.createEmpty();
+        conversation.addUserMessage("first topic");
+        index.update(conversation);
+        conversation.clearMessages();
+        conversation.addUserMessage("second topic");
+        index.update(conversation);
+
+        assertTrue(index.search("first", 10).isEmpty());
+        assertEquals(List.of(conversation.getId()), index.search("second", 10));
+
+        index.remove(conversation.getId());
+        assertTrue(index.search("topic", 10).isEmpty());
+        assertFalse(index.contains(conversation.getId()));
+    }
+
+    @Test
+    public void testOnlyNewAndChangedMessagesAreTokenized() {
+        HistorySearchIndex index = new HistorySearchIndex();
+        Conversation conversation = Conversation.createEmpty();
+        CountingMessage first = new CountingMessage("first topic");
+        conversation.addMessage(first);
+        CountingMessage streamed = new CountingMessage("partial");
+        conversation.addMessage(streamed);
+        index.update(conversation);
+        assertEquals(1, first.reads);
+
+        streamed.setContent("partial response");
+        conversation.addUserMessage("follow up");
+        conversation.setTitle("Renamed");
+        index.update(conversation);
+
+        assertEquals(1, first.reads);
+        assertEquals(2, streamed.reads);
+        assertEquals(List.of(conversation.getId()), index.search("response", 10));
+        assertEquals(List.of(conversation.getId()), index.search("first follow renamed", 10));
+
+        // Changing an earlier message tokenizes the whole conversation again
+        first.setContent("other subject");
+        index.update(conversation);
+
+        assertEquals(2, first.reads);
+        assertTrue(index.search("first", 10).isEmpty());
+        assertEquals(List.of(conversation.getId()), index.search("subject partial follow", 10));
+
+        conversation.removeMessage(streamed);
+        index.update(conversation);
+        assertTrue(index.search("partial", 10).isEmpty());
+        assertEquals(List.of(conversation.getId()), index.search("subject follow", 10));
+    }
+
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        HistorySearchIndex index = new HistorySearchIndex();
+        Conversation conversation = Conversation.createEmpty();
+        conversation.addUserMessage("persisted index");
+        index.update(conversation);
+        assertTrue(index.isDirty());
+        Path file = tempDir.resolve("search.idx");
+        index.save(file);
+        assertFalse(index.isDirty());
+
+        HistorySearchIndex loaded = new HistorySearchIndex();
+        assertTrue(loaded.load(file));
+        assertEquals(List.of(conversation.getId()), loaded.search("persist", 10));
+        assertFalse(loaded.load(tempDir.resolve("missing.idx")));
+
+        Files.write(file, new byte[]{0, 0, 0, 99});
+        assertFalse(loaded.load(file));
+    }
+
+    /**
+     * Message that counts how often its content is read by the index.
+     */
+    private static class CountingMessage extends Message {
+        int reads = 0;
+
+        CountingMessage(String content) {
+            super(null, content, MessageRole.USER, null, null, null, null);
+        }
+
+        @Override
+        public synchronized String getContent() {
+            // Fingerprinting reads the content too; only count the index's reads
+            if (!isCalledFrom(ConversationCodec.class)) {
+                reads++;
+            }
+            return super.getContent();
+        }
+
+        private static boolean isCalledFrom(Class<?> caller) {
+            return StackWalker.getInstance().walk(frames ->
+                    frames.anyMatch(frame -> frame.getClassName().equals(caller.getName())));
+        }
+    }
+}
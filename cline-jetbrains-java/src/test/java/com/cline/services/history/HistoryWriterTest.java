@@ -0,0 +1,133 @@
+package com.cline.services.history;
+
+import com.cline.core.model.Conversation;
+import com.cline.core.model.Message;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the HistoryWriter class.
+ */
+public class HistoryWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private Path storeDirectory;
+    private HistoryWriter writer;
+
+    @BeforeEach
+    public void setUp() {
+        storeDirectory = tempDir.resolve("history");
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (writer != null) {
+            writer.close();
+        }
+    }
+
+    @Test
+    public void testRapidUpdatesAreCoalesced() throws Exception {
+        AtomicInteger saves = new AtomicInteger();
+        ConversationStore store = new ConversationStore(storeDirectory) {
+            @Override
+            public synchronized ConversationSummary save(Conversation conversation) throws IOException {
+                saves.incrementAndGet();
+                return super.save(conversation);
+            }
+        };
+        writer = new HistoryWriter(store, 500, 5000);
+        Conversation conversation = Conversation.createEmpty();
+        Message message = conversation.addAssistantMessage("");
+
+        CompletableFuture<Void> last = null;
+        for (int i = 0; i < 100; i++) {
+            message.setContent(message.getContent() + i);
+            last = writer.save(conversation);
+        }
+        last.get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, saves.get());
+        Conversation restored = new ConversationStore(storeDirectory).load(conversation.getId());
+        assertNotNull(restored);
+        assertEquals(message.getContent(), restored.getMessages().get(0).getContent());
+    }
+
+    @Test
+    public void testMaxDelayBoundsContinuousUpdates() throws Exception {
+        writer = new HistoryWriter(new ConversationStore(storeDirectory), 200, 300);
+        Conversation conversation = Conversation.createEmpty();
+        CompletableFuture<Void> first = writer.save(conversation);
+
+        // Keep updating more often than the debounce delay
+        long deadline = System.currentTimeMillis() + 2000;
+        while (!first.isDone() && System.currentTimeMillis() < deadline) {
+            conversation.addUserMessage("update");
+            writer.save(conversation);
+            Thread.sleep(20);
+        }
+
+        assertTrue(first.isDone());
+    }
+
+    @Test
+    public void testCloseWritesPendingChanges() throws Exception {
+        writer = new HistoryWriter(new ConversationStore(storeDirectory), 60_000, 60_000);
+        Conversation conversation = Conversation.createEmpty();
+        conversation.addUserMessage("pending");
+        CompletableFuture<Void> future = writer.save(conversation);
+        assertEquals(1, writer.getPendingCount());
+
+        writer.close();
+
+        assertTrue(future.isDone());
+        assertNotNull(new ConversationStore(storeDirectory).load(conversation.getId()));
+        assertThrows(ExecutionException.class, () -> writer.save(conversation).get());
+    }
+
+    @Test
+    public void testDeleteSupersedesPendingSave() throws Exception {
+        writer = new HistoryWriter(new ConversationStore(storeDirectory), 60_000, 60_000);
+        Conversation conversation = Conversation.createEmpty();
+        CompletableFuture<Void> save = writer.save(conversation);
+        CompletableFuture<Void> delete = writer.delete(conversation.getId());
+
+        writer.flush();
+
+        assertTrue(save.isDone());
+        assertTrue(delete.isDone());
+        assertFalse(Files.exists(storeDirectory.resolve(conversation.getId())));
+    }
+
+    @Test
+    public void testSaveAfterDeleteAllIsKept() throws Exception {
+        ConversationStore store = new ConversationStore(storeDirectory);
+        Conversation old = Conversation.createEmpty();
+        store.save(old);
+        writer = new HistoryWriter(store, 60_000, 60_000);
+
+        writer.deleteAll();
+        Conversation added = Conversation.createEmpty();
+        writer.save(added);
+        writer.flush();
+
+        ConversationStore reopened = new ConversationStore(storeDirectory);
+        assertNull(reopened.load(old.getId()));
+        assertNotNull(reopened.load(added.getId()));
+        assertEquals(1, reopened.loadSummaries().size());
+    }
+}
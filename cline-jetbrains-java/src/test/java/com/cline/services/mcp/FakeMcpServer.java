@@ -0,0 +1,193 @@
+package com.cline.services.mcp;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MCP server used by the tests, run as a separate process that speaks newline-delimited JSON-RPC on stdio.
+ * Tool calls are answered on their own threads, so responses can arrive out of order. The tool list is split
+ * into two pages. Before its first message, the server writes a line that is not JSON.
+ */
+public class FakeMcpServer {
+    private static final PrintStream OUT = new PrintStream(System.out, false, StandardCharsets.UTF_8);
+    private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool();
+    private static final AtomicInteger ACTIVE_CALLS = new AtomicInteger();
+    private static final AtomicInteger MAX_ACTIVE_CALLS = new AtomicInteger();
+    private static volatile boolean pinged = false;
+
+    /**
+     * Gets the configuration that runs this server with the JVM running the tests.
+     *
+     * @return The server configuration
+     */
+    static McpServerConfig config() {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        return McpServerConfig.builder()
+                .command(java)
+                .args("-cp", System.getProperty("java.class.path"), FakeMcpServer.class.getName())
+                .build();
+    }
+
+    public static void main(String[] args) throws IOException {
+        write("fake MCP server starting");
+        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            JsonObject message = JsonParser.parseString(line).getAsJsonObject();
+            if (!message.has("method")) {
+                // The response to our ping
+                pinged = message.has("result");
+                continue;
+            }
+            String method = message.get("method").getAsString();
+            JsonElement id = message.get("id");
+            JsonObject params = message.has("params") ? message.getAsJsonObject("params") : new JsonObject();
+            if (id == null) {
+                if (method.equals("notifications/initialized")) {
+                    JsonObject ping = new JsonObject();
+                    ping.addProperty("jsonrpc", "2.0");
+                    ping.addProperty("id", "server-ping");
+                    ping.addProperty("method", "ping");
+                    write(ping.toString());
+                }
+                continue;
+            }
+            if (method.equals("tools/call")) {
+                EXECUTOR.execute(() -> respond(id, callTool(params)));
+            } else {
+                respond(id, handle(method, params));
+            }
+        }
+        EXECUTOR.shutdownNow();
+    }
+
+    private static JsonObject handle(String method, JsonObject params) {
+        JsonObject result = new JsonObject();
+        switch (method) {
+            case "initialize":
+                JsonObject capabilities = new JsonObject();
+                capabilities.add("tools", new JsonObject());
+                capabilities.add("resources", new JsonObject());
+                result.addProperty("protocolVersion", "2024-11-05");
+                result.add("capabilities", capabilities);
+                return result;
+            case "tools/list":
+                JsonArray tools = new JsonArray();
+                if (!params.has("cursor")) {
+                    tools.add(tool("echo"));
+                    tools.add(tool("sleep"));
+                    result.addProperty("nextCursor", "2");
+                } else {
+                    tools.add(tool("large"));
+                    tools.add(tool("stats"));
+                }
+                result.add("tools", tools);
+                return result;
+            case "resources/list":
+                JsonObject resource = new JsonObject();
+                resource.addProperty("uri", "fake://greeting");
+                resource.addProperty("name", "Greeting");
+                resource.addProperty("mimeType", "text/plain");
+                JsonArray resources = new JsonArray();
+                resources.add(resource);
+                result.add("resources", resources);
+                return result;
+            case "resources/read":
+                JsonObject content = new JsonObject();
+                content.addProperty("uri", params.get("uri").getAsString());
+                content.addProperty("text", "Hello from " + params.get("uri").getAsString());
+                JsonArray contents = new JsonArray();
+                contents.add(content);
+                result.add("contents", contents);
+                return result;
+            case "ping":
+                return result;
+            default:
+                return null;
+        }
+    }
+
+    private static JsonObject callTool(JsonObject params) {
+        JsonObject args = params.getAsJsonObject("arguments");
+        switch (params.get("name").getAsString()) {
+            case "echo":
+                return text(args.get("text").getAsString());
+            case "sleep":
+                int active = ACTIVE_CALLS.incrementAndGet();
+                MAX_ACTIVE_CALLS.accumulateAndGet(active, Math::max);
+                try {
+                    Thread.sleep(args.get("millis").getAsLong());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    ACTIVE_CALLS.decrementAndGet();
+                }
+                return text(args.get("text").getAsString());
+            case "large":
+                return text("x".repeat(args.get("length").getAsInt()));
+            case "stats":
+                return text(MAX_ACTIVE_CALLS.get() + " " + pinged);
+            default:
+                return null;
+        }
+    }
+
+    private static JsonObject tool(String name) {
+        JsonObject schema = new JsonObject();
+        schema.addProperty("type", "object");
+        JsonObject tool = new JsonObject();
+        tool.addProperty("name", name);
+        tool.addProperty("description", "The " + name + " tool");
+        tool.add("inputSchema", schema);
+        return tool;
+    }
+
+    private static JsonObject text(String text) {
+        JsonObject item = new JsonObject();
+        item.addProperty("type", "text");
+        item.addProperty("text", text);
+        JsonArray content = new JsonArray();
+        content.add(item);
+        JsonObject result = new JsonObject();
+        result.add("content", content);
+        return result;
+    }
+
+    private static void respond(JsonElement id, JsonObject result) {
+        JsonObject response = new JsonObject();
+        response.addProperty("jsonrpc", "2.0");
+        response.add("id", id);
+        if (result != null) {
+            response.add("result", result);
+        } else {
+            JsonObject error = new JsonObject();
+            error.addProperty("code", -32601);
+            error.addProperty("message", "Not found");
+            response.add("error", error);
+        }
+        write(response.toString());
+    }
+
+    private static void write(String line) {
+        synchronized (OUT) {
+            OUT.print(line);
+            OUT.print('\n');
+            OUT.flush();
+        }
+    }
+}
@@ -0,0 +1,279 @@
+package com.cline.services.mcp;
+
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the McpHub class.
+ * The servers are in-process fakes that can be made to crash, hang or fail to start.
+ */
+public class McpHubTest {
+
+    private final Map<String, FakeServer> fakes = new ConcurrentHashMap<>();
+    private McpHub hub;
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        if (hub != null) {
+            hub.shutdown().get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private McpHub createHub(long idleTimeoutMillis) {
+        hub = new McpHub((name, config) -> fakes.computeIfAbsent(name, FakeServer::new), 20, 20, 200, idleTimeoutMillis);
+        return hub;
+    }
+
+    private static McpServerConfig config() {
+        return McpServerConfig.builder().command("fake").build();
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Timed out waiting for the condition");
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    public void testServersStartInParallelInTheBackground() throws Exception {
+        createHub(0);
+        CountDownLatch gate = new CountDownLatch(1);
+        fakes.put("first", new FakeServer("first", gate));
+        fakes.put("second", new FakeServer("second", gate));
+
+        CompletableFuture<Void> first = hub.registerServer("first", config());
+        CompletableFuture<Void> second = hub.registerServer("second", config());
+        assertFalse(first.isDone());
+        assertFalse(second.isDone());
+
+        // Both servers are starting at the same time
+        waitFor(() -> fakes.get("first").starts.get() == 1 && fakes.get("second").starts.get() == 1);
+        gate.countDown();
+        first.get(10, TimeUnit.SECONDS);
+        second.get(10, TimeUnit.SECONDS);
+        assertTrue(hub.getServer("first").isRunning());
+        assertEquals(2, hub.getAllTools().size());
+    }
+
+    @Test
+    public void testDisabledServersAreNotStarted() throws Exception {
+        createHub(0);
+
+        hub.registerServer("disabled", McpServerConfig.builder().command("fake").disabled(true).build())
+                .get(10, TimeUnit.SECONDS);
+
+        assertNull(hub.getServer("disabled"));
+        assertFalse(fakes.containsKey("disabled"));
+    }
+
+    @Test
+    public void testCrashedServerIsRestarted() throws Exception {
+        createHub(0);
+        hub.registerServer("crashing", config()).get(10, TimeUnit.SECONDS);
+        FakeServer fake = fakes.get("crashing");
+
+        fake.running = false;
+
+        waitFor(() -> fake.starts.get() == 2 && fake.running);
+    }
+
+    @Test
+    public void testHungServerIsRestarted() throws Exception {
+        createHub(0);
+        hub.registerServer("hanging", config()).get(10, TimeUnit.SECONDS);
+        FakeServer fake = fakes.get("hanging");
+
+        fake.hung = true;
+
+        waitFor(() -> fake.starts.get() == 2 && fake.running);
+        assertTrue(fake.stops.get() >= 1);
+    }
+
+    @Test
+    public void testFailedStartsAreRetriedWithBackoff() throws Exception {
+        createHub(0);
+        FakeServer fake = new FakeServer("failing", null);
+        fake.failStart = true;
+        fakes.put("failing", fake);
+
+        CompletableFuture<Void> started = hub.registerServer("failing", config());
+        assertThrows(Exception.class, () -> started.get(10, TimeUnit.SECONDS));
+
+        // The first start and one restart per allowed failure
+        int attempts = SupervisedMcpServer.MAX_CONSECUTIVE_FAILURES + 1;
+        waitFor(() -> fake.startTimes.size() == attempts);
+        List<Long> times = fake.startTimes;
+        assertTrue(times.get(3) - times.get(2) > times.get(1) - times.get(0), "Start times: " + times);
+
+        Thread.sleep(300);
+        assertEquals(attempts, fake.starts.get());
+
+        // Using the server tries again
+        fake.failStart = false;
+        JsonObject result = hub.executeTool("failing", "tool", new JsonObject()).get(10, TimeUnit.SECONDS);
+        assertEquals("failing", result.get("server").getAsString());
+    }
+
+    @Test
+    public void testIdleServerIsStoppedAndStartedOnUse() throws Exception {
+        createHub(50);
+        hub.registerServer("idle", config()).get(10, TimeUnit.SECONDS);
+        FakeServer fake = fakes.get("idle");
+
+        waitFor(() -> !fake.running);
+        assertEquals(1, fake.starts.get());
+        // The tools of the stopped server are still known
+        assertEquals(1, hub.getAllTools().size());
+
+        JsonObject result = hub.executeTool("idle", "tool", new JsonObject()).get(10, TimeUnit.SECONDS);
+        assertEquals("idle", result.get("server").getAsString());
+        assertEquals(2, fake.starts.get());
+    }
+
+    @Test
+    public void testCallRacingIdleStopRestartsServer() throws Exception {
+        createHub(50);
+        hub.registerServer("racing", config()).get(10, TimeUnit.SECONDS);
+        FakeServer fake = fakes.get("racing");
+        CountDownLatch stopGate = new CountDownLatch(1);
+        fake.stopGate = stopGate;
+
+        // The idle stop has begun but the server is still running
+        waitFor(() -> fake.stops.get() == 1);
+        assertTrue(fake.running);
+        CompletableFuture<JsonObject> call = hub.executeTool("racing", "tool", new JsonObject());
+        Thread.sleep(50);
+        assertFalse(call.isDone());
+
+        stopGate.countDown();
+        JsonObject result = call.get(10, TimeUnit.SECONDS);
+        assertEquals("racing", result.get("server").getAsString());
+        assertEquals(2, fake.starts.get());
+    }
+
+    @Test
+    public void testUnregisteredServerIsStopped() throws Exception {
+        createHub(0);
+        hub.registerServer("removed", config()).get(10, TimeUnit.SECONDS);
+        FakeServer fake = fakes.get("removed");
+
+        hub.unregisterServer("removed").get(10, TimeUnit.SECONDS);
+        fake.running = false;
+        Thread.sleep(100);
+
+        assertNull(hub.getServer("removed"));
+        assertEquals(1, fake.starts.get());
+    }
+
+    /**
+     * In-process server whose behavior the tests control.
+     */
+    private static class FakeServer implements McpServer {
+        final String name;
+        final CountDownLatch gate;
+        final AtomicInteger starts = new AtomicInteger();
+        final AtomicInteger stops = new AtomicInteger();
+        final List<Long> startTimes = new CopyOnWriteArrayList<>();
+        volatile boolean running = false;
+        volatile boolean failStart = false;
+        volatile boolean hung = false;
+        volatile CountDownLatch stopGate;
+
+        FakeServer(String name) {
+            this(name, null);
+        }
+
+        FakeServer(String name, CountDownLatch gate) {
+            this.name = name;
+            this.gate = gate;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public List<McpTool> getTools() {
+            return List.of(new McpTool("tool", "A tool", new JsonObject()));
+        }
+
+        @Override
+        public List<McpResource> getResources() {
+            return List.of();
+        }
+
+        @Override
+        public CompletableFuture<JsonObject> executeTool(String toolName, JsonObject args) {
+            if (!running) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Not running"));
+            }
+            JsonObject result = new JsonObject();
+            result.addProperty("server", name);
+            return CompletableFuture.completedFuture(result);
+        }
+
+        @Override
+        public CompletableFuture<String> accessResource(String uri) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("No resources"));
+        }
+
+        @Override
+        public boolean isRunning() {
+            return running;
+        }
+
+        @Override
+        public CompletableFuture<Void> ping() {
+            return hung ? new CompletableFuture<Void>().orTimeout(20, TimeUnit.MILLISECONDS) : McpServer.super.ping();
+        }
+
+        @Override
+        public CompletableFuture<Void> start() {
+            starts.incrementAndGet();
+            startTimes.add(System.currentTimeMillis());
+            if (gate != null) {
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    return CompletableFuture.failedFuture(e);
+                }
+            }
+            if (failStart) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Failed to start"));
+            }
+            hung = false;
+            running = true;
+            return CompletableFuture.completedFuture(null);
+        }
+
+        @Override
+        public CompletableFuture<Void> stop() {
+            stops.incrementAndGet();
+            if (stopGate != null) {
+                try {
+                    stopGate.await();
+                } catch (InterruptedException e) {
+                    return CompletableFuture.failedFuture(e);
+                }
+            }
+            running = false;
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.cline.services.mcp;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the McpMessageReader class.
+ */
+public class McpMessageReaderTest {
+
+    private static McpMessageReader reader(String input, int bufferSize, long maxMessageLength) {
+        return new McpMessageReader(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)),
+                bufferSize, maxMessageLength);
+    }
+
+    @Test
+    public void testReadsNewlineDelimitedMessages() throws IOException {
+        McpMessageReader reader = reader("{\"id\":1}\n\n{\"id\":2}\r\n  {\"id\":3}", 1024, 1024);
+
+        assertEquals(1, reader.readMessage().getAsJsonObject().get("id").getAsInt());
+        assertEquals(2, reader.readMessage().getAsJsonObject().get("id").getAsInt());
+        assertEquals(3, reader.readMessage().getAsJsonObject().get("id").getAsInt());
+        assertNull(reader.readMessage());
+    }
+
+    @Test
+    public void testReadsMessagesLargerThanTheBuffer() throws IOException {
+        String text = "\u00e9".repeat(1000);
+        McpMessageReader reader = reader("{\"text\":\"" + text + "\"}\n{\"id\":2}\n", 8, 1024 * 1024);
+
+        assertEquals(text, reader.readMessage().getAsJsonObject().get("text").getAsString());
+        assertEquals(2, reader.readMessage().getAsJsonObject().get("id").getAsInt());
+        assertNull(reader.readMessage());
+    }
+
+    @Test
+    public void testSkipsInvalidLines() throws IOException {
+        McpMessageReader reader = reader("starting server...\n{\"id\":1,\n{\"id\":2}\n", 16, 1024);
+
+        assertEquals(2, reader.readMessage().getAsJsonObject().get("id").getAsInt());
+        assertNull(reader.readMessage());
+    }
+
+    @Test
+    public void testSkipsMessagesThatAreTooLong() throws IOException {
+        McpMessageReader reader = reader("{\"text\":\"" + "x".repeat(200) + "\"}\n{\"id\":2}\n", 16, 100);
+
+        assertEquals(2, reader.readMessage().getAsJsonObject().get("id").getAsInt());
+        assertNull(reader.readMessage());
+    }
+}
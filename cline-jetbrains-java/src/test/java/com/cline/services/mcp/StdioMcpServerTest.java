@@ -0,0 +1,116 @@
+package com.cline.services.mcp;
+
+import com.google.gson.JsonObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the StdioMcpServer class.
+ * The server under test is a FakeMcpServer process.
+ */
+public class StdioMcpServerTest {
+
+    private StdioMcpServer server;
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        if (server != null) {
+            server.stop().get(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private StdioMcpServer startServer(int maxInFlight) throws Exception {
+        server = new StdioMcpServer("fake", FakeMcpServer.config(), maxInFlight);
+        server.start().get(30, TimeUnit.SECONDS);
+        return server;
+    }
+
+    private static String getText(JsonObject result) {
+        return result.getAsJsonArray("content").get(0).getAsJsonObject().get("text").getAsString();
+    }
+
+    private static JsonObject args(String text, long millis) {
+        JsonObject args = new JsonObject();
+        args.addProperty("text", text);
+        args.addProperty("millis", millis);
+        return args;
+    }
+
+    @Test
+    public void testStartListsToolsAndResources() throws Exception {
+        startServer(4);
+
+        assertTrue(server.isRunning());
+        List<String> toolNames = server.getTools().stream().map(McpTool::getName).collect(Collectors.toList());
+        assertEquals(List.of("echo", "sleep", "large", "stats"), toolNames);
+        assertEquals(1, server.getResources().size());
+        assertEquals("fake://greeting", server.getResources().get(0).getUri());
+    }
+
+    @Test
+    public void testExecutesToolsAndReadsResources() throws Exception {
+        startServer(4);
+
+        JsonObject result = server.executeTool("echo", args("hello", 0)).get(10, TimeUnit.SECONDS);
+        assertEquals("hello", getText(result));
+        assertEquals("Hello from fake://greeting", server.accessResource("fake://greeting").get(10, TimeUnit.SECONDS));
+
+        // The client answered the ping the server sent after the handshake
+        assertTrue(getText(server.executeTool("stats", new JsonObject()).get(10, TimeUnit.SECONDS)).endsWith("true"));
+
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> server.executeTool("missing", new JsonObject()).get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void testConcurrentCallsAreLimitedAndMatchedToTheirResponses() throws Exception {
+        startServer(3);
+
+        List<CompletableFuture<JsonObject>> results = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            // Later calls finish first, so the responses arrive out of order
+            results.add(server.executeTool("sleep", args("call " + i, (12 - i) * 10L)));
+        }
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals("call " + i, getText(results.get(i).get(30, TimeUnit.SECONDS)));
+        }
+
+        String stats = getText(server.executeTool("stats", new JsonObject()).get(10, TimeUnit.SECONDS));
+        int maxActiveCalls = Integer.parseInt(stats.split(" ")[0]);
+        assertTrue(maxActiveCalls > 1 && maxActiveCalls <= 3, "Max active calls: " + maxActiveCalls);
+    }
+
+    @Test
+    public void testReceivesLargeResults() throws Exception {
+        startServer(4);
+        int length = 8 * 1024 * 1024;
+
+        JsonObject args = new JsonObject();
+        args.addProperty("length", length);
+        String text = getText(server.executeTool("large", args).get(30, TimeUnit.SECONDS));
+
+        assertEquals(length, text.length());
+    }
+
+    @Test
+    public void testStopFailsPendingCalls() throws Exception {
+        startServer(4);
+        CompletableFuture<JsonObject> pending = server.executeTool("sleep", args("slow", 10_000));
+
+        server.stop().get(10, TimeUnit.SECONDS);
+
+        assertFalse(server.isRunning());
+        assertThrows(ExecutionException.class, () -> pending.get(10, TimeUnit.SECONDS));
+        assertThrows(ExecutionException.class, () -> server.executeTool("echo", args("late", 0)).get());
+    }
+}
@@ -0,0 +1,44 @@
+package com.cline.services.terminal;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the CommandOutputBuffer class.
+ */
+public class CommandOutputBufferTest {
+
+    @Test
+    public void testKeepsOutputBelowCapacity() {
+        CommandOutputBuffer buffer = new CommandOutputBuffer(16);
+        buffer.append("hello ");
+        buffer.append("world");
+
+        assertEquals("hello world", buffer.toString());
+        assertEquals(11, buffer.getTotalChars());
+        assertEquals(0, buffer.getDroppedChars());
+    }
+
+    @Test
+    public void testKeepsTailWhenWrappingAround() {
+        CommandOutputBuffer buffer = new CommandOutputBuffer(8);
+        buffer.append("abcdef");
+        buffer.append("ghij");
+
+        assertEquals("cdefghij", buffer.getTail());
+        assertEquals(2, buffer.getDroppedChars());
+        assertEquals("[... 2 characters of earlier output omitted ...]\ncdefghij", buffer.toString());
+    }
+
+    @Test
+    public void testChunkLargerThanCapacity() {
+        CommandOutputBuffer buffer = new CommandOutputBuffer(4);
+        buffer.append("ab");
+        buffer.append("0123456789");
+
+        assertEquals("6789", buffer.getTail());
+        assertEquals(12, buffer.getTotalChars());
+        assertEquals(8, buffer.getDroppedChars());
+    }
+}
@@ -0,0 +1,86 @@
+package com.cline.services.terminal;
+
+import com.cline.core.tool.ToolContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ShellSessionPool class.
+ * The sessions used here need a POSIX shell.
+ */
+@DisabledOnOs(OS.WINDOWS)
+public class ShellSessionPoolTest {
+
+    private final AtomicLong idleTimeoutMillis = new AtomicLong(0);
+    private ExecutorService readerExecutor;
+    private ShellSessionPool pool;
+
+    @BeforeEach
+    public void setUp() {
+        readerExecutor = Executors.newCachedThreadPool();
+        pool = new ShellSessionPool(() -> ShellSession.start(List.of("/bin/sh"), null, readerExecutor), 2, idleTimeoutMillis::get);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.close();
+        readerExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testReusesReleasedSession() throws Exception {
+        ShellSession first = pool.acquire();
+        assertNotNull(first);
+        pool.release(first);
+
+        assertSame(first, pool.acquire());
+        assertEquals(1, pool.getSessionCount());
+    }
+
+    @Test
+    public void testExhaustedPoolReturnsNull() throws Exception {
+        assertNotNull(pool.acquire());
+        assertNotNull(pool.acquire());
+
+        assertNull(pool.acquire());
+    }
+
+    @Test
+    public void testClosedSessionIsDiscarded() throws Exception {
+        ShellSession session = pool.acquire();
+        assertNotNull(session);
+        session.close();
+        pool.release(session);
+
+        assertEquals(0, pool.getSessionCount());
+        assertNotSame(session, pool.acquire());
+    }
+
+    @Test
+    public void testIdleSessionIsEvicted() throws Exception {
+        ShellSession session = pool.acquire();
+        assertNotNull(session);
+        CommandResult result = session.execute("echo ready", 10, ToolContext.detached(), null, 1024)
+                .get(10, TimeUnit.SECONDS);
+        assertEquals("ready\n", result.getOutput());
+        pool.release(session);
+
+        idleTimeoutMillis.set(1);
+        Thread.sleep(10);
+        pool.evictIdleSessions();
+
+        assertEquals(0, pool.getIdleCount());
+        assertFalse(session.isAlive());
+    }
+}
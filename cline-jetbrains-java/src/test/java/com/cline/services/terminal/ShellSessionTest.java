@@ -0,0 +1,69 @@
+package com.cline.services.terminal;
+
+import com.cline.core.tool.ToolContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.DisabledOnOs;
+import org.junit.jupiter.api.condition.OS;
+
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ShellSession class.
+ * The sessions used here need a POSIX shell.
+ */
+@DisabledOnOs(OS.WINDOWS)
+public class ShellSessionTest {
+
+    private ExecutorService readerExecutor;
+    private ShellSession session;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        readerExecutor = Executors.newCachedThreadPool();
+        session = ShellSession.start(List.of("/bin/sh"), null, readerExecutor);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        session.close();
+        readerExecutor.shutdownNow();
+    }
+
+    private CommandResult execute(String command) throws Exception {
+        return session.execute(command, 10, ToolContext.detached(), null, 1024).get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testStatePersistsAcrossCommands() throws Exception {
+        assertEquals(0, execute("cd / && GREETING='it'\"'\"'s here'").getExitCode());
+
+        CommandResult result = execute("pwd; echo \"$GREETING\" # comment");
+
+        assertEquals("/\nit's here\n", result.getOutput());
+    }
+
+    @Test
+    public void testSyntaxErrorDoesNotHangTheSession() throws Exception {
+        CommandResult unbalanced = execute("echo \"unbalanced");
+        assertEquals(2, unbalanced.getExitCode());
+        assertFalse(unbalanced.isTimedOut());
+
+        CommandResult invalid = execute("if true; then echo missing fi");
+        assertNotEquals(0, invalid.getExitCode());
+
+        assertTrue(session.isAlive());
+        assertEquals("still running\n", execute("echo still running").getOutput());
+    }
+
+    @Test
+    public void testExitCodeIsReported() throws Exception {
+        assertEquals(3, execute("(exit 3)").getExitCode());
+    }
+}
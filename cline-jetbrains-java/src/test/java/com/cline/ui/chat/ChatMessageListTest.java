@@ -0,0 +1,184 @@
+package com.cline.ui.chat;
+
+import com.cline.core.model.Message;
+import com.intellij.openapi.project.Project;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for the ChatMessageList class.
+ * Rows are given fixed heights, which differ from the estimated heights of unmeasured rows.
+ */
+public class ChatMessageListTest {
+    private static final int ROW_HEIGHT = 50;
+
+    private final Project project = mock(Project.class);
+    private final List<ChatRow> createdRows = new ArrayList<>();
+    private int rowHeight = ROW_HEIGHT;
+    private List<Message> messages;
+    private ChatMessageList list;
+    private JScrollPane scrollPane;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        messages = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            messages.add(Message.createUserMessage("Message " + i));
+        }
+        SwingUtilities.invokeAndWait(() -> {
+            list = new ChatMessageList(this::createRow, null);
+            list.setMessages(messages);
+            scrollPane = new JScrollPane(list);
+            scrollPane.setSize(400, 300);
+        });
+        layout();
+    }
+
+    private ChatRow createRow(Message message) {
+        ChatRow row = new ChatRow(message, project);
+        row.setPreferredSize(new Dimension(100, rowHeight));
+        createdRows.add(row);
+        return row;
+    }
+
+    /**
+     * Lays the list out and applies the scroll position it requested.
+     * The components are not displayable, so they are laid out directly instead of being validated.
+     */
+    private void layout() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            SwingUtilities.invokeAndWait(() -> {
+                scrollPane.doLayout();
+                scrollPane.getViewport().doLayout();
+                list.doLayout();
+            });
+            // Run the scroll position updates posted by the layout
+            SwingUtilities.invokeAndWait(() -> {
+            });
+        }
+    }
+
+    private void scrollTo(int y) throws Exception {
+        SwingUtilities.invokeAndWait(() -> scrollPane.getViewport().setViewPosition(new Point(0, y)));
+        layout();
+    }
+
+    private List<ChatRow> getShownRows() {
+        List<ChatRow> rows = new ArrayList<>();
+        for (Component component : list.getComponents()) {
+            if (component instanceof ChatRow) {
+                rows.add((ChatRow) component);
+            }
+        }
+        return rows;
+    }
+
+    private ChatRow getRowAt(int y) {
+        for (ChatRow row : getShownRows()) {
+            if (row.getY() <= y && y < row.getY() + row.getHeight()) {
+                return row;
+            }
+        }
+        return null;
+    }
+
+    @Test
+    public void testOnlyRowsNearTheVisibleAreaAreRealized() throws Exception {
+        assertTrue(list.getRealizedRowCount() > 0);
+        assertTrue(list.getRealizedRowCount() < 20, "Realized rows: " + list.getRealizedRowCount());
+        ChatRow first = createdRows.get(0);
+        assertSame(messages.get(0), first.getMessage());
+
+        scrollTo(list.getHeight() / 2);
+
+        Rectangle visible = list.getVisibleRect();
+        assertNotNull(getRowAt(visible.y));
+        assertNotNull(getRowAt(visible.y + visible.height - 1));
+        assertTrue(list.getRealizedRowCount() < 20, "Realized rows: " + list.getRealizedRowCount());
+        assertEquals(list.getRealizedRowCount(), getShownRows().size());
+        // The rows that left the visible area were removed and disposed
+        assertNull(first.getParent());
+        assertEquals(0, first.getComponentCount());
+    }
+
+    @Test
+    public void testVisibleRowStaysInPlaceWhenRowsAboveChangeHeight() throws Exception {
+        scrollTo(list.getHeight() / 2);
+        JViewport viewport = scrollPane.getViewport();
+        ChatRow anchor = getRowAt(viewport.getViewPosition().y + 1);
+        assertNotNull(anchor);
+        int anchorOffset = anchor.getY() - viewport.getViewPosition().y;
+        int anchorIndex = messages.indexOf(anchor.getMessage());
+
+        // The rows above the visible one grow, e.g. because an image was loaded
+        for (ChatRow row : getShownRows()) {
+            if (messages.indexOf(row.getMessage()) < anchorIndex) {
+                row.setPreferredSize(new Dimension(100, ROW_HEIGHT * 2));
+                row.invalidate();
+            }
+        }
+        layout();
+
+        assertSame(anchor, getRowAt(anchor.getY()));
+        assertEquals(anchorOffset, anchor.getY() - viewport.getViewPosition().y);
+    }
+
+    @Test
+    public void testStaysAtTheBottomWhenRowsAreMeasured() throws Exception {
+        JViewport viewport = scrollPane.getViewport();
+        // The rows at the bottom were only estimated so far, and are taller than estimated
+        rowHeight = ROW_HEIGHT * 3;
+        scrollTo(list.getHeight() - viewport.getExtentSize().height);
+
+        assertEquals(list.getHeight(), viewport.getViewPosition().y + viewport.getExtentSize().height);
+        assertSame(messages.get(messages.size() - 1), getRowAt(list.getHeight() - 20).getMessage());
+    }
+
+    @Test
+    public void testRowsAreKeptWhenMessagesAreAddedOrChanged() throws Exception {
+        List<ChatRow> shown = getShownRows();
+        int created = createdRows.size();
+
+        messages.add(Message.createUserMessage("Appended"));
+        SwingUtilities.invokeAndWait(() -> assertTrue(list.setMessages(messages)));
+        layout();
+
+        assertEquals(created, createdRows.size());
+        assertEquals(shown, getShownRows());
+
+        // Only the row of the changed message is rendered again
+        Message changed = messages.get(1);
+        changed.setContent("Changed");
+        SwingUtilities.invokeAndWait(() -> assertTrue(list.updateMessage(changed)));
+        SwingUtilities.invokeAndWait(() -> assertFalse(list.setMessages(messages)));
+        layout();
+
+        assertEquals(created, createdRows.size());
+        assertEquals(shown, getShownRows());
+    }
+
+    @Test
+    public void testRemovedMessagesAndReleasedRowsAreDisposed() throws Exception {
+        ChatRow removed = createdRows.get(0);
+        ChatRow kept = createdRows.get(1);
+        assertSame(messages.get(1), kept.getMessage());
+        SwingUtilities.invokeAndWait(() -> list.setMessages(messages.subList(1, messages.size())));
+
+        assertNull(removed.getParent());
+        assertSame(list, kept.getParent());
+
+        SwingUtilities.invokeAndWait(list::releaseRows);
+
+        assertEquals(0, list.getRealizedRowCount());
+        assertTrue(getShownRows().isEmpty());
+        assertEquals(0, kept.getComponentCount());
+    }
+}
@@ -0,0 +1,101 @@
+package com.cline.ui.chat;
+
+import com.cline.core.model.ContentBlob;
+import com.cline.core.model.Message;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for the ChatRow class.
+ */
+public class ChatRowTest {
+
+    private final Project project = mock(Project.class);
+    private ChatRow row;
+
+    @AfterEach
+    public void tearDown() {
+        if (row != null) {
+            Disposer.dispose(row);
+        }
+    }
+
+    private static List<String> getTexts(Container container) {
+        List<String> texts = new ArrayList<>();
+        for (Component component : container.getComponents()) {
+            if (component instanceof JTextArea) {
+                texts.add(((JTextArea) component).getText());
+            } else if (component instanceof Container) {
+                texts.addAll(getTexts((Container) component));
+            }
+        }
+        return texts;
+    }
+
+    @Test
+    public void testUpdateContentOnlyRendersChangedContent() {
+        Message message = Message.createUserMessage("Hello");
+        row = new ChatRow(message, project);
+        assertEquals(List.of("Hello"), getTexts(row));
+
+        assertFalse(row.updateContent());
+        message.setContent(new String("Hello"));
+        assertFalse(row.updateContent());
+
+        message.setContent("Hello again");
+        assertTrue(row.updateContent());
+        assertEquals(List.of("Hello again"), getTexts(row));
+        assertFalse(row.updateContent());
+    }
+
+    @Test
+    public void testBlobContentIsReadOffTheEventThread() throws Exception {
+        String content = "Hello from a blob";
+        Message message = Message.createUserMessage(content);
+        AtomicBoolean readOnEdt = new AtomicBoolean();
+        CountDownLatch read = new CountDownLatch(1);
+        ContentBlob blob = new ContentBlob("hash", content.length(), hash -> {
+            readOnEdt.set(SwingUtilities.isEventDispatchThread());
+            read.countDown();
+            return new String(content);
+        }, null);
+        assertTrue(message.spillContent(content, blob));
+
+        SwingUtilities.invokeAndWait(() -> row = new ChatRow(message, project));
+        assertTrue(read.await(5, TimeUnit.SECONDS));
+        assertFalse(readOnEdt.get());
+
+        // The row is rendered once the content has been read
+        AtomicReference<List<String>> texts = new AtomicReference<>(List.of());
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!texts.get().contains(content) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            SwingUtilities.invokeAndWait(() -> texts.set(getTexts(row)));
+        }
+        assertEquals(List.of(content), texts.get());
+    }
+
+    @Test
+    public void testDisposeRemovesTheComponents() {
+        row = new ChatRow(Message.createUserMessage("Hello"), project);
+
+        Disposer.dispose(row);
+
+        assertEquals(0, row.getComponentCount());
+        row = null;
+    }
+}
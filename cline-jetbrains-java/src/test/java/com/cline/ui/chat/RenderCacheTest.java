@@ -0,0 +1,66 @@
+package com.cline.ui.chat;
+
+import com.cline.core.model.Message;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the RenderCache class.
+ */
+public class RenderCacheTest {
+
+    @Test
+    public void testEntriesAreDroppedWhenContentChanges() {
+        RenderCache cache = new RenderCache(10_000);
+        Message message = Message.createAssistantMessage("Hello");
+        cache.putHtml(message, "Hello", "<p>Hello</p>");
+        cache.putHeight(message, 400, 52);
+
+        assertEquals("<p>Hello</p>", cache.getHtml(message, "Hello"));
+        assertNull(cache.getHtml(message, "Other"));
+        assertEquals(52, cache.getHeight(message, 400));
+        assertEquals(-1, cache.getHeight(message, 300));
+
+        message.setContent("Hello, world");
+        assertNull(cache.getHtml(message, "Hello"));
+        assertEquals(-1, cache.getHeight(message, 400));
+    }
+
+    @Test
+    public void testTextWithTheSameHashCodeIsNotConfused() {
+        // "Aa" and "BB" have the same length and the same String hash code
+        RenderCache cache = new RenderCache(10_000);
+        Message message = Message.createAssistantMessage("Aa");
+        cache.putHtml(message, "Aa", "<p>Aa</p>");
+        cache.putHeight(message, 400, 52);
+        assertNull(cache.getHtml(message, "BB"));
+
+        message.setContent("BB");
+        assertNull(cache.getHtml(message, "Aa"));
+        assertEquals(-1, cache.getHeight(message, 400));
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsedMessages() {
+        RenderCache cache = new RenderCache(600);
+        Message first = Message.createAssistantMessage("first");
+        Message second = Message.createAssistantMessage("second");
+        String html = "x".repeat(200);
+
+        cache.putHtml(first, "first", html);
+        cache.putHtml(second, "second", html);
+        assertNotNull(cache.getHtml(first, "first"));
+
+        Message third = Message.createAssistantMessage("third");
+        cache.putHtml(third, "third", html);
+        assertNotNull(cache.getHtml(first, "first"));
+        assertNull(cache.getHtml(second, "second"));
+        assertNotNull(cache.getHtml(third, "third"));
+        assertTrue(cache.getSize() <= 600);
+
+        cache.clear();
+        assertNull(cache.getHtml(first, "first"));
+        assertEquals(0, cache.getSize());
+    }
+}
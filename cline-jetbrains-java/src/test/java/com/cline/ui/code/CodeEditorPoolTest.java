@@ -0,0 +1,126 @@
+package com.cline.ui.code;
+
+import com.intellij.openapi.application.Application;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.editor.Document;
+import com.intellij.openapi.editor.EditorFactory;
+import com.intellij.openapi.editor.ex.EditorEx;
+import com.intellij.openapi.editor.highlighter.EditorHighlighterFactory;
+import com.intellij.openapi.project.Project;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for the CodeEditorPool class.
+ * The editor factory is mocked, every viewer it creates is a new mock editor.
+ */
+public class CodeEditorPoolTest {
+
+    private final Project project = mock(Project.class);
+    private final EditorFactory editorFactory = mock(EditorFactory.class);
+    private final List<EditorEx> createdEditors = new ArrayList<>();
+    private MockedStatic<EditorFactory> editorFactoryStatic;
+    private MockedStatic<EditorHighlighterFactory> highlighterFactoryStatic;
+    private MockedStatic<ApplicationManager> applicationManagerStatic;
+    private CodeEditorPool pool;
+
+    @BeforeEach
+    public void setUp() {
+        when(editorFactory.createDocument(any())).thenAnswer(invocation -> mock(Document.class));
+        when(editorFactory.createViewer(any(), any())).thenAnswer(invocation -> {
+            EditorEx editor = mock(EditorEx.class, RETURNS_DEEP_STUBS);
+            Document document = invocation.getArgument(0);
+            when(editor.getDocument()).thenReturn(document);
+            createdEditors.add(editor);
+            return editor;
+        });
+        Application application = mock(Application.class);
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(application).runWriteAction(any(Runnable.class));
+
+        editorFactoryStatic = mockStatic(EditorFactory.class);
+        editorFactoryStatic.when(EditorFactory::getInstance).thenReturn(editorFactory);
+        highlighterFactoryStatic = mockStatic(EditorHighlighterFactory.class);
+        highlighterFactoryStatic.when(EditorHighlighterFactory::getInstance)
+                .thenReturn(mock(EditorHighlighterFactory.class));
+        applicationManagerStatic = mockStatic(ApplicationManager.class);
+        applicationManagerStatic.when(ApplicationManager::getApplication).thenReturn(application);
+
+        pool = new CodeEditorPool(project);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        editorFactoryStatic.close();
+        highlighterFactoryStatic.close();
+        applicationManagerStatic.close();
+    }
+
+    @Test
+    public void testReleasedEditorsAreReused() {
+        EditorEx editor = pool.acquire("first\r\nblock");
+        verify(editor.getDocument()).setText("first\nblock");
+
+        pool.release(editor);
+        verify(editor.getDocument()).setText("");
+
+        assertSame(editor, pool.acquire("second"));
+        verify(editor.getDocument()).setText("second");
+        // The highlighter of the previous block is replaced
+        verify(editor).setHighlighter(any());
+        assertEquals(1, createdEditors.size());
+        verify(editorFactory, never()).releaseEditor(any());
+    }
+
+    @Test
+    public void testEditorsAreOnlyReturnedToThePoolOnce() {
+        EditorEx editor = pool.acquire("block");
+        pool.release(editor);
+        pool.release(editor);
+
+        assertSame(editor, pool.acquire("first"));
+        assertNotSame(editor, pool.acquire("second"));
+    }
+
+    @Test
+    public void testIdleEditorsAreBounded() {
+        List<EditorEx> editors = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            editors.add(pool.acquire("block " + i));
+        }
+        editors.forEach(pool::release);
+
+        verify(editorFactory, times(2)).releaseEditor(any());
+        for (int i = 0; i < 10; i++) {
+            pool.acquire("block " + i);
+        }
+        assertEquals(12, createdEditors.size());
+    }
+
+    @Test
+    public void testDisposeReleasesAllEditors() {
+        EditorEx released = pool.acquire("released");
+        EditorEx used = pool.acquire("used");
+        pool.release(released);
+
+        pool.dispose();
+
+        verify(editorFactory).releaseEditor(released);
+        verify(editorFactory).releaseEditor(used);
+
+        // Editors released by their blocks after the pool was disposed are not released twice
+        pool.release(used);
+        verify(editorFactory, times(2)).releaseEditor(any());
+    }
+}
@@ -0,0 +1,136 @@
+package com.cline.ui.history;
+
+import com.cline.services.history.ConversationSummary;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the HistoryListModel class.
+ */
+public class HistoryListModelTest {
+
+    private static ConversationSummary summary(String id, String title, long updatedAt, long tokens, double cost) {
+        return new ConversationSummary(id, title, Instant.ofEpochSecond(0), Instant.ofEpochSecond(updatedAt),
+                2, tokens, 0, cost);
+    }
+
+    private static List<String> ids(HistoryListModel model) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < model.getSize(); i++) {
+            ids.add(model.getElementAt(i).getId());
+        }
+        return ids;
+    }
+
+    private static List<ConversationSummary> summaries() {
+        return Arrays.asList(
+                summary("a", "Fix the parser", 100, 500, 0.5),
+                summary("b", "Add a parser test", 300, 100, 0.1),
+                summary("c", "Refactor settings", 200, 900, 0.2),
+                summary("d", null, 400, 0, 0));
+    }
+
+    @Test
+    public void testSortOrders() {
+        HistoryListModel model = new HistoryListModel(filter -> Collections.emptyList());
+        model.setSummaries(summaries());
+        assertEquals(Arrays.asList("d", "b", "c", "a"), ids(model));
+
+        model.setSortOrder(HistoryListModel.SortOrder.TOKENS);
+        assertEquals(Arrays.asList("c", "a", "b", "d"), ids(model));
+
+        model.setSortOrder(HistoryListModel.SortOrder.COST);
+        assertEquals(Arrays.asList("a", "c", "b", "d"), ids(model));
+    }
+
+    @Test
+    public void testFilterMatchesTitlesAndSearchResults() {
+        HistoryListModel model = new HistoryListModel(
+                filter -> filter.startsWith("sett") ? Arrays.asList("c", "d") : Collections.emptyList());
+        model.setSummaries(summaries());
+
+        model.setFilter("  PARSER ");
+        assertEquals("parser", model.getFilter());
+        assertEquals(Arrays.asList("b", "a"), ids(model));
+
+        model.setFilter("settings");
+        assertEquals(Arrays.asList("d", "c"), ids(model));
+
+        model.setSortOrder(HistoryListModel.SortOrder.TOKENS);
+        assertEquals(Arrays.asList("c", "d"), ids(model));
+
+        model.setFilter("");
+        assertEquals(4, model.getSize());
+    }
+
+    @Test
+    public void testExtendedFilterOnlyChecksPreviousMatches() {
+        List<String> searched = new ArrayList<>();
+        HistoryListModel model = new HistoryListModel(filter -> {
+            searched.add(filter);
+            // The search finds "c" for the extended filter only, which the narrowed filter must not add back
+            return filter.equals("parser t") ? Arrays.asList("b", "c") : Collections.singletonList("b");
+        });
+        model.setSummaries(summaries());
+
+        model.setFilter("pars");
+        assertEquals(Arrays.asList("b", "a"), ids(model));
+        model.setFilter("parser t");
+        assertEquals(Collections.singletonList("b"), ids(model));
+        assertEquals(Arrays.asList("pars", "parser t"), searched);
+
+        // Removing text checks all summaries again
+        model.setFilter("parser");
+        assertEquals(Arrays.asList("b", "a"), ids(model));
+    }
+
+    @Test
+    public void testSetSummariesKeepsFilterAndNotifiesListeners() {
+        HistoryListModel model = new HistoryListModel(filter -> Collections.emptyList());
+        List<ListDataEvent> events = new ArrayList<>();
+        model.addListDataListener(new ListDataListener() {
+            @Override
+            public void intervalAdded(ListDataEvent e) {
+                events.add(e);
+            }
+
+            @Override
+            public void intervalRemoved(ListDataEvent e) {
+                events.add(e);
+            }
+
+            @Override
+            public void contentsChanged(ListDataEvent e) {
+                events.add(e);
+            }
+        });
+
+        model.setSummaries(summaries());
+        assertEquals(1, events.size());
+        assertEquals(ListDataEvent.INTERVAL_ADDED, events.get(0).getType());
+        assertEquals(3, events.get(0).getIndex1());
+
+        events.clear();
+        model.setFilter("parser");
+        assertEquals(ListDataEvent.INTERVAL_REMOVED, events.get(0).getType());
+        assertEquals(2, events.get(0).getIndex0());
+        assertEquals(3, events.get(0).getIndex1());
+
+        List<ConversationSummary> updated = new ArrayList<>(summaries());
+        updated.add(summary("e", "Parser cleanup", 500, 0, 0));
+        model.setSummaries(updated);
+        assertEquals(Arrays.asList("e", "b", "a"), ids(model));
+        assertEquals(0, model.indexOf("e"));
+        assertEquals(-1, model.indexOf("c"));
+        assertThrows(IndexOutOfBoundsException.class, () -> model.getElementAt(3));
+    }
+}
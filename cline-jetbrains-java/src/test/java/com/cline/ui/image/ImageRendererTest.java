@@ -0,0 +1,74 @@
+package com.cline.ui.image;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ImageRenderer class.
+ */
+public class ImageRendererTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testDecodeThumbnailScalesLargeImages() throws Exception {
+        BufferedImage image = new BufferedImage(3000, 1000, BufferedImage.TYPE_INT_RGB);
+        File file = tempDir.resolve("large.png").toFile();
+        ImageIO.write(image, "png", file);
+
+        BufferedImage thumbnail = ImageRenderer.decodeThumbnail(file);
+        assertNotNull(thumbnail);
+        assertEquals(600, thumbnail.getWidth());
+        assertEquals(200, thumbnail.getHeight());
+    }
+
+    @Test
+    public void testDecodeThumbnailKeepsSmallImages() throws Exception {
+        BufferedImage image = new BufferedImage(120, 80, BufferedImage.TYPE_INT_RGB);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+
+        BufferedImage thumbnail = ImageRenderer.decodeThumbnail(new ByteArrayInputStream(out.toByteArray()));
+        assertNotNull(thumbnail);
+        assertEquals(120, thumbnail.getWidth());
+        assertEquals(80, thumbnail.getHeight());
+    }
+
+    @Test
+    public void testDecodeThumbnailOfUnsupportedData() throws Exception {
+        assertNull(ImageRenderer.decodeThumbnail(new ByteArrayInputStream("not an image".getBytes())));
+    }
+
+    @Test
+    public void testFailedLoadIsReportedAndCached() throws Exception {
+        File file = tempDir.resolve("missing.png").toFile();
+        String key = "missing-" + file;
+
+        CompletableFuture<BufferedImage> failed = ImageRenderer.loadThumbnail(key, file.getPath());
+        ExecutionException error = assertThrows(ExecutionException.class, () -> failed.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, error.getCause());
+        assertTrue(error.getCause().getMessage().startsWith("File not found"));
+
+        // The failure is remembered, so the image is not loaded again once it exists
+        ImageIO.write(new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB), "png", file);
+        CompletableFuture<BufferedImage> cached = ImageRenderer.loadThumbnail(key, file.getPath());
+        assertTrue(cached.isCompletedExceptionally());
+
+        BufferedImage loaded = ImageRenderer.loadThumbnail(key + "-loaded", file.getPath()).get(10, TimeUnit.SECONDS);
+        assertEquals(10, loaded.getWidth());
+    }
+}
@@ -0,0 +1,67 @@
+package com.cline.ui.image;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests for the ThumbnailCache class.
+ */
+public class ThumbnailCacheTest {
+
+    @Test
+    public void testEvictsLeastRecentlyUsedImages() {
+        // Each image takes up 10 * 10 * 4 = 400 bytes
+        ThumbnailCache cache = new ThumbnailCache(1000);
+        cache.put("a", new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB));
+        cache.put("b", new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB));
+        assertNotNull(cache.get("a"));
+
+        cache.put("c", new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB));
+        assertNotNull(cache.get("a"));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("c"));
+        assertEquals(800, cache.getBytes());
+    }
+
+    @Test
+    public void testReplacingAndOversizedImages() {
+        ThumbnailCache cache = new ThumbnailCache(1000);
+        cache.put("a", new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB));
+        cache.put("a", new BufferedImage(5, 5, BufferedImage.TYPE_INT_ARGB));
+        assertEquals(100, cache.getBytes());
+
+        cache.put("large", new BufferedImage(20, 20, BufferedImage.TYPE_INT_ARGB));
+        assertNull(cache.get("large"));
+        assertNotNull(cache.get("a"));
+
+        cache.clear();
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.getBytes());
+    }
+
+    @Test
+    public void testFailuresAreCachedUntilTheyExpire() throws Exception {
+        ThumbnailCache cache = new ThumbnailCache(1000, 2, 60_000);
+        cache.putFailure("a", "File not found");
+        assertEquals("File not found", cache.getFailure("a"));
+        assertNull(cache.get("a"));
+
+        // Loading the image later replaces the failure
+        cache.put("a", new BufferedImage(10, 10, BufferedImage.TYPE_INT_ARGB));
+        assertNull(cache.getFailure("a"));
+
+        // Only the most recent failures are kept
+        cache.putFailure("b", "b");
+        cache.putFailure("c", "c");
+        cache.putFailure("d", "d");
+        assertNull(cache.getFailure("b"));
+        assertEquals("d", cache.getFailure("d"));
+
+        ThumbnailCache expiring = new ThumbnailCache(1000, 2, 0);
+        expiring.putFailure("a", "File not found");
+        assertNull(expiring.getFailure("a"));
+    }
+}
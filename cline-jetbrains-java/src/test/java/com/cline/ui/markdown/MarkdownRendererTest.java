@@ -4,6 +4,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import javax.swing.*;
+import javax.swing.text.BadLocationException;
 import javax.swing.text.Document;
 import javax.swing.text.html.HTMLDocument;
 
@@ -163,4 +164,68 @@ public class MarkdownRendererTest {
         assertTrue(text.contains("Heading"));
         assertTrue(text.contains("This is [invalid markdown"));
     }
-}
\ No newline at end of file
+    
+    @Test
+    public void testStreamedRenderMatchesFullRender() throws BadLocationException {
+        String markdown = "# Plan\n\n" +
+                "First paragraph with **bold** text.\n\n" +
+                "1. One\n\n" +
+                "2. Two\n\n" +
+                "~~~\ncode\n\nmore code\n~~~\n\n" +
+                "<pre>\npreformatted\n\n*not emphasis*\n</pre>\n\n" +
+                "> Quote\n\n" +
+                "Last paragraph.";
+        
+        // Render the markdown in chunks, as it arrives while streaming
+        for (int end = 1; end <= markdown.length(); end += 7) {
+            markdownRenderer.render(markdown.substring(0, end), textPane);
+        }
+        markdownRenderer.render(markdown, textPane);
+        
+        // The whole document parsed at once, not split into blocks
+        JTextPane fullPane = new JTextPane();
+        fullPane.setContentType("text/html");
+        fullPane.setText("<html><body>" + new MarkdownRenderer().toHtml(markdown) + "</body></html>");
+        
+        Document streamed = textPane.getDocument();
+        Document full = fullPane.getDocument();
+        assertEquals(full.getText(0, full.getLength()), streamed.getText(0, streamed.getLength()));
+    }
+    
+    @Test
+    public void testRenderReplacedContent() {
+        markdownRenderer.render("First version", textPane);
+        markdownRenderer.render("Second version", textPane);
+        
+        String text = textPane.getText();
+        assertTrue(text.contains("Second version"));
+        assertFalse(text.contains("First version"));
+    }
+    
+    @Test
+    public void testFindTailStart() {
+        assertEquals(0, MarkdownRenderer.findTailStart("Single paragraph\n", 0));
+        assertEquals(7, MarkdownRenderer.findTailStart("First\n\nSecond\n", 0));
+        
+        // Incomplete lines, list items, indented lines and fenced code do not start a new block
+        assertEquals(0, MarkdownRenderer.findTailStart("First\n\nSeco", 0));
+        assertEquals(0, MarkdownRenderer.findTailStart("1. One\n\n2. Two\n", 0));
+        assertEquals(0, MarkdownRenderer.findTailStart("- One\n\n  continued\n", 0));
+        assertEquals(0, MarkdownRenderer.findTailStart("```\ncode\n\nmore\n", 0));
+        assertEquals(20, MarkdownRenderer.findTailStart("```\ncode\n\nmore\n```\n\nAfter\n", 0));
+    }
+    
+    @Test
+    public void testFindTailStartInRawHtmlBlocks() {
+        // Raw HTML blocks that end at their closing tag may contain blank lines
+        assertEquals(0, MarkdownRenderer.findTailStart("<pre>\ncode\n\nmore\n", 0));
+        assertEquals(0, MarkdownRenderer.findTailStart("<PRE class=\"x\">\ncode\n\nmore\n", 0));
+        assertEquals(0, MarkdownRenderer.findTailStart("<!--\n\nHidden\n", 0));
+        assertEquals(25, MarkdownRenderer.findTailStart("<pre>\ncode\n\nmore\n</pre>\n\nAfter\n", 0));
+        assertEquals(18, MarkdownRenderer.findTailStart("<!--\n\nHidden\n-->\n\nAfter\n", 0));
+        
+        // Blocks that end on their first line, and other HTML blocks, which end at a blank line
+        assertEquals(26, MarkdownRenderer.findTailStart("<pre>one line</pre>\ntext\n\nAfter\n", 0));
+        assertEquals(12, MarkdownRenderer.findTailStart("<div>\ntext\n\nAfter\n", 0));
+    }
+}
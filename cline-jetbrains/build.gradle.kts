@@ -56,6 +56,23 @@ tasks {
         enabled = false
     }
     
+    // Bundle the built bridge scripts: the shared bridge runtime loads bridge.js from the plugin resources,
+    // and the Node bridge runs sidecar.js
+    processResources {
+        from("dist") {
+            include("bridge.js", "sidecar.js")
+            into("bridge")
+        }
+    }
+    
+    // Node cannot run a script from inside a jar, so sidecar.js is also copied to the plugin directory
+    prepareSandbox {
+        from("dist") {
+            include("sidecar.js")
+            into(pluginName.map { "$it/bridge" })
+        }
+    }
+    
     // Skip tests since we're just trying to build the plugin
     test {
         enabled = false
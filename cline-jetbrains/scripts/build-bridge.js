@@ -13,6 +13,8 @@ const distDir = path.resolve(__dirname, '../dist');
 const entryPoint = path.resolve(srcDir, 'jetbrains.tsx');
 const outputFile = path.resolve(distDir, 'bridge.js');
 const outputCssFile = path.resolve(distDir, 'ui-styles.css');
+const sidecarEntryPoint = path.resolve(srcDir, 'sidecar.ts');
+const sidecarOutputFile = path.resolve(distDir, 'sidecar.js');
 
 // Create the dist directory if it doesn't exist
 if (!fs.existsSync(distDir)) {
@@ -99,4 +101,29 @@ esbuild
   .catch((error) => {
     console.error('Error building bridge.js:', error);
     process.exit(1);
+  });
+
+// Build the core for the Node process transport
+esbuild
+  .build({
+    entryPoints: [sidecarEntryPoint],
+    bundle: true,
+    minify: true,
+    sourcemap: false,
+    platform: 'node',
+    target: 'node18',
+    outfile: sidecarOutputFile,
+    format: 'cjs',
+    define: {
+      'process.env.NODE_ENV': '"production"',
+      'process.env.PLATFORM': '"jetbrains"'
+    },
+    external: ['vscode']
+  })
+  .then(() => {
+    console.log(`Successfully built sidecar.js to ${sidecarOutputFile}`);
+  })
+  .catch((error) => {
+    console.error('Error building sidecar.js:', error);
+    process.exit(1);
   });
\ No newline at end of file
@@ -1,5 +1,6 @@
 package com.cline.jetbrains;
 
+import com.cline.jetbrains.bridge.BridgeRuntime;
 import com.intellij.ide.AppLifecycleListener;
 import com.intellij.openapi.diagnostic.Logger;
 import org.jetbrains.annotations.NotNull;
@@ -25,6 +26,15 @@ public class ClineApplicationListener implements AppLifecycleListener {
         // Initialize global resources here
     }
 
+    /**
+     * Called when the application has started.
+     * The shared bridge runtime is started in the background, so the first task does not wait for it.
+     */
+    public void appStarted() {
+        LOG.info("Cline application started");
+        BridgeRuntime.getInstance().prewarm();
+    }
+
     /**
      * Called when the application is about to close.
      */
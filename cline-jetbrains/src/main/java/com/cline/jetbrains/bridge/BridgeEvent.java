@@ -0,0 +1,158 @@
+package com.cline.jetbrains.bridge;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An event the TypeScript core pushes to Java while a task runs.
+ * <p>
+ * Events are sent in batches, each a JSON array of events. An event is a JSON array of its type code, the task ID
+ * and its payload: the text for token deltas, and an object for the other types. Token deltas that follow each
+ * other are already joined by the script, so a batch holds at most one delta per run of text.
+ */
+public final class BridgeEvent {
+    /**
+     * The types of events, with the codes they are sent as.
+     */
+    public enum Type {
+        TOKEN_DELTA,
+        TOOL_REQUEST,
+        PROGRESS,
+        USAGE;
+
+        /**
+         * Get the type with a code.
+         * @param code The code, the ordinal of the type
+         * @return The type, or null if the code is unknown
+         */
+        @Nullable
+        public static Type fromCode(int code) {
+            Type[] types = values();
+            return code >= 0 && code < types.length ? types[code] : null;
+        }
+    }
+
+    private final Type type;
+    private final String taskId;
+    private final JsonElement payload;
+
+    /**
+     * Constructor.
+     * @param type The event type
+     * @param taskId The ID of the task the event belongs to
+     * @param payload The payload
+     */
+    public BridgeEvent(@NotNull Type type, @NotNull String taskId, @NotNull JsonElement payload) {
+        this.type = type;
+        this.taskId = taskId;
+        this.payload = payload;
+    }
+
+    /**
+     * Get the event type.
+     * @return The event type
+     */
+    @NotNull
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Get the ID of the task the event belongs to.
+     * @return The task ID
+     */
+    @NotNull
+    public String getTaskId() {
+        return taskId;
+    }
+
+    /**
+     * Get the payload of the event.
+     * @return The payload
+     */
+    @NotNull
+    public JsonElement getPayload() {
+        return payload;
+    }
+
+    /**
+     * Get the text of a token delta.
+     * @return The text, or null if the payload is not text
+     */
+    @Nullable
+    public String getText() {
+        return payload.isJsonPrimitive() ? payload.getAsString() : null;
+    }
+
+    /**
+     * Get the payload of an event that carries an object.
+     * @return The object, or null if the payload is not an object
+     */
+    @Nullable
+    public JsonObject getData() {
+        return payload.isJsonObject() ? payload.getAsJsonObject() : null;
+    }
+
+    /**
+     * Parse a batch of events.
+     * Events of unknown types are skipped, so newer scripts can send events older plugins do not handle.
+     * @param batch The batch, a JSON array of events
+     * @return The events, in the order they were sent
+     * @throws JsonParseException If the batch is not a valid batch of events
+     */
+    @NotNull
+    public static List<BridgeEvent> parseBatch(@NotNull String batch) {
+        JsonElement parsed = JsonParser.parseString(batch);
+        if (!parsed.isJsonArray()) {
+            throw new JsonParseException("Event batch is not an array");
+        }
+        return parseBatch(parsed.getAsJsonArray());
+    }
+
+    /**
+     * Parse a batch of events that is already parsed as JSON.
+     * @param events The batch
+     * @return The events, in the order they were sent
+     * @throws JsonParseException If the batch is not a valid batch of events
+     */
+    @NotNull
+    public static List<BridgeEvent> parseBatch(@NotNull JsonArray events) {
+        List<BridgeEvent> result = new ArrayList<>(events.size());
+        for (JsonElement element : events) {
+            if (!element.isJsonArray() || element.getAsJsonArray().size() < 2) {
+                throw new JsonParseException("Invalid event: " + element);
+            }
+            JsonArray event = element.getAsJsonArray();
+            Type type;
+            try {
+                type = Type.fromCode(event.get(0).getAsInt());
+            } catch (UnsupportedOperationException | IllegalStateException | NumberFormatException e) {
+                throw new JsonParseException("Invalid event type: " + event.get(0), e);
+            }
+            if (type == null) {
+                continue;
+            }
+            JsonElement taskId = event.get(1);
+            if (!taskId.isJsonPrimitive()) {
+                throw new JsonParseException("Invalid task ID: " + taskId);
+            }
+            JsonElement payload = event.size() > 2 ? event.get(2) : JsonNull.INSTANCE;
+            result.add(new BridgeEvent(type, taskId.getAsString(), payload));
+        }
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "BridgeEvent{" + type + ", " + taskId + ", " + payload + "}";
+    }
+}
@@ -0,0 +1,17 @@
+package com.cline.jetbrains.bridge;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Listener for the events the TypeScript core pushes while tasks run.
+ */
+public interface BridgeEventListener {
+    /**
+     * Called with every batch of events, on the thread the bridge receives them on.
+     * Implementations must return quickly and move any UI work to the event dispatch thread.
+     * @param events The events, in the order they were sent
+     */
+    void eventsReceived(@NotNull List<BridgeEvent> events);
+}
@@ -0,0 +1,609 @@
+package com.cline.jetbrains.bridge;
+
+import com.cline.jetbrains.services.ClineSettingsService;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.Service;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.ui.jcef.JBCefApp;
+import com.intellij.ui.jcef.JBCefBrowser;
+import com.intellij.ui.jcef.JBCefJSQuery;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.cef.browser.CefBrowser;
+import org.cef.browser.CefFrame;
+import org.cef.callback.CefCallback;
+import org.cef.handler.CefLoadHandlerAdapter;
+import org.cef.handler.CefRequestHandlerAdapter;
+import org.cef.handler.CefResourceHandler;
+import org.cef.handler.CefResourceHandlerAdapter;
+import org.cef.handler.CefResourceRequestHandler;
+import org.cef.handler.CefResourceRequestHandlerAdapter;
+import org.cef.misc.BoolRef;
+import org.cef.misc.IntRef;
+import org.cef.misc.StringRef;
+import org.cef.network.CefRequest;
+import org.cef.network.CefResponse;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The offscreen browser that runs the TypeScript core for all open projects.
+ * <p>
+ * There is one runtime per application. Every project that uses the JCEF bridge opens its own context in it
+ * ({@link JavaScriptBridge}); requests carry the ID of their context, so the script keeps the state of each
+ * project apart, and event batches are sent to Java grouped by context.
+ * <p>
+ * {@code bridge.js} is read once from the plugin resources and served to the browser with a long cache lifetime,
+ * so Chromium can keep the compiled script in its code cache instead of compiling it again for every page. The URL
+ * of the script contains a hash of its content, so a new version of the plugin never runs a cached older script. The runtime can be started in the background when the IDE starts, so the first task does not wait
+ * for the browser.
+ */
+@Service(Service.Level.APP)
+public final class BridgeRuntime implements Disposable {
+    private static final Logger LOG = Logger.getInstance(BridgeRuntime.class);
+    private static final Gson GSON = new Gson();
+    private static final String ORIGIN = "https://cline-bridge.local/";
+    private static final String PAGE_URL = ORIGIN + "index.html";
+    private static final String SCRIPT_RESOURCE = "/bridge/bridge.js";
+
+    private final PendingRequests pendingRequests;
+    private final Map<Integer, JavaScriptBridge> contexts = new ConcurrentHashMap<>();
+    private final AtomicInteger nextContextId = new AtomicInteger(1);
+
+    // Guarded by this
+    private CompletableFuture<Void> started;
+    private volatile boolean disposed = false;
+    private JBCefBrowser browser;
+    private JBCefJSQuery bridgeQuery;
+    private JBCefJSQuery eventQuery;
+
+    /**
+     * Create the runtime, timing out requests on the application's scheduler.
+     */
+    public BridgeRuntime() {
+        this(AppExecutorUtil.getAppScheduledExecutorService());
+    }
+
+    /**
+     * Create the runtime.
+     * @param scheduler The scheduler that times out requests
+     */
+    BridgeRuntime(@NotNull ScheduledExecutorService scheduler) {
+        this.pendingRequests = new PendingRequests(scheduler);
+    }
+
+    /**
+     * Get the instance of the runtime.
+     * @return The runtime instance
+     */
+    public static BridgeRuntime getInstance() {
+        return ApplicationManager.getApplication().getService(BridgeRuntime.class);
+    }
+
+    /**
+     * Start the runtime in the background, so it is ready when the first project needs it.
+     * Nothing is started if JCEF is not supported or the TypeScript core runs in a Node process.
+     */
+    public void prewarm() {
+        if (!JBCefApp.isSupported() || ClineSettingsService.getInstance().isUseNodeBridge()) {
+            return;
+        }
+        AppExecutorUtil.getAppExecutorService().execute(() -> {
+            LOG.info("Pre-warming bridge runtime");
+            start();
+        });
+    }
+
+    /**
+     * Start the runtime, if it is not started yet.
+     * @return A future that completes when the script can handle requests
+     */
+    public synchronized CompletableFuture<Void> start() {
+        if (disposed) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Bridge runtime disposed"));
+        }
+        if (started != null && !started.isCompletedExceptionally()) {
+            return started;
+        }
+
+        LOG.info("Starting bridge runtime");
+        long startNanos = System.nanoTime();
+        // A page that never loads fails the start, so the next call starts a new browser
+        CompletableFuture<Void> future = new CompletableFuture<Void>()
+            .orTimeout(BridgeTransport.REQUEST_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        started = future;
+
+        try {
+            disposeBrowser();
+            byte[] script = loadScript();
+
+            browser = JBCefBrowser.createBuilder()
+                .setOffScreenRendering(true)
+                .build();
+
+            // All responses arrive through this one query and are dispatched by their request ID
+            bridgeQuery = JBCefJSQuery.create(browser);
+            bridgeQuery.addHandler(message -> {
+                handleResponse(message);
+                return null;
+            });
+
+            // Event batches of all contexts arrive through their own query
+            eventQuery = JBCefJSQuery.create(browser);
+            eventQuery.addHandler(batches -> {
+                handleEvents(batches);
+                return null;
+            });
+
+            browser.getJBCefClient().addRequestHandler(new ResourceRequestHandler(script), browser.getCefBrowser());
+            browser.getJBCefClient().addLoadHandler(new CefLoadHandlerAdapter() {
+                @Override
+                public void onLoadEnd(CefBrowser cefBrowser, CefFrame frame, int httpStatusCode) {
+                    // Initialize the bridge with the functions that send responses and event batches to Java
+                    String initScript = "window.clineBridge.initialize(function(message) {" +
+                            bridgeQuery.inject("message") +
+                            "}, function(batches) {" +
+                            eventQuery.inject("batches") +
+                            "});";
+                    cefBrowser.executeJavaScript(initScript, cefBrowser.getURL(), 0);
+
+                    LOG.info(String.format("Bridge runtime started in %.1f ms", (System.nanoTime() - startNanos) / 1e6));
+                    future.complete(null);
+                }
+            }, browser.getCefBrowser());
+
+            browser.loadURL(PAGE_URL);
+        } catch (Exception e) {
+            LOG.error("Failed to start bridge runtime", e);
+            disposeBrowser();
+            future.completeExceptionally(e);
+        }
+
+        return future;
+    }
+
+    /**
+     * Open the context of a project.
+     * @param context The bridge of the project
+     * @param projectPath The base path of the project
+     * @return A future that completes with the ID of the context once the script has opened it
+     */
+    CompletableFuture<Integer> openContext(@NotNull JavaScriptBridge context, @Nullable String projectPath) {
+        int id = addContext(context);
+
+        JsonObject params = new JsonObject();
+        params.addProperty("projectPath", projectPath);
+        return start()
+            .thenCompose(v -> sendRequest(id, "openContext", params, BridgeTransport.REQUEST_TIMEOUT_MILLIS))
+            .whenComplete((result, e) -> {
+                if (e != null) {
+                    contexts.remove(id);
+                }
+            })
+            .thenApply(result -> id);
+    }
+
+    /**
+     * Add the context of a project, so the events of its tasks are passed to it.
+     * @param context The bridge of the project
+     * @return The ID of the context
+     */
+    int addContext(@NotNull JavaScriptBridge context) {
+        int id = nextContextId.getAndIncrement();
+        contexts.put(id, context);
+        return id;
+    }
+
+    /**
+     * Close the context of a project, dropping its state in the script.
+     * @param id The ID of the context
+     */
+    void closeContext(int id) {
+        if (contexts.remove(id) == null || disposed) {
+            return;
+        }
+        sendRequest(id, "closeContext", new JsonObject(), BridgeTransport.REQUEST_TIMEOUT_MILLIS)
+            .exceptionally(e -> {
+                LOG.debug("Failed to close bridge context " + id + ": " + e.getMessage());
+                return null;
+            });
+    }
+
+    /**
+     * Send a request of a context to the script.
+     * The parameters are passed as a JSON literal, so they need no further escaping.
+     * @param contextId The ID of the context
+     * @param method The method to call
+     * @param params The parameters
+     * @param timeoutMillis The time after which the request fails
+     * @return A future that completes with the result of the request
+     */
+    CompletableFuture<String> sendRequest(int contextId, @NotNull String method, @NotNull JsonObject params, long timeoutMillis) {
+        CefBrowser cefBrowser;
+        synchronized (this) {
+            if (started == null || !started.isDone() || started.isCompletedExceptionally() || browser == null) {
+                return CompletableFuture.failedFuture(new IllegalStateException("Bridge runtime not started"));
+            }
+            cefBrowser = browser.getCefBrowser();
+        }
+
+        PendingRequests.Request request = pendingRequests.create(method, timeoutMillis);
+
+        JsonObject message = new JsonObject();
+        message.addProperty("id", request.id);
+        message.addProperty("context", contextId);
+        message.addProperty("method", method);
+        message.add("params", params);
+        String script = "window.clineBridge.handleRequest(" + GSON.toJson(message) + ");";
+
+        try {
+            cefBrowser.executeJavaScript(script, cefBrowser.getURL(), 0);
+        } catch (Exception e) {
+            pendingRequests.fail(request.id, e);
+        }
+
+        return request.future;
+    }
+
+    /**
+     * Get the round trip times of the requests the runtime has answered, for all contexts.
+     * @return The latency statistics
+     */
+    @NotNull
+    LatencyStatistics getLatencyStatistics() {
+        return pendingRequests.getLatencyStatistics();
+    }
+
+    /**
+     * Handle a response from the script, completing the request it answers.
+     * @param message The response, a JSON object with the request ID and a result or an error
+     */
+    private void handleResponse(String message) {
+        JsonObject response;
+        long id;
+        try {
+            JsonElement parsed = JsonParser.parseString(message);
+            response = parsed.isJsonObject() ? parsed.getAsJsonObject() : null;
+            JsonElement idElement = response != null ? response.get("id") : null;
+            if (idElement == null || !idElement.isJsonPrimitive()) {
+                LOG.warn("Invalid response from JavaScript bridge: " + message);
+                return;
+            }
+            id = idElement.getAsLong();
+        } catch (JsonParseException | NumberFormatException e) {
+            LOG.warn("Invalid response from JavaScript bridge: " + message, e);
+            return;
+        }
+
+        boolean pending;
+        JsonElement error = response.get("error");
+        if (error != null && !error.isJsonNull()) {
+            pending = pendingRequests.fail(id, new IllegalStateException("JavaScript error: " + toString(error)));
+        } else {
+            pending = pendingRequests.complete(id, toString(response.get("result")));
+        }
+
+        if (!pending) {
+            // The request timed out or was cancelled
+            LOG.info("Ignoring response to request " + id + " that is no longer pending");
+        }
+    }
+
+    /**
+     * Handle the event batches of a frame, passing every batch to its context.
+     * @param batches A JSON object that maps context IDs to batches of events
+     */
+    void handleEvents(@NotNull String batches) {
+        try {
+            JsonElement parsed = JsonParser.parseString(batches);
+            if (!parsed.isJsonObject()) {
+                throw new JsonParseException("Event batches are not an object");
+            }
+            for (Map.Entry<String, JsonElement> entry : parsed.getAsJsonObject().entrySet()) {
+                JavaScriptBridge context = contexts.get(Integer.parseInt(entry.getKey()));
+                if (context == null || !entry.getValue().isJsonArray()) {
+                    continue;
+                }
+                List<BridgeEvent> events = BridgeEvent.parseBatch(entry.getValue().getAsJsonArray());
+                context.dispatchEvents(events);
+            }
+        } catch (JsonParseException | NumberFormatException e) {
+            LOG.warn("Invalid event batch from JavaScript bridge", e);
+        }
+    }
+
+    /**
+     * Dispose the runtime, failing the requests of all contexts.
+     */
+    @Override
+    public synchronized void dispose() {
+        LOG.info("Disposing bridge runtime: " + pendingRequests.getLatencyStatistics());
+
+        disposed = true;
+        disposeBrowser();
+        contexts.clear();
+        pendingRequests.failAll(new IllegalStateException("Bridge runtime disposed"));
+    }
+
+    private synchronized void disposeBrowser() {
+        if (bridgeQuery != null) {
+            bridgeQuery.dispose();
+            bridgeQuery = null;
+        }
+
+        if (eventQuery != null) {
+            eventQuery.dispose();
+            eventQuery = null;
+        }
+
+        if (browser != null) {
+            browser.dispose();
+            browser = null;
+        }
+    }
+
+    /**
+     * Read the bundled bridge script from the plugin resources.
+     * @return The script, or the default script if the plugin was built without it
+     */
+    private static byte[] loadScript() {
+        try (InputStream stream = BridgeRuntime.class.getResourceAsStream(SCRIPT_RESOURCE)) {
+            if (stream != null) {
+                return stream.readAllBytes();
+            }
+            LOG.warn("Bridge script not found in plugin resources: " + SCRIPT_RESOURCE);
+        } catch (IOException e) {
+            LOG.error("Failed to read bridge script", e);
+        }
+        return createDefaultScript().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String toString(JsonElement element) {
+        if (element == null || element.isJsonNull()) {
+            return null;
+        }
+        return element.isJsonPrimitive() ? element.getAsString() : element.toString();
+    }
+
+    /**
+     * Get the URL the bridge script is served at, which changes whenever the script changes.
+     * @param script The script
+     * @return The URL of the script
+     */
+    @NotNull
+    static String getScriptUrl(byte[] script) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(script);
+            StringBuilder url = new StringBuilder(ORIGIN).append("bridge.");
+            for (int i = 0; i < 8; i++) {
+                url.append(String.format("%02x", hash[i]));
+            }
+            return url.append(".js").toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Create the page that loads the bridge script.
+     * @param scriptUrl The URL of the script
+     * @return The page
+     */
+    @NotNull
+    static String createPage(@NotNull String scriptUrl) {
+        return "<!DOCTYPE html>\n" +
+                "<html>\n" +
+                "<head>\n" +
+                "    <title>Cline Bridge</title>\n" +
+                "</head>\n" +
+                "<body>\n" +
+                "    <script src=\"" + scriptUrl + "\"></script>\n" +
+                "</body>\n" +
+                "</html>";
+    }
+
+    /**
+     * Create the default bridge script, used when the plugin is built without the bundled one.
+     * @return The default bridge script
+     */
+    private static String createDefaultScript() {
+        return "// Bridge protocol: every request is answered with its ID and a result or an error\n" +
+                "window.clineBridge = {\n" +
+                "    send: null,\n" +
+                "    sendEvents: null,\n" +
+                "    contexts: {},\n" +
+                "    taskContexts: {},\n" +
+                "    events: {},\n" +
+                "    flushScheduled: false,\n" +
+                "\n" +
+                "    // Initialize the bridge with the functions that send responses and event batches to Java\n" +
+                "    initialize: function(send, sendEvents) {\n" +
+                "        this.send = send;\n" +
+                "        this.sendEvents = sendEvents;\n" +
+                "        console.log('Bridge initialized');\n" +
+                "    },\n" +
+                "\n" +
+                "    // Queue an event of a task in the batch of its context; token deltas are joined with the delta before them\n" +
+                "    emit: function(type, taskId, payload) {\n" +
+                "        var context = this.taskContexts[taskId];\n" +
+                "        if (context === undefined) {\n" +
+                "            return;\n" +
+                "        }\n" +
+                "        var events = this.events[context] || (this.events[context] = []);\n" +
+                "        var last = events[events.length - 1];\n" +
+                "        if (type === 0 && last && last[0] === 0 && last[1] === taskId) {\n" +
+                "            last[2] += payload;\n" +
+                "        } else {\n" +
+                "            events.push([type, taskId, payload]);\n" +
+                "        }\n" +
+                "        if (!this.flushScheduled) {\n" +
+                "            this.flushScheduled = true;\n" +
+                "            // Offscreen browsers may not run animation frames, so also flush after a frame's time\n" +
+                "            var flush = this.flush.bind(this);\n" +
+                "            requestAnimationFrame(flush);\n" +
+                "            setTimeout(flush, 16);\n" +
+                "        }\n" +
+                "    },\n" +
+                "\n" +
+                "    // Send the queued events of all contexts as one message\n" +
+                "    flush: function() {\n" +
+                "        if (!this.flushScheduled) {\n" +
+                "            return;\n" +
+                "        }\n" +
+                "        this.flushScheduled = false;\n" +
+                "        var events = this.events;\n" +
+                "        this.events = {};\n" +
+                "        if (Object.keys(events).length > 0 && this.sendEvents) {\n" +
+                "            this.sendEvents(JSON.stringify(events));\n" +
+                "        }\n" +
+                "    },\n" +
+                "\n" +
+                "    // Handle a request from Java\n" +
+                "    handleRequest: function(request) {\n" +
+                "        var params = request.params || {};\n" +
+                "        var result;\n" +
+                "        switch (request.method) {\n" +
+                "            case 'openContext':\n" +
+                "                this.contexts[request.context] = { projectPath: params.projectPath };\n" +
+                "                result = null;\n" +
+                "                break;\n" +
+                "            case 'closeContext':\n" +
+                "                delete this.contexts[request.context];\n" +
+                "                for (var taskId in this.taskContexts) {\n" +
+                "                    if (this.taskContexts[taskId] === request.context) {\n" +
+                "                        delete this.taskContexts[taskId];\n" +
+                "                    }\n" +
+                "                }\n" +
+                "                result = null;\n" +
+                "                break;\n" +
+                "            case 'executeTask':\n" +
+                "                var options = params.options ? JSON.parse(params.options) : {};\n" +
+                "                if (options.taskId) {\n" +
+                "                    this.taskContexts[options.taskId] = request.context;\n" +
+                "                }\n" +
+                "                console.log('Executing task: ' + params.taskInput);\n" +
+                "                result = 'Task executed: ' + params.taskInput;\n" +
+                "                break;\n" +
+                "            case 'cancelTask':\n" +
+                "                console.log('Cancelling task');\n" +
+                "                result = 'Task cancelled';\n" +
+                "                break;\n" +
+                "            case 'getTaskStatus':\n" +
+                "                console.log('Getting task status');\n" +
+                "                result = 'Task status: completed';\n" +
+                "                break;\n" +
+                "            default:\n" +
+                "                this.respond({ id: request.id, error: 'Unknown method: ' + request.method });\n" +
+                "                return;\n" +
+                "        }\n" +
+                "        this.respond({ id: request.id, result: result });\n" +
+                "    },\n" +
+                "\n" +
+                "    // Send the queued events before a response, so Java sees a task's events before its result\n" +
+                "    respond: function(response) {\n" +
+                "        this.flush();\n" +
+                "        this.send(JSON.stringify(response));\n" +
+                "    }\n" +
+                "};\n";
+    }
+
+    /**
+     * Serves the page and the bridge script to the browser from memory.
+     */
+    private static final class ResourceRequestHandler extends CefRequestHandlerAdapter {
+        private final byte[] page;
+        private final byte[] script;
+        private final String scriptUrl;
+
+        ResourceRequestHandler(byte[] script) {
+            this.script = script;
+            this.scriptUrl = getScriptUrl(script);
+            this.page = createPage(scriptUrl).getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public CefResourceRequestHandler getResourceRequestHandler(CefBrowser browser, CefFrame frame, CefRequest request,
+                                                                   boolean isNavigation, boolean isDownload,
+                                                                   String requestInitiator, BoolRef disableDefaultHandling) {
+            String url = request.getURL();
+            if (PAGE_URL.equals(url)) {
+                return new StaticResourceRequestHandler(page, "text/html", false);
+            }
+            if (scriptUrl.equals(url)) {
+                return new StaticResourceRequestHandler(script, "text/javascript", true);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Answers a request with fixed content.
+     */
+    private static final class StaticResourceRequestHandler extends CefResourceRequestHandlerAdapter {
+        private final byte[] content;
+        private final String mimeType;
+        private final boolean immutable;
+
+        StaticResourceRequestHandler(byte[] content, String mimeType, boolean immutable) {
+            this.content = content;
+            this.mimeType = mimeType;
+            this.immutable = immutable;
+        }
+
+        @Override
+        public CefResourceHandler getResourceHandler(CefBrowser browser, CefFrame frame, CefRequest request) {
+            return new CefResourceHandlerAdapter() {
+                private int offset = 0;
+
+                @Override
+                public boolean processRequest(CefRequest request, CefCallback callback) {
+                    callback.Continue();
+                    return true;
+                }
+
+                @Override
+                public void getResponseHeaders(CefResponse response, IntRef responseLength, StringRef redirectUrl) {
+                    response.setStatus(200);
+                    response.setStatusText("OK");
+                    response.setMimeType(mimeType);
+                    if (immutable) {
+                        // The URL changes with the content of the script
+                        response.setHeaderByName("Cache-Control", "public, max-age=31536000, immutable", true);
+                    }
+                    responseLength.set(content.length);
+                }
+
+                @Override
+                public boolean readResponse(byte[] dataOut, int bytesToRead, IntRef bytesRead, CefCallback callback) {
+                    int length = Math.min(bytesToRead, content.length - offset);
+                    if (length <= 0) {
+                        bytesRead.set(0);
+                        return false;
+                    }
+                    System.arraycopy(content, offset, dataOut, 0, length);
+                    offset += length;
+                    bytesRead.set(length);
+                    return true;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.cline.jetbrains.bridge;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Transport between the plugin and the TypeScript core.
+ * The core either runs in an offscreen browser ({@link JavaScriptBridge}) or in a Node process
+ * ({@link NodeBridgeTransport}); both answer the same requests and push the same events.
+ */
+public interface BridgeTransport {
+    /**
+     * The time after which requests that return quickly fail.
+     */
+    long REQUEST_TIMEOUT_MILLIS = 30_000;
+
+    /**
+     * The time after which tasks fail. Tasks run until the agent finishes, so only tasks that have clearly
+     * stalled are given up on.
+     */
+    long TASK_TIMEOUT_MILLIS = 60 * 60_000;
+
+    /**
+     * Start the transport.
+     * @return A future that completes when the core can handle requests
+     */
+    CompletableFuture<Void> initialize();
+
+    /**
+     * Execute a task.
+     * @param taskInput The task input
+     * @param options The options, as a JSON object
+     * @return A future that completes with the task result
+     */
+    CompletableFuture<String> executeTask(String taskInput, String options);
+
+    /**
+     * Cancel the current task.
+     * @return A future that completes when the task is cancelled
+     */
+    CompletableFuture<Void> cancelTask();
+
+    /**
+     * Get the status of the current task.
+     * @return A future that completes with the task status
+     */
+    CompletableFuture<String> getTaskStatus();
+
+    /**
+     * Add a listener for the events of running tasks.
+     * @param listener The listener
+     */
+    void addEventListener(@NotNull BridgeEventListener listener);
+
+    /**
+     * Add a listener that is called when the transport stops on its own, e.g. because the process running
+     * the core exited. It is not called when the transport is disposed.
+     * @param listener The listener
+     */
+    void addTerminationListener(@NotNull Runnable listener);
+
+    /**
+     * Get the round trip times of the requests answered so far.
+     * @return The latency statistics
+     */
+    @NotNull
+    LatencyStatistics getLatencyStatistics();
+
+    /**
+     * Stop the transport, failing all pending requests.
+     */
+    void dispose();
+}
@@ -1,37 +1,67 @@
 package com.cline.jetbrains.bridge;
 
 import com.cline.jetbrains.services.ClineSettingsService;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.util.Disposer;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 /**
  * Manager for the Cline bridge.
  * This class is responsible for initializing and managing the bridge between Java and TypeScript.
+ * The TypeScript core runs in an offscreen JCEF browser, or in a Node process if that is enabled in the settings;
+ * if the Node process cannot be started, the JCEF bridge is used instead. A Node process that exits is started
+ * again, and replaced by the JCEF bridge once it has exited too often.
  */
 @Service(Service.Level.PROJECT)
 public final class ClineBridgeManager {
     private static final Logger LOG = Logger.getInstance(ClineBridgeManager.class);
+    static final int MAX_NODE_BRIDGE_RESTARTS = 3;
     
     private final Project project;
     private final ClineSettingsService settingsService;
+    private final Function<Project, BridgeTransport> nodeBridgeFactory;
+    private final Function<Project, BridgeTransport> jcefBridgeFactory;
     private final AtomicBoolean initialized = new AtomicBoolean(false);
     private final AtomicBoolean initializing = new AtomicBoolean(false);
+    private final AtomicBoolean disposed = new AtomicBoolean(false);
+    private final AtomicInteger nodeBridgeExits = new AtomicInteger(0);
+    private final List<BridgeEventListener> eventListeners = new CopyOnWriteArrayList<>();
     
-    private JavaScriptBridge jsBridge;
+    private volatile BridgeTransport bridge;
     
     /**
      * Constructor.
      * @param project The current project
      */
     public ClineBridgeManager(@NotNull Project project) {
+        this(project, ClineSettingsService.getInstance(), NodeBridgeTransport::new, JavaScriptBridge::new);
+    }
+    
+    /**
+     * Constructor.
+     * @param project The current project
+     * @param settingsService The settings
+     * @param nodeBridgeFactory The factory of Node bridges
+     * @param jcefBridgeFactory The factory of JCEF bridges
+     */
+    ClineBridgeManager(@NotNull Project project, @NotNull ClineSettingsService settingsService,
+                       @NotNull Function<Project, BridgeTransport> nodeBridgeFactory,
+                       @NotNull Function<Project, BridgeTransport> jcefBridgeFactory) {
         this.project = project;
-        this.settingsService = ClineSettingsService.getInstance();
+        this.settingsService = settingsService;
+        this.nodeBridgeFactory = nodeBridgeFactory;
+        this.jcefBridgeFactory = jcefBridgeFactory;
         
         LOG.info("ClineBridgeManager created for project: " + project.getName());
         
@@ -71,15 +101,31 @@ public final class ClineBridgeManager {
         CompletableFuture<Void> future = new CompletableFuture<>();
         
         try {
-            // Create the JavaScript bridge
-            jsBridge = new JavaScriptBridge(project);
+            CompletableFuture<BridgeTransport> started;
+            if (settingsService.isUseNodeBridge() && nodeBridgeExits.get() <= MAX_NODE_BRIDGE_RESTARTS) {
+                started = startTransport(nodeBridgeFactory.apply(project))
+                    .exceptionallyCompose(e -> {
+                        LOG.warn("Failed to start the Node bridge, falling back to the JCEF bridge", e);
+                        return startTransport(jcefBridgeFactory.apply(project));
+                    });
+            } else {
+                started = startTransport(jcefBridgeFactory.apply(project));
+            }
             
-            // Initialize the JavaScript bridge
-            jsBridge.initialize()
-                .thenAccept(v -> {
+            started
+                .thenAccept(transport -> {
+                    synchronized (this) {
+                        if (disposed.get()) {
+                            transport.dispose();
+                            initializing.set(false);
+                            future.completeExceptionally(new IllegalStateException("Bridge disposed"));
+                            return;
+                        }
+                        bridge = transport;
+                        initialized.set(true);
+                        initializing.set(false);
+                    }
                     LOG.info("Bridge initialized successfully");
-                    initialized.set(true);
-                    initializing.set(false);
                     future.complete(null);
                 })
                 .exceptionally(e -> {
@@ -89,7 +135,7 @@ public final class ClineBridgeManager {
                     return null;
                 });
         } catch (Exception e) {
-            LOG.error("Failed to create JavaScript bridge", e);
+            LOG.error("Failed to create bridge", e);
             initializing.set(false);
             future.completeExceptionally(e);
         }
@@ -111,7 +157,7 @@ public final class ClineBridgeManager {
             return CompletableFuture.failedFuture(new IllegalStateException("Bridge not initialized"));
         }
         
-        return jsBridge.executeTask(taskInput, options);
+        return bridge.executeTask(taskInput, options);
     }
     
     /**
@@ -126,7 +172,7 @@ public final class ClineBridgeManager {
             return CompletableFuture.failedFuture(new IllegalStateException("Bridge not initialized"));
         }
         
-        return jsBridge.cancelTask();
+        return bridge.cancelTask();
     }
     
     /**
@@ -141,7 +187,84 @@ public final class ClineBridgeManager {
             return CompletableFuture.failedFuture(new IllegalStateException("Bridge not initialized"));
         }
         
-        return jsBridge.getTaskStatus();
+        return bridge.getTaskStatus();
+    }
+    
+    /**
+     * Start a transport, disposing it if it fails to start.
+     * @param transport The transport
+     * @return A future that completes with the transport once it is started
+     */
+    private CompletableFuture<BridgeTransport> startTransport(@NotNull BridgeTransport transport) {
+        transport.addEventListener(this::dispatchEvents);
+        transport.addTerminationListener(() -> transportTerminated(transport));
+        return transport.initialize()
+            .whenComplete((v, e) -> {
+                if (e != null) {
+                    transport.dispose();
+                }
+            })
+            .thenApply(v -> transport);
+    }
+    
+    /**
+     * Start the bridge again after it stopped on its own. Transports that stop before they are started
+     * are handled by the fallback of {@link #initialize()} instead.
+     * @param transport The transport that stopped
+     */
+    private void transportTerminated(@NotNull BridgeTransport transport) {
+        synchronized (this) {
+            if (disposed.get() || bridge != transport) {
+                return;
+            }
+            bridge = null;
+            initialized.set(false);
+        }
+        transport.dispose();
+        
+        if (!settingsService.isUseNodeBridge()) {
+            LOG.warn("Bridge stopped, restarting it");
+        } else if (nodeBridgeExits.incrementAndGet() <= MAX_NODE_BRIDGE_RESTARTS) {
+            LOG.warn("Node bridge stopped, restarting it");
+        } else {
+            LOG.warn("Node bridge stopped " + nodeBridgeExits.get() + " times, falling back to the JCEF bridge");
+        }
+        initialize();
+    }
+    
+    /**
+     * Get the round trip times of the requests the current bridge has answered.
+     * @return The latency statistics, or null if the bridge is not initialized
+     */
+    @Nullable
+    public LatencyStatistics getLatencyStatistics() {
+        BridgeTransport current = bridge;
+        return current != null ? current.getLatencyStatistics() : null;
+    }
+    
+    /**
+     * Add a listener for the events of running tasks.
+     * Listeners stay registered when the bridge is recreated.
+     * @param listener The listener
+     * @param parentDisposable The disposable that removes the listener when it is disposed
+     */
+    public void addEventListener(@NotNull BridgeEventListener listener, @NotNull Disposable parentDisposable) {
+        eventListeners.add(listener);
+        Disposer.register(parentDisposable, () -> eventListeners.remove(listener));
+    }
+    
+    /**
+     * Pass a batch of events from the bridge to the listeners.
+     * @param events The events
+     */
+    private void dispatchEvents(@NotNull List<BridgeEvent> events) {
+        for (BridgeEventListener listener : eventListeners) {
+            try {
+                listener.eventsReceived(events);
+            } catch (Exception e) {
+                LOG.error("Bridge event listener failed", e);
+            }
+        }
     }
     
     /**
@@ -150,12 +273,18 @@ public final class ClineBridgeManager {
     private void dispose() {
         LOG.info("Disposing bridge");
         
-        if (jsBridge != null) {
-            jsBridge.dispose();
-            jsBridge = null;
+        BridgeTransport current;
+        synchronized (this) {
+            disposed.set(true);
+            current = bridge;
+            bridge = null;
+            initialized.set(false);
+            initializing.set(false);
         }
         
-        initialized.set(false);
-        initializing.set(false);
+        if (current != null) {
+            LOG.info("Bridge latency: " + current.getLatencyStatistics());
+            current.dispose();
+        }
     }
 }
\ No newline at end of file
@@ -1,40 +1,40 @@
 package com.cline.jetbrains.bridge;
 
-import com.cline.jetbrains.services.ClineSettingsService;
+import com.google.gson.JsonObject;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
-import com.intellij.openapi.util.io.FileUtil;
-import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.ui.jcef.JBCefBrowser;
-import com.intellij.ui.jcef.JBCefJSQuery;
-import org.cef.browser.CefBrowser;
-import org.cef.browser.CefFrame;
-import org.cef.handler.CefLoadHandlerAdapter;
 import org.jetbrains.annotations.NotNull;
 
-import java.io.File;
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Bridge for JavaScript communication.
  * This class is responsible for communicating with the TypeScript code using JCEF.
+ * <p>
+ * The TypeScript code runs in the offscreen browser of the {@link BridgeRuntime}, which all projects share; the
+ * bridge of a project is its context in that runtime. Requests are sent to {@code window.clineBridge.handleRequest}
+ * as JSON objects with an ID, the context, a method and parameters. The script answers every request with a JSON
+ * object that carries the ID of the request and either a result or an error. Responses are matched to their
+ * requests by the ID, so any number of requests can be in flight at once, and requests that are not answered in
+ * time fail.
+ * <p>
+ * While tasks run, the script pushes {@link BridgeEvent events}. It queues the events it emits and sends them once
+ * per animation frame, grouped by context, so a stream of token deltas costs one query call per frame rather than
+ * one per token.
  */
-public class JavaScriptBridge {
+public class JavaScriptBridge implements BridgeTransport {
     private static final Logger LOG = Logger.getInstance(JavaScriptBridge.class);
     
     private final Project project;
-    private final ClineSettingsService settingsService;
+    private final BridgeRuntime runtime;
     private final AtomicBoolean initialized = new AtomicBoolean(false);
+    private final AtomicBoolean disposed = new AtomicBoolean(false);
+    private final List<BridgeEventListener> eventListeners = new CopyOnWriteArrayList<>();
     
-    private JBCefBrowser browser;
-    private JBCefJSQuery executeTaskQuery;
-    private JBCefJSQuery cancelTaskQuery;
-    private JBCefJSQuery getTaskStatusQuery;
+    private volatile int contextId = 0;
     
     /**
      * Constructor.
@@ -42,91 +42,31 @@ public class JavaScriptBridge {
      */
     public JavaScriptBridge(@NotNull Project project) {
         this.project = project;
-        this.settingsService = ClineSettingsService.getInstance();
+        this.runtime = BridgeRuntime.getInstance();
         
         LOG.info("JavaScriptBridge created for project: " + project.getName());
     }
     
     /**
-     * Initialize the bridge.
+     * Initialize the bridge, opening the context of the project in the shared runtime.
+     * The runtime is started first if it is not pre-warmed yet.
      * @return A future that completes when the bridge is initialized
      */
+    @Override
     public CompletableFuture<Void> initialize() {
         LOG.info("Initializing JavaScript bridge");
         
-        CompletableFuture<Void> future = new CompletableFuture<>();
-        
-        try {
-            // Create the browser
-            browser = JBCefBrowser.createBuilder()
-                .setOffScreenRendering(true)
-                .build();
-            
-            // In IntelliJ 2024.1, we need to use the static create method
-            executeTaskQuery = JBCefJSQuery.create(browser);
-            executeTaskQuery.addHandler(result -> {
-                LOG.info("Execute task result: " + result);
-                return null;
-            });
-            
-            cancelTaskQuery = JBCefJSQuery.create(browser);
-            cancelTaskQuery.addHandler(result -> {
-                LOG.info("Cancel task result: " + result);
-                return null;
-            });
-            
-            getTaskStatusQuery = JBCefJSQuery.create(browser);
-            getTaskStatusQuery.addHandler(result -> {
-                LOG.info("Get task status result: " + result);
-                return null;
-            });
-            
-            // Handlers are already registered in the create method
-            
-            // Create the bridge HTML file
-            String bridgeHtml = createBridgeHtml();
-            
-            // Load the bridge HTML
-            browser.loadHTML(bridgeHtml);
-            
-            // Add a load handler to detect when the page is loaded
-            browser.getJBCefClient().addLoadHandler(new CefLoadHandlerAdapter() {
-                @Override
-                public void onLoadEnd(CefBrowser cefBrowser, CefFrame frame, int httpStatusCode) {
-                    LOG.info("Bridge HTML loaded");
-                    
-                    // Initialize the bridge
-                    // In IntelliJ 2024.1, we need to use fixed names for the queries
-                    String executeTaskQueryName = "executeTaskQuery";
-                    String cancelTaskQueryName = "cancelTaskQuery";
-                    String getTaskStatusQueryName = "getTaskStatusQuery";
-                    
-                    // Register the queries with the browser
-                    executeTaskQuery.inject(executeTaskQueryName);
-                    cancelTaskQuery.inject(cancelTaskQueryName);
-                    getTaskStatusQuery.inject(getTaskStatusQueryName);
-                    
-                    String initScript = "window.initializeBridge(" +
-                            "'" + executeTaskQueryName + "', " +
-                            "'" + cancelTaskQueryName + "', " +
-                            "'" + getTaskStatusQueryName + "'" +
-                            ");";
-                    
-                    browser.getCefBrowser().executeJavaScript(initScript, browser.getCefBrowser().getURL(), 0);
-                    
-                    // Mark as initialized
-                    initialized.set(true);
-                    
-                    // Complete the future
-                    future.complete(null);
+        return runtime.openContext(this, project.getBasePath())
+            .thenAccept(id -> {
+                contextId = id;
+                initialized.set(true);
+                if (disposed.get()) {
+                    // The project was closed while the context was opening
+                    runtime.closeContext(id);
+                    throw new IllegalStateException("JavaScript bridge disposed");
                 }
-            }, browser.getCefBrowser());
-        } catch (Exception e) {
-            LOG.error("Failed to initialize JavaScript bridge", e);
-            future.completeExceptionally(e);
-        }
-        
-        return future;
+                LOG.info("JavaScript bridge context " + id + " opened");
+            });
     }
     
     /**
@@ -135,234 +75,120 @@ public class JavaScriptBridge {
      * @param options The options
      * @return A future that completes with the task result
      */
+    @Override
     public CompletableFuture<String> executeTask(String taskInput, String options) {
         LOG.info("Executing task: " + taskInput);
         
-        CompletableFuture<String> future = new CompletableFuture<>();
-        
-        if (!initialized.get()) {
-            LOG.warn("JavaScript bridge not initialized");
-            future.completeExceptionally(new IllegalStateException("JavaScript bridge not initialized"));
-            return future;
-        }
-        
-        // Escape the task input and options
-        String escapedTaskInput = escapeJavaScriptString(taskInput);
-        String escapedOptions = escapeJavaScriptString(options);
-        
-        // Create the execute task script
-        String executeTaskScript = "window.executeTask('" + escapedTaskInput + "', '" + escapedOptions + "')";
-        
-        // Execute the script
-        browser.getCefBrowser().executeJavaScript(executeTaskScript, browser.getCefBrowser().getURL(), 0);
-        
-        // Register a handler for the result
-        executeTaskQuery.addHandler(result -> {
-            LOG.info("Execute task result: " + result);
-            future.complete(result);
-            return null;
-        });
-        
-        return future;
+        JsonObject params = new JsonObject();
+        params.addProperty("taskInput", taskInput);
+        params.addProperty("options", options);
+        return sendRequest("executeTask", params, TASK_TIMEOUT_MILLIS);
     }
     
     /**
      * Cancel the current task.
      * @return A future that completes when the task is cancelled
      */
+    @Override
     public CompletableFuture<Void> cancelTask() {
         LOG.info("Cancelling task");
         
-        CompletableFuture<Void> future = new CompletableFuture<>();
-        
-        if (!initialized.get()) {
-            LOG.warn("JavaScript bridge not initialized");
-            future.completeExceptionally(new IllegalStateException("JavaScript bridge not initialized"));
-            return future;
-        }
-        
-        // Create the cancel task script
-        String cancelTaskScript = "window.cancelTask()";
-        
-        // Execute the script
-        browser.getCefBrowser().executeJavaScript(cancelTaskScript, browser.getCefBrowser().getURL(), 0);
-        
-        // Register a handler for the result
-        cancelTaskQuery.addHandler(result -> {
-            LOG.info("Cancel task result: " + result);
-            future.complete(null);
-            return null;
-        });
-        
-        return future;
+        return sendRequest("cancelTask", new JsonObject(), REQUEST_TIMEOUT_MILLIS)
+                .thenApply(result -> null);
     }
     
     /**
      * Get the status of the current task.
      * @return A future that completes with the task status
      */
+    @Override
     public CompletableFuture<String> getTaskStatus() {
         LOG.info("Getting task status");
         
-        CompletableFuture<String> future = new CompletableFuture<>();
-        
+        return sendRequest("getTaskStatus", new JsonObject(), REQUEST_TIMEOUT_MILLIS);
+    }
+    
+    /**
+     * Send a request of this context to the bridge script.
+     * @param method The method to call
+     * @param params The parameters
+     * @param timeoutMillis The time after which the request fails
+     * @return A future that completes with the result of the request
+     */
+    private CompletableFuture<String> sendRequest(@NotNull String method, @NotNull JsonObject params, long timeoutMillis) {
         if (!initialized.get()) {
             LOG.warn("JavaScript bridge not initialized");
-            future.completeExceptionally(new IllegalStateException("JavaScript bridge not initialized"));
-            return future;
+            return CompletableFuture.failedFuture(new IllegalStateException("JavaScript bridge not initialized"));
         }
         
-        // Create the get task status script
-        String getTaskStatusScript = "window.getTaskStatus()";
-        
-        // Execute the script
-        browser.getCefBrowser().executeJavaScript(getTaskStatusScript, browser.getCefBrowser().getURL(), 0);
-        
-        // Register a handler for the result
-        getTaskStatusQuery.addHandler(result -> {
-            LOG.info("Get task status result: " + result);
-            future.complete(result);
-            return null;
-        });
-        
-        return future;
+        return runtime.sendRequest(contextId, method, params, timeoutMillis);
     }
     
     /**
-     * Dispose the bridge.
+     * Pass a batch of events of this context to the listeners.
+     * @param events The events
      */
-    public void dispose() {
-        LOG.info("Disposing JavaScript bridge");
-        
-        if (browser != null) {
-            browser.dispose();
-            browser = null;
+    void dispatchEvents(@NotNull List<BridgeEvent> events) {
+        if (events.isEmpty()) {
+            return;
         }
-        
-        if (executeTaskQuery != null) {
-            executeTaskQuery.dispose();
-            executeTaskQuery = null;
-        }
-        
-        if (cancelTaskQuery != null) {
-            cancelTaskQuery.dispose();
-            cancelTaskQuery = null;
+        for (BridgeEventListener listener : eventListeners) {
+            try {
+                listener.eventsReceived(events);
+            } catch (Exception e) {
+                LOG.error("Bridge event listener failed", e);
+            }
         }
-        
-        if (getTaskStatusQuery != null) {
-            getTaskStatusQuery.dispose();
-            getTaskStatusQuery = null;
-        }
-        
-        initialized.set(false);
     }
     
     /**
-     * Create the bridge HTML.
-     * @return The bridge HTML
+     * Add a listener for the events of running tasks.
+     * @param listener The listener
      */
-    private String createBridgeHtml() {
-        LOG.info("Creating bridge HTML");
-        
-        // Get the project directory
-        VirtualFile projectDir = project.getBaseDir();
-        if (projectDir == null) {
-            LOG.warn("Project directory not found");
-            return createDefaultBridgeHtml();
-        }
-        
-        // Get the bridge.js file
-        Path bridgeJsPath = Paths.get(projectDir.getPath(), "cline-jetbrains", "dist", "bridge.js");
-        if (!Files.exists(bridgeJsPath)) {
-            LOG.warn("Bridge.js not found at: " + bridgeJsPath);
-            return createDefaultBridgeHtml();
-        }
-        
-        try {
-            // Read the bridge.js file
-            String bridgeJs = new String(Files.readAllBytes(bridgeJsPath));
-            
-            // Create the HTML
-            return "<!DOCTYPE html>\n" +
-                    "<html>\n" +
-                    "<head>\n" +
-                    "    <title>Cline Bridge</title>\n" +
-                    "</head>\n" +
-                    "<body>\n" +
-                    "    <script>\n" +
-                    bridgeJs +
-                    "    </script>\n" +
-                    "</body>\n" +
-                    "</html>";
-        } catch (IOException e) {
-            LOG.error("Failed to read bridge.js", e);
-            return createDefaultBridgeHtml();
-        }
+    @Override
+    public void addEventListener(@NotNull BridgeEventListener listener) {
+        eventListeners.add(listener);
     }
     
     /**
-     * Create the default bridge HTML.
-     * @return The default bridge HTML
+     * Add a listener for the bridge stopping on its own. The offscreen browser of the shared runtime is not
+     * watched, so the listener is never called.
+     * @param listener The listener
      */
-    private String createDefaultBridgeHtml() {
-        LOG.info("Creating default bridge HTML");
-        
-        return "<!DOCTYPE html>\n" +
-                "<html>\n" +
-                "<head>\n" +
-                "    <title>Cline Bridge</title>\n" +
-                "</head>\n" +
-                "<body>\n" +
-                "    <script>\n" +
-                "        // Bridge initialization\n" +
-                "        let executeTaskQueryName = '';\n" +
-                "        let cancelTaskQueryName = '';\n" +
-                "        let getTaskStatusQueryName = '';\n" +
-                "\n" +
-                "        // Initialize the bridge\n" +
-                "        window.initializeBridge = function(executeTaskQuery, cancelTaskQuery, getTaskStatusQuery) {\n" +
-                "            executeTaskQueryName = executeTaskQuery;\n" +
-                "            cancelTaskQueryName = cancelTaskQuery;\n" +
-                "            getTaskStatusQueryName = getTaskStatusQuery;\n" +
-                "            console.log('Bridge initialized');\n" +
-                "        };\n" +
-                "\n" +
-                "        // Execute a task\n" +
-                "        window.executeTask = function(taskInput, options) {\n" +
-                "            console.log('Executing task: ' + taskInput);\n" +
-                "            window[executeTaskQueryName].result('Task executed: ' + taskInput);\n" +
-                "        };\n" +
-                "\n" +
-                "        // Cancel the current task\n" +
-                "        window.cancelTask = function() {\n" +
-                "            console.log('Cancelling task');\n" +
-                "            window[cancelTaskQueryName].result('Task cancelled');\n" +
-                "        };\n" +
-                "\n" +
-                "        // Get the status of the current task\n" +
-                "        window.getTaskStatus = function() {\n" +
-                "            console.log('Getting task status');\n" +
-                "            window[getTaskStatusQueryName].result('Task status: completed');\n" +
-                "        };\n" +
-                "    </script>\n" +
-                "</body>\n" +
-                "</html>";
+    @Override
+    public void addTerminationListener(@NotNull Runnable listener) {
     }
     
     /**
-     * Escape a JavaScript string.
-     * @param str The string to escape
-     * @return The escaped string
+     * Get the round trip times of the requests the shared runtime has answered, for all projects.
+     * @return The latency statistics
      */
-    private String escapeJavaScriptString(String str) {
-        if (str == null) {
-            return "";
-        }
+    @NotNull
+    @Override
+    public LatencyStatistics getLatencyStatistics() {
+        return runtime.getLatencyStatistics();
+    }
+    
+    /**
+     * Remove a listener for the events of running tasks.
+     * @param listener The listener
+     */
+    public void removeEventListener(@NotNull BridgeEventListener listener) {
+        eventListeners.remove(listener);
+    }
+    
+    /**
+     * Dispose the bridge, closing the context of the project. The shared runtime keeps running for other projects.
+     */
+    @Override
+    public void dispose() {
+        LOG.info("Disposing JavaScript bridge");
+        
+        disposed.set(true);
+        eventListeners.clear();
         
-        return str.replace("\\", "\\\\")
-                .replace("'", "\\'")
-                .replace("\n", "\\n")
-                .replace("\r", "\\r")
-                .replace("\t", "\\t");
+        if (initialized.getAndSet(false)) {
+            runtime.closeContext(contextId);
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,51 @@
+package com.cline.jetbrains.bridge;
+
+/**
+ * Round trip times of the requests a transport has answered, from sending a request to receiving its response.
+ */
+public final class LatencyStatistics {
+    private final long count;
+    private final long totalNanos;
+    private final long maxNanos;
+
+    /**
+     * Constructor.
+     * @param count The number of answered requests
+     * @param totalNanos The sum of their round trip times
+     * @param maxNanos The longest round trip time
+     */
+    public LatencyStatistics(long count, long totalNanos, long maxNanos) {
+        this.count = count;
+        this.totalNanos = totalNanos;
+        this.maxNanos = maxNanos;
+    }
+
+    /**
+     * Get the number of answered requests.
+     * @return The number of requests
+     */
+    public long getCount() {
+        return count;
+    }
+
+    /**
+     * Get the average round trip time.
+     * @return The average time in milliseconds, or 0 if no request was answered
+     */
+    public double getAverageMillis() {
+        return count > 0 ? totalNanos / 1e6 / count : 0;
+    }
+
+    /**
+     * Get the longest round trip time.
+     * @return The longest time in milliseconds
+     */
+    public double getMaxMillis() {
+        return maxNanos / 1e6;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d requests, %.2f ms average, %.2f ms max", count, getAverageMillis(), getMaxMillis());
+    }
+}
@@ -0,0 +1,429 @@
+package com.cline.jetbrains.bridge;
+
+import com.cline.jetbrains.services.ClineSettingsService;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.intellij.ide.plugins.IdeaPluginDescriptor;
+import com.intellij.ide.plugins.PluginManagerCore;
+import com.intellij.openapi.application.PathManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.extensions.PluginId;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Transport that runs the bundled TypeScript core in a Node process instead of an offscreen browser.
+ * <p>
+ * The plugin and the process exchange JSON-RPC 2.0 messages over the standard streams of the process. Every
+ * message is framed by its length as a 4 byte big endian integer followed by that many bytes of UTF-8 JSON, so
+ * payloads are never escaped. Requests are written as soon as they are made, without waiting for earlier
+ * responses; a reader thread matches responses to their requests by ID. The process pushes task events as
+ * {@code events} notifications in the batch format of {@link BridgeEvent}. Whatever the process writes to its
+ * standard error is logged.
+ * <p>
+ * The script is {@code sidecar.js} from the plugin directory. Installations that only have it in the plugin
+ * resources get a copy in the system directory, since Node cannot run a script from inside a jar.
+ */
+public class NodeBridgeTransport implements BridgeTransport {
+    private static final Logger LOG = Logger.getInstance(NodeBridgeTransport.class);
+    private static final String PLUGIN_ID = "com.cline.jetbrains";
+    private static final String SIDECAR_SCRIPT = "sidecar.js";
+    private static final String SIDECAR_RESOURCE = "/bridge/" + SIDECAR_SCRIPT;
+    private static final int MAX_MESSAGE_LENGTH = 64 * 1024 * 1024;
+    private static final Gson GSON = new Gson();
+
+    private final Project project;
+    private final ClineSettingsService settingsService;
+    private final AtomicBoolean initialized = new AtomicBoolean(false);
+    private final AtomicBoolean disposed = new AtomicBoolean(false);
+    private final PendingRequests pendingRequests = new PendingRequests(AppExecutorUtil.getAppScheduledExecutorService());
+    private final List<BridgeEventListener> eventListeners = new CopyOnWriteArrayList<>();
+    private final List<Runnable> terminationListeners = new CopyOnWriteArrayList<>();
+    private final Object writeLock = new Object();
+
+    private volatile Process process;
+    // Guarded by writeLock
+    private DataOutputStream output;
+
+    /**
+     * Constructor.
+     * @param project The current project
+     */
+    public NodeBridgeTransport(@NotNull Project project) {
+        this.project = project;
+        this.settingsService = ClineSettingsService.getInstance();
+    }
+
+    @Override
+    public CompletableFuture<Void> initialize() {
+        LOG.info("Starting Node bridge");
+
+        Path script = findSidecarScript();
+        if (script == null) {
+            return CompletableFuture.failedFuture(new IllegalStateException(SIDECAR_SCRIPT + " not found"));
+        }
+
+        String node = settingsService.getNodePath();
+        ProcessBuilder builder = new ProcessBuilder(node == null || node.isEmpty() ? "node" : node, script.toString());
+        String basePath = project.getBasePath();
+        if (basePath != null) {
+            builder.directory(Paths.get(basePath).toFile());
+        }
+
+        try {
+            process = builder.start();
+        } catch (IOException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+        synchronized (writeLock) {
+            output = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+        }
+
+        Process started = process;
+        startThread("Cline Node bridge reader", () -> readMessages(started.getInputStream()));
+        startThread("Cline Node bridge log", () -> logErrors(started));
+        started.onExit().thenAccept(this::processExited);
+
+        JsonObject settings = new JsonObject();
+        settings.addProperty("apiProvider", settingsService.getApiProvider());
+        settings.addProperty("apiKey", settingsService.getApiKey());
+        settings.addProperty("apiModel", settingsService.getApiModel());
+        JsonObject params = new JsonObject();
+        params.addProperty("projectPath", basePath);
+        params.add("settings", settings);
+
+        return send("initialize", params, REQUEST_TIMEOUT_MILLIS)
+                .thenAccept(result -> {
+                    initialized.set(true);
+                    LOG.info("Node bridge started");
+                });
+    }
+
+    @Override
+    public CompletableFuture<String> executeTask(String taskInput, String options) {
+        JsonObject params = new JsonObject();
+        params.addProperty("taskInput", taskInput);
+        params.addProperty("options", options);
+        return sendRequest("executeTask", params, TASK_TIMEOUT_MILLIS);
+    }
+
+    @Override
+    public CompletableFuture<Void> cancelTask() {
+        return sendRequest("cancelTask", new JsonObject(), REQUEST_TIMEOUT_MILLIS)
+                .thenApply(result -> null);
+    }
+
+    @Override
+    public CompletableFuture<String> getTaskStatus() {
+        return sendRequest("getTaskStatus", new JsonObject(), REQUEST_TIMEOUT_MILLIS);
+    }
+
+    @Override
+    public void addEventListener(@NotNull BridgeEventListener listener) {
+        eventListeners.add(listener);
+    }
+
+    @Override
+    public void addTerminationListener(@NotNull Runnable listener) {
+        terminationListeners.add(listener);
+    }
+
+    @NotNull
+    @Override
+    public LatencyStatistics getLatencyStatistics() {
+        return pendingRequests.getLatencyStatistics();
+    }
+
+    @Override
+    public void dispose() {
+        if (disposed.getAndSet(true)) {
+            return;
+        }
+        LOG.info("Stopping Node bridge");
+
+        initialized.set(false);
+        eventListeners.clear();
+        terminationListeners.clear();
+        Process current = process;
+        if (current != null) {
+            // Closing its input tells the process to exit; it is destroyed as well in case it is stuck
+            synchronized (writeLock) {
+                try {
+                    output.close();
+                } catch (IOException e) {
+                    LOG.debug("Failed to close Node bridge input: " + e.getMessage());
+                }
+            }
+            current.destroy();
+        }
+        pendingRequests.failAll(new IllegalStateException("Node bridge disposed"));
+    }
+
+    /**
+     * Send a request once the process is initialized.
+     * @param method The method to call
+     * @param params The parameters
+     * @param timeoutMillis The time after which the request fails
+     * @return A future that completes with the result of the request
+     */
+    private CompletableFuture<String> sendRequest(@NotNull String method, @NotNull JsonObject params, long timeoutMillis) {
+        if (!initialized.get()) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Node bridge not initialized"));
+        }
+        return send(method, params, timeoutMillis);
+    }
+
+    /**
+     * Write a request to the process. The request is written immediately, even if earlier requests
+     * have not been answered yet.
+     * @param method The method to call
+     * @param params The parameters
+     * @param timeoutMillis The time after which the request fails
+     * @return A future that completes with the result of the request
+     */
+    private CompletableFuture<String> send(@NotNull String method, @NotNull JsonObject params, long timeoutMillis) {
+        PendingRequests.Request request = pendingRequests.create(method, timeoutMillis);
+
+        JsonObject message = new JsonObject();
+        message.addProperty("jsonrpc", "2.0");
+        message.addProperty("id", request.id);
+        message.addProperty("method", method);
+        message.add("params", params);
+        byte[] body = GSON.toJson(message).getBytes(StandardCharsets.UTF_8);
+
+        try {
+            synchronized (writeLock) {
+                output.writeInt(body.length);
+                output.write(body);
+                output.flush();
+            }
+        } catch (IOException e) {
+            pendingRequests.fail(request.id, e);
+        }
+        return request.future;
+    }
+
+    /**
+     * Read messages from the process until its output ends.
+     * @param stream The standard output of the process
+     */
+    private void readMessages(InputStream stream) {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(stream))) {
+            while (true) {
+                int length = input.readInt();
+                if (length < 0 || length > MAX_MESSAGE_LENGTH) {
+                    throw new IOException("Invalid message length: " + length);
+                }
+                byte[] body = new byte[length];
+                input.readFully(body);
+                handleMessage(new String(body, StandardCharsets.UTF_8));
+            }
+        } catch (EOFException e) {
+            // The process exited
+        } catch (IOException e) {
+            if (!disposed.get()) {
+                LOG.warn("Failed to read from Node bridge", e);
+                // The exit of the process is handled like any other
+                Process current = process;
+                if (current != null) {
+                    current.destroy();
+                }
+            }
+        }
+    }
+
+    /**
+     * Handle a message from the process: a response to a request, or a batch of events.
+     * @param message The message
+     */
+    private void handleMessage(String message) {
+        JsonObject json;
+        try {
+            JsonElement parsed = JsonParser.parseString(message);
+            json = parsed.isJsonObject() ? parsed.getAsJsonObject() : null;
+        } catch (JsonParseException e) {
+            json = null;
+        }
+        if (json == null) {
+            LOG.warn("Invalid message from Node bridge: " + message);
+            return;
+        }
+
+        JsonElement method = json.get("method");
+        if (method != null) {
+            JsonElement params = json.get("params");
+            if (!"events".equals(toString(method)) || params == null || !params.isJsonArray()) {
+                LOG.warn("Unknown notification from Node bridge: " + method);
+                return;
+            }
+            try {
+                dispatchEvents(BridgeEvent.parseBatch(params.getAsJsonArray()));
+            } catch (JsonParseException e) {
+                LOG.warn("Invalid event batch from Node bridge", e);
+            }
+            return;
+        }
+
+        JsonElement idElement = json.get("id");
+        if (idElement == null || !idElement.isJsonPrimitive() || !idElement.getAsJsonPrimitive().isNumber()) {
+            LOG.warn("Invalid response from Node bridge: " + message);
+            return;
+        }
+        long id = idElement.getAsLong();
+        JsonElement error = json.get("error");
+        boolean pending;
+        if (error != null && !error.isJsonNull()) {
+            JsonElement errorMessage = error.isJsonObject() ? error.getAsJsonObject().get("message") : error;
+            pending = pendingRequests.fail(id, new IllegalStateException("Node bridge error: " + toString(errorMessage)));
+        } else {
+            pending = pendingRequests.complete(id, toString(json.get("result")));
+        }
+        if (!pending) {
+            LOG.info("Ignoring response to request " + id + " that is no longer pending");
+        }
+    }
+
+    private void dispatchEvents(List<BridgeEvent> events) {
+        if (events.isEmpty()) {
+            return;
+        }
+        for (BridgeEventListener listener : eventListeners) {
+            try {
+                listener.eventsReceived(events);
+            } catch (Exception e) {
+                LOG.error("Bridge event listener failed", e);
+            }
+        }
+    }
+
+    private void logErrors(Process process) {
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                LOG.info("Node bridge: " + line);
+            }
+        } catch (IOException e) {
+            // The process exited
+        }
+    }
+
+    private void processExited(Process exited) {
+        initialized.set(false);
+        boolean unexpected = !disposed.get();
+        if (unexpected) {
+            LOG.warn("Node bridge exited with code " + exited.exitValue());
+        }
+        pendingRequests.failAll(new IllegalStateException("Node bridge exited with code " + exited.exitValue()));
+        if (unexpected) {
+            for (Runnable listener : terminationListeners) {
+                try {
+                    listener.run();
+                } catch (Exception e) {
+                    LOG.error("Bridge termination listener failed", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the bundled core, in the configured TypeScript bridge directory, the plugin directory or the project.
+     * If it is in none of them, the copy in the plugin resources is used.
+     * @return The path of the script, or null if it is not found
+     */
+    @Nullable
+    private Path findSidecarScript() {
+        List<Path> candidates = new ArrayList<>();
+        String bridgePath = settingsService.getTypescriptBridgePath();
+        if (bridgePath != null && !bridgePath.isEmpty()) {
+            candidates.add(Paths.get(bridgePath, "dist", SIDECAR_SCRIPT));
+            candidates.add(Paths.get(bridgePath, SIDECAR_SCRIPT));
+        }
+        IdeaPluginDescriptor plugin = PluginManagerCore.getPlugin(PluginId.getId(PLUGIN_ID));
+        if (plugin != null) {
+            candidates.add(plugin.getPluginPath().resolve("bridge").resolve(SIDECAR_SCRIPT));
+        }
+        VirtualFile projectDir = project.getBaseDir();
+        if (projectDir != null) {
+            candidates.add(Paths.get(projectDir.getPath(), "cline-jetbrains", "dist", SIDECAR_SCRIPT));
+        }
+
+        for (Path candidate : candidates) {
+            if (Files.isRegularFile(candidate)) {
+                return candidate;
+            }
+        }
+        Path extracted = extractSidecarScript();
+        if (extracted == null) {
+            LOG.warn(SIDECAR_SCRIPT + " not found in " + candidates + " or the plugin resources");
+        }
+        return extracted;
+    }
+
+    /**
+     * Copy the script from the plugin resources to the system directory, unless the copy is up to date.
+     * @return The path of the copy, or null if the script is not in the resources or cannot be copied
+     */
+    @Nullable
+    private static Path extractSidecarScript() {
+        try (InputStream stream = NodeBridgeTransport.class.getResourceAsStream(SIDECAR_RESOURCE)) {
+            if (stream == null) {
+                return null;
+            }
+            byte[] script = stream.readAllBytes();
+            Path target = Paths.get(PathManager.getSystemPath(), "cline", "bridge", SIDECAR_SCRIPT);
+            if (Files.isRegularFile(target) && Arrays.equals(Files.readAllBytes(target), script)) {
+                return target;
+            }
+            // Written to a temporary file first, so that a process started by another project never sees half of it
+            Files.createDirectories(target.getParent());
+            Path temp = Files.createTempFile(target.getParent(), SIDECAR_SCRIPT, ".tmp");
+            Files.write(temp, script);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return target;
+        } catch (IOException e) {
+            LOG.warn("Failed to copy " + SIDECAR_SCRIPT + " from the plugin resources", e);
+            return null;
+        }
+    }
+
+    private static void startThread(String name, Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static String toString(JsonElement element) {
+        if (element == null || element.isJsonNull()) {
+            return null;
+        }
+        return element.isJsonPrimitive() ? element.getAsString() : element.toString();
+    }
+}
@@ -0,0 +1,143 @@
+package com.cline.jetbrains.bridge;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Table of the requests sent over a bridge that have not been answered yet.
+ * Every request gets its own ID, which the response must carry, so any number of requests can be in flight
+ * at once and every response completes only the future of its own request.
+ * A request is removed from the table when its future completes in any way: by a response, by its timeout,
+ * or by the caller cancelling it.
+ * The table also measures how long requests take to be answered.
+ */
+final class PendingRequests {
+    private final ScheduledExecutorService scheduler;
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final Map<Long, Request> requests = new ConcurrentHashMap<>();
+    // Guarded by this
+    private long answeredCount = 0;
+    private long totalLatencyNanos = 0;
+    private long maxLatencyNanos = 0;
+
+    /**
+     * Constructor.
+     * @param scheduler The executor that runs the timeouts
+     */
+    PendingRequests(@NotNull ScheduledExecutorService scheduler) {
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Create a pending request.
+     * @param method The method that is requested, used in error messages
+     * @param timeoutMillis The time after which the request fails, or 0 for no timeout
+     * @return The request
+     */
+    @NotNull
+    Request create(@NotNull String method, long timeoutMillis) {
+        Request request = new Request(nextId.getAndIncrement(), method);
+        requests.put(request.id, request);
+        if (timeoutMillis > 0) {
+            request.timeout = scheduler.schedule(() -> request.future.completeExceptionally(
+                    new TimeoutException(method + " timed out after " + timeoutMillis + " ms")),
+                    timeoutMillis, TimeUnit.MILLISECONDS);
+        }
+        request.future.whenComplete((result, error) -> {
+            requests.remove(request.id);
+            ScheduledFuture<?> timeout = request.timeout;
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+        });
+        return request;
+    }
+
+    /**
+     * Complete a request with its response.
+     * @param id The request ID
+     * @param result The result
+     * @return Whether the request was pending
+     */
+    boolean complete(long id, String result) {
+        Request request = requests.get(id);
+        if (request == null || !request.future.complete(result)) {
+            return false;
+        }
+        recordLatency(request);
+        return true;
+    }
+
+    /**
+     * Fail a request.
+     * @param id The request ID
+     * @param error The error
+     * @return Whether the request was pending
+     */
+    boolean fail(long id, @NotNull Throwable error) {
+        Request request = requests.get(id);
+        if (request == null || !request.future.completeExceptionally(error)) {
+            return false;
+        }
+        recordLatency(request);
+        return true;
+    }
+
+    /**
+     * Fail all pending requests, for example because the bridge is disposed.
+     * @param error The error
+     */
+    void failAll(@NotNull Throwable error) {
+        for (Request request : requests.values()) {
+            request.future.completeExceptionally(error);
+        }
+    }
+
+    /**
+     * Get the number of pending requests.
+     * @return The number of pending requests
+     */
+    int size() {
+        return requests.size();
+    }
+
+    /**
+     * Get the round trip times of the requests answered so far. Requests that timed out are not included.
+     * @return The latency statistics
+     */
+    @NotNull
+    synchronized LatencyStatistics getLatencyStatistics() {
+        return new LatencyStatistics(answeredCount, totalLatencyNanos, maxLatencyNanos);
+    }
+
+    private synchronized void recordLatency(Request request) {
+        long latency = System.nanoTime() - request.startNanos;
+        answeredCount++;
+        totalLatencyNanos += latency;
+        maxLatencyNanos = Math.max(maxLatencyNanos, latency);
+    }
+
+    /**
+     * A pending request.
+     */
+    static final class Request {
+        final long id;
+        final String method;
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        final long startNanos = System.nanoTime();
+        volatile ScheduledFuture<?> timeout;
+
+        Request(long id, String method) {
+            this.id = id;
+            this.method = method;
+        }
+    }
+}
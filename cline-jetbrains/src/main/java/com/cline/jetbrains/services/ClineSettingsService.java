@@ -75,6 +75,8 @@ public final class ClineSettingsService implements PersistentStateComponent<Clin
         
         // TypeScript bridge settings
         public String typescriptBridgePath = "";
+        public boolean useNodeBridge = false; // Run the core in a Node process instead of JCEF
+        public String nodePath = ""; // Empty to use node from the PATH
     }
     
     /**
@@ -252,4 +254,36 @@ public final class ClineSettingsService implements PersistentStateComponent<Clin
     public void setTypescriptBridgePath(String typescriptBridgePath) {
         myState.typescriptBridgePath = typescriptBridgePath;
     }
+    
+    /**
+     * Check if the TypeScript core runs in a Node process instead of JCEF.
+     * @return True if the Node bridge is used
+     */
+    public boolean isUseNodeBridge() {
+        return myState.useNodeBridge;
+    }
+    
+    /**
+     * Set whether the TypeScript core runs in a Node process instead of JCEF.
+     * @param useNodeBridge True to use the Node bridge
+     */
+    public void setUseNodeBridge(boolean useNodeBridge) {
+        myState.useNodeBridge = useNodeBridge;
+    }
+    
+    /**
+     * Get the path of the Node executable.
+     * @return The path, or an empty string to use node from the PATH
+     */
+    public String getNodePath() {
+        return myState.nodePath;
+    }
+    
+    /**
+     * Set the path of the Node executable.
+     * @param nodePath The path, or an empty string to use node from the PATH
+     */
+    public void setNodePath(String nodePath) {
+        myState.nodePath = nodePath;
+    }
 }
\ No newline at end of file
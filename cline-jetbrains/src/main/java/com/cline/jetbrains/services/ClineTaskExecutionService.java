@@ -1,14 +1,15 @@
 package com.cline.jetbrains.services;
 
+import com.cline.jetbrains.bridge.BridgeEventListener;
 import com.cline.jetbrains.bridge.ClineBridgeManager;
 import com.cline.jetbrains.ui.components.ClineTaskListPanel;
+import com.google.gson.JsonObject;
+import com.intellij.openapi.Disposable;
 import com.intellij.openapi.components.Service;
 import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.HashMap;
-import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
@@ -33,14 +34,25 @@ public final class ClineTaskExecutionService {
     }
     
     public CompletableFuture<String> executeTask(String taskInput, String model) {
+        return executeTask(generateTaskId(), taskInput, model);
+    }
+    
+    /**
+     * Execute a task with an ID chosen by the caller, so its events can be told apart before it finishes.
+     * @param taskId The task ID, for example from {@link #generateTaskId()}
+     * @param taskInput The task input
+     * @param model The model
+     * @return A future that completes with the task ID when the task finishes
+     */
+    public CompletableFuture<String> executeTask(@NotNull String taskId, String taskInput, String model) {
         LOG.info("Executing task: " + taskInput);
         
-        String taskId = generateTaskId();
-        
         return bridgeManager.initialize()
             .thenCompose(v -> {
-                Map<String, Object> options = new HashMap<>();
-                options.put("model", model);
+                // The task ID lets the script tag the events it pushes while the task runs
+                JsonObject options = new JsonObject();
+                options.addProperty("taskId", taskId);
+                options.addProperty("model", model);
                 return bridgeManager.executeTask(taskInput, options.toString());
             })
             .thenApply(result -> {
@@ -62,6 +74,16 @@ public final class ClineTaskExecutionService {
             });
     }
     
+    /**
+     * Add a listener for the token deltas, tool requests, progress and usage of running tasks.
+     * The events carry the IDs of the tasks they belong to.
+     * @param listener The listener
+     * @param parentDisposable The disposable that removes the listener when it is disposed
+     */
+    public void addEventListener(@NotNull BridgeEventListener listener, @NotNull Disposable parentDisposable) {
+        bridgeManager.addEventListener(listener, parentDisposable);
+    }
+    
     public ClineTaskListPanel.TaskItem createTaskItem(String taskId, String description) {
         LOG.info("Creating task item: " + taskId);
         
@@ -72,7 +94,11 @@ public final class ClineTaskExecutionService {
         );
     }
     
-    private String generateTaskId() {
+    /**
+     * Generate a new task ID.
+     * @return The task ID
+     */
+    public String generateTaskId() {
         return "task_" + UUID.randomUUID().toString().substring(0, 8);
     }
 }
\ No newline at end of file
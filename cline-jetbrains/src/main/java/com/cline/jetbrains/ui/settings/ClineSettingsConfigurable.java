@@ -70,7 +70,9 @@ public class ClineSettingsConfigurable implements Configurable {
                settingsPanel.isEnableFileEditing() != settings.isEnableFileEditing() ||
                settingsPanel.isEnableAutoApproval() != settings.isEnableAutoApproval() ||
                settingsPanel.getMaxAutoApprovedRequests() != settings.getMaxAutoApprovedRequests() ||
-               !settingsPanel.getTypescriptBridgePath().equals(settings.getTypescriptBridgePath());
+               !settingsPanel.getTypescriptBridgePath().equals(settings.getTypescriptBridgePath()) ||
+               settingsPanel.isUseNodeBridge() != settings.isUseNodeBridge() ||
+               !settingsPanel.getNodePath().equals(settings.getNodePath());
     }
 
     /**
@@ -104,6 +106,8 @@ public class ClineSettingsConfigurable implements Configurable {
         settings.setEnableAutoApproval(settingsPanel.isEnableAutoApproval());
         settings.setMaxAutoApprovedRequests(settingsPanel.getMaxAutoApprovedRequests());
         settings.setTypescriptBridgePath(settingsPanel.getTypescriptBridgePath());
+        settings.setUseNodeBridge(settingsPanel.isUseNodeBridge());
+        settings.setNodePath(settingsPanel.getNodePath());
     }
 
     /**
@@ -131,6 +135,8 @@ public class ClineSettingsConfigurable implements Configurable {
         settingsPanel.setEnableAutoApproval(settings.isEnableAutoApproval());
         settingsPanel.setMaxAutoApprovedRequests(settings.getMaxAutoApprovedRequests());
         settingsPanel.setTypescriptBridgePath(settings.getTypescriptBridgePath());
+        settingsPanel.setUseNodeBridge(settings.isUseNodeBridge());
+        settingsPanel.setNodePath(settings.getNodePath());
     }
 
     /**
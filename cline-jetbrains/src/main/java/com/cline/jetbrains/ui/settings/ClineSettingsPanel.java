@@ -45,6 +45,8 @@ public class ClineSettingsPanel {
     
     // TypeScript bridge settings
     private final TextFieldWithBrowseButton typescriptBridgePathField;
+    private final JBCheckBox useNodeBridgeCheckBox;
+    private final TextFieldWithBrowseButton nodePathField;
 
     /**
      * Constructor.
@@ -78,6 +80,14 @@ public class ClineSettingsPanel {
             null,
             new FileChooserDescriptor(false, true, false, false, false, false)
         );
+        useNodeBridgeCheckBox = new JBCheckBox("Run the TypeScript core in a Node process");
+        nodePathField = new TextFieldWithBrowseButton();
+        nodePathField.addBrowseFolderListener(
+            "Select Node Executable",
+            "Select the Node executable, or leave empty to use node from the PATH",
+            null,
+            new FileChooserDescriptor(true, false, false, false, false, false)
+        );
         
         // Create the main panel
         mainPanel = FormBuilder.createFormBuilder()
@@ -92,10 +102,12 @@ public class ClineSettingsPanel {
         // Add listeners
         apiProviderComboBox.addActionListener(e -> updateApiSettingsVisibility());
         enableAutoApprovalCheckBox.addActionListener(e -> updateAutoApprovalSettingsVisibility());
+        useNodeBridgeCheckBox.addActionListener(e -> updateNodeBridgeSettingsVisibility());
         
         // Initialize visibility
         updateApiSettingsVisibility();
         updateAutoApprovalSettingsVisibility();
+        updateNodeBridgeSettingsVisibility();
     }
 
     /**
@@ -171,6 +183,8 @@ public class ClineSettingsPanel {
     private JPanel createTypescriptBridgeSettingsPanel() {
         return FormBuilder.createFormBuilder()
             .addLabeledComponent("TypeScript Bridge Path:", typescriptBridgePathField)
+            .addComponent(useNodeBridgeCheckBox)
+            .addLabeledComponent("Node Path:", nodePathField)
             .getPanel();
     }
 
@@ -193,6 +207,13 @@ public class ClineSettingsPanel {
         maxAutoApprovedRequestsSpinner.setEnabled(enabled);
     }
 
+    /**
+     * Update the visibility of the Node bridge settings based on the checkbox.
+     */
+    private void updateNodeBridgeSettingsVisibility() {
+        nodePathField.setEnabled(useNodeBridgeCheckBox.isSelected());
+    }
+
     /**
      * Get the main panel.
      * @return The main panel
@@ -376,4 +397,37 @@ public class ClineSettingsPanel {
     public void setTypescriptBridgePath(String typescriptBridgePath) {
         typescriptBridgePathField.setText(typescriptBridgePath);
     }
+
+    /**
+     * Check if the TypeScript core runs in a Node process.
+     * @return True if the Node bridge is used
+     */
+    public boolean isUseNodeBridge() {
+        return useNodeBridgeCheckBox.isSelected();
+    }
+
+    /**
+     * Set whether the TypeScript core runs in a Node process.
+     * @param useNodeBridge True to use the Node bridge
+     */
+    public void setUseNodeBridge(boolean useNodeBridge) {
+        useNodeBridgeCheckBox.setSelected(useNodeBridge);
+        updateNodeBridgeSettingsVisibility();
+    }
+
+    /**
+     * Get the path of the Node executable.
+     * @return The path of the Node executable
+     */
+    public String getNodePath() {
+        return nodePathField.getText();
+    }
+
+    /**
+     * Set the path of the Node executable.
+     * @param nodePath The path of the Node executable
+     */
+    public void setNodePath(String nodePath) {
+        nodePathField.setText(nodePath);
+    }
 }
\ No newline at end of file
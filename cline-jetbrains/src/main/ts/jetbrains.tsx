@@ -12,9 +12,32 @@ declare global {
         jsQuery1: any; // Cancel task query
         jsQuery2: any; // Get task status query
         jsQuery3: any; // UI event query
+        clineBridge: BridgeEndpoint;
     }
 }
 
+// A request from Java, answered with a response carrying the same ID
+interface BridgeRequest {
+    id: number;
+    context: number; // The project the request comes from
+    method: string;
+    params: any;
+}
+
+// The types of events pushed to Java, sent as their codes
+export enum BridgeEventType {
+    TokenDelta = 0,
+    ToolRequest = 1,
+    Progress = 2,
+    Usage = 3
+}
+
+interface BridgeEndpoint {
+    initialize: (send: (message: string) => void, sendEvents: (batches: string) => void) => void;
+    handleRequest: (request: BridgeRequest) => void;
+    emit: (type: BridgeEventType, taskId: string, payload: any) => void;
+}
+
 // Initialize the UI
 window.initializeBridge = (options) => {
     console.log('Initializing UI with options:', options);
@@ -91,24 +114,116 @@ window.updateUI = (data) => {
 };
 
 // Export functions that need to be called from Java
-export function executeTask(taskInput: string, options: string): void {
+export function executeTask(taskInput: string, options: string): string {
     console.log('Executing task:', taskInput, options);
-    window.jsQuery0.result(JSON.stringify({
+    return JSON.stringify({
         taskInput,
         options
-    }));
+    });
 }
 
-export function cancelTask(): void {
+export function cancelTask(): string {
     console.log('Cancelling task');
-    window.jsQuery1.result('cancel');
+    return 'cancel';
 }
 
-export function getTaskStatus(): void {
+export function getTaskStatus(): string {
     console.log('Getting task status');
-    window.jsQuery2.result('status');
+    return 'status';
+}
+
+// Dispatch requests from Java, answering each one through the single bridge query
+let sendToJava: ((message: string) => void) | null = null;
+let sendEventsToJava: ((batches: string) => void) | null = null;
+
+// The runtime is shared by all open projects; each project has its own context, and each task belongs to one
+const contexts = new Map<number, { projectPath: string }>();
+const taskContexts = new Map<string, number>();
+
+// Events are queued per context and sent as one message per animation frame
+let queuedEvents: { [context: number]: [BridgeEventType, string, any][] } = {};
+let flushScheduled = false;
+
+function flushEvents(): void {
+    if (!flushScheduled) {
+        return;
+    }
+    flushScheduled = false;
+    const events = queuedEvents;
+    queuedEvents = {};
+    if (Object.keys(events).length > 0) {
+        sendEventsToJava?.(JSON.stringify(events));
+    }
 }
 
+// Events the request emitted are sent before its response, so Java sees a task's events before its result
+function respond(response: object): void {
+    flushEvents();
+    sendToJava?.(JSON.stringify(response));
+}
+
+window.clineBridge = {
+    initialize: (send, sendEvents) => {
+        sendToJava = send;
+        sendEventsToJava = sendEvents;
+    },
+    emit: (type, taskId, payload) => {
+        const context = taskContexts.get(taskId);
+        if (context === undefined) {
+            return;
+        }
+        const events = queuedEvents[context] ?? (queuedEvents[context] = []);
+        // Join token deltas with the delta before them, so a frame of streamed text is one event
+        const last = events[events.length - 1];
+        if (type === BridgeEventType.TokenDelta && last && last[0] === type && last[1] === taskId) {
+            last[2] += payload;
+        } else {
+            events.push([type, taskId, payload]);
+        }
+        if (!flushScheduled) {
+            flushScheduled = true;
+            // Offscreen browsers may not run animation frames, so also flush after a frame's time
+            requestAnimationFrame(flushEvents);
+            setTimeout(flushEvents, 16);
+        }
+    },
+    handleRequest: (request) => {
+        Promise.resolve()
+            .then(() => {
+                switch (request.method) {
+                    case 'openContext':
+                        contexts.set(request.context, { projectPath: request.params.projectPath });
+                        return null;
+                    case 'closeContext':
+                        contexts.delete(request.context);
+                        taskContexts.forEach((context, taskId) => {
+                            if (context === request.context) {
+                                taskContexts.delete(taskId);
+                            }
+                        });
+                        return null;
+                    case 'executeTask': {
+                        const options = request.params.options ? JSON.parse(request.params.options) : {};
+                        if (options.taskId) {
+                            taskContexts.set(options.taskId, request.context);
+                        }
+                        return executeTask(request.params.taskInput, request.params.options);
+                    }
+                    case 'cancelTask':
+                        return cancelTask();
+                    case 'getTaskStatus':
+                        return getTaskStatus();
+                    default:
+                        throw new Error('Unknown method: ' + request.method);
+                }
+            })
+            .then(
+                (result) => respond({ id: request.id, result }),
+                (error) => respond({ id: request.id, error: String(error?.message ?? error) })
+            );
+    }
+};
+
 // Add event listeners for UI updates
 window.addEventListener('message', (event) => {
     const message = event.data;
@@ -0,0 +1,144 @@
+/**
+ * Entry point of the Node process that runs the Cline core for the JetBrains plugin.
+ * The plugin and this process exchange JSON-RPC 2.0 messages over stdin and stdout. Every message is framed by
+ * its length as a 4 byte big endian integer followed by that many bytes of UTF-8 JSON. Requests are handled
+ * as soon as they arrive, so a slow request does not hold up the ones after it.
+ */
+
+import { ClineCore } from './core/ClineCore';
+import { ClineSettings } from './bridge/ClineBridge';
+
+// The types of events pushed to the plugin, sent as their codes
+export enum BridgeEventType {
+    TokenDelta = 0,
+    ToolRequest = 1,
+    Progress = 2,
+    Usage = 3
+}
+
+interface RpcRequest {
+    jsonrpc: '2.0';
+    id: number;
+    method: string;
+    params: any;
+}
+
+const MAX_MESSAGE_LENGTH = 64 * 1024 * 1024;
+
+// stdout carries the messages, so everything that is logged goes to stderr, where the plugin logs it
+console.log = console.info = console.warn = console.error;
+
+// Set by the initialize request; requests that arrive while it runs wait for it
+let core: Promise<ClineCore> | null = null;
+
+function send(message: object): void {
+    const body = Buffer.from(JSON.stringify(message), 'utf8');
+    const header = Buffer.alloc(4);
+    header.writeUInt32BE(body.length, 0);
+    process.stdout.write(Buffer.concat([header, body]));
+}
+
+// Events are queued and sent as one batch per turn of the event loop
+let queuedEvents: [BridgeEventType, string, any][] = [];
+let flushScheduled = false;
+
+function flushEvents(): void {
+    flushScheduled = false;
+    const events = queuedEvents;
+    queuedEvents = [];
+    if (events.length > 0) {
+        send({ jsonrpc: '2.0', method: 'events', params: events });
+    }
+}
+
+/**
+ * Push an event to the plugin.
+ * @param type The event type
+ * @param taskId The ID of the task the event belongs to
+ * @param payload The text of a token delta, or an object for the other types
+ */
+export function emit(type: BridgeEventType, taskId: string, payload: any): void {
+    // Join token deltas with the delta before them, so a burst of streamed text is one event
+    const last = queuedEvents[queuedEvents.length - 1];
+    if (type === BridgeEventType.TokenDelta && last && last[0] === type && last[1] === taskId) {
+        last[2] += payload;
+    } else {
+        queuedEvents.push([type, taskId, payload]);
+    }
+    if (!flushScheduled) {
+        flushScheduled = true;
+        setImmediate(flushEvents);
+    }
+}
+
+function getCore(): Promise<ClineCore> {
+    if (!core) {
+        return Promise.reject(new Error('Cline core not initialized'));
+    }
+    return core;
+}
+
+async function dispatch(method: string, params: any): Promise<any> {
+    switch (method) {
+        case 'initialize': {
+            const settings: ClineSettings = {
+                apiKey: params.settings?.apiKey,
+                model: params.settings?.apiModel
+            };
+            const created = new ClineCore(params.projectPath ?? process.cwd(), settings);
+            core = created.initialize().then(() => created);
+            await core;
+            return null;
+        }
+        case 'executeTask': {
+            const options = params.options ? JSON.parse(params.options) : undefined;
+            return JSON.stringify(await (await getCore()).executeTask(params.taskInput, options));
+        }
+        case 'cancelTask':
+            await (await getCore()).cancelTask();
+            return null;
+        case 'getTaskStatus':
+            return JSON.stringify(await (await getCore()).getTaskStatus());
+        default:
+            throw new Error('Unknown method: ' + method);
+    }
+}
+
+function handleRequest(request: RpcRequest): void {
+    // Events the request emitted are sent before its response, so the plugin sees a task's events before its result
+    dispatch(request.method, request.params ?? {}).finally(flushEvents).then(
+        (result) => send({ jsonrpc: '2.0', id: request.id, result: result ?? null }),
+        (error) => send({
+            jsonrpc: '2.0',
+            id: request.id,
+            error: { code: -32000, message: String(error?.message ?? error) }
+        })
+    );
+}
+
+// Chunks of stdin that do not yet hold a complete message
+let buffered = Buffer.alloc(0);
+
+process.stdin.on('data', (chunk: Buffer) => {
+    buffered = buffered.length > 0 ? Buffer.concat([buffered, chunk]) : chunk;
+    while (buffered.length >= 4) {
+        const length = buffered.readUInt32BE(0);
+        if (length > MAX_MESSAGE_LENGTH) {
+            console.error(`Invalid message length: ${length}`);
+            process.exit(1);
+        }
+        if (buffered.length < 4 + length) {
+            break;
+        }
+        const body = buffered.toString('utf8', 4, 4 + length);
+        buffered = buffered.subarray(4 + length);
+        try {
+            handleRequest(JSON.parse(body));
+        } catch (error) {
+            console.error('Invalid message from plugin', error);
+        }
+    }
+});
+
+// The plugin closes stdin when it stops the bridge
+process.stdin.on('end', () => process.exit(0));
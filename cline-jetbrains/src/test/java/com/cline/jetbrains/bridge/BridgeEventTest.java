@@ -0,0 +1,57 @@
+package com.cline.jetbrains.bridge;
+
+import com.google.gson.JsonParseException;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the BridgeEvent class.
+ */
+public class BridgeEventTest {
+
+    @Test
+    public void testParseBatch() {
+        List<BridgeEvent> events = BridgeEvent.parseBatch("[" +
+                "[0,\"task_1\",\"Hello, \\\"world\\\"\\n\"]," +
+                "[1,\"task_1\",{\"tool\":\"write_to_file\",\"content\":\"line 1\\nline 2\"}]," +
+                "[2,\"task_2\",{\"step\":3}]," +
+                "[3,\"task_1\",{\"inputTokens\":120,\"outputTokens\":45}]" +
+                "]");
+
+        assertEquals(4, events.size());
+        assertEquals(BridgeEvent.Type.TOKEN_DELTA, events.get(0).getType());
+        assertEquals("task_1", events.get(0).getTaskId());
+        assertEquals("Hello, \"world\"\n", events.get(0).getText());
+        assertNull(events.get(0).getData());
+
+        assertEquals(BridgeEvent.Type.TOOL_REQUEST, events.get(1).getType());
+        assertEquals("line 1\nline 2", events.get(1).getData().get("content").getAsString());
+        assertEquals(BridgeEvent.Type.PROGRESS, events.get(2).getType());
+        assertEquals("task_2", events.get(2).getTaskId());
+        assertEquals(BridgeEvent.Type.USAGE, events.get(3).getType());
+        assertEquals(45, events.get(3).getData().get("outputTokens").getAsInt());
+    }
+
+    @Test
+    public void testUnknownEventTypesAreSkipped() {
+        List<BridgeEvent> events = BridgeEvent.parseBatch("[[9,\"task_1\",{}],[0,\"task_1\",\"text\"]]");
+        assertEquals(1, events.size());
+        assertEquals("text", events.get(0).getText());
+    }
+
+    @Test
+    public void testInvalidBatches() {
+        String[] batches = {"{}", "[\"event\"]", "[[\"x\",\"task_1\"]]", "[[0,{}]]", "[[0"};
+        for (String batch : batches) {
+            try {
+                BridgeEvent.parseBatch(batch);
+                fail("Should not parse " + batch);
+            } catch (JsonParseException e) {
+                // Expected
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.cline.jetbrains.bridge;
+
+import com.google.gson.JsonObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for the BridgeRuntime class.
+ * The browser is not started, so these tests cover what the runtime does in Java.
+ */
+public class BridgeRuntimeTest {
+
+    private ScheduledExecutorService scheduler;
+    private BridgeRuntime runtime;
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        runtime = new BridgeRuntime(scheduler);
+    }
+
+    @After
+    public void tearDown() {
+        runtime.dispose();
+        scheduler.shutdownNow();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<BridgeEvent> captureEvents(JavaScriptBridge context) {
+        ArgumentCaptor<List<BridgeEvent>> events = ArgumentCaptor.forClass(List.class);
+        verify(context).dispatchEvents(events.capture());
+        return events.getValue();
+    }
+
+    @Test
+    public void testScriptUrlChangesWithTheScript() {
+        byte[] script = "window.clineBridge = {};".getBytes(StandardCharsets.UTF_8);
+        String url = BridgeRuntime.getScriptUrl(script);
+
+        assertTrue(url, url.matches("https://cline-bridge\\.local/bridge\\.[0-9a-f]{16}\\.js"));
+        assertEquals(url, BridgeRuntime.getScriptUrl(script.clone()));
+        assertNotEquals(url, BridgeRuntime.getScriptUrl("window.clineBridge = null;".getBytes(StandardCharsets.UTF_8)));
+        assertTrue(BridgeRuntime.createPage(url).contains("<script src=\"" + url + "\"></script>"));
+    }
+
+    @Test
+    public void testEventBatchesArePassedToTheirContext() {
+        JavaScriptBridge first = mock(JavaScriptBridge.class);
+        JavaScriptBridge second = mock(JavaScriptBridge.class);
+        int firstId = runtime.addContext(first);
+        int secondId = runtime.addContext(second);
+        assertNotEquals(firstId, secondId);
+
+        runtime.handleEvents("{" +
+                "\"" + firstId + "\":[[0,\"task_1\",\"Hello\"],[2,\"task_1\",{\"step\":1}]]," +
+                "\"" + secondId + "\":[[0,\"task_2\",\"World\"]]," +
+                "\"999\":[[0,\"task_3\",\"Unknown context\"]]" +
+                "}");
+
+        List<BridgeEvent> firstEvents = captureEvents(first);
+        assertEquals(2, firstEvents.size());
+        assertEquals("Hello", firstEvents.get(0).getText());
+        assertEquals(BridgeEvent.Type.PROGRESS, firstEvents.get(1).getType());
+        List<BridgeEvent> secondEvents = captureEvents(second);
+        assertEquals(1, secondEvents.size());
+        assertEquals("task_2", secondEvents.get(0).getTaskId());
+    }
+
+    @Test
+    public void testClosedContextsGetNoEvents() {
+        JavaScriptBridge context = mock(JavaScriptBridge.class);
+        int id = runtime.addContext(context);
+
+        runtime.closeContext(id);
+        runtime.handleEvents("{\"" + id + "\":[[0,\"task_1\",\"Hello\"]]}");
+
+        verify(context, never()).dispatchEvents(any());
+    }
+
+    @Test
+    public void testInvalidEventBatchesAreIgnored() {
+        JavaScriptBridge context = mock(JavaScriptBridge.class);
+        int id = runtime.addContext(context);
+
+        runtime.handleEvents("[1, 2, 3]");
+        runtime.handleEvents("{\"" + id + "\":\"not a batch\"}");
+        runtime.handleEvents("{\"not a context\":[]}");
+
+        verify(context, never()).dispatchEvents(any());
+    }
+
+    @Test
+    public void testRequestsFailUntilTheRuntimeIsStarted() {
+        CompletableFuture<String> result = runtime.sendRequest(1, "getTaskStatus", new JsonObject(), 1000);
+
+        try {
+            result.get();
+            fail("The request should fail");
+        } catch (InterruptedException | ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+
+    @Test
+    public void testDisposedRuntimeDoesNotStart() {
+        runtime.dispose();
+
+        assertTrue(runtime.start().isCompletedExceptionally());
+    }
+}
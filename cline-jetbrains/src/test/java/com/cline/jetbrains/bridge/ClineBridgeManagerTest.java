@@ -4,8 +4,11 @@ import com.cline.jetbrains.services.ClineSettingsService;
 import com.intellij.openapi.project.Project;
 import com.intellij.testFramework.fixtures.BasePlatformTestCase;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mockito;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
 
 import static org.mockito.ArgumentMatchers.any;
@@ -44,7 +47,7 @@ public class ClineBridgeManagerTest extends BasePlatformTestCase {
         bridgeManager = new ClineBridgeManager(mockProject);
         
         // Use reflection to set the JavaScript bridge
-        java.lang.reflect.Field jsBridgeField = ClineBridgeManager.class.getDeclaredField("jsBridge");
+        java.lang.reflect.Field jsBridgeField = ClineBridgeManager.class.getDeclaredField("bridge");
         jsBridgeField.setAccessible(true);
         jsBridgeField.set(bridgeManager, mockJsBridge);
         
@@ -116,4 +119,67 @@ public class ClineBridgeManagerTest extends BasePlatformTestCase {
         // Verify that the status is correct
         assertEquals("Task status", status);
     }
+    
+    @Test
+    public void testNodeBridgeIsRestartedWhenItExits() throws Exception {
+        when(mockSettingsService.isUseNodeBridge()).thenReturn(true);
+        List<BridgeTransport> nodeBridges = new ArrayList<>();
+        ClineBridgeManager manager = createManager(nodeBridges);
+        manager.initialize().get();
+        BridgeTransport first = nodeBridges.get(0);
+        
+        // The Node process exits
+        getTerminationListener(first).run();
+        
+        // A new Node process was started
+        Mockito.verify(first).dispose();
+        assertEquals(2, nodeBridges.size());
+        assertEquals("Task result", manager.executeTask("Test task", "{}").get());
+        Mockito.verify(nodeBridges.get(1)).executeTask("Test task", "{}");
+        Mockito.verify(mockJsBridge, Mockito.never()).initialize();
+        
+        // The bridge that was replaced is ignored
+        getTerminationListener(first).run();
+        assertEquals(2, nodeBridges.size());
+        Mockito.verify(nodeBridges.get(1), Mockito.never()).dispose();
+    }
+    
+    @Test
+    public void testJcefBridgeIsUsedWhenNodeBridgeKeepsExiting() throws Exception {
+        when(mockSettingsService.isUseNodeBridge()).thenReturn(true);
+        List<BridgeTransport> nodeBridges = new ArrayList<>();
+        ClineBridgeManager manager = createManager(nodeBridges);
+        manager.initialize().get();
+        
+        // The Node process exits again after every restart
+        for (int i = 0; i <= ClineBridgeManager.MAX_NODE_BRIDGE_RESTARTS; i++) {
+            getTerminationListener(nodeBridges.get(nodeBridges.size() - 1)).run();
+        }
+        
+        assertEquals(ClineBridgeManager.MAX_NODE_BRIDGE_RESTARTS + 1, nodeBridges.size());
+        Mockito.verify(mockJsBridge).initialize();
+        assertEquals("Task result", manager.executeTask("Test task", "{}").get());
+        Mockito.verify(mockJsBridge).executeTask("Test task", "{}");
+    }
+    
+    /**
+     * Create a bridge manager whose Node bridges are mocks.
+     * @param nodeBridges The list the created Node bridges are added to
+     * @return The bridge manager
+     */
+    private ClineBridgeManager createManager(List<BridgeTransport> nodeBridges) {
+        return new ClineBridgeManager(mockProject, mockSettingsService, project -> {
+            BridgeTransport nodeBridge = Mockito.mock(BridgeTransport.class);
+            when(nodeBridge.initialize()).thenReturn(CompletableFuture.completedFuture(null));
+            when(nodeBridge.executeTask(any(), any())).thenReturn(CompletableFuture.completedFuture("Task result"));
+            nodeBridges.add(nodeBridge);
+            return nodeBridge;
+        }, project -> mockJsBridge);
+    }
+    
+    private static Runnable getTerminationListener(BridgeTransport transport) {
+        ArgumentCaptor<Runnable> listener = ArgumentCaptor.forClass(Runnable.class);
+        Mockito.verify(transport).addTerminationListener(listener.capture());
+        return listener.getValue();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,97 @@
+package com.cline.jetbrains.bridge;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for the PendingRequests class.
+ */
+public class PendingRequestsTest {
+
+    private ScheduledExecutorService scheduler;
+    private PendingRequests pendingRequests;
+
+    @Before
+    public void setUp() {
+        scheduler = Executors.newSingleThreadScheduledExecutor();
+        pendingRequests = new PendingRequests(scheduler);
+    }
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void testResponsesCompleteOnlyTheirOwnRequest() throws Exception {
+        PendingRequests.Request first = pendingRequests.create("executeTask", 0);
+        PendingRequests.Request second = pendingRequests.create("getTaskStatus", 0);
+        assertNotEquals(first.id, second.id);
+        assertEquals(2, pendingRequests.size());
+
+        assertTrue(pendingRequests.complete(second.id, "running"));
+        assertEquals("running", second.future.get());
+        assertFalse(first.future.isDone());
+        assertEquals(1, pendingRequests.size());
+
+        // A second response to the same request is ignored
+        assertFalse(pendingRequests.complete(second.id, "completed"));
+        assertFalse(pendingRequests.complete(12345, "unknown"));
+
+        assertTrue(pendingRequests.fail(first.id, new IllegalStateException("failed")));
+        assertTrue(first.future.isCompletedExceptionally());
+        assertEquals(0, pendingRequests.size());
+    }
+
+    @Test
+    public void testRequestsTimeOut() throws Exception {
+        PendingRequests.Request request = pendingRequests.create("getTaskStatus", 50);
+        try {
+            request.future.get(5, TimeUnit.SECONDS);
+            fail("The request should time out");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertEquals(0, pendingRequests.size());
+        assertFalse(pendingRequests.complete(request.id, "late"));
+    }
+
+    @Test
+    public void testCancelledAndFailedRequestsAreRemoved() {
+        PendingRequests.Request cancelled = pendingRequests.create("executeTask", 60_000);
+        PendingRequests.Request other = pendingRequests.create("executeTask", 60_000);
+        cancelled.future.cancel(false);
+        assertEquals(1, pendingRequests.size());
+        assertTrue(cancelled.timeout.isCancelled());
+
+        pendingRequests.failAll(new IllegalStateException("disposed"));
+        assertTrue(other.future.isCompletedExceptionally());
+        assertEquals(0, pendingRequests.size());
+    }
+
+    @Test
+    public void testAnsweredRequestsAreMeasured() {
+        assertEquals(0, pendingRequests.getLatencyStatistics().getCount());
+        assertEquals(0, pendingRequests.getLatencyStatistics().getAverageMillis(), 0);
+
+        PendingRequests.Request answered = pendingRequests.create("getTaskStatus", 0);
+        PendingRequests.Request failed = pendingRequests.create("executeTask", 0);
+        PendingRequests.Request cancelled = pendingRequests.create("executeTask", 0);
+        pendingRequests.complete(answered.id, "idle");
+        pendingRequests.fail(failed.id, new IllegalStateException("failed"));
+        cancelled.future.cancel(false);
+
+        LatencyStatistics statistics = pendingRequests.getLatencyStatistics();
+        assertEquals(2, statistics.getCount());
+        assertTrue(statistics.getMaxMillis() >= statistics.getAverageMillis());
+    }
+}